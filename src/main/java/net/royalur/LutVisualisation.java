@@ -7,25 +7,52 @@ import net.royalur.lut.buffer.UInt8ValueBuffer;
 import net.royalur.lut.store.DataSink;
 import net.royalur.lut.store.LutMap;
 import net.royalur.model.GameSettings;
+import net.royalur.rules.simple.fast.FastSimpleBitboardGame;
 import net.royalur.rules.simple.fast.FastSimpleFlags;
-import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Work to visualise lut.
  */
 public class LutVisualisation {
 
+    /**
+     * The depth stored for states that cannot be reached.
+     */
+    private static final int UNREACHED_DEPTH = 255;
+
+    /**
+     * The number of words used to store each state in a frontier.
+     */
+    private static final int STATE_WORDS = 3;
+
+    private static final int MIN_STATES_PER_THREAD = 1024;
+
     private final Lut lut;
     private final GameSettings settings;
     private final FastSimpleFlags flags;
     private final UInt8ValueBuffer[] depthBuffers;
 
+    /**
+     * The offset of each map's entries in the dense indices of all states.
+     */
+    private final long[] mapOffsets;
+
+    /**
+     * A bitmap of the states that have been reached, by dense index.
+     */
+    private final AtomicLongArray visited;
+
     public LutVisualisation(Lut lut) {
         this.lut = lut;
         this.settings = lut.getGameSettings();
@@ -33,63 +60,211 @@ public class LutVisualisation {
 
         LutMap[] maps = lut.getMaps();
         this.depthBuffers = new UInt8ValueBuffer[maps.length];
+        this.mapOffsets = new long[maps.length];
+        long stateCount = 0;
         for (int index = 0; index < maps.length; ++index) {
             LutMap map = maps[index];
             UInt8ValueBuffer buffer = new UInt8ValueBuffer(map.getEntryCount());
             depthBuffers[index] = buffer;
+            mapOffsets[index] = stateCount;
+            stateCount += map.getEntryCount();
 
             for (int bufferIndex = 0; bufferIndex < buffer.getCapacity(); ++bufferIndex) {
-                buffer.set(bufferIndex, 255);
+                buffer.set(bufferIndex, UNREACHED_DEPTH);
             }
         }
+        this.visited = new AtomicLongArray(Math.toIntExact((stateCount + 63) / 64));
     }
 
-    private int getDepth(long key) {
-        int upperKey = GameStateEncoding.calcUpperKey(key);
-        int lowerKey = GameStateEncoding.calcLowerKey(key);
-        int index = lut.getMap(upperKey).indexOfKey(lowerKey);
-        return Byte.toUnsignedInt(depthBuffers[upperKey].getByte(index));
+    /**
+     * Packs a game state where it is light's turn into three words.
+     */
+    private static void packState(FastSimpleBitboardGame game, long[] output) {
+        output[0] = game.lightOccupancy;
+        output[1] = game.darkOccupancy;
+        output[2] = ((long) game.light.pieces << 32) | game.dark.pieces;
+    }
+
+    private void unpackState(long[] states, int index, FastSimpleBitboardGame output) {
+        int pieceCount = settings.getStartingPieceCount();
+        int offset = index * STATE_WORDS;
+        output.lightOccupancy = states[offset];
+        output.darkOccupancy = states[offset + 1];
+        output.light.pieces = (int) (states[offset + 2] >>> 32);
+        output.dark.pieces = (int) states[offset + 2];
+        output.light.score = pieceCount - output.light.pieces - Long.bitCount(output.lightOccupancy);
+        output.dark.score = pieceCount - output.dark.pieces - Long.bitCount(output.darkOccupancy);
+        output.isLightTurn = true;
+        output.rollValue = -1;
+        output.isFinished = false;
     }
 
-    private int setDepth(long key, int depth) {
+    /**
+     * Marks the state as visited, and returns whether
+     * it had not already been visited.
+     */
+    private boolean claim(long denseIndex) {
+        int wordIndex = (int) (denseIndex >>> 6);
+        long bit = 1L << denseIndex;
+        long previous = visited.getAndUpdate(wordIndex, word -> word | bit);
+        return (previous & bit) == 0;
+    }
+
+    /**
+     * Visits the neighbour of a state in the frontier. If the neighbour has
+     * not been seen before, its depth is set and it is added to the next frontier.
+     */
+    private void visitNeighbour(
+            FastSimpleBitboardGame neighbour,
+            int depth,
+            GameStateEncoding encoding,
+            FastSimpleBitboardGame tempBitboardGame,
+            long[] tempState,
+            Frontier nextFrontier
+    ) {
+        FastSimpleBitboardGame keyGame = neighbour;
+        if (!neighbour.isLightTurn) {
+            keyGame = neighbour.reversePlayers(tempBitboardGame);
+        }
+
+        long key = encoding.encodeGameState(keyGame);
         int upperKey = GameStateEncoding.calcUpperKey(key);
         int lowerKey = GameStateEncoding.calcLowerKey(key);
         int index = lut.getMap(upperKey).indexOfKey(lowerKey);
-        return depthBuffers[upperKey].set(index, depth);
+        if (!claim(mapOffsets[upperKey] + index))
+            return;
+
+        depthBuffers[upperKey].set(index, depth);
+        if (!keyGame.isFinished) {
+            packState(keyGame, tempState);
+            nextFrontier.add(tempState);
+        }
     }
 
-    private int iterate() {
+    /**
+     * Expands the states in the given section of the frontier.
+     */
+    private Frontier expandFrontierSection(Frontier frontier, int fromIndex, int toIndex, int depth) {
         GameStateEncoding encoding = lut.getGameStateEncoding();
-        FastSimpleGame tempGame = new FastSimpleGame(lut.getGameSettings());
-
-        AtomicInteger changeCount = new AtomicInteger(0);
-        flags.loopLightGameStatesAndNeighbours((game, neighbours) -> {
-            long gameKey = encoding.encodeGameState(game);
-            int gameDepth = getDepth(gameKey);
-            int newDepth = gameDepth + 1;
-
-            for (FastSimpleGame neighbour : neighbours) {
-                long neighbourKey = encoding.encodeSymmetricalGameState(neighbour, tempGame);
-                int neighbourDepth = getDepth(neighbourKey);
-                if (newDepth < neighbourDepth) {
-                    setDepth(neighbourKey, newDepth);
-                    changeCount.incrementAndGet();
+        float[] probabilities = settings.getDice().createDice().getRollProbabilities();
+
+        FastSimpleBitboardGame game = new FastSimpleBitboardGame(flags);
+        FastSimpleBitboardGame tempBitboardGame = new FastSimpleBitboardGame(flags);
+        FastSimpleMoveList moveList = new FastSimpleMoveList();
+        long[] tempState = new long[STATE_WORDS];
+        Frontier nextFrontier = new Frontier();
+
+        for (int stateIndex = fromIndex; stateIndex < toIndex; ++stateIndex) {
+            unpackState(frontier.states, stateIndex, game);
+
+            for (int roll = 0; roll < probabilities.length; ++roll) {
+                if (probabilities[roll] <= 0.0f)
+                    continue;
+
+                int rollUndoToken = game.applyRoll(roll, moveList);
+                if (game.isWaitingForMove()) {
+                    for (int moveIndex = 0; moveIndex < moveList.moveCount; ++moveIndex) {
+                        int moveUndoToken = game.applyMove(moveList.moves[moveIndex]);
+                        visitNeighbour(
+                                game, depth, encoding,
+                                tempBitboardGame, tempState, nextFrontier
+                        );
+                        game.undoMove(moveUndoToken);
+                    }
+                } else {
+                    visitNeighbour(
+                            game, depth, encoding,
+                            tempBitboardGame, tempState, nextFrontier
+                    );
                 }
+                game.undoRoll(rollUndoToken);
             }
-        });
-        return changeCount.get();
+        }
+        return nextFrontier;
     }
 
-    public void calculateDepths(File outputFile) throws IOException {
-        int index = 0;
-        while (true) {
+    /**
+     * Expands all states in the frontier in parallel, and
+     * returns the frontier of states at the next depth.
+     */
+    private Frontier expandFrontier(Frontier frontier, int depth) {
+        int threadCount = Math.max(1, Math.min(
+                Runtime.getRuntime().availableProcessors(),
+                frontier.size / MIN_STATES_PER_THREAD
+        ));
+        int statesPerThread = (frontier.size + threadCount - 1) / threadCount;
+
+        Frontier[] nextFrontiers = new Frontier[threadCount];
+        List<Thread> threads = new ArrayList<>();
+        AtomicReference<Exception> error = new AtomicReference<>();
+
+        for (int threadNo = 0; threadNo < threadCount; ++threadNo) {
+            int threadIndex = threadNo;
+            int fromIndex = Math.min(frontier.size, statesPerThread * threadNo);
+            int toIndex = Math.min(frontier.size, statesPerThread * (threadNo + 1));
+
+            Thread thread = new Thread(() -> {
+                try {
+                    nextFrontiers[threadIndex] = expandFrontierSection(
+                            frontier, fromIndex, toIndex, depth
+                    );
+                } catch (Exception e) {
+                    error.set(e);
+                }
+            }, "depths-" + threadNo);
+            threads.add(thread);
+            thread.start();
+        }
+
+        // Wait for all processing to complete.
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        if (error.get() != null)
+            throw new RuntimeException(error.get());
+
+        return Frontier.concat(nextFrontiers);
+    }
+
+    /**
+     * Calculates the minimum number of moves required to reach each
+     * state from the start of the game, using a breadth-first search
+     * that expands each state exactly once.
+     */
+    void calculateDepths() {
+        FastSimpleBitboardGame startGame = new FastSimpleBitboardGame(flags);
+        startGame.reset();
+
+        Frontier frontier = new Frontier();
+        visitNeighbour(
+                startGame, 0, lut.getGameStateEncoding(),
+                new FastSimpleBitboardGame(flags), new long[STATE_WORDS], frontier
+        );
+
+        int depth = 0;
+        while (frontier.size > 0) {
+            depth += 1;
+            if (depth >= UNREACHED_DEPTH)
+                throw new IllegalStateException("The depth of some states is too large to store");
+
             long start = System.nanoTime();
-            if (iterate() == 0)
-                break;
+            int frontierSize = frontier.size;
+            frontier = expandFrontier(frontier, depth);
 
             double durationMS = (System.nanoTime() - start) / 1e6d;
-            System.out.println(".. " + (++index) + " (" + CLI.MS_DURATION.format(durationMS) + ")");
+            System.out.println(
+                    ".. " + depth + ": " + frontierSize + " -> " + frontier.size
+                            + " states (" + CLI.MS_DURATION.format(durationMS) + ")"
+            );
         }
+    }
+
+    public void calculateDepths(File outputFile) throws IOException {
+        calculateDepths();
         try (FileOutputStream fos = new FileOutputStream(outputFile)) {
             ByteBuffer workingBuffer = ByteBuffer.allocateDirect(1024 * 1024);
             DataSink sink = new DataSink.FileDataSink(fos.getChannel(), workingBuffer);
@@ -98,4 +273,48 @@ public class LutVisualisation {
             }
         }
     }
+
+    /**
+     * Gets the depth calculated for the entry at {@code index} in the map
+     * of {@code upperKey}, or 255 if the state cannot be reached.
+     */
+    int getDepth(int upperKey, int index) {
+        return depthBuffers[upperKey].getInt(index);
+    }
+
+    /**
+     * A growable list of packed game states.
+     */
+    private static class Frontier {
+
+        long[] states = new long[STATE_WORDS * 1024];
+        int size = 0;
+
+        void add(long[] state) {
+            int offset = size * STATE_WORDS;
+            if (offset + STATE_WORDS > states.length) {
+                states = Arrays.copyOf(states, Math.multiplyExact(2, states.length));
+            }
+            System.arraycopy(state, 0, states, offset, STATE_WORDS);
+            size += 1;
+        }
+
+        static Frontier concat(Frontier[] frontiers) {
+            int totalSize = 0;
+            for (Frontier frontier : frontiers) {
+                totalSize = Math.addExact(totalSize, frontier.size);
+            }
+
+            Frontier result = new Frontier();
+            result.states = new long[Math.max(STATE_WORDS, Math.multiplyExact(STATE_WORDS, totalSize))];
+            for (Frontier frontier : frontiers) {
+                System.arraycopy(
+                        frontier.states, 0, result.states,
+                        result.size * STATE_WORDS, frontier.size * STATE_WORDS
+                );
+                result.size += frontier.size;
+            }
+            return result;
+        }
+    }
 }
@@ -0,0 +1,45 @@
+package net.royalur.agent;
+
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+
+/**
+ * An agent that decides the moves to make in many games at once,
+ * such as for a server that hosts many concurrent games. Deciding
+ * moves in bulk allows work to be shared between games that are in
+ * the same state, and lookups to be made in a cache-friendly order.
+ */
+public interface BatchAgent {
+
+    /**
+     * Determines the move to be made in each game. Each game must be waiting
+     * for a move, and so it holds the roll that was made. The games may be
+     * modified while deciding the moves, but they must be restored before
+     * this returns.
+     * @param games The games to find the best moves in.
+     * @param gameCount The number of games in {@code games} to decide moves for.
+     * @param outputMoves The array to write the path index of the piece to move
+     *                    in each game into, or {@code -1} to introduce a piece.
+     */
+    void decideMoves(FastSimpleGame[] games, int gameCount, int[] outputMoves);
+
+    /**
+     * Creates a batch agent that decides the move in each game separately using
+     * {@code agent}. This is not thread-safe.
+     * @param agent The agent to use to decide the move in each game.
+     * @return A batch agent that decides each move using {@code agent}.
+     */
+    static BatchAgent fromFastAgent(FastAgent agent) {
+        FastSimpleMoveList moveList = new FastSimpleMoveList();
+        return (games, gameCount, outputMoves) -> {
+            for (int index = 0; index < gameCount; ++index) {
+                FastSimpleGame game = games[index];
+                if (!game.isWaitingForMove())
+                    throw new IllegalArgumentException("Game " + index + " is not waiting for a move");
+
+                game.findAvailableMoves(moveList);
+                outputMoves[index] = agent.decideMove(game, moveList);
+            }
+        };
+    }
+}
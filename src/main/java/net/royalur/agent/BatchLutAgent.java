@@ -0,0 +1,411 @@
+package net.royalur.agent;
+
+import net.royalur.lut.GameStateEncoding;
+import net.royalur.lut.Lut;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+
+import java.util.Arrays;
+
+/**
+ * Uses a lookup-table to decide the moves to make in many games at once.
+ * This makes the same decisions as a {@link LutAgent}. This is not thread-safe.
+ * <p>
+ * Games that are in the same state, with the same roll, are only evaluated
+ * once. These are found by hashing the raw state of each game, which is
+ * much cheaper than encoding it. The states that the moves of each unique
+ * game lead to are then deduplicated, so that each is only looked up once.
+ * <p>
+ * If there are many states to look up, they are sorted by their keys, and
+ * looked up in a single sorted pass over the lookup-table, so that each
+ * search starts from the previous key. This visits the table in order,
+ * instead of jumping around it for each binary search. Small batches are
+ * looked up separately, as sorting them costs more than it saves.
+ */
+public class BatchLutAgent implements BatchAgent {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * The default minimum number of unique states in a batch
+     * for them to be looked up in a single sorted pass.
+     */
+    public static final int DEFAULT_SORTED_LOOKUP_THRESHOLD = 32768;
+
+    private final Lut lut;
+    private final GameStateEncoding encoding;
+    private final FastSimpleGame tempGame;
+    private final FastSimpleMoveList moveList;
+    private final int sortedLookupThreshold;
+
+    /**
+     * Maps the hashes of requests to the order they were added in.
+     */
+    private final KeyIndexMap requestMap;
+
+    /**
+     * The index of the unique request for each hash in the request map.
+     */
+    private int[] hashUniqueIndices;
+
+    /**
+     * Maps the keys of successor states to the index of their lookup.
+     */
+    private final KeyIndexMap successorMap;
+
+    /**
+     * The index of the unique request of each request.
+     */
+    private int[] requestUniqueIndices;
+
+    /**
+     * The index of the first request of each unique request,
+     * and the move chosen for each unique request.
+     */
+    private int[] uniqueRequests;
+    private int[] uniqueMoves;
+
+    /**
+     * The offset of the first successor of each unique request.
+     */
+    private int[] successorOffsets;
+
+    /**
+     * The move made to reach each successor state, the index of the
+     * lookup of the successor, or -1 if the game finished, and whether
+     * it is the light player's turn in the successor.
+     */
+    private int[] successorMoves;
+    private int[] successorLookups;
+    private boolean[] successorLightTurns;
+
+    /**
+     * The keys to look up in sorted order, their values, and
+     * the value of each lookup in the order of the successor map.
+     */
+    private long[] sortedKeys;
+    private double[] sortedValues;
+    private double[] lookupValues;
+
+    private long requestCount;
+    private long uniqueRequestCount;
+    private long lookupCount;
+
+    /**
+     * Instantiates a batch agent that uses {@code lut} to decide moves.
+     * @param lut The lookup-table to use to decide moves.
+     * @param sortedLookupThreshold The minimum number of unique states in a
+     *                              batch for them to be looked up in a single
+     *                              sorted pass.
+     */
+    public BatchLutAgent(Lut lut, int sortedLookupThreshold) {
+        if (sortedLookupThreshold < 0)
+            throw new IllegalArgumentException("sortedLookupThreshold must not be negative");
+
+        this.lut = lut;
+        this.encoding = lut.getGameStateEncoding();
+        this.tempGame = new FastSimpleGame(lut.getGameSettings());
+        this.moveList = new FastSimpleMoveList();
+        this.sortedLookupThreshold = sortedLookupThreshold;
+        this.requestMap = new KeyIndexMap();
+        this.successorMap = new KeyIndexMap();
+        this.hashUniqueIndices = new int[INITIAL_CAPACITY];
+        this.requestUniqueIndices = new int[INITIAL_CAPACITY];
+        this.uniqueRequests = new int[INITIAL_CAPACITY];
+        this.uniqueMoves = new int[INITIAL_CAPACITY];
+        this.successorOffsets = new int[INITIAL_CAPACITY + 1];
+        this.successorMoves = new int[INITIAL_CAPACITY];
+        this.successorLookups = new int[INITIAL_CAPACITY];
+        this.successorLightTurns = new boolean[INITIAL_CAPACITY];
+        this.sortedKeys = new long[INITIAL_CAPACITY];
+        this.sortedValues = new double[INITIAL_CAPACITY];
+        this.lookupValues = new double[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Instantiates a batch agent that uses {@code lut} to decide moves.
+     * @param lut The lookup-table to use to decide moves.
+     */
+    public BatchLutAgent(Lut lut) {
+        this(lut, DEFAULT_SORTED_LOOKUP_THRESHOLD);
+    }
+
+    /**
+     * Gets the total number of moves that have been requested.
+     * @return The total number of moves that have been requested.
+     */
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Gets the total number of unique games that moves have been decided for.
+     * @return The total number of unique games.
+     */
+    public long getUniqueRequestCount() {
+        return uniqueRequestCount;
+    }
+
+    /**
+     * Gets the total number of unique states that have been looked up.
+     * @return The total number of unique states looked up.
+     */
+    public long getLookupCount() {
+        return lookupCount;
+    }
+
+    /**
+     * Resets the counts of requests and lookups.
+     */
+    public void resetCounters() {
+        requestCount = 0;
+        uniqueRequestCount = 0;
+        lookupCount = 0;
+    }
+
+    private void ensureRequestCapacity(int gameCount) {
+        if (requestUniqueIndices.length >= gameCount)
+            return;
+
+        int capacity = Math.max(gameCount, 2 * requestUniqueIndices.length);
+        hashUniqueIndices = new int[capacity];
+        requestUniqueIndices = new int[capacity];
+        uniqueRequests = new int[capacity];
+        uniqueMoves = new int[capacity];
+        successorOffsets = new int[capacity + 1];
+    }
+
+    private void ensureSuccessorCapacity(int successorCount) {
+        if (successorMoves.length >= successorCount)
+            return;
+
+        int capacity = Math.max(successorCount, 2 * successorMoves.length);
+        successorMoves = Arrays.copyOf(successorMoves, capacity);
+        successorLookups = Arrays.copyOf(successorLookups, capacity);
+        successorLightTurns = Arrays.copyOf(successorLightTurns, capacity);
+    }
+
+    private void ensureLookupCapacity(int lookupCount) {
+        if (lookupValues.length >= lookupCount)
+            return;
+
+        int capacity = Math.max(lookupCount, 2 * lookupValues.length);
+        sortedKeys = new long[capacity];
+        sortedValues = new double[capacity];
+        lookupValues = new double[capacity];
+    }
+
+    /**
+     * Hashes the state of the game, the roll, and the turn.
+     */
+    private static long hashRequest(FastSimpleGame game) {
+        long hash = (game.isLightTurn ? 1 : 0);
+        hash = hash * 0x9E3779B97F4A7C15L + game.rollValue;
+        hash = hash * 0x9E3779B97F4A7C15L + game.light.pieces;
+        hash = hash * 0x9E3779B97F4A7C15L + game.light.score;
+        hash = hash * 0x9E3779B97F4A7C15L + game.dark.pieces;
+        hash = hash * 0x9E3779B97F4A7C15L + game.dark.score;
+        for (int piece : game.board.pieces) {
+            hash = hash * 0x9E3779B97F4A7C15L + piece;
+        }
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * Checks whether two games are in the same state, with the same roll and turn.
+     */
+    private static boolean isSameRequest(FastSimpleGame game1, FastSimpleGame game2) {
+        return game1.isLightTurn == game2.isLightTurn
+                && game1.rollValue == game2.rollValue
+                && game1.light.pieces == game2.light.pieces
+                && game1.light.score == game2.light.score
+                && game1.dark.pieces == game2.dark.pieces
+                && game1.dark.score == game2.dark.score
+                && Arrays.equals(game1.board.pieces, game2.board.pieces);
+    }
+
+    @Override
+    public void decideMoves(FastSimpleGame[] games, int gameCount, int[] outputMoves) {
+        ensureRequestCapacity(gameCount);
+
+        // Find the unique requests. Games with colliding hashes are kept separate.
+        requestMap.clear();
+        int uniqueCount = 0;
+        for (int index = 0; index < gameCount; ++index) {
+            FastSimpleGame game = games[index];
+            if (!game.isWaitingForMove())
+                throw new IllegalArgumentException("Game " + index + " is not waiting for a move");
+
+            int hashCount = requestMap.size();
+            int hashIndex = requestMap.add(hashRequest(game));
+            if (hashIndex < hashCount) {
+                int uniqueIndex = hashUniqueIndices[hashIndex];
+                if (isSameRequest(games[uniqueRequests[uniqueIndex]], game)) {
+                    requestUniqueIndices[index] = uniqueIndex;
+                    continue;
+                }
+            } else {
+                hashUniqueIndices[hashIndex] = uniqueCount;
+            }
+            uniqueRequests[uniqueCount] = index;
+            requestUniqueIndices[index] = uniqueCount;
+            uniqueCount += 1;
+        }
+
+        // Collect the unique states after each move of each unique request.
+        successorMap.clear();
+        int successorCount = 0;
+        for (int uniqueIndex = 0; uniqueIndex < uniqueCount; ++uniqueIndex) {
+            FastSimpleGame game = games[uniqueRequests[uniqueIndex]];
+            game.findAvailableMoves(moveList);
+            ensureSuccessorCapacity(successorCount + moveList.moveCount);
+            successorOffsets[uniqueIndex] = successorCount;
+            for (int moveIndex = 0; moveIndex < moveList.moveCount; ++moveIndex) {
+                int pathIndex = moveList.moves[moveIndex];
+                int undoToken = game.applyMove(pathIndex);
+                int lookup = -1;
+                if (!game.isFinished) {
+                    lookup = successorMap.add(encoding.encodeSymmetricalGameState(game, tempGame));
+                }
+                successorMoves[successorCount] = pathIndex;
+                successorLookups[successorCount] = lookup;
+                successorLightTurns[successorCount] = game.isLightTurn;
+                successorCount += 1;
+                game.undoMove(undoToken);
+            }
+        }
+        successorOffsets[uniqueCount] = successorCount;
+
+        // Look up each unique state once, in one sorted pass if there are many.
+        int lookupKeyCount = successorMap.size();
+        ensureLookupCapacity(lookupKeyCount);
+        if (lookupKeyCount >= sortedLookupThreshold) {
+            System.arraycopy(successorMap.keys, 0, sortedKeys, 0, lookupKeyCount);
+            Arrays.sort(sortedKeys, 0, lookupKeyCount);
+            lut.getDoubles(sortedKeys, lookupKeyCount, sortedValues);
+            for (int index = 0; index < lookupKeyCount; ++index) {
+                lookupValues[successorMap.get(sortedKeys[index])] = sortedValues[index];
+            }
+        } else {
+            for (int index = 0; index < lookupKeyCount; ++index) {
+                lookupValues[index] = lut.getDouble(successorMap.keys[index]);
+            }
+        }
+
+        // Select the best move for each unique request, in the same way as LutAgent.
+        for (int uniqueIndex = 0; uniqueIndex < uniqueCount; ++uniqueIndex) {
+            boolean isLightTurn = games[uniqueRequests[uniqueIndex]].isLightTurn;
+            int fromSuccessor = successorOffsets[uniqueIndex];
+            int toSuccessor = successorOffsets[uniqueIndex + 1];
+
+            double bestScore = -1.0d;
+            int bestMove = successorMoves[fromSuccessor];
+            for (int successor = fromSuccessor; successor < toSuccessor; ++successor) {
+                int lookup = successorLookups[successor];
+                double score;
+                if (lookup < 0) {
+                    score = 100.0d;
+                } else {
+                    double value = lookupValues[lookup];
+                    score = (successorLightTurns[successor] ? value : 100.0d - value);
+                    if (!isLightTurn) {
+                        score = 100.0d - score;
+                    }
+                }
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestMove = successorMoves[successor];
+                }
+            }
+            uniqueMoves[uniqueIndex] = bestMove;
+        }
+
+        for (int index = 0; index < gameCount; ++index) {
+            outputMoves[index] = uniqueMoves[requestUniqueIndices[index]];
+        }
+
+        requestCount += gameCount;
+        uniqueRequestCount += uniqueCount;
+        lookupCount += lookupKeyCount;
+    }
+
+    /**
+     * An open-addressing map from keys to the order they were added in.
+     */
+    private static class KeyIndexMap {
+
+        long[] keys;
+        private int[] table;
+        private int size;
+
+        KeyIndexMap() {
+            this.keys = new long[INITIAL_CAPACITY];
+            this.table = new int[2 * INITIAL_CAPACITY];
+            Arrays.fill(table, -1);
+            this.size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            Arrays.fill(table, -1);
+            size = 0;
+        }
+
+        private static int hash(long key) {
+            long mixed = key * 0x9E3779B97F4A7C15L;
+            return (int) (mixed ^ (mixed >>> 32));
+        }
+
+        /**
+         * Gets the index of the key, adding it if it is not already present.
+         */
+        int add(long key) {
+            if (2 * (size + 1) > table.length) {
+                grow();
+            }
+            int mask = table.length - 1;
+            int slot = hash(key) & mask;
+            while (table[slot] >= 0) {
+                int index = table[slot];
+                if (keys[index] == key)
+                    return index;
+
+                slot = (slot + 1) & mask;
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, 2 * keys.length);
+            }
+            keys[size] = key;
+            table[slot] = size;
+            return size++;
+        }
+
+        /**
+         * Gets the index of a key that is present in this map.
+         */
+        int get(long key) {
+            int mask = table.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[table[slot]] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return table[slot];
+        }
+
+        private void grow() {
+            table = new int[2 * table.length];
+            Arrays.fill(table, -1);
+            int mask = table.length - 1;
+            for (int index = 0; index < size; ++index) {
+                int slot = hash(keys[index]) & mask;
+                while (table[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = index;
+            }
+        }
+    }
+}
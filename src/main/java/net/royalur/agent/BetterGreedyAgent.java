@@ -2,6 +2,8 @@ package net.royalur.agent;
 
 import net.royalur.Game;
 import net.royalur.model.Move;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -10,7 +12,7 @@ import java.util.List;
  * An agent that prioritises capturing, followed by moving on to rosettes,
  * and that prioritises moving the most advanced piece. This is not thread-safe.
  */
-public class BetterGreedyAgent extends BaseAgent {
+public class BetterGreedyAgent extends BaseAgent implements FastAgent {
 
     @Override
     public Move decideMove(Game game, List<Move> moves) {
@@ -41,4 +43,9 @@ public class BetterGreedyAgent extends BaseAgent {
         // Select the most advanced piece to move.
         return moves.get(0);
     }
+
+    @Override
+    public int decideMove(FastSimpleEngine game, FastSimpleMoveList moveList) {
+        return GreedyAgent.decideGreedyMove(game, moveList, true);
+    }
 }
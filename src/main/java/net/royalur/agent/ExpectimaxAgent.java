@@ -0,0 +1,684 @@
+package net.royalur.agent;
+
+import net.royalur.Game;
+import net.royalur.agent.utility.UtilityFunction;
+import net.royalur.lut.GameStateEncoding;
+import net.royalur.model.Move;
+import net.royalur.rules.simple.SimpleRuleSet;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An agent that searches a fixed number of rolls ahead using
+ * expectiminimax, and scores the states it reaches using a
+ * bounded utility function. This is not thread-safe.
+ * <p>
+ * Chance nodes are pruned using the Star1 and Star2 algorithms of
+ * Ballard. Star1 uses the bounds of the utility function to stop
+ * searching the rolls of a chance node once its value cannot fall
+ * within the search window. Star2 first probes the most promising
+ * move after each roll, as the value of any move is a lower bound
+ * on the value of the roll. Moves are ordered so that captures are
+ * searched first, followed by moves onto rosettes, and then the
+ * most advanced pieces. These only skip states that cannot change
+ * the move that is chosen, and so this agent chooses the same moves
+ * as a search without pruning.
+ * <p>
+ * The search also stops at states whose utilities are exact, as
+ * reported by {@link UtilityFunction#isExact(FastSimpleGame)}.
+ * <p>
+ * The values of chance nodes may be stored in a {@link TranspositionTable},
+ * so that states that are reached through different orders of rolls and
+ * moves are only searched once. The table may be shared between agents on
+ * different threads.
+ * <p>
+ * A search can be given a deadline, after which it is abandoned. This
+ * allows the agent to be used for iterative deepening, as is done by
+ * {@link IterativeDeepeningAgent}.
+ * <p>
+ * The dice must not hold any state, as the same roll
+ * probabilities are used throughout the search.
+ */
+public class ExpectimaxAgent extends BaseAgent implements FastAgent {
+
+    /**
+     * Returned when a search with a deadline was abandoned before it completed.
+     * This is distinct from every path index, including the {@code -1} used to
+     * introduce pieces.
+     */
+    public static final int NO_MOVE = Integer.MIN_VALUE;
+
+    /**
+     * The number of chance nodes that are searched between checks of the time.
+     */
+    private static final int TIME_CHECK_INTERVAL = 256;
+
+    /**
+     * The rules used for games given to this agent.
+     */
+    private final SimpleRuleSet rules;
+
+    /**
+     * The utility function to use to evaluate game states.
+     */
+    private final UtilityFunction utilityFunction;
+
+    /**
+     * The number of rolls of the dice to search ahead after each move.
+     */
+    private final int depth;
+
+    /**
+     * Whether to prune chance nodes and moves. If this is false,
+     * then every state within the depth limit is searched.
+     */
+    private final boolean prune;
+
+    /**
+     * The maximum magnitude of the utility of any state.
+     */
+    private final double maxUtility;
+
+    /**
+     * The probability of each roll of the dice.
+     */
+    private final double[] rollProbabilities;
+
+    /**
+     * The game that is used to search the game tree, when deciding
+     * moves for a {@link Game} or for a game of another engine.
+     */
+    private final FastSimpleGame searchGame;
+    private final FastSimpleMoveList searchMoveList;
+
+    /**
+     * Move lists used to hold the available moves at each depth.
+     */
+    private final FastSimpleMoveList[] moveListHolders;
+
+    /**
+     * The lower bounds on the value of each roll found by
+     * probing, held at each depth.
+     */
+    private final double[][] probeHolders;
+
+    /**
+     * The windows that each roll was probed with, held at each depth.
+     * This is NaN for rolls that were not probed.
+     */
+    private final double[][] probeBetaHolders;
+
+    /**
+     * The table to store the values of chance nodes in, or null
+     * if the values of chance nodes should not be stored.
+     */
+    private final @Nullable TranspositionTable table;
+
+    /**
+     * The encoding used to create the keys of states in the table.
+     */
+    private final @Nullable GameStateEncoding encoding;
+
+    /**
+     * A game used to reverse the players of states before
+     * they are encoded, and a holder for entries in the table.
+     */
+    private final FastSimpleGame tableGame;
+    private final TranspositionTable.Entry tableEntry;
+
+    /**
+     * Holds the priorities of moves while they are being ordered.
+     */
+    private int[] priorityHolder;
+
+    /**
+     * The deadline of the current search, as given by {@link System#nanoTime()},
+     * and whether the current search has passed its deadline.
+     */
+    private boolean hasDeadline;
+    private long deadlineNanos;
+    private boolean timedOut;
+    private int timeCheckCountdown;
+
+    private long chanceNodeCount;
+    private long moveNodeCount;
+    private long leafNodeCount;
+    private long star1CutoffCount;
+    private long star2CutoffCount;
+
+    /**
+     * Instantiates an expectiminimax agent.
+     * @param rules The rules of the games given to this agent.
+     * @param utilityFunction The bounded utility function to use to evaluate game states.
+     * @param depth The number of rolls of the dice to search ahead after each move.
+     * @param prune Whether to prune the search. This does not change the moves that
+     *              are chosen, but it greatly reduces the number of states searched.
+     * @param table The table to store the values of chance nodes in, or null.
+     */
+    public ExpectimaxAgent(
+            SimpleRuleSet rules,
+            UtilityFunction utilityFunction,
+            int depth,
+            boolean prune,
+            @Nullable TranspositionTable table
+    ) {
+        if (depth < 1)
+            throw new IllegalArgumentException("depth must be at least 1");
+
+        float maxUtility = utilityFunction.getMaxUtility();
+        if (prune && Float.isInfinite(maxUtility))
+            throw new IllegalArgumentException("Pruning requires a utility function with bounded utilities");
+
+        this.rules = rules;
+        this.utilityFunction = utilityFunction;
+        this.depth = depth;
+        this.prune = prune;
+        this.maxUtility = maxUtility;
+
+        float[] probabilities = rules.getDiceFactory().createDice().getRollProbabilities();
+        this.rollProbabilities = new double[probabilities.length];
+        for (int roll = 0; roll < probabilities.length; ++roll) {
+            rollProbabilities[roll] = probabilities[roll];
+        }
+
+        this.searchGame = rules.createCompatibleFastGame();
+        this.searchMoveList = new FastSimpleMoveList();
+        this.moveListHolders = new FastSimpleMoveList[depth + 1];
+        this.probeHolders = new double[depth + 1][probabilities.length];
+        this.probeBetaHolders = new double[depth + 1][probabilities.length];
+        this.priorityHolder = new int[8];
+        for (int index = 0; index <= depth; ++index) {
+            moveListHolders[index] = new FastSimpleMoveList();
+        }
+
+        this.table = table;
+        this.encoding = (table != null ? GameStateEncoding.createSimple(rules.getSettings()) : null);
+        this.tableGame = rules.createCompatibleFastGame();
+        this.tableEntry = new TranspositionTable.Entry();
+    }
+
+    /**
+     * Instantiates an expectiminimax agent that does not store the values of states.
+     * @param rules The rules of the games given to this agent.
+     * @param utilityFunction The bounded utility function to use to evaluate game states.
+     * @param depth The number of rolls of the dice to search ahead after each move.
+     * @param prune Whether to prune the search. This does not change the moves that
+     *              are chosen, but it greatly reduces the number of states searched.
+     */
+    public ExpectimaxAgent(
+            SimpleRuleSet rules,
+            UtilityFunction utilityFunction,
+            int depth,
+            boolean prune
+    ) {
+        this(rules, utilityFunction, depth, prune, null);
+    }
+
+    /**
+     * Instantiates an expectiminimax agent that prunes its search.
+     * @param rules The rules of the games given to this agent.
+     * @param utilityFunction The bounded utility function to use to evaluate game states.
+     * @param depth The number of rolls of the dice to search ahead after each move.
+     */
+    public ExpectimaxAgent(SimpleRuleSet rules, UtilityFunction utilityFunction, int depth) {
+        this(rules, utilityFunction, depth, true);
+    }
+
+    /**
+     * Gets the number of chance nodes, where the dice are rolled, that have been searched.
+     * @return The number of chance nodes that have been searched.
+     */
+    public long getChanceNodeCount() {
+        return chanceNodeCount;
+    }
+
+    /**
+     * Gets the number of nodes where a move is chosen that have been searched.
+     * @return The number of move nodes that have been searched.
+     */
+    public long getMoveNodeCount() {
+        return moveNodeCount;
+    }
+
+    /**
+     * Gets the number of states that have been scored by the utility function.
+     * @return The number of leaf nodes that have been scored.
+     */
+    public long getLeafNodeCount() {
+        return leafNodeCount;
+    }
+
+    /**
+     * Gets the total number of nodes that have been searched.
+     * @return The total number of nodes that have been searched.
+     */
+    public long getNodeCount() {
+        return chanceNodeCount + moveNodeCount + leafNodeCount;
+    }
+
+    /**
+     * Gets the number of chance nodes that were cut off by Star1.
+     * @return The number of chance nodes that were cut off by Star1.
+     */
+    public long getStar1CutoffCount() {
+        return star1CutoffCount;
+    }
+
+    /**
+     * Gets the number of chance nodes that were cut off by the probes of Star2.
+     * @return The number of chance nodes that were cut off by Star2.
+     */
+    public long getStar2CutoffCount() {
+        return star2CutoffCount;
+    }
+
+    /**
+     * Resets the counts of the nodes that have been searched.
+     */
+    public void resetCounters() {
+        chanceNodeCount = 0;
+        moveNodeCount = 0;
+        leafNodeCount = 0;
+        star1CutoffCount = 0;
+        star2CutoffCount = 0;
+    }
+
+    /**
+     * Orders the moves so that captures are first, followed by moves on
+     * to rosettes, and then the remaining moves. Within each group, the
+     * most advanced pieces are moved first.
+     */
+    private void orderMoves(FastSimpleGame game, FastSimpleMoveList moveList) {
+        int[] moves = moveList.moves;
+        int[] boardPieces = game.board.pieces;
+        int turnPlayerSign = game.getTurnPlayer().sign;
+        if (priorityHolder.length < moveList.moveCount) {
+            priorityHolder = new int[moves.length];
+        }
+        int[] priorities = priorityHolder;
+
+        for (int index = 0; index < moveList.moveCount; ++index) {
+            int move = moves[index];
+            int priority = calculateMovePriority(game, boardPieces, turnPlayerSign, move);
+
+            int insertIndex = index;
+            while (insertIndex > 0 && priorities[insertIndex - 1] < priority) {
+                moves[insertIndex] = moves[insertIndex - 1];
+                priorities[insertIndex] = priorities[insertIndex - 1];
+                insertIndex -= 1;
+            }
+            moves[insertIndex] = move;
+            priorities[insertIndex] = priority;
+        }
+    }
+
+    /**
+     * The priority added to captures and moves on to rosettes,
+     * which is larger than the priority of any path index.
+     */
+    private static final int MOVE_PRIORITY_GROUP = 256;
+
+    private static int calculateMovePriority(
+            FastSimpleGame game,
+            int[] boardPieces,
+            int turnPlayerSign,
+            int pathIndex
+    ) {
+        int priority = pathIndex + 1;
+        int destTile = game.getMoveDestTile(pathIndex);
+        if (destTile < 0)
+            return priority;
+
+        if (boardPieces[destTile] * turnPlayerSign < 0)
+            return priority + 2 * MOVE_PRIORITY_GROUP;
+        if (game.board.isTileRosette(destTile))
+            return priority + MOVE_PRIORITY_GROUP;
+
+        return priority;
+    }
+
+    /**
+     * Checks whether the current search has passed its deadline. The
+     * time is only checked once every {@link #TIME_CHECK_INTERVAL} calls.
+     */
+    private boolean isOutOfTime() {
+        if (!hasDeadline)
+            return false;
+        if (timedOut)
+            return true;
+
+        timeCheckCountdown -= 1;
+        if (timeCheckCountdown > 0)
+            return false;
+
+        timeCheckCountdown = TIME_CHECK_INTERVAL;
+        timedOut = (System.nanoTime() - deadlineNanos >= 0);
+        return timedOut;
+    }
+
+    /**
+     * Calculates the value of the best move in {@code game}, from the
+     * perspective of the player to move. The value is exact if it is
+     * within the window, or else a bound on the value outside the window.
+     * If the value of the first move is already known from a probe, then
+     * it is given as {@code firstMoveValue}, or otherwise it is NaN.
+     * The state of the game is restored before this method returns.
+     */
+    private double searchMoves(
+            FastSimpleGame game,
+            FastSimpleMoveList moveList,
+            int remainingDepth,
+            double alpha,
+            double beta,
+            double firstMoveValue
+    ) {
+        moveNodeCount += 1;
+        orderMoves(game, moveList);
+
+        boolean wasLightTurn = game.isLightTurn;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        int fromIndex = 0;
+        if (!Double.isNaN(firstMoveValue)) {
+            bestValue = firstMoveValue;
+            fromIndex = 1;
+            if (prune && bestValue > alpha) {
+                alpha = bestValue;
+                if (alpha >= beta)
+                    return bestValue;
+            }
+        }
+        for (int moveIndex = fromIndex; moveIndex < moveList.moveCount; ++moveIndex) {
+            double value = searchMove(game, moveList.moves[moveIndex], wasLightTurn, remainingDepth, alpha, beta);
+            if (value > bestValue) {
+                bestValue = value;
+            }
+            if (prune && bestValue > alpha) {
+                alpha = bestValue;
+                if (alpha >= beta)
+                    break;
+            }
+        }
+        return bestValue;
+    }
+
+    /**
+     * Calculates the value of making the move of the piece at
+     * {@code pathIndex}, from the perspective of the player making the move.
+     */
+    private double searchMove(
+            FastSimpleGame game,
+            int pathIndex,
+            boolean wasLightTurn,
+            int remainingDepth,
+            double alpha,
+            double beta
+    ) {
+        int undoToken = game.applyMove(pathIndex);
+        double value;
+        if (game.isLightTurn == wasLightTurn) {
+            value = searchChance(game, remainingDepth, alpha, beta);
+        } else {
+            value = -searchChance(game, remainingDepth, -beta, -alpha);
+        }
+        game.undoMove(undoToken);
+        return value;
+    }
+
+    /**
+     * Calculates the value of a roll that has been applied to {@code game},
+     * from the perspective of the player that rolled.
+     */
+    private double searchRoll(
+            FastSimpleGame game,
+            FastSimpleMoveList moveList,
+            int remainingDepth,
+            double alpha,
+            double beta,
+            double firstMoveValue
+    ) {
+        if (game.isWaitingForMove())
+            return searchMoves(game, moveList, remainingDepth - 1, alpha, beta, firstMoveValue);
+
+        // No moves were available, so the turn passed to the other player.
+        return -searchChance(game, remainingDepth - 1, -beta, -alpha);
+    }
+
+    /**
+     * Calculates the expected value of {@code game} over all rolls of the
+     * dice, from the perspective of the player to roll. The value is exact
+     * if it is within the window, or else a bound on the value outside the
+     * window. The state of the game is restored before this method returns.
+     * If the search has passed its deadline, then the value is meaningless.
+     */
+    private double searchChance(FastSimpleGame game, int remainingDepth, double alpha, double beta) {
+        if (game.isFinished || remainingDepth <= 0 || utilityFunction.isExact(game)) {
+            leafNodeCount += 1;
+            return utilityFunction.scoreGame(game);
+        }
+        if (isOutOfTime())
+            return 0.0;
+        if (table == null || encoding == null)
+            return searchRolls(game, remainingDepth, alpha, beta);
+
+        long stateKey = encoding.encodeSymmetricalGameState(game, tableGame);
+        long key = TranspositionTable.createKey(stateKey, game.isLightTurn, remainingDepth);
+        if (table.probe(key, tableEntry)) {
+            double value = tableEntry.value;
+            int bound = tableEntry.bound;
+            if (bound == TranspositionTable.BOUND_EXACT)
+                return value;
+            if (bound == TranspositionTable.BOUND_LOWER && value >= beta)
+                return value;
+            if (bound == TranspositionTable.BOUND_UPPER && value <= alpha)
+                return value;
+        }
+
+        double value = searchRolls(game, remainingDepth, alpha, beta);
+        if (timedOut)
+            return value;
+
+        int bound;
+        if (value <= alpha) {
+            bound = TranspositionTable.BOUND_UPPER;
+        } else if (value >= beta) {
+            bound = TranspositionTable.BOUND_LOWER;
+        } else {
+            bound = TranspositionTable.BOUND_EXACT;
+        }
+        table.store(key, value, bound, remainingDepth);
+        return value;
+    }
+
+    /**
+     * Calculates the expected value of {@code game} over all rolls of the
+     * dice, from the perspective of the player to roll, without using the
+     * transposition table for {@code game} itself.
+     */
+    private double searchRolls(FastSimpleGame game, int remainingDepth, double alpha, double beta) {
+        chanceNodeCount += 1;
+        FastSimpleMoveList moveList = moveListHolders[remainingDepth];
+        if (!prune) {
+            double value = 0.0;
+            for (int roll = 0; roll < rollProbabilities.length; ++roll) {
+                double prob = rollProbabilities[roll];
+                if (prob <= 0.0)
+                    continue;
+
+                int undoToken = game.applyRoll(roll, moveList);
+                value += prob * searchRoll(game, moveList, remainingDepth, alpha, beta, Double.NaN);
+                game.undoRoll(undoToken);
+            }
+            return value;
+        }
+
+        // The value of every state is within the bounds of the utility function.
+        if (beta <= -maxUtility)
+            return -maxUtility;
+        if (alpha >= maxUtility)
+            return maxUtility;
+
+        // Star2: Probe the first move after each roll to find lower bounds on the value of the rolls.
+        double[] lowerBounds = probeHolders[remainingDepth];
+        double[] probeBetas = probeBetaHolders[remainingDepth];
+        Arrays.fill(lowerBounds, -maxUtility);
+        Arrays.fill(probeBetas, Double.NaN);
+        double lowerSum = -maxUtility;
+        for (int roll = 0; roll < rollProbabilities.length; ++roll) {
+            double prob = rollProbabilities[roll];
+            if (prob <= 0.0)
+                continue;
+
+            int undoToken = game.applyRoll(roll, moveList);
+            if (game.isWaitingForMove()) {
+                orderMoves(game, moveList);
+                double probeBeta = Math.min(maxUtility, (beta - lowerSum + prob * lowerBounds[roll]) / prob);
+                double probe = searchMove(
+                        game, moveList.moves[0], game.isLightTurn,
+                        remainingDepth - 1, -maxUtility, probeBeta
+                );
+                lowerSum += prob * (probe - lowerBounds[roll]);
+                lowerBounds[roll] = probe;
+                probeBetas[roll] = probeBeta;
+            }
+            game.undoRoll(undoToken);
+
+            if (lowerSum >= beta) {
+                star2CutoffCount += 1;
+                return lowerSum;
+            }
+        }
+
+        // Star1: Search each roll, and stop once the value is known to be outside the window.
+        double value = 0.0;
+        double remainingLowerSum = lowerSum;
+        double remainingProb = 1.0;
+        for (int roll = 0; roll < rollProbabilities.length; ++roll) {
+            double prob = rollProbabilities[roll];
+            if (prob <= 0.0)
+                continue;
+
+            remainingLowerSum -= prob * lowerBounds[roll];
+            remainingProb -= prob;
+            double rollAlpha = Math.max(-maxUtility, (alpha - value - remainingProb * maxUtility) / prob);
+            double rollBeta = Math.min(maxUtility, (beta - value - remainingLowerSum) / prob);
+
+            // The probe can be reused if it was exact, or if it is enough for a cutoff.
+            double probe = lowerBounds[roll];
+            boolean wasProbed = !Double.isNaN(probeBetas[roll]);
+            boolean reuseProbe = wasProbed && (probe < probeBetas[roll] || probe >= rollBeta);
+            double firstMoveValue = (reuseProbe ? probe : Double.NaN);
+
+            int undoToken = game.applyRoll(roll, moveList);
+            double rollValue = searchRoll(game, moveList, remainingDepth, rollAlpha, rollBeta, firstMoveValue);
+            game.undoRoll(undoToken);
+
+            value += prob * rollValue;
+            if (rollValue <= rollAlpha && rollAlpha > -maxUtility) {
+                star1CutoffCount += 1;
+                return value + remainingProb * maxUtility;
+            }
+            if (rollValue >= rollBeta && rollBeta < maxUtility) {
+                star1CutoffCount += 1;
+                return value + remainingLowerSum;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Searches each available move, and selects the move with the highest value.
+     * Moves are only selected over earlier moves if their value is strictly higher,
+     * so later moves are searched with a window that excludes the best value so far.
+     */
+    @Override
+    public int decideMove(FastSimpleEngine game, FastSimpleMoveList moveList) {
+        return search(FastSimpleGame.from(game, searchGame), moveList, depth, false, 0);
+    }
+
+    /**
+     * Searches each available move to the given depth, and selects the move
+     * with the highest value. If the search is not complete by the deadline,
+     * then it is abandoned, and {@link #NO_MOVE} is returned. Either way, the
+     * moves in {@code moveList} are left ordered from the most promising to
+     * the least promising.
+     * @param game The game to find the best move in.
+     * @param moveList The moves that are available in the game.
+     * @param searchDepth The number of rolls of the dice to search ahead after each
+     *                    move, which must be between 1 and the depth of this agent.
+     * @param deadlineNanos The time to abandon the search, as given by {@link System#nanoTime()}.
+     * @return The path index of the piece to move, or {@link #NO_MOVE}.
+     */
+    public int decideMove(
+            FastSimpleEngine game,
+            FastSimpleMoveList moveList,
+            int searchDepth,
+            long deadlineNanos
+    ) {
+        if (searchDepth < 1 || searchDepth > depth)
+            throw new IllegalArgumentException("searchDepth must be between 1 and " + depth);
+
+        return search(FastSimpleGame.from(game, searchGame), moveList, searchDepth, true, deadlineNanos);
+    }
+
+    @Override
+    public Move decideMove(Game game, List<Move> moves) {
+        if (moves.isEmpty())
+            throw new IllegalArgumentException("No moves available");
+        if (moves.size() == 1)
+            return moves.get(0);
+
+        searchGame.copyFrom(game);
+        searchGame.findAvailableMoves(searchMoveList);
+        int pathIndex = decideMove(searchGame, searchMoveList);
+
+        return FastAgent.findMove(moves, rules.getPaths(), pathIndex);
+    }
+
+    /**
+     * Searches the moves in {@code moveList} to {@code searchDepth}, and
+     * abandons the search if {@code hasDeadline} and the deadline passes.
+     */
+    private int search(
+            FastSimpleGame game,
+            FastSimpleMoveList moveList,
+            int searchDepth,
+            boolean hasDeadline,
+            long deadlineNanos
+    ) {
+        if (moveList.moveCount == 0)
+            throw new IllegalArgumentException("No moves provided");
+        if (moveList.moveCount == 1)
+            return moveList.moves[0];
+
+        this.hasDeadline = hasDeadline;
+        this.deadlineNanos = deadlineNanos;
+        this.timedOut = false;
+        this.timeCheckCountdown = 1;
+        if (table != null) {
+            table.newSearch();
+        }
+        orderMoves(game, moveList);
+
+        boolean wasLightTurn = game.isLightTurn;
+        double upperBound = (prune ? maxUtility : Double.POSITIVE_INFINITY);
+        double bestValue = Double.NEGATIVE_INFINITY;
+        int bestMove = moveList.moves[0];
+        for (int moveIndex = 0; moveIndex < moveList.moveCount; ++moveIndex) {
+            int move = moveList.moves[moveIndex];
+            double alpha = (prune ? bestValue : Double.NEGATIVE_INFINITY);
+            double value = searchMove(game, move, wasLightTurn, searchDepth, alpha, upperBound);
+            if (timedOut)
+                return NO_MOVE;
+            if (value > bestValue) {
+                bestValue = value;
+                bestMove = move;
+            }
+        }
+        return bestMove;
+    }
+}
@@ -0,0 +1,42 @@
+package net.royalur.agent;
+
+import net.royalur.model.Move;
+import net.royalur.model.path.PathPair;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+
+import java.util.List;
+
+/**
+ * An agent that can decide moves directly on a {@link FastSimpleEngine},
+ * without the allocations of the {@link net.royalur.Game} object model.
+ */
+public interface FastAgent {
+
+    /**
+     * Determines the move to be made from the current state of the game.
+     * The game may be modified while deciding the move, but it must be
+     * restored before this returns.
+     * @param game The game to find the best move in.
+     * @param moveList The moves that are available in the game.
+     * @return The path index of the piece to move, taken from {@code moveList},
+     *         or {@code -1} to introduce a piece.
+     */
+    int decideMove(FastSimpleEngine game, FastSimpleMoveList moveList);
+
+    /**
+     * Finds the move in {@code moves} that moves the piece at {@code pathIndex}.
+     * This converts a move decided on a {@link FastSimpleEngine} back into a {@link Move}.
+     * @param moves The moves that are available in the game.
+     * @param paths The paths of the players in the game.
+     * @param pathIndex The path index of the piece to move, or {@code -1} to introduce a piece.
+     * @return The move of the piece at {@code pathIndex}.
+     */
+    static Move findMove(List<Move> moves, PathPair paths, int pathIndex) {
+        for (Move move : moves) {
+            if (move.getPathIndex(paths) == pathIndex)
+                return move;
+        }
+        throw new IllegalStateException("Could not find the move for path index " + pathIndex);
+    }
+}
@@ -2,6 +2,8 @@ package net.royalur.agent;
 
 import net.royalur.Game;
 import net.royalur.model.Move;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -10,7 +12,7 @@ import java.util.List;
  * An agent that prioritises capturing, followed by moving on to rosettes,
  * and that prioritises moving the most advanced piece. This is not thread-safe.
  */
-public class GreedyAgent extends BaseAgent {
+public class GreedyAgent extends BaseAgent implements FastAgent {
 
     @Override
     public Move decideMove(Game game, List<Move> moves) {
@@ -35,4 +37,49 @@ public class GreedyAgent extends BaseAgent {
         // Select the most advanced piece to move.
         return moves.get(0);
     }
+
+    @Override
+    public int decideMove(FastSimpleEngine game, FastSimpleMoveList moveList) {
+        return decideGreedyMove(game, moveList, false);
+    }
+
+    /**
+     * Selects the most advanced piece that can capture, followed by the most
+     * advanced piece that can move on to a rosette, optionally followed by
+     * introducing a piece, and finally the most advanced piece.
+     */
+    static int decideGreedyMove(FastSimpleEngine game, FastSimpleMoveList moveList, boolean preferIntroduction) {
+        if (moveList.moveCount == 0)
+            throw new IllegalArgumentException("No moves provided");
+
+        int turnPlayerSign = game.getTurnPlayer().sign;
+        int bestCapture = Integer.MIN_VALUE;
+        int bestRosette = Integer.MIN_VALUE;
+        int bestMove = Integer.MIN_VALUE;
+        boolean canIntroduce = false;
+        for (int index = 0; index < moveList.moveCount; ++index) {
+            int pathIndex = moveList.moves[index];
+            bestMove = Math.max(bestMove, pathIndex);
+            canIntroduce |= (pathIndex == -1);
+
+            int destTile = game.getMoveDestTile(pathIndex);
+            if (destTile < 0)
+                continue;
+
+            if (game.getPiece(destTile) * turnPlayerSign < 0) {
+                bestCapture = Math.max(bestCapture, pathIndex);
+            } else if (game.isTileRosette(destTile)) {
+                bestRosette = Math.max(bestRosette, pathIndex);
+            }
+        }
+
+        if (bestCapture != Integer.MIN_VALUE)
+            return bestCapture;
+        if (bestRosette != Integer.MIN_VALUE)
+            return bestRosette;
+        if (preferIntroduction && canIntroduce)
+            return -1;
+
+        return bestMove;
+    }
 }
@@ -0,0 +1,246 @@
+package net.royalur.agent;
+
+import net.royalur.Game;
+import net.royalur.agent.utility.EndgameLutUtilityFn;
+import net.royalur.agent.utility.UtilityFunction;
+import net.royalur.lut.Lut;
+import net.royalur.lut.SimpleGameStateEncoding;
+import net.royalur.model.Move;
+import net.royalur.rules.simple.SimpleRuleSet;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * An agent that uses a lookup-table for the endgame, and searches a
+ * fixed number of rolls ahead using expectimax everywhere else. The
+ * endgame is the states where neither player has more than a given
+ * number of pieces left to play, and only the entries of the lut for
+ * those states need to be loaded, using {@link #readEndgameLut}. This
+ * allows an agent to play perfectly in the endgame of rule sets whose
+ * full lookup-tables are too large to fit in memory.
+ * <p>
+ * The number of pieces left to play that are included in the endgame
+ * trades memory for strength, as more of the game is then played using
+ * exact values rather than a heuristic. The search is performed by an
+ * {@link ExpectimaxAgent}, using an {@link EndgameLutUtilityFn} that
+ * scores states in the endgame using the lut. The search stops at any
+ * state in the endgame, as its value is already known exactly. Other
+ * states at the end of the search are scored using a utility function.
+ * <p>
+ * This is not thread-safe, and the lut must not be shared with other threads.
+ */
+public class HybridAgent extends BaseAgent implements FastAgent {
+
+    private final SimpleRuleSet rules;
+    private final Lut endgameLut;
+    private final int depth;
+    private final EndgameLutUtilityFn evaluator;
+    private final ExpectimaxAgent searchAgent;
+
+    private final FastSimpleGame searchGame;
+    private final FastSimpleMoveList searchMoveList;
+
+    private long tableDecisionCount;
+    private long searchDecisionCount;
+
+    /**
+     * Instantiates an agent that uses a lut for the endgame.
+     * @param rules The rules of the games given to this agent.
+     * @param endgameLut A lut that contains at least every state where neither
+     *                   player has more than {@code maxPiecesInHand} pieces left
+     *                   to play, such as a lut from {@link #readEndgameLut}.
+     * @param maxPiecesInHand The most pieces that either player can have left to
+     *                        play in the states that are looked up in the lut.
+     * @param utilityFunction The bounded utility function used to score states
+     *                        at the end of the search that are not in the lut.
+     * @param depth The number of rolls of the dice to search ahead after each move.
+     * @param table The table to store the values of chance nodes in, or null.
+     */
+    public HybridAgent(
+            SimpleRuleSet rules,
+            Lut endgameLut,
+            int maxPiecesInHand,
+            UtilityFunction utilityFunction,
+            int depth,
+            @Nullable TranspositionTable table
+    ) {
+        if (!rules.getSettings().equals(endgameLut.getGameSettings()))
+            throw new IllegalArgumentException("The lut was generated for different game settings");
+
+        this.rules = rules;
+        this.endgameLut = endgameLut;
+        this.depth = depth;
+        this.evaluator = new EndgameLutUtilityFn(endgameLut, maxPiecesInHand, utilityFunction);
+        this.searchAgent = new ExpectimaxAgent(rules, evaluator, depth, true, table);
+        this.searchGame = rules.createCompatibleFastGame();
+        this.searchMoveList = new FastSimpleMoveList();
+    }
+
+    /**
+     * Instantiates an agent that uses a lut for the endgame,
+     * and does not store the values of states.
+     * @param rules The rules of the games given to this agent.
+     * @param endgameLut A lut that contains at least every state where neither
+     *                   player has more than {@code maxPiecesInHand} pieces left
+     *                   to play, such as a lut from {@link #readEndgameLut}.
+     * @param maxPiecesInHand The most pieces that either player can have left to
+     *                        play in the states that are looked up in the lut.
+     * @param utilityFunction The bounded utility function used to score states
+     *                        at the end of the search that are not in the lut.
+     * @param depth The number of rolls of the dice to search ahead after each move.
+     */
+    public HybridAgent(
+            SimpleRuleSet rules,
+            Lut endgameLut,
+            int maxPiecesInHand,
+            UtilityFunction utilityFunction,
+            int depth
+    ) {
+        this(rules, endgameLut, maxPiecesInHand, utilityFunction, depth, null);
+    }
+
+    /**
+     * Reads only the states of a lut where neither player has more
+     * than {@code maxPiecesInHand} pieces left to play. The rest of
+     * the lut is skipped as it is read, so it is never held in memory.
+     * @param file The file to read the lut from.
+     * @param maxPiecesInHand The most pieces that either player can have left to play.
+     * @return The endgame entries of the lut.
+     * @throws IOException If there is an error reading the file.
+     */
+    public static Lut readEndgameLut(File file, int maxPiecesInHand) throws IOException {
+        return Lut.read(file, encoding -> {
+            if (!(encoding instanceof SimpleGameStateEncoding simpleEncoding))
+                throw new IllegalArgumentException("Unsupported encoding: " + encoding.getClass().getSimpleName());
+
+            return key -> simpleEncoding.decodeLightPieces(key) <= maxPiecesInHand
+                    && simpleEncoding.decodeDarkPieces(key) <= maxPiecesInHand;
+        });
+    }
+
+    public int getMaxPiecesInHand() {
+        return evaluator.getMaxPiecesInHand();
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Gets the number of entries in the endgame lut, which
+     * determines how much memory this agent uses.
+     * @return The number of entries in the endgame lut.
+     */
+    public int getTableEntryCount() {
+        return endgameLut.getEntryCount();
+    }
+
+    /**
+     * Gets the number of decisions where the state after every move was
+     * in the endgame lut or finished, so no search was needed.
+     * @return The number of decisions that were made using only the lut.
+     */
+    public long getTableDecisionCount() {
+        return tableDecisionCount;
+    }
+
+    /**
+     * Gets the number of decisions that needed a search.
+     * @return The number of decisions that were made by searching.
+     */
+    public long getSearchDecisionCount() {
+        return searchDecisionCount;
+    }
+
+    /**
+     * Gets the number of chance nodes that have been searched.
+     * @return The number of chance nodes that have been searched.
+     */
+    public long getChanceNodeCount() {
+        return searchAgent.getChanceNodeCount();
+    }
+
+    /**
+     * Gets the number of states whose values were looked up in the lut.
+     * @return The number of states resolved by the lut.
+     */
+    public long getTableLeafCount() {
+        return evaluator.getTableStateCount();
+    }
+
+    /**
+     * Gets the number of states at the end of the search
+     * that were scored using the utility function.
+     * @return The number of states scored by the utility function.
+     */
+    public long getUtilityLeafCount() {
+        return evaluator.getUtilityStateCount();
+    }
+
+    /**
+     * Gets the number of finished games that were reached by the search.
+     * @return The number of finished games that were reached.
+     */
+    public long getFinishedLeafCount() {
+        return evaluator.getFinishedStateCount();
+    }
+
+    /**
+     * Gets the fraction of the states at the leaves of the search,
+     * excluding finished games, whose values came from the lut.
+     * @return The fraction of leaf states resolved by the lut, or 0 if none were reached.
+     */
+    public double getTableLeafFraction() {
+        long tableLeafCount = getTableLeafCount();
+        long leafCount = tableLeafCount + getUtilityLeafCount();
+        return (leafCount == 0 ? 0.0 : (double) tableLeafCount / leafCount);
+    }
+
+    /**
+     * Resets the counts of decisions and states that have been searched.
+     */
+    public void resetCounters() {
+        tableDecisionCount = 0;
+        searchDecisionCount = 0;
+        searchAgent.resetCounters();
+        evaluator.resetCounters();
+    }
+
+    @Override
+    public Move decideMove(Game game, List<Move> moves) {
+        if (moves.isEmpty())
+            throw new IllegalArgumentException("No moves available");
+        if (moves.size() == 1)
+            return moves.get(0);
+
+        searchGame.copyFrom(game);
+        searchGame.findAvailableMoves(searchMoveList);
+        int pathIndex = decideMove(searchGame, searchMoveList);
+        return FastAgent.findMove(moves, rules.getPaths(), pathIndex);
+    }
+
+    @Override
+    public int decideMove(FastSimpleEngine game, FastSimpleMoveList moveList) {
+        if (moveList.moveCount == 0)
+            throw new IllegalArgumentException("No moves provided");
+        if (moveList.moveCount == 1)
+            return moveList.moves[0];
+
+        long previousUtilityLeafCount = evaluator.getUtilityStateCount();
+        long previousChanceNodeCount = searchAgent.getChanceNodeCount();
+        int move = searchAgent.decideMove(game, moveList);
+        if (evaluator.getUtilityStateCount() == previousUtilityLeafCount
+                && searchAgent.getChanceNodeCount() == previousChanceNodeCount) {
+            tableDecisionCount += 1;
+        } else {
+            searchDecisionCount += 1;
+        }
+        return move;
+    }
+}
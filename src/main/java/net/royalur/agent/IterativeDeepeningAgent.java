@@ -0,0 +1,198 @@
+package net.royalur.agent;
+
+import net.royalur.Game;
+import net.royalur.agent.utility.UtilityFunction;
+import net.royalur.model.Move;
+import net.royalur.model.TimeControl;
+import net.royalur.rules.simple.SimpleRuleSet;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * An agent that searches to increasing depths using an {@link ExpectimaxAgent}
+ * until a time budget for each move runs out, and then plays the move chosen
+ * by the deepest search that completed. This gives a predictable bound on the
+ * time taken to decide each move. This is not thread-safe.
+ * <p>
+ * The time budget is taken from the {@link TimeControl} of games if they have
+ * one, but it is never longer than the budget given to this agent. If even the
+ * shallowest search does not complete in time, then the most promising move by
+ * the move ordering of {@link ExpectimaxAgent} is played.
+ * <p>
+ * Each search stores its values in a {@link TranspositionTable}, so that later
+ * searches can reuse the values found by earlier searches.
+ */
+public class IterativeDeepeningAgent extends BaseAgent implements FastAgent {
+
+    /**
+     * The fraction of the time per move in a time control that is used to search,
+     * leaving the remainder as a margin for the overheads of playing the move.
+     */
+    public static final double TIME_CONTROL_FRACTION = 0.8;
+
+    /**
+     * The rules used for games given to this agent.
+     */
+    private final SimpleRuleSet rules;
+
+    /**
+     * The maximum number of rolls of the dice to search ahead after each move.
+     */
+    private final int maxDepth;
+
+    /**
+     * The maximum time to spend deciding each move, in nanoseconds.
+     */
+    private final long budgetNanos;
+
+    /**
+     * The agent used to search each depth.
+     */
+    private final ExpectimaxAgent searchAgent;
+
+    /**
+     * The game that is used to search the game tree, when
+     * deciding moves for a {@link Game}.
+     */
+    private final FastSimpleGame searchGame;
+    private final FastSimpleMoveList searchMoveList;
+
+    /**
+     * The depth of the deepest search that completed when deciding the last move.
+     */
+    private int lastCompletedDepth;
+
+    /**
+     * Instantiates an iterative deepening agent.
+     * @param rules The rules of the games given to this agent.
+     * @param utilityFunction The bounded utility function to use to evaluate game states.
+     * @param maxDepth The maximum number of rolls of the dice to search ahead after each move.
+     * @param budgetMillis The maximum time to spend deciding each move, in milliseconds.
+     * @param table The table to store the values of states in, or null to create
+     *              a new table for this agent.
+     */
+    public IterativeDeepeningAgent(
+            SimpleRuleSet rules,
+            UtilityFunction utilityFunction,
+            int maxDepth,
+            long budgetMillis,
+            @Nullable TranspositionTable table
+    ) {
+        if (budgetMillis <= 0)
+            throw new IllegalArgumentException("budgetMillis must be positive");
+
+        this.rules = rules;
+        this.maxDepth = maxDepth;
+        this.budgetNanos = budgetMillis * 1_000_000L;
+        this.searchAgent = new ExpectimaxAgent(
+                rules, utilityFunction, maxDepth, true,
+                (table != null ? table : new TranspositionTable(18))
+        );
+        this.searchGame = rules.createCompatibleFastGame();
+        this.searchMoveList = new FastSimpleMoveList();
+        this.lastCompletedDepth = 0;
+    }
+
+    /**
+     * Instantiates an iterative deepening agent with its own transposition table.
+     * @param rules The rules of the games given to this agent.
+     * @param utilityFunction The bounded utility function to use to evaluate game states.
+     * @param maxDepth The maximum number of rolls of the dice to search ahead after each move.
+     * @param budgetMillis The maximum time to spend deciding each move, in milliseconds.
+     */
+    public IterativeDeepeningAgent(
+            SimpleRuleSet rules,
+            UtilityFunction utilityFunction,
+            int maxDepth,
+            long budgetMillis
+    ) {
+        this(rules, utilityFunction, maxDepth, budgetMillis, null);
+    }
+
+    /**
+     * Gets the depth of the deepest search that completed when deciding the last
+     * move. This is 0 if no search completed in time, or if there was only one
+     * move available.
+     * @return The depth of the deepest completed search for the last move.
+     */
+    public int getLastCompletedDepth() {
+        return lastCompletedDepth;
+    }
+
+    /**
+     * Gets the time to spend deciding a move in a game with the given time control.
+     * @param timeControl The time control of the game, or null if it has none.
+     * @return The time to spend deciding a move, in nanoseconds.
+     */
+    public long getBudgetNanos(@Nullable TimeControl timeControl) {
+        if (timeControl == null || !timeControl.hasPerMoveSeconds())
+            return budgetNanos;
+
+        long perMoveNanos = timeControl.getPerMoveSeconds() * 1_000_000_000L;
+        return Math.min(budgetNanos, (long) (perMoveNanos * TIME_CONTROL_FRACTION));
+    }
+
+    @Override
+    public int decideMove(FastSimpleEngine game, FastSimpleMoveList moveList) {
+        return decideMove(game, moveList, budgetNanos);
+    }
+
+    /**
+     * Searches to increasing depths until {@code budgetNanos} has passed,
+     * and selects the move chosen by the deepest search that completed.
+     * @param game The game to find the best move in.
+     * @param moveList The moves that are available in the game.
+     * @param budgetNanos The time to spend deciding the move, in nanoseconds.
+     * @return The path index of the piece to move.
+     */
+    public int decideMove(FastSimpleEngine game, FastSimpleMoveList moveList, long budgetNanos) {
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + budgetNanos;
+        lastCompletedDepth = 0;
+        if (moveList.moveCount == 0)
+            throw new IllegalArgumentException("No moves provided");
+        if (moveList.moveCount == 1)
+            return moveList.moves[0];
+
+        int bestMove = ExpectimaxAgent.NO_MOVE;
+        long iterationStartNanos = startNanos;
+        for (int depth = 1; depth <= maxDepth; ++depth) {
+            int move = searchAgent.decideMove(game, moveList, depth, deadlineNanos);
+            if (move == ExpectimaxAgent.NO_MOVE)
+                break;
+
+            bestMove = move;
+            lastCompletedDepth = depth;
+
+            // Deeper searches take longer, so don't start one that cannot finish.
+            long nowNanos = System.nanoTime();
+            long iterationNanos = nowNanos - iterationStartNanos;
+            if (deadlineNanos - nowNanos < iterationNanos)
+                break;
+
+            iterationStartNanos = nowNanos;
+        }
+
+        // The search leaves the moves ordered from the most promising.
+        return (bestMove != ExpectimaxAgent.NO_MOVE ? bestMove : moveList.moves[0]);
+    }
+
+    @Override
+    public Move decideMove(Game game, List<Move> moves) {
+        if (moves.isEmpty())
+            throw new IllegalArgumentException("No moves available");
+        if (moves.size() == 1)
+            return moves.get(0);
+
+        long budget = getBudgetNanos(game.getMetadata().getTimeControl());
+        searchGame.copyFrom(game);
+        searchGame.findAvailableMoves(searchMoveList);
+        int pathIndex = decideMove(searchGame, searchMoveList, budget);
+
+        return FastAgent.findMove(moves, rules.getPaths(), pathIndex);
+    }
+}
@@ -2,12 +2,14 @@ package net.royalur.agent;
 
 import net.royalur.Game;
 import net.royalur.agent.utility.UtilityFunction;
+import net.royalur.lut.GameStateEncoding;
 import net.royalur.model.*;
 import net.royalur.model.dice.Dice;
 import net.royalur.rules.simple.SimpleRuleSet;
 import net.royalur.rules.simple.fast.FastSimpleGame;
 import net.royalur.rules.simple.fast.FastSimpleMoveList;
 
+import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.List;
 
@@ -16,6 +18,12 @@ import java.util.List;
  */
 public class LikelihoodAgent extends BaseAgent {
 
+    /**
+     * The largest bucket of likelihood, which holds the
+     * binary exponent of zero and subnormal likelihoods.
+     */
+    static final int MAX_LIKELIHOOD_BUCKET = 1 - Float.MIN_EXPONENT;
+
     /**
      * The rules used for games given to this agent.
      */
@@ -33,10 +41,10 @@ public class LikelihoodAgent extends BaseAgent {
     private final float likelihoodThreshold;
 
     /**
-     * Game objects used to hold the state of games
-     * while exploring the game tree.
+     * The game that is used to explore the game tree. Moves and
+     * rolls are applied to this game, and then undone.
      */
-    private FastSimpleGame[] gameHolders;
+    private final FastSimpleGame searchGame;
 
     /**
      * Move lists used to hold available moves while
@@ -50,43 +58,64 @@ public class LikelihoodAgent extends BaseAgent {
      */
     private Dice[] diceHolders;
 
+    /**
+     * The table to store the utilities of states in, or null if
+     * they should not be stored. The utilities are stored for buckets
+     * of likelihood, so states reached with similar likelihoods
+     * share the same utility.
+     */
+    private final @Nullable TranspositionTable table;
+
+    /**
+     * The encoding used to create the keys of states in the table.
+     */
+    private final @Nullable GameStateEncoding encoding;
+
+    /**
+     * A game used to reverse the players of states before
+     * they are encoded, and a holder for entries in the table.
+     */
+    private final FastSimpleGame tableGame;
+    private final TranspositionTable.Entry tableEntry;
+
     /**
      * Instantiates a likelihood agent.
      * @param utilityFunction The utility function to use to evaluate game states.
      * @param likelihoodThreshold The minimum likelihood threshold to explore a
      *                            sequence of rolls to further depth.
+     * @param table The table to store the utilities of states in, or null. This
+     *              should only be used with dice that do not hold any state.
      */
     public LikelihoodAgent(
             SimpleRuleSet rules,
             UtilityFunction utilityFunction,
-            float likelihoodThreshold
+            float likelihoodThreshold,
+            @Nullable TranspositionTable table
     ) {
         this.rules = rules;
         this.utilityFunction = utilityFunction;
         this.likelihoodThreshold = likelihoodThreshold;
-        this.gameHolders = new FastSimpleGame[0];
+        this.searchGame = rules.createCompatibleFastGame();
         this.moveListHolders = new FastSimpleMoveList[0];
         this.diceHolders = new Dice[0];
+        this.table = table;
+        this.encoding = (table != null ? GameStateEncoding.createSimple(rules.getSettings()) : null);
+        this.tableGame = rules.createCompatibleFastGame();
+        this.tableEntry = new TranspositionTable.Entry();
     }
 
     /**
-     * Gets a holding object that can be used to store the state of a game.
-     * @param depth The depth to find the holding object for.
-     * @return A holding object for storing the state of a game.
+     * Instantiates a likelihood agent.
+     * @param utilityFunction The utility function to use to evaluate game states.
+     * @param likelihoodThreshold The minimum likelihood threshold to explore a
+     *                            sequence of rolls to further depth.
      */
-    private FastSimpleGame getGameHolder(int depth) {
-        if (depth >= gameHolders.length) {
-            int newLength = Math.max(4, gameHolders.length * 2);
-            while (depth >= newLength) {
-                newLength *= 2;
-            }
-            int previousLength = gameHolders.length;
-            gameHolders = Arrays.copyOf(gameHolders, newLength);
-            for (int index = previousLength; index < newLength; ++index) {
-                gameHolders[index] = rules.createCompatibleFastGame();
-            }
-        }
-        return gameHolders[depth];
+    public LikelihoodAgent(
+            SimpleRuleSet rules,
+            UtilityFunction utilityFunction,
+            float likelihoodThreshold
+    ) {
+        this(rules, utilityFunction, likelihoodThreshold, null);
     }
 
     /**
@@ -130,92 +159,175 @@ public class LikelihoodAgent extends BaseAgent {
         return diceHolders[depth];
     }
 
+    /**
+     * Calculates the utility of the best move in {@code game}. The
+     * state of the game is restored before this method returns.
+     */
     private float calculateBestMoveUtility(
-            FastSimpleGame precedingGame,
+            FastSimpleGame game,
             FastSimpleMoveList availableMoves,
             Dice dice,
             float likelihood,
             int depth
     ) {
-        if (!precedingGame.isWaitingForMove())
+        if (!game.isWaitingForMove())
             throw new IllegalArgumentException("Game is not waiting for a move");
 
         float maxUtility = Float.NEGATIVE_INFINITY;
 
         int[] moves = availableMoves.moves;
         int moveCount = availableMoves.moveCount;
-
-        FastSimpleGame game = getGameHolder(depth);
+        boolean wasLightTurn = game.isLightTurn;
 
         for (int moveIndex = 0; moveIndex < moveCount; ++moveIndex) {
-            game.copyFrom(precedingGame);
-            game.applyMove(moves[moveIndex]);
+            int undoToken = game.applyMove(moves[moveIndex]);
 
             float utility = calculateProbabilityWeightedUtility(
                     game, dice, likelihood, depth + 1
             );
-            if (game.isLightTurn != precedingGame.isLightTurn) {
+            if (game.isLightTurn != wasLightTurn) {
                 utility = -utility;
             }
             if (utility > maxUtility) {
                 maxUtility = utility;
             }
+            game.undoMove(undoToken);
         }
         return maxUtility;
      }
 
+    /**
+     * Calculates the expected utility of {@code game} over all rolls of
+     * the dice. The state of the game is restored before this method returns.
+     */
     private float calculateProbabilityWeightedUtility(
-            FastSimpleGame precedingGame,
+            FastSimpleGame game,
             Dice precedingDice,
             float likelihood,
             int depth
     ) {
-        if (precedingGame.isFinished || likelihood < likelihoodThreshold)
-            return utilityFunction.scoreGame(precedingGame);
-        if (!precedingGame.isWaitingForRoll())
+        if (game.isFinished || likelihood < likelihoodThreshold)
+            return utilityFunction.scoreGame(game);
+        if (!game.isWaitingForRoll())
             throw new IllegalArgumentException("Game is not waiting for a roll of the dice");
+        if (table == null || encoding == null)
+            return calculateRollsUtility(game, precedingDice, likelihood, depth);
 
-        float utility = 0.0f;
-        float[] probabilities = precedingDice.getRollProbabilities();
+        long stateKey = encoding.encodeSymmetricalGameState(game, tableGame);
+        int likelihoodBucket = calculateLikelihoodBucket(likelihood);
+        long key = TranspositionTable.createKey(stateKey, game.isLightTurn, likelihoodBucket);
+        if (table.probe(key, tableEntry))
+            return (float) tableEntry.value;
 
-        FastSimpleGame game = getGameHolder(depth);
-        FastSimpleMoveList moveList = getMoveListHolder(depth);
-        Dice dice = getDiceHolder(depth);
+        float utility = calculateRollsUtility(game, precedingDice, likelihood, depth);
+        table.store(key, utility, TranspositionTable.BOUND_EXACT, calculateTablePriority(likelihoodBucket));
+        return utility;
+    }
+
+    /**
+     * Calculates the bucket of a likelihood, which is the negated
+     * binary exponent of the likelihood. Larger buckets hold less
+     * likely states, that have less search remaining below them.
+     */
+    static int calculateLikelihoodBucket(float likelihood) {
+        return -Math.getExponent(likelihood);
+    }
 
+    /**
+     * Calculates the priority to store entries in the table with. The table
+     * prefers to keep entries with a higher priority, and so this is inverted
+     * from the bucket so that states with more search remaining are kept.
+     */
+    static int calculateTablePriority(int likelihoodBucket) {
+        return MAX_LIKELIHOOD_BUCKET - likelihoodBucket;
+    }
+
+    /**
+     * Calculates the expected utility of {@code game} over all rolls of the dice,
+     * without using the transposition table for {@code game} itself.
+     */
+    private float calculateRollsUtility(
+            FastSimpleGame game,
+            Dice precedingDice,
+            float likelihood,
+            int depth
+    ) {
+        float utility = 0.0f;
+        float[] probabilities = precedingDice.getRollProbabilities();
         for (int roll = 0; roll < probabilities.length; ++roll) {
             float prob = probabilities[roll];
             if (prob == 0.0f)
                 continue;
 
-            // Update the state of the dice.
-            dice.copyFrom(precedingDice);
-            dice.recordRoll(roll);
-
-            // Update the state of the game.
-            game.copyFrom(precedingGame);
-            game.applyRoll(roll, moveList);
-
-            // Recurse!
-            float rollLikelihood = prob * likelihood;
-            float rollUtility;
-            if (!game.isWaitingForMove()) {
-                rollUtility = calculateProbabilityWeightedUtility(
-                        game, dice, rollLikelihood, depth + 1
-                );
-
-            } else {
-                rollUtility = calculateBestMoveUtility(
-                        game, moveList, dice, rollLikelihood, depth + 1
-                );
-            }
-            if (game.isLightTurn != precedingGame.isLightTurn) {
-                rollUtility = -rollUtility;
-            }
-            utility += prob * rollUtility;
+            utility += prob * calculateRollUtility(game, precedingDice, roll, likelihood, depth);
         }
         return utility;
     }
 
+    /**
+     * Calculates the utility of rolling {@code roll} in {@code game}, from the
+     * perspective of the player that rolled. The state of the game is restored
+     * before this method returns. This is used by {@link ParallelLikelihoodAgent}
+     * to search the rolls after each move concurrently.
+     * @param game The game to roll the dice in.
+     * @param precedingDice The state of the dice before the roll.
+     * @param roll The value of the roll.
+     * @param likelihood The likelihood of reaching {@code game}.
+     * @param depth The depth of {@code game} in the search.
+     * @return The utility of the roll.
+     */
+    float calculateRollUtility(
+            FastSimpleGame game,
+            Dice precedingDice,
+            int roll,
+            float likelihood,
+            int depth
+    ) {
+        FastSimpleMoveList moveList = getMoveListHolder(depth);
+        Dice dice = getDiceHolder(depth);
+        boolean wasLightTurn = game.isLightTurn;
+
+        // Update the state of the dice.
+        float prob = precedingDice.getRollProbabilities()[roll];
+        dice.copyFrom(precedingDice);
+        dice.recordRoll(roll);
+
+        // Update the state of the game.
+        int undoToken = game.applyRoll(roll, moveList);
+
+        // Recurse!
+        float rollLikelihood = prob * likelihood;
+        float rollUtility;
+        if (!game.isWaitingForMove()) {
+            rollUtility = calculateProbabilityWeightedUtility(
+                    game, dice, rollLikelihood, depth + 1
+            );
+
+        } else {
+            rollUtility = calculateBestMoveUtility(
+                    game, moveList, dice, rollLikelihood, depth + 1
+            );
+        }
+        if (game.isLightTurn != wasLightTurn) {
+            rollUtility = -rollUtility;
+        }
+        game.undoRoll(undoToken);
+        return rollUtility;
+    }
+
+    /**
+     * Calculates the utility of {@code game} after a move has been made
+     * in it, from the perspective of the player to roll. The state of the
+     * game is restored before this method returns. This is used by
+     * {@link ParallelLikelihoodAgent} to search each move concurrently.
+     * @param game The game after the move was made.
+     * @param dice The state of the dice after the move was made.
+     * @return The utility of the game.
+     */
+    float calculateMoveUtility(FastSimpleGame game, Dice dice) {
+        return calculateProbabilityWeightedUtility(game, dice, 1.0f, 1);
+    }
+
     @Override
     public Move decideMove(Game game, List<Move> moves) {
 
@@ -223,11 +335,14 @@ public class LikelihoodAgent extends BaseAgent {
             throw new IllegalArgumentException("No moves available");
         if (moves.size() == 1)
             return moves.get(0);
+        if (table != null) {
+            table.newSearch();
+        }
 
         Move bestMove = null;
         float bestUtility = 0.0f;
 
-        FastSimpleGame gameHolder = getGameHolder(0);
+        FastSimpleGame gameHolder = searchGame;
         Dice diceHolder = getDiceHolder(0);
         for (Move move : moves) {
             Game newGame = game.copy();
@@ -3,24 +3,37 @@ package net.royalur.agent;
 import net.royalur.Game;
 import net.royalur.lut.Lut;
 import net.royalur.model.*;
+import net.royalur.model.path.PathPair;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
 import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
 
 import java.util.List;
 
 /**
  * Uses a lookup-table to decide the move to make.
  */
-public class LutAgent extends BaseAgent {
+public class LutAgent extends BaseAgent implements FastAgent {
 
     private final Lut lut;
+    private final GameSettings settings;
+    private final PathPair paths;
     private final FastSimpleGame fastGame;
-    private final FastSimpleGame tempGame;
+    private final FastSimpleMoveList fastMoveList;
+
+    /**
+     * A game used to reverse the players of games when encoding them,
+     * which is replaced if moves are decided in games of another engine.
+     */
+    private FastSimpleEngine tempGame;
 
     public LutAgent(Lut lut) {
         this.lut = lut;
-        GameSettings settings = lut.getMetadata().getGameSettings();
+        this.settings = lut.getMetadata().getGameSettings();
+        this.paths = settings.getPaths();
         this.fastGame = new FastSimpleGame(settings);
         this.tempGame = new FastSimpleGame(settings);
+        this.fastMoveList = new FastSimpleMoveList();
     }
 
     /**
@@ -31,6 +44,12 @@ public class LutAgent extends BaseAgent {
         return new LutAgent(lut.shallowCopy());
     }
 
+    /**
+     * Selects the move with the highest win percentage in the lookup-table.
+     * The current state is copied into a {@link FastSimpleGame} once, and
+     * each move is applied and then undone on it, rather than copying the
+     * whole game for each move.
+     */
     @Override
     public Move decideMove(Game game, List<Move> availableMoves) {
         if (availableMoves.isEmpty())
@@ -38,25 +57,54 @@ public class LutAgent extends BaseAgent {
         if (availableMoves.size() == 1)
             return availableMoves.get(0);
 
-        double bestScore = -1.0d;
-        Move bestMove = null;
+        fastGame.copyFrom(game);
+        fastMoveList.clear();
         for (Move move : availableMoves) {
-            Game moveGame = game.copy();
-            moveGame.move(move);
+            fastMoveList.add(move.getPathIndex(paths));
+        }
 
-            fastGame.copyFrom(moveGame);
-            double score = lut.getLightWinPercent(fastGame, tempGame);
-            if (game.getTurn() == PlayerType.DARK) {
-                score = 100.0d - score;
+        int pathIndex = decideMove(fastGame, fastMoveList);
+        return FastAgent.findMove(availableMoves, paths, pathIndex);
+    }
+
+    /**
+     * Selects the move with the highest win percentage in the lookup-table,
+     * by applying and then undoing each move on {@code game}.
+     */
+    @Override
+    public int decideMove(FastSimpleEngine game, FastSimpleMoveList moveList) {
+        if (moveList.moveCount == 0)
+            throw new IllegalArgumentException("No moves provided");
+        if (moveList.moveCount == 1)
+            return moveList.moves[0];
+
+        if (tempGame.getEngineType() != game.getEngineType()) {
+            tempGame = game.getEngineType().create(settings);
+        }
+
+        boolean isLightTurn = game.isLightTurn();
+        double bestScore = -1.0d;
+        int bestMove = moveList.moves[0];
+        for (int index = 0; index < moveList.moveCount; ++index) {
+            int pathIndex = moveList.moves[index];
+            int undoToken = game.applyMove(pathIndex);
+
+            double score;
+            if (game.isFinished()) {
+                score = 100.0d;
+            } else {
+                score = lut.getLightWinPercent(game, tempGame);
+                if (!isLightTurn) {
+                    score = 100.0d - score;
+                }
             }
+            game.undoMove(undoToken);
+
             if (score > bestScore) {
                 bestScore = score;
-                bestMove = move;
+                bestMove = pathIndex;
             }
         }
-        if (bestMove == null)
-            throw new NullPointerException();
-
         return bestMove;
     }
 }
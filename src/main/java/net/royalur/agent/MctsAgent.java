@@ -0,0 +1,468 @@
+package net.royalur.agent;
+
+import net.royalur.Game;
+import net.royalur.model.Move;
+import net.royalur.model.dice.Dice;
+import net.royalur.model.dice.DiceFactory;
+import net.royalur.model.dice.DiceType;
+import net.royalur.rules.simple.SimpleRuleSet;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+/**
+ * An agent that decides moves using Monte Carlo tree search. This does not
+ * need a solved lookup table or a bounded utility function, so it can be used
+ * for rule variants where neither is available. This is not thread-safe.
+ * <p>
+ * The tree has decision nodes, where a move is chosen using UCT, and chance
+ * nodes, where the roll of the dice is sampled. Once a new node is added to
+ * the tree, the rest of the game is played out using a rollout policy, which
+ * may be any {@link FastAgent}, such as a {@link RandomAgent}, a
+ * {@link GreedyAgent}, or a {@link LutAgent}.
+ * <p>
+ * The rollouts are run in parallel using root parallelisation. Each thread
+ * grows its own tree from the current state, and the visits to each move at
+ * the root are summed across the trees to choose the move. The sources of
+ * randomness of the trees are seeded from the source of randomness of this
+ * agent, so decisions are reproducible for a given seed and number of threads.
+ * <p>
+ * The dice must not hold any state, as rolls are sampled independently.
+ */
+public class MctsAgent extends BaseAgent implements FastAgent {
+
+    /**
+     * The default weight given to exploring moves that have been visited
+     * less often, relative to the win rate of moves.
+     */
+    public static final double DEFAULT_EXPLORATION = Math.sqrt(2.0);
+
+    /**
+     * The rules used for games given to this agent.
+     */
+    private final SimpleRuleSet rules;
+
+    /**
+     * The type of dice to sample rolls from.
+     */
+    private final DiceType diceType;
+
+    /**
+     * Creates the rollout policy of a thread, given the
+     * rules and the thread's source of randomness.
+     */
+    private final BiFunction<SimpleRuleSet, Random, FastAgent> rolloutPolicyGenerator;
+
+    /**
+     * The total number of rollouts to run across all threads for each move.
+     */
+    private final int rolloutsPerMove;
+
+    /**
+     * The weight given to exploring moves that have been visited less often.
+     */
+    private final double exploration;
+
+    /**
+     * The source of randomness used to seed the trees of each decision.
+     */
+    private final Random random;
+
+    /**
+     * The searchers for each thread, which are reused between decisions.
+     */
+    private final Searcher[] searchers;
+
+    /**
+     * The game that is used to search the game tree, when
+     * deciding moves for a {@link Game}.
+     */
+    private final FastSimpleGame searchGame;
+    private final FastSimpleMoveList searchMoveList;
+
+    private long rolloutCount;
+    private long searchNanos;
+
+    /**
+     * Instantiates a Monte Carlo tree search agent.
+     * @param rules The rules of the games given to this agent.
+     * @param rolloutPolicyGenerator Creates the rollout policy for a thread, given
+     *                               the rules and the thread's source of randomness.
+     * @param rolloutsPerMove The total number of rollouts to run for each move.
+     * @param exploration The weight given to exploring moves that have been visited
+     *                    less often, relative to the win rate of moves.
+     * @param threadCount The number of threads to run rollouts on.
+     * @param random The source of randomness used to seed each search.
+     */
+    public MctsAgent(
+            SimpleRuleSet rules,
+            BiFunction<SimpleRuleSet, Random, FastAgent> rolloutPolicyGenerator,
+            int rolloutsPerMove,
+            double exploration,
+            int threadCount,
+            Random random
+    ) {
+        DiceFactory dice = rules.getSettings().getDice();
+        if (!(dice instanceof DiceType type))
+            throw new IllegalArgumentException("Only the standard dice types can be sampled, not " + dice.getID());
+        if (threadCount <= 0)
+            throw new IllegalArgumentException("threadCount must be at least 1");
+        if (rolloutsPerMove < threadCount)
+            throw new IllegalArgumentException("rolloutsPerMove must be at least threadCount");
+
+        this.rules = rules;
+        this.diceType = type;
+        this.rolloutPolicyGenerator = rolloutPolicyGenerator;
+        this.rolloutsPerMove = rolloutsPerMove;
+        this.exploration = exploration;
+        this.random = random;
+        this.searchers = new Searcher[threadCount];
+        this.searchGame = rules.createCompatibleFastGame();
+        this.searchMoveList = new FastSimpleMoveList();
+    }
+
+    /**
+     * Instantiates a Monte Carlo tree search agent that uses random rollouts,
+     * the default exploration weight, and a single thread.
+     * @param rules The rules of the games given to this agent.
+     * @param rolloutsPerMove The total number of rollouts to run for each move.
+     * @param random The source of randomness used to seed each search.
+     */
+    public MctsAgent(SimpleRuleSet rules, int rolloutsPerMove, Random random) {
+        this(
+                rules, (rolloutRules, rolloutRandom) -> new RandomAgent(rolloutRandom),
+                rolloutsPerMove, DEFAULT_EXPLORATION, 1, random
+        );
+    }
+
+    /**
+     * Gets the total number of rollouts that have been run.
+     * @return The total number of rollouts that have been run.
+     */
+    public long getRolloutCount() {
+        return rolloutCount;
+    }
+
+    /**
+     * Gets the total time spent searching, in nanoseconds.
+     * @return The total time spent searching, in nanoseconds.
+     */
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+
+    /**
+     * Gets the number of rollouts run per second of searching, across all threads.
+     * @return The number of rollouts per second, or 0 if no searches have been run.
+     */
+    public double getRolloutsPerSecond() {
+        return (searchNanos == 0 ? 0.0 : rolloutCount * 1e9 / searchNanos);
+    }
+
+    /**
+     * Resets the count of rollouts and the time spent searching.
+     */
+    public void resetCounters() {
+        rolloutCount = 0;
+        searchNanos = 0;
+    }
+
+    private Searcher getSearcher(int index) {
+        Searcher searcher = searchers[index];
+        if (searcher == null) {
+            searcher = new Searcher();
+            searchers[index] = searcher;
+        }
+        return searcher;
+    }
+
+    @Override
+    public int decideMove(FastSimpleEngine game, FastSimpleMoveList moveList) {
+        if (moveList.moveCount == 0)
+            throw new IllegalArgumentException("No moves provided");
+        if (moveList.moveCount == 1)
+            return moveList.moves[0];
+
+        long startNanos = System.nanoTime();
+        int threadCount = searchers.length;
+        for (int index = 0; index < threadCount; ++index) {
+            int rollouts = rolloutsPerMove / threadCount + (index < rolloutsPerMove % threadCount ? 1 : 0);
+            getSearcher(index).prepare(game, moveList, random.nextLong(), rollouts);
+        }
+
+        if (threadCount == 1) {
+            searchers[0].run();
+        } else {
+            runInParallel();
+        }
+
+        // Choose the move that was visited most often across all the trees.
+        long[] visits = new long[moveList.moveCount];
+        for (Searcher searcher : searchers) {
+            searcher.addRootVisits(visits);
+            rolloutCount += searcher.rollouts;
+        }
+        int bestIndex = 0;
+        for (int index = 1; index < visits.length; ++index) {
+            if (visits[index] > visits[bestIndex]) {
+                bestIndex = index;
+            }
+        }
+        searchNanos += System.nanoTime() - startNanos;
+        return moveList.moves[bestIndex];
+    }
+
+    @Override
+    public Move decideMove(Game game, List<Move> moves) {
+        if (moves.isEmpty())
+            throw new IllegalArgumentException("No moves available");
+        if (moves.size() == 1)
+            return moves.get(0);
+
+        searchGame.copyFrom(game);
+        searchGame.findAvailableMoves(searchMoveList);
+        int pathIndex = decideMove(searchGame, searchMoveList);
+
+        return FastAgent.findMove(moves, rules.getPaths(), pathIndex);
+    }
+
+    /**
+     * Runs each searcher on its own thread, and waits for them all to complete.
+     */
+    private void runInParallel() {
+        List<Thread> threads = new ArrayList<>();
+        AtomicReference<Exception> error = new AtomicReference<>();
+        for (int threadNo = 0; threadNo < searchers.length; ++threadNo) {
+            Searcher searcher = searchers[threadNo];
+            Thread thread = new Thread(() -> {
+                try {
+                    searcher.run();
+                } catch (Exception e) {
+                    error.set(e);
+                }
+            }, "mcts-" + threadNo);
+            threads.add(thread);
+            thread.start();
+        }
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        if (error.get() != null)
+            throw new RuntimeException(error.get());
+    }
+
+    /**
+     * A node in the search tree of a searcher.
+     */
+    private static final class Node {
+
+        /**
+         * Whether the dice are rolled at this node, rather than a move being chosen.
+         */
+        private final boolean isChance;
+
+        /**
+         * Whether it is the light player's turn at this node.
+         */
+        private final boolean isLightTurn;
+
+        /**
+         * The moves available at a decision node, which is empty for
+         * chance nodes and nodes where the game has finished.
+         */
+        private final int[] moves;
+
+        /**
+         * The children of this node for each move or roll,
+         * which are null until they are first visited.
+         */
+        private final Node[] children;
+
+        private int visits;
+        private double lightWins;
+
+        private Node(boolean isChance, boolean isLightTurn, int[] moves, int childCount) {
+            this.isChance = isChance;
+            this.isLightTurn = isLightTurn;
+            this.moves = moves;
+            this.children = new Node[childCount];
+        }
+
+        /**
+         * Creates the node for the current state of {@code game}, where {@code moveList}
+         * holds the available moves if the game is waiting for a move.
+         */
+        private static Node create(FastSimpleGame game, FastSimpleMoveList moveList, int rollCount) {
+            if (game.isFinished)
+                return new Node(false, game.isLightTurn, new int[0], 0);
+            if (game.isWaitingForRoll())
+                return new Node(true, game.isLightTurn, new int[0], rollCount);
+
+            int[] moves = Arrays.copyOf(moveList.moves, moveList.moveCount);
+            return new Node(false, game.isLightTurn, moves, moves.length);
+        }
+    }
+
+    /**
+     * Grows a search tree from the current state, using its own
+     * game, dice, rollout policy, and source of randomness.
+     */
+    private class Searcher {
+
+        private final Random random;
+        private final Dice dice;
+        private final FastAgent rolloutPolicy;
+        private final FastSimpleGame rootGame;
+        private final FastSimpleGame game;
+        private final FastSimpleMoveList moveList;
+        private final int rollCount;
+        private Node[] path;
+
+        private Node root;
+        private int targetRollouts;
+        private int rollouts;
+
+        Searcher() {
+            this.random = new Random();
+            this.dice = diceType.createDice(random);
+            this.rolloutPolicy = rolloutPolicyGenerator.apply(rules, random);
+            this.rootGame = rules.createCompatibleFastGame();
+            this.game = rules.createCompatibleFastGame();
+            this.moveList = new FastSimpleMoveList();
+            this.rollCount = dice.getRollProbabilities().length;
+            this.path = new Node[64];
+        }
+
+        void prepare(FastSimpleEngine game, FastSimpleMoveList moveList, long seed, int targetRollouts) {
+            this.rootGame.copyFrom(game);
+            this.root = Node.create(rootGame, moveList, rollCount);
+            this.random.setSeed(seed);
+            this.targetRollouts = targetRollouts;
+            this.rollouts = 0;
+        }
+
+        void addRootVisits(long[] visits) {
+            for (int index = 0; index < visits.length; ++index) {
+                Node child = root.children[index];
+                if (child != null) {
+                    visits[index] += child.visits;
+                }
+            }
+        }
+
+        void run() {
+            for (int rollout = 0; rollout < targetRollouts; ++rollout) {
+                runIteration();
+            }
+        }
+
+        /**
+         * Selects the child of a decision node to visit using UCT.
+         * Children that have not been visited are always selected first.
+         */
+        private int selectChild(Node node) {
+            double logVisits = Math.log(node.visits);
+            double bestScore = Double.NEGATIVE_INFINITY;
+            int bestIndex = 0;
+            for (int index = 0; index < node.children.length; ++index) {
+                Node child = node.children[index];
+                if (child == null)
+                    return index;
+
+                double winRate = child.lightWins / child.visits;
+                if (!node.isLightTurn) {
+                    winRate = 1.0 - winRate;
+                }
+                double score = winRate + exploration * Math.sqrt(logVisits / child.visits);
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestIndex = index;
+                }
+            }
+            return bestIndex;
+        }
+
+        /**
+         * Adds {@code node} to the end of the path, growing the path if it is full.
+         * @return The new length of the path.
+         */
+        private int addToPath(Node node, int pathLength) {
+            if (pathLength == path.length) {
+                path = Arrays.copyOf(path, path.length * 2);
+            }
+            path[pathLength] = node;
+            return pathLength + 1;
+        }
+
+        /**
+         * Selects a path down the tree, adds a new node to the tree, plays out
+         * the rest of the game from it, and records the result along the path.
+         */
+        private void runIteration() {
+            game.copyFrom(rootGame);
+            Node node = root;
+            int pathLength = 0;
+            while (true) {
+                pathLength = addToPath(node, pathLength);
+                if (game.isFinished)
+                    break;
+
+                int childIndex;
+                if (node.isChance) {
+                    childIndex = dice.rollValue();
+                    game.applyRoll(childIndex, moveList);
+                } else {
+                    childIndex = selectChild(node);
+                    game.applyMove(node.moves[childIndex]);
+                }
+
+                Node child = node.children[childIndex];
+                if (child == null) {
+                    child = Node.create(game, moveList, rollCount);
+                    node.children[childIndex] = child;
+                    pathLength = addToPath(child, pathLength);
+                    break;
+                }
+                node = child;
+            }
+
+            double lightWin = (playOut() ? 1.0 : 0.0);
+            for (int index = 0; index < pathLength; ++index) {
+                path[index].visits += 1;
+                path[index].lightWins += lightWin;
+            }
+            rollouts += 1;
+        }
+
+        /**
+         * Plays out the rest of the game using the rollout policy.
+         * @return Whether the light player won.
+         */
+        private boolean playOut() {
+            if (game.isWaitingForMove()) {
+                game.findAvailableMoves(moveList);
+                game.applyMove(rolloutPolicy.decideMove(game, moveList));
+            }
+            while (!game.isFinished) {
+                game.applyRoll(dice.rollValue(), moveList);
+                if (game.isWaitingForMove()) {
+                    game.applyMove(rolloutPolicy.decideMove(game, moveList));
+                }
+            }
+            // The turn stays with the player that won.
+            return game.isLightTurn;
+        }
+    }
+}
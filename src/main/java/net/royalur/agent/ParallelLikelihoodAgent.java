@@ -0,0 +1,271 @@
+package net.royalur.agent;
+
+import net.royalur.Game;
+import net.royalur.agent.utility.UtilityFunction;
+import net.royalur.model.Move;
+import net.royalur.model.dice.Dice;
+import net.royalur.rules.simple.SimpleRuleSet;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * An agent that makes the same decisions as a {@link LikelihoodAgent}, but
+ * that searches each available move concurrently on a fork-join pool. The
+ * rolls after each move may also be searched concurrently, which is useful
+ * when there are fewer moves available than threads in the pool.
+ * <p>
+ * Each task borrows a {@link LikelihoodAgent} to hold the state of its search,
+ * so this agent may be used by several threads at once. The utility function
+ * must be safe to use from several threads at once.
+ */
+public class ParallelLikelihoodAgent extends BaseAgent {
+
+    /**
+     * The rules used for games given to this agent.
+     */
+    private final SimpleRuleSet rules;
+
+    /**
+     * The utility function to use to evaluate game states.
+     */
+    private final UtilityFunction utilityFunction;
+
+    /**
+     * Any sequence of rolls that has a lower likelihood of
+     * occurring than this will be ignored.
+     */
+    private final float likelihoodThreshold;
+
+    /**
+     * Whether to search the rolls after each move as separate tasks.
+     */
+    private final boolean splitRolls;
+
+    /**
+     * The pool to run the searches of moves on.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The table that is shared between the searches, or null.
+     */
+    private final @Nullable TranspositionTable table;
+
+    /**
+     * Agents that are not currently being used by a task.
+     * Each agent holds the scratch state of a search.
+     */
+    private final ConcurrentLinkedQueue<LikelihoodAgent> idleSearchAgents;
+
+    /**
+     * Instantiates a parallel likelihood agent.
+     * @param rules The rules of the games given to this agent.
+     * @param utilityFunction The utility function to use to evaluate game states.
+     * @param likelihoodThreshold The minimum likelihood threshold to explore a
+     *                            sequence of rolls to further depth.
+     * @param splitRolls Whether to search the rolls after each move as separate tasks.
+     * @param pool The pool to run the searches on.
+     * @param table The table to share between the searches, or null. This
+     *              should only be used with dice that do not hold any state.
+     */
+    public ParallelLikelihoodAgent(
+            SimpleRuleSet rules,
+            UtilityFunction utilityFunction,
+            float likelihoodThreshold,
+            boolean splitRolls,
+            ForkJoinPool pool,
+            @Nullable TranspositionTable table
+    ) {
+        this.rules = rules;
+        this.utilityFunction = utilityFunction;
+        this.likelihoodThreshold = likelihoodThreshold;
+        this.splitRolls = splitRolls;
+        this.pool = pool;
+        this.table = table;
+        this.idleSearchAgents = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Instantiates a parallel likelihood agent that uses the common
+     * fork-join pool, and that searches the rolls after each move
+     * as separate tasks.
+     * @param rules The rules of the games given to this agent.
+     * @param utilityFunction The utility function to use to evaluate game states.
+     * @param likelihoodThreshold The minimum likelihood threshold to explore a
+     *                            sequence of rolls to further depth.
+     */
+    public ParallelLikelihoodAgent(
+            SimpleRuleSet rules,
+            UtilityFunction utilityFunction,
+            float likelihoodThreshold
+    ) {
+        this(rules, utilityFunction, likelihoodThreshold, true, ForkJoinPool.commonPool(), null);
+    }
+
+    /**
+     * Runs {@code search} using an idle search agent, creating one if
+     * none are idle, and returns the agent once the search is done.
+     */
+    private float searchWithAgent(SearchTask search) {
+        LikelihoodAgent agent = idleSearchAgents.poll();
+        if (agent == null) {
+            agent = new LikelihoodAgent(rules, utilityFunction, likelihoodThreshold, table);
+        }
+        try {
+            return search.search(agent);
+        } finally {
+            idleSearchAgents.offer(agent);
+        }
+    }
+
+    /**
+     * A search that is run using a borrowed {@link LikelihoodAgent}.
+     */
+    private interface SearchTask {
+        float search(LikelihoodAgent agent);
+    }
+
+    /**
+     * The tasks used to search a move, and how to combine their results.
+     */
+    private static class MoveSearch {
+
+        /**
+         * Whether the turn changed after the move was made.
+         */
+        private final boolean turnChanged;
+
+        /**
+         * The probability of the roll searched by each task, or
+         * null if the move is searched by a single task.
+         */
+        private final @Nullable float[] rollProbabilities;
+
+        /**
+         * The results of the tasks that search the move.
+         */
+        private final List<Future<Float>> results;
+
+        private MoveSearch(boolean turnChanged, @Nullable float[] rollProbabilities) {
+            this.turnChanged = turnChanged;
+            this.rollProbabilities = rollProbabilities;
+            this.results = new ArrayList<>();
+        }
+
+        /**
+         * Combines the results of the tasks in the same order as a
+         * {@link LikelihoodAgent}, so that the utility is identical.
+         */
+        private float getUtility() throws ExecutionException, InterruptedException {
+            float utility;
+            if (rollProbabilities == null) {
+                utility = results.get(0).get();
+            } else {
+                utility = 0.0f;
+                for (int index = 0; index < results.size(); ++index) {
+                    utility += rollProbabilities[index] * results.get(index).get();
+                }
+            }
+            return (turnChanged ? -utility : utility);
+        }
+    }
+
+    /**
+     * Creates the tasks to search {@code move}, and submits them to the pool.
+     */
+    private MoveSearch submitMoveSearch(Game game, Move move) {
+        Game newGame = game.copy();
+        newGame.move(move);
+        boolean turnChanged = (game.getTurn() != newGame.getTurn());
+
+        FastSimpleGame moveGame = rules.createCompatibleFastGame();
+        moveGame.copyFrom(newGame);
+        Dice dice = rules.getDiceFactory().createDice();
+        dice.copyFrom(newGame.getDice());
+
+        // A table entry for the state after the move would not be shared with
+        // other moves, so it does not matter that splitting the rolls skips it.
+        boolean canSplit = splitRolls
+                && !moveGame.isFinished
+                && moveGame.isWaitingForRoll()
+                && likelihoodThreshold <= 1.0f;
+
+        if (!canSplit) {
+            MoveSearch moveSearch = new MoveSearch(turnChanged, null);
+            Callable<Float> task = () -> searchWithAgent(agent -> agent.calculateMoveUtility(moveGame, dice));
+            moveSearch.results.add(pool.submit(task));
+            return moveSearch;
+        }
+
+        float[] probabilities = dice.getRollProbabilities();
+        int rollCount = 0;
+        float[] rollProbabilities = new float[probabilities.length];
+        List<Callable<Float>> tasks = new ArrayList<>();
+        for (int roll = 0; roll < probabilities.length; ++roll) {
+            float prob = probabilities[roll];
+            if (prob == 0.0f)
+                continue;
+
+            rollProbabilities[rollCount] = prob;
+            rollCount += 1;
+
+            int taskRoll = roll;
+            FastSimpleGame rollGame = rules.createCompatibleFastGame();
+            rollGame.copyFrom(moveGame);
+            tasks.add(() -> searchWithAgent(
+                    agent -> agent.calculateRollUtility(rollGame, dice, taskRoll, 1.0f, 1)
+            ));
+        }
+
+        MoveSearch moveSearch = new MoveSearch(turnChanged, rollProbabilities);
+        for (Callable<Float> task : tasks) {
+            moveSearch.results.add(pool.submit(task));
+        }
+        return moveSearch;
+    }
+
+    @Override
+    public Move decideMove(Game game, List<Move> moves) {
+        if (moves.isEmpty())
+            throw new IllegalArgumentException("No moves available");
+        if (moves.size() == 1)
+            return moves.get(0);
+        if (table != null) {
+            table.newSearch();
+        }
+
+        List<MoveSearch> moveSearches = new ArrayList<>();
+        for (Move move : moves) {
+            moveSearches.add(submitMoveSearch(game, move));
+        }
+
+        Move bestMove = null;
+        float bestUtility = 0.0f;
+        try {
+            for (int index = 0; index < moves.size(); ++index) {
+                float utility = moveSearches.get(index).getUtility();
+                if (bestMove == null || utility > bestUtility) {
+                    bestMove = moves.get(index);
+                    bestUtility = utility;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        if (bestMove == null)
+            throw new IllegalStateException("Best move is unexpectedly null");
+
+        return bestMove;
+    }
+}
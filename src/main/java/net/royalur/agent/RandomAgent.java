@@ -2,6 +2,8 @@ package net.royalur.agent;
 
 import net.royalur.Game;
 import net.royalur.model.*;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
 
 import java.util.List;
 import java.util.Random;
@@ -9,7 +11,7 @@ import java.util.Random;
 /**
  * An agent that makes random moves in games. This is not thread-safe.
  */
-public class RandomAgent extends BaseAgent {
+public class RandomAgent extends BaseAgent implements FastAgent {
 
     /**
      * The source of randomness to use to decide the moves to make.
@@ -36,4 +38,12 @@ public class RandomAgent extends BaseAgent {
         int randomIndex = random.nextInt(moves.size());
         return moves.get(randomIndex);
     }
+
+    @Override
+    public int decideMove(FastSimpleEngine game, FastSimpleMoveList moveList) {
+        if (moveList.moveCount == 0)
+            throw new IllegalArgumentException("No moves provided");
+
+        return moveList.moves[random.nextInt(moveList.moveCount)];
+    }
 }
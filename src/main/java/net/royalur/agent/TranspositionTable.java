@@ -0,0 +1,278 @@
+package net.royalur.agent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size table of the values of game states that have already
+ * been searched, so that states that are reached through different
+ * orders of rolls and moves only need to be searched once. The table
+ * may be shared between decisions, and between threads.
+ * <p>
+ * Keys are created from the key of a {@link net.royalur.lut.GameStateEncoding},
+ * the turn, and a bucket for the remaining depth or likelihood of the search,
+ * as values found with different amounts of search remaining may differ.
+ * <p>
+ * The table is lock-free. Each entry is stored as a check word, the value,
+ * and the metadata of the entry, where the check word is the key XOR the
+ * value and metadata. Entries that were torn by concurrent writes fail the
+ * check, and are treated as missing.
+ * <p>
+ * Each key maps to a bucket of two entries. The first entry prefers deeper
+ * searches, and is only replaced by searches that are at least as deep, or
+ * if it was stored during an older search. The second entry is always
+ * replaced.
+ * <p>
+ * Values are stored exactly. Searches that key states by their exact
+ * remaining depth, such as {@link ExpectimaxAgent}, therefore find the same
+ * results with or without the table. {@link LikelihoodAgent} instead keys
+ * states by the binary exponent of the likelihood of reaching them. States
+ * that are reached with different likelihoods in the same bucket share one
+ * value, even though their searches would have been cut off at different
+ * points, and so using the table may change the results of its searches.
+ */
+public class TranspositionTable {
+
+    /**
+     * The value stored is the exact value of the state.
+     */
+    public static final int BOUND_EXACT = 1;
+
+    /**
+     * The value stored is a lower bound on the value of the state.
+     */
+    public static final int BOUND_LOWER = 2;
+
+    /**
+     * The value stored is an upper bound on the value of the state.
+     */
+    public static final int BOUND_UPPER = 3;
+
+    /**
+     * The number of bits of the keys of states that can be stored.
+     */
+    public static final int STATE_KEY_BITS = 48;
+
+    /**
+     * The maximum bucket of remaining depth or likelihood that can be stored.
+     */
+    public static final int MAX_DEPTH_BUCKET = 0x7FFF;
+
+    private static final int LONGS_PER_ENTRY = 3;
+    private static final int ENTRIES_PER_BUCKET = 2;
+    private static final int BOUND_MASK = 0x3;
+    private static final int DEPTH_SHIFT = 8;
+    private static final int GENERATION_SHIFT = 24;
+    private static final int FIELD_MASK = 0xFFFF;
+
+    /**
+     * Holds an entry that was found in the table.
+     */
+    public static class Entry {
+
+        /**
+         * The value of the state.
+         */
+        public double value;
+
+        /**
+         * One of {@link #BOUND_EXACT}, {@link #BOUND_LOWER}, or {@link #BOUND_UPPER}.
+         */
+        public int bound;
+    }
+
+    private final AtomicLongArray entries;
+    private final int bucketMask;
+    private volatile int generation;
+
+    private final LongAdder probes;
+    private final LongAdder hits;
+    private final LongAdder stores;
+    private final LongAdder overwrites;
+
+    /**
+     * Instantiates an empty transposition table.
+     * @param bucketCountLog2 The base-2 logarithm of the number of buckets
+     *                        in the table. Each bucket holds two entries.
+     */
+    public TranspositionTable(int bucketCountLog2) {
+        if (bucketCountLog2 < 0 || bucketCountLog2 > 26)
+            throw new IllegalArgumentException("bucketCountLog2 must be between 0 and 26");
+
+        int bucketCount = 1 << bucketCountLog2;
+        this.entries = new AtomicLongArray(bucketCount * ENTRIES_PER_BUCKET * LONGS_PER_ENTRY);
+        this.bucketMask = bucketCount - 1;
+        this.generation = 0;
+        this.probes = new LongAdder();
+        this.hits = new LongAdder();
+        this.stores = new LongAdder();
+        this.overwrites = new LongAdder();
+    }
+
+    /**
+     * Creates the key of a state in this table.
+     * @param stateKey The key of the state from a game state encoding.
+     * @param isLightTurn Whether it is the light player's turn.
+     * @param depthBucket The bucket of remaining depth or likelihood of the search.
+     * @return The key of the state in this table.
+     */
+    public static long createKey(long stateKey, boolean isLightTurn, int depthBucket) {
+        if ((stateKey >>> STATE_KEY_BITS) != 0)
+            throw new IllegalArgumentException("The state key has more than " + STATE_KEY_BITS + " bits");
+        if (depthBucket < 0 || depthBucket > MAX_DEPTH_BUCKET)
+            throw new IllegalArgumentException("depthBucket must be between 0 and " + MAX_DEPTH_BUCKET);
+
+        return (stateKey << 16) | ((long) depthBucket << 1) | (isLightTurn ? 1L : 0L);
+    }
+
+    private int getBucketIndex(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        int bucket = (int) (mixed ^ (mixed >>> 32)) & bucketMask;
+        return bucket * ENTRIES_PER_BUCKET * LONGS_PER_ENTRY;
+    }
+
+    /**
+     * Starts a new search. Entries from previous searches
+     * are replaced in preference to entries from this search.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & FIELD_MASK;
+    }
+
+    /**
+     * Removes all entries from this table. This must not be
+     * called while the table is being used by other threads.
+     */
+    public void clear() {
+        for (int index = 0; index < entries.length(); ++index) {
+            entries.setPlain(index, 0);
+        }
+    }
+
+    /**
+     * Searches for the entry with the given key, and copies
+     * its value and bound into {@code output} if it is found.
+     * @param key The key to search for.
+     * @param output The holder to copy the entry into.
+     * @return Whether an entry was found.
+     */
+    public boolean probe(long key, Entry output) {
+        probes.increment();
+        int bucketIndex = getBucketIndex(key);
+        for (int slot = 0; slot < ENTRIES_PER_BUCKET; ++slot) {
+            int entryIndex = bucketIndex + slot * LONGS_PER_ENTRY;
+            long metadata = entries.getOpaque(entryIndex + 2);
+            if (metadata == 0)
+                continue;
+
+            long check = entries.getOpaque(entryIndex);
+            long valueBits = entries.getOpaque(entryIndex + 1);
+            if ((check ^ valueBits ^ metadata) != key)
+                continue;
+
+            output.value = Double.longBitsToDouble(valueBits);
+            output.bound = (int) (metadata & BOUND_MASK);
+            hits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stores the value of a state in this table.
+     * @param key The key of the state, created using {@link #createKey}.
+     * @param value The value of the state.
+     * @param bound The kind of bound of the value.
+     * @param depth The remaining depth of the search that found the value,
+     *              which is used to prefer keeping the deepest searches.
+     *              Searches that are not limited by depth should pass a
+     *              priority that is larger when more search remains.
+     */
+    public void store(long key, double value, int bound, int depth) {
+        if (bound < BOUND_EXACT || bound > BOUND_UPPER)
+            throw new IllegalArgumentException("Unknown bound: " + bound);
+
+        int currentGeneration = generation;
+        long metadata = bound
+                | ((long) (depth & FIELD_MASK) << DEPTH_SHIFT)
+                | ((long) currentGeneration << GENERATION_SHIFT);
+
+        int bucketIndex = getBucketIndex(key);
+        int entryIndex = bucketIndex;
+        long preferredMetadata = entries.getOpaque(bucketIndex + 2);
+        if (preferredMetadata != 0) {
+            long preferredKey = entries.getOpaque(bucketIndex)
+                    ^ entries.getOpaque(bucketIndex + 1)
+                    ^ preferredMetadata;
+            int preferredDepth = (int) (preferredMetadata >>> DEPTH_SHIFT) & FIELD_MASK;
+            int preferredGeneration = (int) (preferredMetadata >>> GENERATION_SHIFT) & FIELD_MASK;
+            boolean replace = (preferredKey == key)
+                    || (preferredGeneration != currentGeneration)
+                    || (depth >= preferredDepth);
+            if (!replace) {
+                entryIndex = bucketIndex + LONGS_PER_ENTRY;
+            }
+        }
+
+        long previousMetadata = entries.getOpaque(entryIndex + 2);
+        if (previousMetadata != 0) {
+            overwrites.increment();
+        }
+        long valueBits = Double.doubleToRawLongBits(value);
+        entries.setOpaque(entryIndex, key ^ valueBits ^ metadata);
+        entries.setOpaque(entryIndex + 1, valueBits);
+        entries.setOpaque(entryIndex + 2, metadata);
+        stores.increment();
+    }
+
+    /**
+     * Gets the number of times that this table has been searched.
+     * @return The number of probes of this table.
+     */
+    public long getProbeCount() {
+        return probes.sum();
+    }
+
+    /**
+     * Gets the number of probes that found an entry.
+     * @return The number of probes that found an entry.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the fraction of probes that found an entry.
+     * @return The hit rate of this table, or 0 if it has not been probed.
+     */
+    public double getHitRate() {
+        long probeCount = probes.sum();
+        return (probeCount == 0 ? 0.0 : (double) hits.sum() / probeCount);
+    }
+
+    /**
+     * Gets the number of entries that have been stored.
+     * @return The number of entries that have been stored.
+     */
+    public long getStoreCount() {
+        return stores.sum();
+    }
+
+    /**
+     * Gets the number of stores that replaced an existing entry.
+     * @return The number of stores that replaced an existing entry.
+     */
+    public long getOverwriteCount() {
+        return overwrites.sum();
+    }
+
+    /**
+     * Resets the counters of probes, hits, and stores.
+     */
+    public void resetCounters() {
+        probes.reset();
+        hits.reset();
+        stores.reset();
+        overwrites.reset();
+    }
+}
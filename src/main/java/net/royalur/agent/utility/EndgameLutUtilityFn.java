@@ -0,0 +1,131 @@
+package net.royalur.agent.utility;
+
+import net.royalur.lut.Lut;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+
+/**
+ * Scores game states using a lookup-table in the endgame, and another
+ * utility function everywhere else. The endgame is the states where
+ * neither player has more than a given number of pieces left to play,
+ * and so the lut only needs to contain the entries for those states.
+ * The utilities of endgame states are exact, so searches stop at them.
+ * <p>
+ * Utilities are the chance that light wins minus the chance that they
+ * lose, between -1 and 1. The utilities of states outside the endgame
+ * are scaled by the maximum utility of the other utility function, so
+ * that they are comparable with the lut. This is not thread-safe.
+ */
+public class EndgameLutUtilityFn extends UtilityFunction {
+
+    private final Lut endgameLut;
+    private final int maxPiecesInHand;
+    private final UtilityFunction utilityFunction;
+    private final float utilityScale;
+    private final int startingPieceCount;
+    private final FastSimpleGame tempGame;
+
+    private long tableStateCount;
+    private long utilityStateCount;
+    private long finishedStateCount;
+
+    /**
+     * Instantiates a utility function that uses a lut for the endgame.
+     * @param endgameLut A lut that contains at least every state where neither
+     *                   player has more than {@code maxPiecesInHand} pieces left
+     *                   to play.
+     * @param maxPiecesInHand The most pieces that either player can have left to
+     *                        play in the states that are looked up in the lut.
+     * @param utilityFunction The bounded utility function used to score
+     *                        states that are not in the endgame.
+     */
+    public EndgameLutUtilityFn(Lut endgameLut, int maxPiecesInHand, UtilityFunction utilityFunction) {
+        if (maxPiecesInHand < 0)
+            throw new IllegalArgumentException("maxPiecesInHand must be at least 0");
+
+        float maxUtility = utilityFunction.getMaxUtility();
+        if (Float.isInfinite(maxUtility))
+            throw new IllegalArgumentException("The utility function must have bounded utilities");
+
+        this.endgameLut = endgameLut;
+        this.maxPiecesInHand = maxPiecesInHand;
+        this.utilityFunction = utilityFunction;
+        this.utilityScale = 1.0f / maxUtility;
+        this.startingPieceCount = endgameLut.getGameSettings().getStartingPieceCount();
+        this.tempGame = new FastSimpleGame(endgameLut.getGameSettings());
+    }
+
+    public int getMaxPiecesInHand() {
+        return maxPiecesInHand;
+    }
+
+    /**
+     * Determines whether the state of {@code game} is in the endgame lut.
+     * @param game The game to check.
+     * @return Whether the state of the game is in the endgame lut.
+     */
+    public boolean isInEndgame(FastSimpleGame game) {
+        return game.light.pieces <= maxPiecesInHand && game.dark.pieces <= maxPiecesInHand;
+    }
+
+    /**
+     * Gets the number of states that have been scored using the lut.
+     * @return The number of states scored using the lut.
+     */
+    public long getTableStateCount() {
+        return tableStateCount;
+    }
+
+    /**
+     * Gets the number of states that have been scored using the other utility function.
+     * @return The number of states scored using the other utility function.
+     */
+    public long getUtilityStateCount() {
+        return utilityStateCount;
+    }
+
+    /**
+     * Gets the number of finished games that have been scored.
+     * @return The number of finished games that have been scored.
+     */
+    public long getFinishedStateCount() {
+        return finishedStateCount;
+    }
+
+    /**
+     * Resets the counts of states that have been scored.
+     */
+    public void resetCounters() {
+        tableStateCount = 0;
+        utilityStateCount = 0;
+        finishedStateCount = 0;
+    }
+
+    @Override
+    public float scoreGameStateForLight(FastSimpleGame game) {
+        if (game.isFinished) {
+            finishedStateCount += 1;
+            return (game.light.score >= startingPieceCount ? 1.0f : -1.0f);
+        }
+        if (isInEndgame(game)) {
+            tableStateCount += 1;
+            return (float) (endgameLut.getLightWinPercent(game, tempGame) / 50.0 - 1.0);
+        }
+
+        utilityStateCount += 1;
+        float utility = utilityFunction.scoreGameStateForLight(game) * utilityScale;
+        return Math.max(-1.0f, Math.min(1.0f, utility));
+    }
+
+    /**
+     * The utilities of states in the endgame are exact.
+     */
+    @Override
+    public boolean isExact(FastSimpleGame game) {
+        return isInEndgame(game);
+    }
+
+    @Override
+    public float getMaxUtility() {
+        return 1.0f;
+    }
+}
@@ -0,0 +1,293 @@
+package net.royalur.agent.utility;
+
+import net.royalur.agent.FastAgent;
+import net.royalur.lut.WinPercentLut;
+import net.royalur.model.GameSettings;
+import net.royalur.model.dice.Dice;
+import net.royalur.model.dice.DiceFactory;
+import net.royalur.model.dice.DiceType;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Trains a {@link MlpUtilityFn} using stochastic gradient descent
+ * on game states that are sampled from games played by an agent.
+ * The target for each state is either the chance of winning that
+ * is stored in a lookup-table, or the outcome of the game that the
+ * state was sampled from when no lookup-table is available.
+ * <p>
+ * This is not thread-safe.
+ */
+public class MlpTrainer {
+
+    private final GameSettings settings;
+    private final DiceType diceType;
+    private final int hiddenCount;
+    private final Random random;
+
+    /**
+     * Game states sampled for training, stored as the inputs to the network.
+     */
+    public static class Samples {
+
+        private final int maxTileInputs;
+        private int[] tileInputs;
+        private int[] tileInputCounts;
+        private float[] countInputs;
+        private float[] targets;
+        private int size;
+
+        private Samples(int maxTileInputs) {
+            this.maxTileInputs = maxTileInputs;
+            this.tileInputs = new int[0];
+            this.tileInputCounts = new int[0];
+            this.countInputs = new float[0];
+            this.targets = new float[0];
+            this.size = 0;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private void add(MlpUtilityFn network, FastSimpleGame game, int[] tileInputBuffer, float[] countBuffer) {
+            if (size == targets.length) {
+                int capacity = Math.max(1024, 2 * size);
+                tileInputs = Arrays.copyOf(tileInputs, capacity * maxTileInputs);
+                tileInputCounts = Arrays.copyOf(tileInputCounts, capacity);
+                countInputs = Arrays.copyOf(countInputs, capacity * MlpUtilityFn.COUNT_INPUTS);
+                targets = Arrays.copyOf(targets, capacity);
+            }
+
+            int tileInputCount = network.findInputs(game, tileInputBuffer, countBuffer);
+            System.arraycopy(tileInputBuffer, 0, tileInputs, size * maxTileInputs, tileInputCount);
+            System.arraycopy(
+                    countBuffer, 0, countInputs,
+                    size * MlpUtilityFn.COUNT_INPUTS, MlpUtilityFn.COUNT_INPUTS
+            );
+            tileInputCounts[size] = tileInputCount;
+            size += 1;
+        }
+    }
+
+    /**
+     * Instantiates a trainer for networks with {@code hiddenCount} hidden units.
+     * @param settings The settings of the games to train the network for.
+     * @param hiddenCount The number of hidden units in the trained networks.
+     * @param random The source of randomness used to sample games and initialise weights.
+     */
+    public MlpTrainer(GameSettings settings, int hiddenCount, Random random) {
+        DiceFactory dice = settings.getDice();
+        if (!(dice instanceof DiceType type))
+            throw new IllegalArgumentException("Only the standard dice types can be sampled, not " + dice.getID());
+        if (hiddenCount <= 0)
+            throw new IllegalArgumentException("hiddenCount must be at least 1");
+
+        this.settings = settings;
+        this.diceType = type;
+        this.hiddenCount = hiddenCount;
+        this.random = random;
+    }
+
+    /**
+     * Samples every game state that is waiting for a roll from games played
+     * by {@code agent}. If {@code lut} is provided, the target for each state
+     * is the chance of winning that is stored in the lut. Otherwise, the target
+     * is whether the player to move went on to win the game.
+     * @param agent The agent to play the games.
+     * @param gameCount The number of games to play.
+     * @param lut The lookup-table to read targets from, or {@code null} to use
+     *            the outcomes of the games as targets.
+     * @return The game states that were sampled.
+     */
+    public Samples collectSamples(FastAgent agent, int gameCount, @Nullable WinPercentLut lut) {
+        MlpUtilityFn network = new MlpUtilityFn(settings, hiddenCount);
+        int maxTileInputs = 2 * settings.getStartingPieceCount();
+        Samples samples = new Samples(maxTileInputs);
+        int[] tileInputBuffer = new int[maxTileInputs];
+        float[] countBuffer = new float[MlpUtilityFn.COUNT_INPUTS];
+
+        Dice dice = diceType.createDice(random);
+        FastSimpleGame game = new FastSimpleGame(settings);
+        FastSimpleGame tempGame = new FastSimpleGame(settings);
+        FastSimpleMoveList moveList = new FastSimpleMoveList();
+        boolean[] sampleIsLightTurn = new boolean[0];
+
+        for (int gameIndex = 0; gameIndex < gameCount; ++gameIndex) {
+            game.reset();
+            int gameStart = samples.size;
+            while (!game.isFinished) {
+                if (game.isWaitingForRoll()) {
+                    samples.add(network, game, tileInputBuffer, countBuffer);
+                    int sampleIndex = samples.size - 1;
+                    if (lut != null) {
+                        double lightWinPercent = lut.getLightWinPercent(game, tempGame);
+                        double winPercent = (game.isLightTurn ? lightWinPercent : 100.0 - lightWinPercent);
+                        samples.targets[sampleIndex] = (float) (winPercent / 100.0);
+                    } else {
+                        if (sampleIndex >= sampleIsLightTurn.length) {
+                            sampleIsLightTurn = Arrays.copyOf(sampleIsLightTurn, samples.targets.length);
+                        }
+                        sampleIsLightTurn[sampleIndex] = game.isLightTurn;
+                    }
+
+                    game.applyRoll(dice.rollValue(), moveList);
+                    continue;
+                }
+                game.applyMove(agent.decideMove(game, moveList));
+            }
+
+            // The turn stays with the winner when the game finishes.
+            if (lut == null) {
+                for (int sampleIndex = gameStart; sampleIndex < samples.size; ++sampleIndex) {
+                    boolean won = (sampleIsLightTurn[sampleIndex] == game.isLightTurn);
+                    samples.targets[sampleIndex] = (won ? 1.0f : 0.0f);
+                }
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Trains a new network on the given samples.
+     * @param samples The samples to train the network on.
+     * @param epochs The number of passes to make over the samples.
+     * @param learningRate The step size of each update to the weights.
+     * @return The trained network.
+     */
+    public MlpUtilityFn train(Samples samples, int epochs, float learningRate) {
+        MlpUtilityFn network = initialiseNetwork();
+
+        int[] order = new int[samples.size];
+        for (int index = 0; index < order.length; ++index) {
+            order[index] = index;
+        }
+        float[] hidden = new float[network.hiddenStride];
+        float[] hiddenSteps = new float[network.hiddenStride];
+        for (int epoch = 0; epoch < epochs; ++epoch) {
+            shuffle(order);
+            for (int sampleIndex : order) {
+                trainSample(network, samples, sampleIndex, hidden, hiddenSteps, learningRate);
+            }
+        }
+        return network;
+    }
+
+    /**
+     * Creates a network with random weights. The biases start in the middle of
+     * the range of the activation function, so that all hidden units start active.
+     */
+    private MlpUtilityFn initialiseNetwork() {
+        MlpUtilityFn network = new MlpUtilityFn(settings, hiddenCount);
+        int stride = network.hiddenStride;
+        int activeInputs = 2 * settings.getStartingPieceCount() + MlpUtilityFn.COUNT_INPUTS;
+        float inputScale = (float) Math.sqrt(1.0 / activeInputs);
+        float hiddenScale = (float) Math.sqrt(1.0 / hiddenCount);
+        for (int hiddenIndex = 0; hiddenIndex < hiddenCount; ++hiddenIndex) {
+            for (int inputIndex = 0; inputIndex < network.getInputCount(); ++inputIndex) {
+                network.hiddenWeights[inputIndex * stride + hiddenIndex] = (float) random.nextGaussian() * inputScale;
+            }
+            network.hiddenBiases[hiddenIndex] = 0.5f;
+            network.outputWeights[hiddenIndex] = (float) random.nextGaussian() * hiddenScale;
+        }
+        return network;
+    }
+
+    private void shuffle(int[] values) {
+        for (int index = values.length - 1; index > 0; --index) {
+            int swapIndex = random.nextInt(index + 1);
+            int value = values[index];
+            values[index] = values[swapIndex];
+            values[swapIndex] = value;
+        }
+    }
+
+    /**
+     * Calculates the output of the network for a sample, before the
+     * sigmoid is applied, and writes the activations of the hidden
+     * units into {@code hidden}.
+     */
+    private static float calculateOutput(MlpUtilityFn network, Samples samples, int sampleIndex, float[] hidden) {
+        network.calculateHidden(
+                samples.tileInputs, sampleIndex * samples.maxTileInputs, samples.tileInputCounts[sampleIndex],
+                samples.countInputs, sampleIndex * MlpUtilityFn.COUNT_INPUTS,
+                hidden
+        );
+        float output = network.outputBias[0];
+        for (int hiddenIndex = 0; hiddenIndex < network.getHiddenCount(); ++hiddenIndex) {
+            output += network.outputWeights[hiddenIndex] * hidden[hiddenIndex];
+        }
+        return output;
+    }
+
+    /**
+     * Takes one step of gradient descent on the cross-entropy
+     * between the output of the network and the target of a sample.
+     */
+    private static void trainSample(
+            MlpUtilityFn network,
+            Samples samples,
+            int sampleIndex,
+            float[] hidden,
+            float[] hiddenSteps,
+            float learningRate
+    ) {
+        float output = calculateOutput(network, samples, sampleIndex, hidden);
+        float error = MlpUtilityFn.sigmoid(output) - samples.targets[sampleIndex];
+
+        // The clipped activation only passes gradients between its limits.
+        network.outputBias[0] -= learningRate * error;
+        for (int hiddenIndex = 0; hiddenIndex < network.getHiddenCount(); ++hiddenIndex) {
+            float activation = hidden[hiddenIndex];
+            boolean isActive = (activation > 0.0f && activation < 1.0f);
+            float hiddenError = (isActive ? error * network.outputWeights[hiddenIndex] : 0.0f);
+            hiddenSteps[hiddenIndex] = learningRate * hiddenError;
+            network.outputWeights[hiddenIndex] -= learningRate * error * activation;
+            network.hiddenBiases[hiddenIndex] -= hiddenSteps[hiddenIndex];
+        }
+
+        int stride = network.hiddenStride;
+        int tileOffset = sampleIndex * samples.maxTileInputs;
+        int tileInputCount = samples.tileInputCounts[sampleIndex];
+        for (int index = 0; index < tileInputCount; ++index) {
+            int rowOffset = samples.tileInputs[tileOffset + index] * stride;
+            for (int hiddenIndex = 0; hiddenIndex < stride; ++hiddenIndex) {
+                network.hiddenWeights[rowOffset + hiddenIndex] -= hiddenSteps[hiddenIndex];
+            }
+        }
+
+        int countRowOffset = (network.getInputCount() - MlpUtilityFn.COUNT_INPUTS) * stride;
+        int countOffset = sampleIndex * MlpUtilityFn.COUNT_INPUTS;
+        for (int index = 0; index < MlpUtilityFn.COUNT_INPUTS; ++index) {
+            int rowOffset = countRowOffset + index * stride;
+            float input = samples.countInputs[countOffset + index];
+            for (int hiddenIndex = 0; hiddenIndex < stride; ++hiddenIndex) {
+                network.hiddenWeights[rowOffset + hiddenIndex] -= hiddenSteps[hiddenIndex] * input;
+            }
+        }
+    }
+
+    /**
+     * Calculates the mean absolute difference between the chances of winning
+     * estimated by {@code network}, and the targets of the samples.
+     * @param network The network to evaluate.
+     * @param samples The samples to evaluate the network on.
+     * @return The mean absolute error, as a percentage.
+     */
+    public static double calculateMeanAbsoluteError(MlpUtilityFn network, Samples samples) {
+        if (samples.size == 0)
+            throw new IllegalArgumentException("There are no samples");
+
+        float[] hidden = new float[network.hiddenStride];
+        double totalError = 0.0;
+        for (int sampleIndex = 0; sampleIndex < samples.size; ++sampleIndex) {
+            float output = calculateOutput(network, samples, sampleIndex, hidden);
+            totalError += Math.abs(MlpUtilityFn.sigmoid(output) - samples.targets[sampleIndex]);
+        }
+        return 100.0 * totalError / samples.size;
+    }
+}
@@ -0,0 +1,322 @@
+package net.royalur.agent.utility;
+
+import net.royalur.model.GameSettings;
+import net.royalur.rules.simple.fast.FastSimpleBoard;
+import net.royalur.rules.simple.fast.FastSimpleFlags;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+
+import java.io.*;
+
+/**
+ * Scores game states using a small neural network with one hidden layer,
+ * which estimates the chance that the player to move wins. This can be
+ * used for rule variants where a full lookup-table does not fit in memory,
+ * and it is trained from a lookup-table for a similar variant, or from
+ * self-play, using {@link MlpTrainer}.
+ * <p>
+ * The inputs to the network are the tiles occupied by each player, and the
+ * number of pieces that each player has left to play and has scored. States
+ * are always seen from the perspective of the player to move, by mirroring
+ * the board when it is the dark player's turn. Scoring a state does not
+ * allocate any memory, and this is thread-safe.
+ */
+public class MlpUtilityFn extends UtilityFunction {
+
+    /**
+     * The number of inputs for the pieces in hand and scored by each player.
+     */
+    static final int COUNT_INPUTS = 4;
+
+    /**
+     * The hidden units are evaluated in blocks of this size, so
+     * that their sums can be held in local variables.
+     */
+    static final int BLOCK_SIZE = 8;
+
+    private static final int FILE_MAGIC = 0x524D4C50;
+
+    private final GameSettings settings;
+    private final int boardSize;
+    private final int startingPieceCount;
+    private final int inputCount;
+    private final int hiddenCount;
+
+    /**
+     * The number of hidden units rounded up to a multiple of {@link #BLOCK_SIZE}.
+     * The padding units have zero weights, so they do not affect the output.
+     */
+    final int hiddenStride;
+
+    /**
+     * The index of each tile when the board is mirrored.
+     */
+    private final int[] mirroredTileIndices;
+
+    /**
+     * The weights from each input to each hidden unit, indexed
+     * by {@code inputIndex * hiddenStride + hiddenIndex}.
+     */
+    final float[] hiddenWeights;
+    final float[] hiddenBiases;
+    final float[] outputWeights;
+    final float[] outputBias;
+
+    /**
+     * Instantiates a network with all weights set to zero.
+     * @param settings The settings of the games to be scored.
+     * @param hiddenCount The number of hidden units in the network.
+     */
+    public MlpUtilityFn(GameSettings settings, int hiddenCount) {
+        if (hiddenCount <= 0)
+            throw new IllegalArgumentException("hiddenCount must be at least 1");
+        if (!FastSimpleFlags.isSymmetrical(settings))
+            throw new IllegalArgumentException("The paths of the light and dark players must be symmetrical");
+
+        this.settings = settings;
+        FastSimpleBoard board = new FastSimpleGame(settings).board;
+        this.boardSize = board.pieces.length;
+        this.startingPieceCount = settings.getStartingPieceCount();
+        this.inputCount = 2 * boardSize + COUNT_INPUTS;
+        this.hiddenCount = hiddenCount;
+        this.hiddenStride = (hiddenCount + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+
+        this.mirroredTileIndices = new int[boardSize];
+        for (int x = 0; x < board.width; ++x) {
+            for (int y = 0; y < board.height; ++y) {
+                int index = board.calcTileIndex(x, y);
+                mirroredTileIndices[index] = board.calcTileIndex(board.width - x - 1, y);
+            }
+        }
+
+        this.hiddenWeights = new float[inputCount * hiddenStride];
+        this.hiddenBiases = new float[hiddenStride];
+        this.outputWeights = new float[hiddenStride];
+        this.outputBias = new float[1];
+    }
+
+    public GameSettings getSettings() {
+        return settings;
+    }
+
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    public int getHiddenCount() {
+        return hiddenCount;
+    }
+
+    /**
+     * Gets the total number of weights and biases in the network.
+     * @return The number of parameters in the network.
+     */
+    public int getParameterCount() {
+        return (inputCount + 2) * hiddenCount + 1;
+    }
+
+    /**
+     * Finds the inputs to the network that are set for the state of
+     * {@code game}, from the perspective of the player to move. The
+     * count inputs are written to {@code countInputs}.
+     * @return The number of tile inputs that were written to {@code tileInputs}.
+     */
+    int findInputs(FastSimpleGame game, int[] tileInputs, float[] countInputs) {
+        boolean isLightTurn = game.isLightTurn;
+        int[] pieces = game.board.pieces;
+        int tileInputCount = 0;
+        for (int index = 0; index < boardSize; ++index) {
+            int piece = pieces[index];
+            if (piece == 0)
+                continue;
+
+            int tile = (isLightTurn ? index : mirroredTileIndices[index]);
+            boolean isOwnPiece = (piece > 0) == isLightTurn;
+            tileInputs[tileInputCount] = 2 * tile + (isOwnPiece ? 0 : 1);
+            tileInputCount += 1;
+        }
+
+        float scale = 1.0f / startingPieceCount;
+        countInputs[0] = game.getTurnPlayer().pieces * scale;
+        countInputs[1] = game.getTurnPlayer().score * scale;
+        countInputs[2] = game.getPlayer(!isLightTurn).pieces * scale;
+        countInputs[3] = game.getPlayer(!isLightTurn).score * scale;
+        return tileInputCount;
+    }
+
+    /**
+     * Calculates the activations of all hidden units for the given
+     * inputs, and writes them into {@code hidden}.
+     */
+    void calculateHidden(
+            int[] tileInputs, int tileOffset, int tileInputCount,
+            float[] countInputs, int countOffset,
+            float[] hidden
+    ) {
+        System.arraycopy(hiddenBiases, 0, hidden, 0, hiddenStride);
+        for (int index = 0; index < tileInputCount; ++index) {
+            int rowOffset = tileInputs[tileOffset + index] * hiddenStride;
+            for (int hiddenIndex = 0; hiddenIndex < hiddenStride; ++hiddenIndex) {
+                hidden[hiddenIndex] += hiddenWeights[rowOffset + hiddenIndex];
+            }
+        }
+        for (int index = 0; index < COUNT_INPUTS; ++index) {
+            int rowOffset = (2 * boardSize + index) * hiddenStride;
+            float input = countInputs[countOffset + index];
+            for (int hiddenIndex = 0; hiddenIndex < hiddenStride; ++hiddenIndex) {
+                hidden[hiddenIndex] += hiddenWeights[rowOffset + hiddenIndex] * input;
+            }
+        }
+        for (int hiddenIndex = 0; hiddenIndex < hiddenStride; ++hiddenIndex) {
+            hidden[hiddenIndex] = activate(hidden[hiddenIndex]);
+        }
+    }
+
+    /**
+     * The clipped linear activation function of the hidden units.
+     */
+    static float activate(float value) {
+        return Math.min(Math.max(value, 0.0f), 1.0f);
+    }
+
+    static float sigmoid(float value) {
+        return (float) (1.0 / (1.0 + Math.exp(-value)));
+    }
+
+    /**
+     * Estimates the chance that the player to move wins the game.
+     * @param game The game to evaluate, which must not have finished.
+     * @return The estimated chance that the player to move wins, between 0 and 1.
+     */
+    public float estimateWinProbability(FastSimpleGame game) {
+        boolean isLightTurn = game.isLightTurn;
+        int[] pieces = game.board.pieces;
+
+        float scale = 1.0f / startingPieceCount;
+        float ownPieces = game.getTurnPlayer().pieces * scale;
+        float ownScore = game.getTurnPlayer().score * scale;
+        float otherPieces = game.getPlayer(!isLightTurn).pieces * scale;
+        float otherScore = game.getPlayer(!isLightTurn).score * scale;
+        int countRowOffset = 2 * boardSize * hiddenStride;
+
+        // The sums of each block of hidden units are held in locals,
+        // so that scoring a state does not need any scratch arrays.
+        float output = outputBias[0];
+        for (int block = 0; block < hiddenStride; block += BLOCK_SIZE) {
+            float sum0 = hiddenBiases[block];
+            float sum1 = hiddenBiases[block + 1];
+            float sum2 = hiddenBiases[block + 2];
+            float sum3 = hiddenBiases[block + 3];
+            float sum4 = hiddenBiases[block + 4];
+            float sum5 = hiddenBiases[block + 5];
+            float sum6 = hiddenBiases[block + 6];
+            float sum7 = hiddenBiases[block + 7];
+
+            for (int index = 0; index < boardSize; ++index) {
+                int piece = pieces[index];
+                if (piece == 0)
+                    continue;
+
+                int tile = (isLightTurn ? index : mirroredTileIndices[index]);
+                boolean isOwnPiece = (piece > 0) == isLightTurn;
+                int row = (2 * tile + (isOwnPiece ? 0 : 1)) * hiddenStride + block;
+                sum0 += hiddenWeights[row];
+                sum1 += hiddenWeights[row + 1];
+                sum2 += hiddenWeights[row + 2];
+                sum3 += hiddenWeights[row + 3];
+                sum4 += hiddenWeights[row + 4];
+                sum5 += hiddenWeights[row + 5];
+                sum6 += hiddenWeights[row + 6];
+                sum7 += hiddenWeights[row + 7];
+            }
+
+            for (int index = 0; index < COUNT_INPUTS; ++index) {
+                float input = (index == 0 ? ownPieces : (index == 1 ? ownScore
+                        : (index == 2 ? otherPieces : otherScore)));
+                int row = countRowOffset + index * hiddenStride + block;
+                sum0 += hiddenWeights[row] * input;
+                sum1 += hiddenWeights[row + 1] * input;
+                sum2 += hiddenWeights[row + 2] * input;
+                sum3 += hiddenWeights[row + 3] * input;
+                sum4 += hiddenWeights[row + 4] * input;
+                sum5 += hiddenWeights[row + 5] * input;
+                sum6 += hiddenWeights[row + 6] * input;
+                sum7 += hiddenWeights[row + 7] * input;
+            }
+
+            output += outputWeights[block] * activate(sum0)
+                    + outputWeights[block + 1] * activate(sum1)
+                    + outputWeights[block + 2] * activate(sum2)
+                    + outputWeights[block + 3] * activate(sum3)
+                    + outputWeights[block + 4] * activate(sum4)
+                    + outputWeights[block + 5] * activate(sum5)
+                    + outputWeights[block + 6] * activate(sum6)
+                    + outputWeights[block + 7] * activate(sum7);
+        }
+        return sigmoid(output);
+    }
+
+    /**
+     * Scores states between -1 and 1, where the utility is the estimated
+     * chance that light wins minus the estimated chance that dark wins.
+     */
+    @Override
+    public float scoreGameStateForLight(FastSimpleGame game) {
+        if (game.isFinished)
+            return (game.isLightTurn ? 1.0f : -1.0f);
+
+        float utility = 2.0f * estimateWinProbability(game) - 1.0f;
+        return (game.isLightTurn ? utility : -utility);
+    }
+
+    @Override
+    public float getMaxUtility() {
+        return 1.0f;
+    }
+
+    /**
+     * Writes the weights of this network to a file.
+     * @param file The file to write to.
+     * @throws IOException If there is an error writing the file.
+     */
+    public void write(File file) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            output.writeInt(FILE_MAGIC);
+            output.writeInt(inputCount);
+            output.writeInt(hiddenCount);
+            for (float[] values : new float[][] {hiddenWeights, hiddenBiases, outputWeights, outputBias}) {
+                for (float value : values) {
+                    output.writeFloat(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the weights of a network from a file.
+     * @param settings The settings of the games that the network was trained for.
+     * @param file The file to read from.
+     * @return The network that was read.
+     * @throws IOException If there is an error reading the file.
+     */
+    public static MlpUtilityFn read(GameSettings settings, File file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != FILE_MAGIC)
+                throw new IOException("File is not a network of weights");
+
+            int inputCount = input.readInt();
+            int hiddenCount = input.readInt();
+            MlpUtilityFn network = new MlpUtilityFn(settings, hiddenCount);
+            if (network.inputCount != inputCount)
+                throw new IOException("The network was trained for a different board");
+
+            for (float[] values : new float[][] {
+                    network.hiddenWeights, network.hiddenBiases, network.outputWeights, network.outputBias
+            }) {
+                for (int index = 0; index < values.length; ++index) {
+                    values[index] = input.readFloat();
+                }
+            }
+            return network;
+        }
+    }
+}
@@ -11,6 +11,7 @@ import net.royalur.rules.simple.fast.FastSimpleGame;
 public class PiecesAdvancedUtilityFn extends UtilityFunction {
 
     private final int scoredPieceUtility;
+    private final int startingPieceCount;
 
     public PiecesAdvancedUtilityFn(RuleSet rules) {
         int pathLength = rules.getPaths().getLight().size();
@@ -20,6 +21,7 @@ public class PiecesAdvancedUtilityFn extends UtilityFunction {
             );
         }
         this.scoredPieceUtility = pathLength + 1;
+        this.startingPieceCount = rules.getSettings().getStartingPieceCount();
     }
 
     @Override
@@ -33,4 +35,13 @@ public class PiecesAdvancedUtilityFn extends UtilityFunction {
         }
         return utility;
     }
+
+    /**
+     * The utility is largest when one player has scored all of their
+     * pieces, and the other player has no pieces on the board.
+     */
+    @Override
+    public float getMaxUtility() {
+        return startingPieceCount * scoredPieceUtility;
+    }
 }
@@ -27,4 +27,24 @@ public abstract class UtilityFunction {
         float lightUtility = scoreGameStateForLight(game);
         return game.isLightTurn ? lightUtility : -lightUtility;
     }
+
+    /**
+     * Gets whether the utility of the state of the game is exact, so that
+     * searches do not need to look any further ahead from it.
+     * @param game The game to check.
+     * @return Whether the utility of the state of the game is exact.
+     */
+    public boolean isExact(FastSimpleGame game) {
+        return false;
+    }
+
+    /**
+     * Gets the maximum magnitude of the utility of any game state,
+     * or infinity if the utilities of this function are not bounded.
+     * Search algorithms that prune chance nodes require this bound.
+     * @return The maximum absolute utility of any game state.
+     */
+    public float getMaxUtility() {
+        return Float.POSITIVE_INFINITY;
+    }
 }
@@ -172,6 +172,15 @@ public class CLI {
         }
     }
 
+    public int readKeywordInt(String keyword, int defaultValue) {
+        String value = readNonEmptyKeywordOrNull(keyword);
+        try {
+            return (value != null ? Integer.parseInt(value) : defaultValue);
+        } catch (NumberFormatException e) {
+            throw new CLIArgumentException("Value of --" + keyword + " is not a valid integer");
+        }
+    }
+
     public File readKeywordFile(String keyword, File defaultValue) {
         String value = readNonEmptyKeywordOrNull(keyword);
         return (value != null ? new File(value) : defaultValue);
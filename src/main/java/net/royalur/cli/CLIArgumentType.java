@@ -12,6 +12,7 @@ public record CLIArgumentType(String name) {
     public static final CLIArgumentType SUBCOMMAND = new CLIArgumentType("Sub-Command");
     public static final CLIArgumentType GAME_SETTINGS = new CLIArgumentType("Game Settings");
     public static final CLIArgumentType VALUE_TYPE = new CLIArgumentType("Value Type");
+    public static final CLIArgumentType ENGINE_TYPE = new CLIArgumentType("Engine Type");
 
     @Override
     public boolean equals(@Nullable Object obj) {
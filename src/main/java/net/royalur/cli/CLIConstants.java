@@ -2,6 +2,7 @@ package net.royalur.cli;
 
 import net.royalur.lut.buffer.ValueType;
 import net.royalur.model.GameSettings;
+import net.royalur.rules.simple.fast.FastSimpleEngineType;
 
 import javax.annotation.Nullable;
 import java.util.Map;
@@ -38,6 +39,11 @@ public class CLIConstants {
             "percent16", ValueType.PERCENT16
     );
 
+    public static final Map<String, FastSimpleEngineType> ENGINE_TYPE_BY_CLI_NAME = Map.of(
+            FastSimpleEngineType.BOARD.getID(), FastSimpleEngineType.BOARD,
+            FastSimpleEngineType.BITBOARD.getID(), FastSimpleEngineType.BITBOARD
+    );
+
     public static String getCLIName(GameSettings settings) {
         return findKey("settings", SETTINGS_BY_CLI_NAME, settings);
     }
@@ -1,22 +1,23 @@
 package net.royalur.lut;
 
 import net.royalur.model.GameSettings;
-import net.royalur.rules.simple.fast.FastSimpleBoard;
-import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
 
 public class FinkelGameStateEncoding extends SimpleGameStateEncoding {
 
+    private final int width;
+
     public FinkelGameStateEncoding() {
         super(GameSettings.FINKEL);
+        this.width = settings.getBoardShape().getWidth();
     }
 
-    private int encodeMiddleLane(FastSimpleBoard board) {
-        int width = board.width;
-        int[] pieces = board.pieces;
+    private int encodeMiddleLane(FastSimpleEngine game) {
+        int width = this.width;
 
         int state = 0;
         for (int index = 0; index < 8; ++index) {
-            int piece = pieces[1 + index * width];
+            int piece = game.getPiece(1 + index * width);
             int occupant = (piece == 0 ? 0 : (piece < 0 ? 1 : 2));
             state = (state << 2) | occupant;
         }
@@ -28,9 +29,8 @@ public class FinkelGameStateEncoding extends SimpleGameStateEncoding {
         return compressed;
     }
 
-    private int encodeSideLane(FastSimpleBoard board, int boardX) {
-        int width = board.width;
-        int[] pieces = board.pieces;
+    private int encodeSideLane(FastSimpleEngine game, int boardX) {
+        int width = this.width;
 
         int state = 0;
         for (int index = 0; index < 6; ++index) {
@@ -40,31 +40,41 @@ public class FinkelGameStateEncoding extends SimpleGameStateEncoding {
             }
 
             int boardIndex = boardX + boardY * width;
-            int piece = pieces[boardIndex];
+            int piece = game.getPiece(boardIndex);
             int occupant = (piece == 0 ? 0 : 1);
             state |= occupant << index;
         }
         return state;
     }
 
-    private int encodeBoard(FastSimpleBoard board) {
-        int leftLane = encodeSideLane(board, 0);
-        int rightLane = encodeSideLane(board, 2);
-        int middleLane = encodeMiddleLane(board);
+    private int encodeBoard(FastSimpleEngine game) {
+        int leftLane = encodeSideLane(game, 0);
+        int rightLane = encodeSideLane(game, 2);
+        int middleLane = encodeMiddleLane(game);
         return rightLane | (middleLane << 6) | (leftLane << 19);
     }
 
     @Override
-    public long encodeGameState(FastSimpleGame game) {
-        if (!game.isLightTurn) {
+    public long encodeGameState(FastSimpleEngine game) {
+        if (!game.isLightTurn()) {
             throw new IllegalArgumentException(
                     "Only game states where it is the light player's turn are supported by this encoding"
             );
         }
         int state = 0;
-        state |= encodeBoard(game.board);
-        state |= game.dark.pieces << 25;
-        state |= game.light.pieces << 28;
+        state |= encodeBoard(game);
+        state |= game.getPlayer(false).pieces << 25;
+        state |= game.getPlayer(true).pieces << 28;
         return Integer.toUnsignedLong(state);
     }
+
+    @Override
+    public int decodeLightPieces(long key) {
+        return (int) (key >>> 28) & 0x7;
+    }
+
+    @Override
+    public int decodeDarkPieces(long key) {
+        return (int) (key >>> 25) & 0x7;
+    }
 }
@@ -1,7 +1,7 @@
 package net.royalur.lut;
 
 import net.royalur.model.GameSettings;
-import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
 
 import javax.annotation.Nullable;
 
@@ -15,7 +15,7 @@ public interface GameStateEncoding {
      * @param game The game to encode.
      * @return The game state encoded as a binary key.
      */
-    long encodeGameState(FastSimpleGame game);
+    long encodeGameState(FastSimpleEngine game);
 
     /**
      * Encode the given game state to a binary key that is always encoded as
@@ -23,16 +23,16 @@ public interface GameStateEncoding {
      * reversed before being encoded. If a temp game is not provided, and it is
      * the dark player's turn, then a temp game will be constructed.
      * @param game The game to encode.
-     * @param tempGame An optional temporary game to use to reverse the players
-     *                 in game.
+     * @param tempGame An optional temporary game that uses the same engine as
+     *                 game, to use to reverse the players in game.
      * @return The game state encoded as a symmetrical binary key.
      */
     default long encodeSymmetricalGameState(
-            FastSimpleGame game,
-            @Nullable FastSimpleGame tempGame
+            FastSimpleEngine game,
+            @Nullable FastSimpleEngine tempGame
     ) {
-        FastSimpleGame keyGame = game;
-        if (!game.isLightTurn) {
+        FastSimpleEngine keyGame = game;
+        if (!game.isLightTurn()) {
             keyGame = game.reversePlayers(tempGame);
         }
         return encodeGameState(keyGame);
@@ -7,6 +7,7 @@ import net.royalur.lut.store.DataSink;
 import net.royalur.model.GameSettings;
 import net.royalur.model.PlayerType;
 import net.royalur.notation.JsonNotation;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
 import net.royalur.rules.simple.fast.FastSimpleGame;
 import net.royalur.rules.state.EndGameState;
 import net.royalur.rules.state.GameState;
@@ -21,17 +22,31 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.function.Function;
+import java.util.function.LongPredicate;
 
-public class Lut {
+public class Lut implements WinPercentLut {
 
     public static final byte[] MAGIC = new byte[] {0x52, 0x47, 0x55};
     public static final byte VERSION_0 = (byte) 0;
     public static final byte LATEST_VERSION = VERSION_0;
 
+    /**
+     * The version used for files that store wide keys, that are read using {@link WideLut}.
+     */
+    public static final byte WIDE_VERSION_0 = (byte) 1;
+
+    /**
+     * The number of values that are read at a time when filtering the entries of a lut.
+     */
+    private static final int FILTER_CHUNK_SIZE = 4096;
+
     private final GameStateEncoding encoding;
     private final LutMetadata metadata;
     private final LutMap[] maps;
+    private final LutObjective objective;
     private final FastSimpleGame stateConversionGame;
     private final FastSimpleGame tempGame;
 
@@ -43,6 +58,8 @@ public class Lut {
         this.encoding = encoding;
         this.metadata = metadata;
         this.maps = maps;
+        this.objective = metadata.getObjective();
+        checkValueType(objective, metadata.getValueType());
         this.stateConversionGame = new FastSimpleGame(metadata.getGameSettings());
         this.tempGame = new FastSimpleGame(metadata.getGameSettings());
     }
@@ -54,6 +71,7 @@ public class Lut {
         return new Lut(encoding, metadata, maps);
     }
 
+    @Override
     public int getEntryCount() {
         int size = 0;
         for (LutMap map : maps) {
@@ -66,14 +84,35 @@ public class Lut {
         return encoding;
     }
 
+    @Override
     public LutMetadata getMetadata() {
         return metadata;
     }
 
+    @Override
     public GameSettings getGameSettings() {
         return metadata.getGameSettings();
     }
 
+    /**
+     * Gets the objective of the values stored in this table.
+     */
+    public LutObjective getObjective() {
+        return objective;
+    }
+
+    /**
+     * Checks that values of {@code objective} can be stored using {@code valueType}.
+     * Percentage value types clamp their values to the range 0 to 100.
+     */
+    static void checkValueType(LutObjective objective, ValueType valueType) {
+        if (valueType == ValueType.PERCENT16 && !objective.isPercentage()) {
+            throw new IllegalArgumentException(
+                    "The values of " + objective.getName() + " cannot be stored as " + valueType.getTextID()
+            );
+        }
+    }
+
     public LutMap getMap(int upperKey) {
         return maps[upperKey];
     }
@@ -113,16 +152,76 @@ public class Lut {
      * Assumes that the game is using symmetrical paths.
      * This is thread-safe.
      */
-    public double getLightWinPercent(FastSimpleGame game, @Nullable FastSimpleGame tempGame) {
+    @Override
+    public double getLightWinPercent(FastSimpleEngine game, @Nullable FastSimpleEngine tempGame) {
+        if (objective != LutObjective.WIN_PERCENT) {
+            throw new IllegalStateException(
+                    "This table stores " + objective.getName() + ", use getLightValue instead"
+            );
+        }
         long key = encoding.encodeSymmetricalGameState(game, tempGame);
         int upperKey = GameStateEncoding.calcUpperKey(key);
         int lowerKey = GameStateEncoding.calcLowerKey(key);
         double winPercent = maps[upperKey].getDouble(lowerKey);
-        return (game.isLightTurn ? winPercent : 100.0 - winPercent);
+        return (game.isLightTurn() ? winPercent : 100.0 - winPercent);
+    }
+
+    /**
+     * Gets the value of the objective of this table for {@code game}, from
+     * the perspective of the light player. The stored value is only converted
+     * to the light player's perspective for objectives that depend on it,
+     * such as the win percentage. This is thread-safe.
+     */
+    public double getLightValue(FastSimpleEngine game, @Nullable FastSimpleEngine tempGame) {
+        long key = encoding.encodeSymmetricalGameState(game, tempGame);
+        int upperKey = GameStateEncoding.calcUpperKey(key);
+        int lowerKey = GameStateEncoding.calcLowerKey(key);
+        double value = maps[upperKey].getDouble(lowerKey);
+        return (game.isLightTurn() ? value : objective.fromOpponentPerspective(value));
+    }
+
+    /**
+     * Looks up the value of a key. This is thread-safe.
+     * @param key The key to look up, from {@link #getGameStateEncoding()}.
+     * @return The value of the key.
+     */
+    public double getDouble(long key) {
+        int upperKey = GameStateEncoding.calcUpperKey(key);
+        int lowerKey = GameStateEncoding.calcLowerKey(key);
+        return maps[upperKey].getDouble(lowerKey);
     }
 
-    public double updateLightWinPercent(FastSimpleGame game, double winPercent) {
-        if (!game.isLightTurn) {
+    /**
+     * Looks up the values of many keys at once. The keys must be sorted in
+     * ascending order, so that each search only needs to consider the entries
+     * after the previous key in the same map. Duplicate keys are allowed.
+     * This is thread-safe.
+     * @param sortedKeys The keys to look up, from {@link #getGameStateEncoding()}.
+     * @param keyCount The number of keys to look up.
+     * @param output The array to write the value of each key into.
+     */
+    public void getDoubles(long[] sortedKeys, int keyCount, double[] output) {
+        int previousUpperKey = -1;
+        int fromIndex = 0;
+        for (int index = 0; index < keyCount; ++index) {
+            long key = sortedKeys[index];
+            int upperKey = GameStateEncoding.calcUpperKey(key);
+            if (upperKey != previousUpperKey) {
+                previousUpperKey = upperKey;
+                fromIndex = 0;
+            }
+
+            LutMap map = maps[upperKey];
+            fromIndex = map.indexOfKey(GameStateEncoding.calcLowerKey(key), fromIndex);
+            output[index] = map.getValueBuffer().getDouble(fromIndex);
+        }
+    }
+
+    @Override
+    public double updateLightWinPercent(FastSimpleEngine game, double winPercent) {
+        if (objective != LutObjective.WIN_PERCENT)
+            throw new IllegalStateException("This table stores " + objective.getName());
+        if (!game.isLightTurn()) {
             throw new IllegalArgumentException(
                     "Only game states where it is the light player's turn are supported by this method"
             );
@@ -133,6 +232,7 @@ public class Lut {
         return maps[upperKey].set(lowerKey, winPercent);
     }
 
+    @Override
     public Lut convertValueTypes(ValueType newValueType) {
         if (!newValueType.isFloat()) {
             throw new IllegalArgumentException(
@@ -153,6 +253,7 @@ public class Lut {
         return new Lut(encoding, newMetadata, newMaps);
     }
 
+    @Override
     public void write(
             ValueType outputValueType,
             JsonNotation notation,
@@ -179,6 +280,7 @@ public class Lut {
             JsonNotation notation,
             DataSink output
     ) throws IOException {
+        checkValueType(objective, outputValueType);
         LutMetadata metadata = this.metadata.copyWithValueType(outputValueType);
 
         output.write(buffer -> {
@@ -215,6 +317,29 @@ public class Lut {
         );
     }
 
+    /**
+     * Reads only the entries of a lut whose keys are accepted by a filter.
+     * The entries are filtered as the file is read, so a small slice of a
+     * lut that is too large to fit in memory can be loaded.
+     * @param file The file to read the lut from.
+     * @param keyFilterGenerator Creates the filter of keys to keep, given
+     *                           the encoding of the keys in the lut.
+     * @return The entries of the lut that were accepted by the filter.
+     * @throws IOException If there is an error reading the file.
+     */
+    public static Lut read(
+            File file,
+            Function<GameStateEncoding, LongPredicate> keyFilterGenerator
+    ) throws IOException {
+        JsonNotation jsonNotation = new JsonNotation();
+        try (FileInputStream fis = new FileInputStream(file)) {
+            ByteBuffer workingBuffer = ByteBuffer.allocateDirect(1024 * 1024);
+            workingBuffer.order(ByteOrder.BIG_ENDIAN);
+            DataSource source = new DataSource.FileDataSource(fis.getChannel(), workingBuffer);
+            return read(jsonNotation, GameStateEncoding::createSimple, source, keyFilterGenerator);
+        }
+    }
+
     public static Lut read(
             JsonNotation jsonNotation,
             Function<GameSettings, GameStateEncoding> encodingGenerator,
@@ -244,19 +369,7 @@ public class Lut {
             DataSource source
     ) throws IOException {
 
-        byte[] magic = source.readBytes(Lut.MAGIC.length);
-        for (int index = 0; index < magic.length; ++index) {
-            if (magic[index] != Lut.MAGIC[index])
-                throw new IOException("Magic does not match");
-        }
-        byte version = source.readByte();
-        if (version != Lut.VERSION_0)
-            throw new IOException("Unsupported file version: " + Byte.toUnsignedInt(version));
-
-        int metadataByteCount = source.readInt();
-        byte[] metadataBytes = source.readBytes(metadataByteCount);
-        String metadataJson = new String(metadataBytes, StandardCharsets.UTF_8);
-        LutMetadata metadata = LutMetadata.decode(jsonNotation, metadataJson);
+        LutMetadata metadata = readMetadata(jsonNotation, source);
         GameStateEncoding encoding = encodingGenerator.apply(metadata.getGameSettings());
 
         int mapCount = source.readInt();
@@ -287,4 +400,122 @@ public class Lut {
         }
         return new Lut(encoding, metadata, maps);
     }
+
+    /**
+     * Reads only the entries of a lut whose keys are accepted by a filter.
+     * The keys of each map are read and filtered first, and the entries that
+     * were kept are remembered so that their values can be picked out after.
+     */
+    public static Lut read(
+            JsonNotation jsonNotation,
+            Function<GameSettings, GameStateEncoding> encodingGenerator,
+            DataSource source,
+            Function<GameStateEncoding, LongPredicate> keyFilterGenerator
+    ) throws IOException {
+
+        LutMetadata metadata = readMetadata(jsonNotation, source);
+        GameStateEncoding encoding = encodingGenerator.apply(metadata.getGameSettings());
+        LongPredicate keyFilter = keyFilterGenerator.apply(encoding);
+
+        int mapCount = source.readInt();
+        int[] mapEntryCounts = new int[mapCount];
+        for (int index = 0; index < mapCount; ++index) {
+            mapEntryCounts[index] = source.readInt();
+        }
+
+        BitSet[] keptEntries = new BitSet[mapCount];
+        UInt32ValueBuffer[] mapKeyBuffers = new UInt32ValueBuffer[mapCount];
+        for (int index = 0; index < mapCount; ++index) {
+            BitSet kept = new BitSet(mapEntryCounts[index]);
+            int[] keptKeys = new int[16];
+            int keptCount = 0;
+            for (int entry = 0; entry < mapEntryCounts[index]; ++entry) {
+                int lowerKey = source.readInt();
+                long key = ((long) index << 32) | Integer.toUnsignedLong(lowerKey);
+                if (!keyFilter.test(key))
+                    continue;
+
+                if (keptCount == keptKeys.length) {
+                    keptKeys = Arrays.copyOf(keptKeys, 2 * keptCount);
+                }
+                keptKeys[keptCount] = lowerKey;
+                keptCount += 1;
+                kept.set(entry);
+            }
+
+            UInt32ValueBuffer keyBuffer = new UInt32ValueBuffer(keptCount);
+            for (int keyIndex = 0; keyIndex < keptCount; ++keyIndex) {
+                keyBuffer.set(keyIndex, keptKeys[keyIndex]);
+            }
+            keptEntries[index] = kept;
+            mapKeyBuffers[index] = keyBuffer;
+        }
+
+        ValueType valueType = metadata.getValueType();
+        FloatValueBuffer chunk = valueType.createFloatBuffer(FILTER_CHUNK_SIZE);
+        LutMap[] maps = new LutMap[mapCount];
+        for (int index = 0; index < mapCount; ++index) {
+            int keptCount = mapKeyBuffers[index].getCapacity();
+            FloatValueBuffer valueBuffer = valueType.createFloatBuffer(keptCount);
+            readFilteredValues(source, chunk, mapEntryCounts[index], keptEntries[index], valueBuffer);
+            maps[index] = new LutMap(keptCount, mapKeyBuffers[index], valueBuffer);
+        }
+        return new Lut(encoding, metadata, maps);
+    }
+
+    /**
+     * Reads only the metadata of a lut, without reading any of its entries.
+     * @param file The file to read the metadata from.
+     * @return The metadata of the lut.
+     * @throws IOException If there is an error reading the file.
+     */
+    public static LutMetadata readMetadata(File file) throws IOException {
+        try (FileInputStream fis = new FileInputStream(file)) {
+            ByteBuffer workingBuffer = ByteBuffer.allocateDirect(64 * 1024);
+            workingBuffer.order(ByteOrder.BIG_ENDIAN);
+            DataSource source = new DataSource.FileDataSource(fis.getChannel(), workingBuffer);
+            return readMetadata(new JsonNotation(), source);
+        }
+    }
+
+    private static LutMetadata readMetadata(JsonNotation jsonNotation, DataSource source) throws IOException {
+        byte[] magic = source.readBytes(Lut.MAGIC.length);
+        for (int index = 0; index < magic.length; ++index) {
+            if (magic[index] != Lut.MAGIC[index])
+                throw new IOException("Magic does not match");
+        }
+        byte version = source.readByte();
+        if (version == Lut.WIDE_VERSION_0)
+            throw new IOException("This file contains wide keys, and must be read using WideLut");
+        if (version != Lut.VERSION_0)
+            throw new IOException("Unsupported file version: " + Byte.toUnsignedInt(version));
+
+        int metadataByteCount = source.readInt();
+        byte[] metadataBytes = source.readBytes(metadataByteCount);
+        String metadataJson = new String(metadataBytes, StandardCharsets.UTF_8);
+        return LutMetadata.decode(jsonNotation, metadataJson);
+    }
+
+    /**
+     * Reads the values of every entry of a map in chunks,
+     * and copies the values of the kept entries into {@code output}.
+     */
+    private static void readFilteredValues(
+            DataSource source,
+            FloatValueBuffer chunk,
+            int entryCount,
+            BitSet kept,
+            FloatValueBuffer output
+    ) throws IOException {
+
+        int outputIndex = 0;
+        for (int start = 0; start < entryCount; start += FILTER_CHUNK_SIZE) {
+            int end = Math.min(entryCount, start + FILTER_CHUNK_SIZE);
+            chunk.readContents(source, 0, end - start);
+            for (int entry = kept.nextSetBit(start); entry >= 0 && entry < end; entry = kept.nextSetBit(entry + 1)) {
+                output.set(outputIndex, chunk.getDouble(entry - start));
+                outputIndex += 1;
+            }
+        }
+    }
 }
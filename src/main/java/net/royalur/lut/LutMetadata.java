@@ -26,6 +26,7 @@ public class LutMetadata {
 
     private static final String GAME_SETTINGS_KEY = "game_settings";
     private static final String VALUE_TYPE_KEY = "value_type";
+    private static final String OBJECTIVE_KEY = "objective";
     private static final Set<String> RESERVED_KEYS = Set.of(GAME_SETTINGS_KEY, VALUE_TYPE_KEY);
 
     private final GameSettings gameSettings;
@@ -72,6 +73,23 @@ public class LutMetadata {
         return additionalMetadata;
     }
 
+    /**
+     * Gets the objective of the values in the LUT. LUTs
+     * without an objective store win percentages.
+     * @return The objective of the values in the LUT.
+     */
+    public LutObjective getObjective() {
+        JsonNode objective = additionalMetadata.get(OBJECTIVE_KEY);
+        if (objective == null)
+            return LutObjective.WIN_PERCENT;
+
+        return LutObjective.getByName(objective.asText());
+    }
+
+    public void setObjective(LutObjective objective) {
+        addMetadata(OBJECTIVE_KEY, objective.getName());
+    }
+
     public void addMetadata(String key, JsonNode value) {
         if (RESERVED_KEYS.contains(key))
             throw new IllegalArgumentException("\"" + key + "\" is a reserved key");
@@ -0,0 +1,197 @@
+package net.royalur.lut;
+
+import net.royalur.rules.simple.fast.FastSimpleGame;
+
+/**
+ * A quantity that is calculated for every game state by
+ * {@link LutTrainer#trainObjectives}, from the values of the
+ * states that each roll leads to. The values are stored from
+ * the perspective of the player whose turn it is.
+ */
+public interface LutObjective {
+
+    /**
+     * The chance that the player to move wins, as a percentage.
+     */
+    LutObjective WIN_PERCENT = new WinPercent();
+
+    /**
+     * The expected number of turns left in the game, including the
+     * current turn. A turn ends when the other player is to move,
+     * or when the game ends.
+     */
+    LutObjective REMAINING_TURNS = new RemainingTurns();
+
+    /**
+     * The chance that either player captures a piece before
+     * the end of the game, as a percentage.
+     */
+    LutObjective CAPTURE_PERCENT = new CapturePercent();
+
+    /**
+     * Gets the name of this objective, which is stored in
+     * the metadata of the tables that are trained for it.
+     * @return The name of this objective.
+     */
+    String getName();
+
+    /**
+     * Gets whether the values of this objective are percentages, and
+     * so can be stored using {@link net.royalur.lut.buffer.ValueType#PERCENT16}.
+     * @return Whether the values of this objective are percentages.
+     */
+    boolean isPercentage();
+
+    /**
+     * Gets the value of a state where the game has finished,
+     * from the perspective of the player that won.
+     * @return The value of a finished state.
+     */
+    double getFinishedValue();
+
+    /**
+     * Gets the value to start training from for states that are not finished.
+     * @return The initial value of unfinished states.
+     */
+    double getInitialValue();
+
+    /**
+     * Converts a value from the perspective of one player
+     * into the perspective of the other player.
+     * @param value The value from the perspective of one player.
+     * @return The value from the perspective of the other player.
+     */
+    double fromOpponentPerspective(double value);
+
+    /**
+     * Calculates the value of a roll, given the value of the state that it
+     * leads to from the perspective of the player that rolled.
+     * @param nextValue The value of the next state.
+     * @param moveStatus The status flags of the move that was made, or
+     *                   0 if no move could be made.
+     * @param turnEnded Whether the turn of the player that rolled ended.
+     * @return The value of the roll.
+     */
+    double reduce(double nextValue, int moveStatus, boolean turnEnded);
+
+    /**
+     * Gets the objective with the name {@code name}.
+     * @param name The name of the objective.
+     * @return The objective with the given name.
+     */
+    static LutObjective getByName(String name) {
+        for (LutObjective objective : new LutObjective[] {WIN_PERCENT, REMAINING_TURNS, CAPTURE_PERCENT}) {
+            if (objective.getName().equals(name))
+                return objective;
+        }
+        throw new IllegalArgumentException("Unknown objective " + name);
+    }
+
+    /**
+     * The chance that the player to move wins, as a percentage.
+     */
+    class WinPercent implements LutObjective {
+
+        @Override
+        public String getName() {
+            return "win-percent";
+        }
+
+        @Override
+        public boolean isPercentage() {
+            return true;
+        }
+
+        @Override
+        public double getFinishedValue() {
+            return 100.0;
+        }
+
+        @Override
+        public double getInitialValue() {
+            return 50.0;
+        }
+
+        @Override
+        public double fromOpponentPerspective(double value) {
+            return 100.0 - value;
+        }
+
+        @Override
+        public double reduce(double nextValue, int moveStatus, boolean turnEnded) {
+            return nextValue;
+        }
+    }
+
+    /**
+     * The expected number of turns left in the game, including the current turn.
+     */
+    class RemainingTurns implements LutObjective {
+
+        @Override
+        public String getName() {
+            return "remaining-turns";
+        }
+
+        @Override
+        public boolean isPercentage() {
+            return false;
+        }
+
+        @Override
+        public double getFinishedValue() {
+            return 0.0;
+        }
+
+        @Override
+        public double getInitialValue() {
+            return 0.0;
+        }
+
+        @Override
+        public double fromOpponentPerspective(double value) {
+            return value;
+        }
+
+        @Override
+        public double reduce(double nextValue, int moveStatus, boolean turnEnded) {
+            return (turnEnded ? nextValue + 1.0 : nextValue);
+        }
+    }
+
+    /**
+     * The chance that either player captures a piece before the end of the game.
+     */
+    class CapturePercent implements LutObjective {
+
+        @Override
+        public String getName() {
+            return "capture-percent";
+        }
+
+        @Override
+        public boolean isPercentage() {
+            return true;
+        }
+
+        @Override
+        public double getFinishedValue() {
+            return 0.0;
+        }
+
+        @Override
+        public double getInitialValue() {
+            return 0.0;
+        }
+
+        @Override
+        public double fromOpponentPerspective(double value) {
+            return value;
+        }
+
+        @Override
+        public double reduce(double nextValue, int moveStatus, boolean turnEnded) {
+            return (FastSimpleGame.didMoveCapturePiece(moveStatus) ? 100.0 : nextValue);
+        }
+    }
+}
@@ -1,21 +1,29 @@
 package net.royalur.lut;
 
+import net.royalur.agent.FastAgent;
 import net.royalur.cli.CLI;
 import net.royalur.lut.buffer.*;
 import net.royalur.lut.store.LutMap;
 import net.royalur.lut.store.OrderedUInt32BufferSet;
+import net.royalur.lut.store.WideKeyList;
+import net.royalur.lut.store.WideLutMap;
 import net.royalur.model.*;
 import net.royalur.notation.JsonNotation;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
+import net.royalur.rules.simple.fast.FastSimpleEngineType;
 import net.royalur.rules.simple.fast.FastSimpleFlags;
 import net.royalur.rules.simple.fast.FastSimpleGame;
 import net.royalur.rules.simple.fast.FastSimpleMoveList;
+import net.royalur.rules.simple.fast.FastSimpleStateCounter;
 
+import javax.annotation.Nullable;
 import java.io.*;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * A lookup table based upon game states.
@@ -25,25 +33,90 @@ public class LutTrainer {
     private static final int DEFAULT_UPPER_KEY_LIMIT = 64;
 
     private final GameSettings settings;
-    private final GameStateEncoding encoding;
+    private final @Nullable GameStateEncoding encoding;
+    private final @Nullable WideGameStateEncoding wideEncoding;
     private final ValueType trainingValueType;
     private final JsonNotation jsonNotation;
     private final FastSimpleFlags flags;
+    private final FastSimpleStateCounter stateCounter;
 
-    public LutTrainer(
+    /**
+     * The engine used to apply rolls and moves to the states being trained.
+     */
+    private final FastSimpleEngineType engineType;
+
+    private LutTrainer(
             GameSettings settings,
-            GameStateEncoding encoding,
+            @Nullable GameStateEncoding encoding,
+            @Nullable WideGameStateEncoding wideEncoding,
             ValueType trainingValueType,
-            JsonNotation jsonNotation
+            JsonNotation jsonNotation,
+            FastSimpleEngineType engineType
     ) {
         this.settings = settings;
         this.encoding = encoding;
+        this.wideEncoding = wideEncoding;
         this.trainingValueType = trainingValueType;
         this.jsonNotation = jsonNotation;
         this.flags = new FastSimpleFlags(settings);
+        this.stateCounter = new FastSimpleStateCounter(flags);
+        this.engineType = engineType;
+    }
+
+    public LutTrainer(
+            GameSettings settings,
+            GameStateEncoding encoding,
+            ValueType trainingValueType,
+            JsonNotation jsonNotation,
+            FastSimpleEngineType engineType
+    ) {
+        this(settings, encoding, null, trainingValueType, jsonNotation, engineType);
+    }
+
+    public LutTrainer(
+            GameSettings settings,
+            GameStateEncoding encoding,
+            ValueType trainingValueType,
+            JsonNotation jsonNotation
+    ) {
+        this(settings, encoding, trainingValueType, jsonNotation, FastSimpleEngineType.BOARD);
+    }
+
+    public LutTrainer(
+            GameSettings settings,
+            WideGameStateEncoding wideEncoding,
+            ValueType trainingValueType,
+            JsonNotation jsonNotation,
+            FastSimpleEngineType engineType
+    ) {
+        this(settings, null, wideEncoding, trainingValueType, jsonNotation, engineType);
+    }
+
+    public LutTrainer(
+            GameSettings settings,
+            WideGameStateEncoding wideEncoding,
+            ValueType trainingValueType,
+            JsonNotation jsonNotation
+    ) {
+        this(settings, wideEncoding, trainingValueType, jsonNotation, FastSimpleEngineType.BOARD);
+    }
+
+    private GameStateEncoding getNarrowEncoding() {
+        if (encoding == null)
+            throw new IllegalStateException("This trainer was constructed with a wide encoding");
+
+        return encoding;
+    }
+
+    private WideGameStateEncoding getWideEncoding() {
+        if (wideEncoding == null)
+            throw new IllegalStateException("This trainer was constructed with a narrow encoding");
+
+        return wideEncoding;
     }
 
     public UInt32ValueBuffer populateKeys(int upperKeyFilter) {
+        GameStateEncoding encoding = getNarrowEncoding();
         OrderedUInt32BufferSet keys = new OrderedUInt32BufferSet();
 
         AtomicInteger entryCount = new AtomicInteger(0);
@@ -64,11 +137,24 @@ public class LutTrainer {
     }
 
     public LutMap populateNewMap(int upperKeyFilter) {
+        return populateNewObjectiveMaps(upperKeyFilter, new LutObjective[] {LutObjective.WIN_PERCENT})[0];
+    }
+
+    /**
+     * Populates a map for each objective, that share the same keys.
+     * The keys are only found once, and the states are only looped
+     * once to set the initial values of every map.
+     */
+    private LutMap[] populateNewObjectiveMaps(int upperKeyFilter, LutObjective[] objectives) {
         UInt32ValueBuffer keys = populateKeys(upperKeyFilter);
         int entryCount = keys.getCapacity();
 
-        FloatValueBuffer values = trainingValueType.createFloatBuffer(entryCount);
-        LutMap map = new LutMap(entryCount, keys, values);
+        LutMap[] maps = new LutMap[objectives.length];
+        for (int index = 0; index < objectives.length; ++index) {
+            FloatValueBuffer values = trainingValueType.createFloatBuffer(entryCount);
+            maps[index] = new LutMap(entryCount, keys, values);
+        }
+        GameStateEncoding encoding = getNarrowEncoding();
 
         flags.loopLightGameStates(game -> {
             if (!game.isLightTurn)
@@ -80,13 +166,18 @@ public class LutTrainer {
             if (upperKey != upperKeyFilter)
                 return;
 
-            float value = (game.isFinished ? 100.0f : 50.0f);
-            map.set(lowerKey, value);
+            int entryIndex = maps[0].indexOfKey(lowerKey);
+            for (int index = 0; index < objectives.length; ++index) {
+                LutObjective objective = objectives[index];
+                double value = (game.isFinished ? objective.getFinishedValue() : objective.getInitialValue());
+                maps[index].getValueBuffer().set(entryIndex, value);
+            }
         });
-        return map;
+        return maps;
     }
 
     private Set<Integer> findAllUpperKeys() {
+        GameStateEncoding encoding = getNarrowEncoding();
         Set<Integer> upperKeys = new HashSet<>();
         flags.loopLightGameStates(game -> {
             if (!game.isLightTurn)
@@ -132,20 +223,105 @@ public class LutTrainer {
     public Lut populateNewLut(int upperKeyLimit) {
         LutMetadata metadata = new LutMetadata(settings, trainingValueType);
         LutMap[] maps = populateNewMaps(upperKeyLimit);
-        return new Lut(encoding, metadata, maps);
+        return new Lut(getNarrowEncoding(), metadata, maps);
     }
 
     public Lut populateNewLut() {
         return populateNewLut(DEFAULT_UPPER_KEY_LIMIT);
     }
 
+    /**
+     * Populates a new table for each objective,
+     * that can be trained using {@link #trainObjectives}.
+     */
+    public Lut[] populateNewLuts(LutObjective[] objectives, int upperKeyLimit) {
+        for (LutObjective objective : objectives) {
+            Lut.checkValueType(objective, trainingValueType);
+        }
+
+        Set<Integer> upperKeys = findAllUpperKeys();
+        int maxUpperKey = calculateMaxUnsigned(upperKeys);
+        if (Long.compareUnsigned(maxUpperKey, upperKeyLimit) >= 0) {
+            throw new IllegalArgumentException(
+                    "upperKeyLimit exceeds error limit: " + maxUpperKey + " >= " + upperKeyLimit
+            );
+        }
+
+        LutMap[][] maps = new LutMap[objectives.length][maxUpperKey + 1];
+        for (int upperKey = 0; upperKey <= maxUpperKey; ++upperKey) {
+            LutMap[] upperKeyMaps = populateNewObjectiveMaps(upperKey, objectives);
+            for (int index = 0; index < objectives.length; ++index) {
+                maps[index][upperKey] = upperKeyMaps[index];
+            }
+        }
+
+        Lut[] luts = new Lut[objectives.length];
+        for (int index = 0; index < objectives.length; ++index) {
+            LutMetadata metadata = new LutMetadata(settings, trainingValueType);
+            metadata.setObjective(objectives[index]);
+            luts[index] = new Lut(getNarrowEncoding(), metadata, maps[index]);
+        }
+        return luts;
+    }
+
+    public Lut[] populateNewLuts(LutObjective[] objectives) {
+        return populateNewLuts(objectives, DEFAULT_UPPER_KEY_LIMIT);
+    }
+
+    /**
+     * Populates the map of the states where light and dark have the
+     * given number of pieces left to play. The states of each map are
+     * looped separately, so that only one map's keys are held at once.
+     */
+    public WideLutMap populateNewWideMap(int lightPieces, int darkPieces) {
+        WideGameStateEncoding encoding = getWideEncoding();
+        int keyLength = encoding.getLowerKeyLength();
+        long[] lowerKey = encoding.createLowerKey();
+
+        WideKeyList keyList = new WideKeyList(keyLength);
+        flags.loopLightGameStates(lightPieces, darkPieces, game -> {
+            encoding.encodeGameState(game, lowerKey);
+            keyList.add(lowerKey);
+        });
+        int entryCount = keyList.getEntryCount();
+        UInt64ValueBuffer keys = keyList.toSortedBuffer();
+
+        FloatValueBuffer values = trainingValueType.createFloatBuffer(entryCount);
+        WideLutMap map = new WideLutMap(entryCount, keyLength, keys, values);
+
+        flags.loopLightGameStates(lightPieces, darkPieces, game -> {
+            encoding.encodeGameState(game, lowerKey);
+            float value = (game.isFinished ? 100.0f : 50.0f);
+            map.set(lowerKey, value);
+        });
+        return map;
+    }
+
+    public WideLut populateNewWideLut() {
+        WideGameStateEncoding encoding = getWideEncoding();
+        if (!(encoding instanceof WideSimpleGameStateEncoding simpleEncoding)) {
+            throw new UnsupportedOperationException(
+                    "Populating is only supported for WideSimpleGameStateEncoding"
+            );
+        }
+
+        int pieceCount = settings.getStartingPieceCount();
+        WideLutMap[] maps = new WideLutMap[encoding.getUpperKeyCount()];
+        for (int lightPieces = 0; lightPieces <= pieceCount; ++lightPieces) {
+            for (int darkPieces = 0; darkPieces <= pieceCount; ++darkPieces) {
+                int upperKey = simpleEncoding.calcUpperKey(lightPieces, darkPieces);
+                maps[upperKey] = populateNewWideMap(lightPieces, darkPieces);
+            }
+        }
+        LutMetadata metadata = new LutMetadata(settings, trainingValueType);
+        return new WideLut(encoding, metadata, maps);
+    }
+
     private double iterateState(
-            Lut lut,
-            FastSimpleGame game,
+            WinPercentLut lut,
+            FastSimpleEngine game,
             float[] probabilities,
-            FastSimpleGame rollGame,
-            FastSimpleGame moveGame,
-            FastSimpleGame tempGame,
+            FastSimpleEngine tempGame,
             FastSimpleMoveList moveList
     ) {
         double newValue = 0.0f;
@@ -154,23 +330,23 @@ public class LutTrainer {
             if (prob <= 0.0f)
                 continue;
 
-            rollGame.copyFrom(game);
-            rollGame.applyRoll(roll, moveList);
+            int rollUndoToken = game.applyRoll(roll, moveList);
 
             double bestValue;
-            if (rollGame.isWaitingForMove()) {
+            if (game.isWaitingForMove()) {
                 bestValue = 0.0;
 
                 for (int moveIndex = 0; moveIndex < moveList.moveCount; ++moveIndex) {
-                    moveGame.copyFrom(rollGame);
-                    moveGame.applyMove(moveList.moves[moveIndex]);
+                    int moveUndoToken = game.applyMove(moveList.moves[moveIndex]);
+                    double moveValue = lut.getLightWinPercent(game, tempGame);
+                    game.undoMove(moveUndoToken);
 
-                    double moveValue = lut.getLightWinPercent(moveGame, tempGame);
                     bestValue = Math.max(bestValue, moveValue);
                 }
             } else {
-                bestValue = lut.getLightWinPercent(rollGame, tempGame);
+                bestValue = lut.getLightWinPercent(game, tempGame);
             }
+            game.undoRoll(rollUndoToken);
             newValue += prob * bestValue;
         }
 
@@ -178,20 +354,215 @@ public class LutTrainer {
         return Math.abs(lastValue - newValue);
     }
 
+    /**
+     * Calculates the win percentage of a game state where the player to
+     * move follows a fixed policy, instead of playing optimally. The value
+     * of states where it is the turn of the other player is read from
+     * {@code opponentLut}, as the symmetrical states in each table are
+     * from the perspective of the agent that is to move.
+     */
+    private double evaluateState(
+            WinPercentLut lut,
+            WinPercentLut opponentLut,
+            FastAgent agent,
+            FastSimpleEngine game,
+            float[] probabilities,
+            FastSimpleEngine tempGame,
+            FastSimpleMoveList moveList
+    ) {
+        double newValue = 0.0f;
+        for (int roll = 0; roll < probabilities.length; ++roll) {
+            float prob = probabilities[roll];
+            if (prob <= 0.0f)
+                continue;
+
+            int rollUndoToken = game.applyRoll(roll, moveList);
+
+            double value;
+            if (game.isWaitingForMove()) {
+                int moveUndoToken = game.applyMove(agent.decideMove(game, moveList));
+                value = (game.isLightTurn() ? lut : opponentLut).getLightWinPercent(game, tempGame);
+                game.undoMove(moveUndoToken);
+            } else {
+                value = (game.isLightTurn() ? lut : opponentLut).getLightWinPercent(game, tempGame);
+            }
+            game.undoRoll(rollUndoToken);
+            newValue += prob * value;
+        }
+
+        double lastValue = lut.updateLightWinPercent(game, newValue);
+        return Math.abs(lastValue - newValue);
+    }
+
+    /**
+     * Updates the value of a single game state, and returns the change
+     * in its value. A separate instance is created for each thread.
+     */
+    @FunctionalInterface
+    private interface StateIterator {
+        double iterateState(FastSimpleEngine game);
+    }
+
+    /**
+     * Saves the tables that are being trained.
+     */
+    @FunctionalInterface
+    private interface CheckpointWriter {
+        void write() throws IOException;
+    }
+
+    private Supplier<StateIterator> createTrainingIterator(WinPercentLut lut) {
+        return () -> {
+            FastSimpleEngine tempGame = engineType.create(settings);
+            FastSimpleMoveList moveList = new FastSimpleMoveList();
+            float[] probabilities = settings.getDice().createDice().getRollProbabilities();
+            return game -> iterateState(lut, game, probabilities, tempGame, moveList);
+        };
+    }
+
+    private Supplier<StateIterator> createEvaluationIterator(
+            WinPercentLut lut1,
+            Supplier<FastAgent> agent1Generator,
+            WinPercentLut lut2,
+            Supplier<FastAgent> agent2Generator
+    ) {
+        return () -> {
+            FastAgent agent1 = agent1Generator.get();
+            FastAgent agent2 = (lut1 == lut2 ? agent1 : agent2Generator.get());
+            FastSimpleEngine tempGame = engineType.create(settings);
+            FastSimpleMoveList moveList = new FastSimpleMoveList();
+            float[] probabilities = settings.getDice().createDice().getRollProbabilities();
+            return game -> {
+                double change = evaluateState(lut1, lut2, agent1, game, probabilities, tempGame, moveList);
+                if (lut1 == lut2)
+                    return change;
+
+                return Math.max(
+                        change,
+                        evaluateState(lut2, lut1, agent2, game, probabilities, tempGame, moveList)
+                );
+            };
+        };
+    }
+
+    /**
+     * Reads the value of every objective for a game state, from the
+     * perspective of the light player. The tables share the same keys,
+     * so the state is only encoded and searched for once.
+     */
+    private void readObjectiveValues(
+            Lut[] luts,
+            LutObjective[] objectives,
+            FastSimpleEngine game,
+            FastSimpleEngine tempGame,
+            double[] output
+    ) {
+        long key = getNarrowEncoding().encodeSymmetricalGameState(game, tempGame);
+        int upperKey = GameStateEncoding.calcUpperKey(key);
+        int lowerKey = GameStateEncoding.calcLowerKey(key);
+        int entryIndex = luts[0].getMap(upperKey).indexOfKey(lowerKey);
+        for (int index = 0; index < luts.length; ++index) {
+            double value = luts[index].getMap(upperKey).getValueBuffer().getDouble(entryIndex);
+            output[index] = (game.isLightTurn() ? value : objectives[index].fromOpponentPerspective(value));
+        }
+    }
+
+    private static void reduceObjectiveValues(
+            LutObjective[] objectives,
+            double[] values,
+            int moveStatus,
+            boolean turnEnded
+    ) {
+        for (int index = 0; index < objectives.length; ++index) {
+            values[index] = objectives[index].reduce(values[index], moveStatus, turnEnded);
+        }
+    }
+
+    /**
+     * Updates the values of every objective for a game state in one sweep.
+     * The moves are chosen to maximise the first objective, and the other
+     * objectives are calculated for the moves that were chosen.
+     */
+    private double iterateObjectives(
+            Lut[] luts,
+            LutObjective[] objectives,
+            FastSimpleEngine game,
+            float[] probabilities,
+            FastSimpleEngine tempGame,
+            FastSimpleMoveList moveList,
+            double[] moveValues,
+            double[] bestValues,
+            double[] newValues
+    ) {
+        Arrays.fill(newValues, 0.0);
+        for (int roll = 0; roll < probabilities.length; ++roll) {
+            float prob = probabilities[roll];
+            if (prob <= 0.0f)
+                continue;
+
+            int rollUndoToken = game.applyRoll(roll, moveList);
+            if (game.isWaitingForMove()) {
+                for (int moveIndex = 0; moveIndex < moveList.moveCount; ++moveIndex) {
+                    int moveUndoToken = game.applyMove(moveList.moves[moveIndex]);
+                    readObjectiveValues(luts, objectives, game, tempGame, moveValues);
+                    boolean turnEnded = (game.isFinished() || !game.isLightTurn());
+                    reduceObjectiveValues(objectives, moveValues, moveUndoToken, turnEnded);
+                    game.undoMove(moveUndoToken);
+
+                    if (moveIndex == 0 || moveValues[0] > bestValues[0]) {
+                        System.arraycopy(moveValues, 0, bestValues, 0, moveValues.length);
+                    }
+                }
+            } else {
+                readObjectiveValues(luts, objectives, game, tempGame, bestValues);
+                reduceObjectiveValues(objectives, bestValues, 0, true);
+            }
+            game.undoRoll(rollUndoToken);
+
+            for (int index = 0; index < newValues.length; ++index) {
+                newValues[index] += prob * bestValues[index];
+            }
+        }
+
+        long key = getNarrowEncoding().encodeGameState(game);
+        int upperKey = GameStateEncoding.calcUpperKey(key);
+        int lowerKey = GameStateEncoding.calcLowerKey(key);
+        int entryIndex = luts[0].getMap(upperKey).indexOfKey(lowerKey);
+
+        double maxChange = 0.0;
+        for (int index = 0; index < luts.length; ++index) {
+            FloatValueBuffer values = luts[index].getMap(upperKey).getValueBuffer();
+            double lastValue = values.set(entryIndex, newValues[index]);
+            maxChange = Math.max(maxChange, Math.abs(lastValue - newValues[index]));
+        }
+        return maxChange;
+    }
+
+    private Supplier<StateIterator> createObjectivesIterator(Lut[] luts, LutObjective[] objectives) {
+        return () -> {
+            FastSimpleEngine tempGame = engineType.create(settings);
+            FastSimpleMoveList moveList = new FastSimpleMoveList();
+            float[] probabilities = settings.getDice().createDice().getRollProbabilities();
+            double[] moveValues = new double[luts.length];
+            double[] bestValues = new double[luts.length];
+            double[] newValues = new double[luts.length];
+            return game -> iterateObjectives(
+                    luts, objectives, game, probabilities, tempGame, moveList,
+                    moveValues, bestValues, newValues
+            );
+        };
+    }
+
     private double performTrainingIterationSection(
-            Lut lut,
+            Supplier<StateIterator> iteratorGenerator,
             Function<FastSimpleGame, Boolean> stateFilter,
             int fromIndex,
             int toIndex
     ) {
         AtomicInteger indexCounter = new AtomicInteger(0);
         AtomicReference<Double> maxChange = new AtomicReference<>(0.0d);
-
-        FastSimpleGame rollGame = new FastSimpleGame(settings);
-        FastSimpleGame moveGame = new FastSimpleGame(settings);
-        FastSimpleGame tempGame = new FastSimpleGame(settings);
-        FastSimpleMoveList moveList = new FastSimpleMoveList();
-        float[] probabilities = settings.getDice().createDice().getRollProbabilities();
+        StateIterator iterator = iteratorGenerator.get();
+        FastSimpleEngine engineGame = engineType.create(settings);
 
         flags.loopLightGameStates(game -> {
             if (game.isFinished || !stateFilter.apply(game))
@@ -201,11 +572,14 @@ public class LutTrainer {
             if (index < fromIndex || index >= toIndex)
                 return;
 
-            double change = iterateState(
-                    lut, game, probabilities,
-                    rollGame, moveGame, tempGame,
-                    moveList
-            );
+            // The states are looped using a FastSimpleGame, so they are
+            // copied into a game of the engine used for training.
+            FastSimpleEngine state = game;
+            if (game.getEngineType() != engineType) {
+                engineGame.copyFrom(game);
+                state = engineGame;
+            }
+            double change = iterator.iterateState(state);
             if (change > maxChange.get()) {
                 maxChange.set(change);
             }
@@ -214,7 +588,7 @@ public class LutTrainer {
     }
 
     private double performTrainingIteration(
-            Lut lut,
+            Supplier<StateIterator> iteratorGenerator,
             int stateCount,
             Function<FastSimpleGame, Boolean> stateFilter
     ) {
@@ -234,7 +608,7 @@ public class LutTrainer {
             Thread thread = new Thread(() -> {
                 try {
                     double change = performTrainingIterationSection(
-                            lut, stateFilter,
+                            iteratorGenerator, stateFilter,
                             fromIndex, toIndex
                     );
                     synchronized (maxChange) {
@@ -264,39 +638,31 @@ public class LutTrainer {
         return maxChange.get();
     }
 
-    public void train(
-            Lut lut,
-            File checkpointFile,
-            ValueType outputValueType
-    ) throws IOException {
-
-        train(lut, checkpointFile, outputValueType, 0.001d);
+    /**
+     * Counts the unfinished states where it is light's turn, and where
+     * the scores of the players are the given min and max scores.
+     */
+    private int countTrainingStates(int minScore, int maxScore) {
+        long count = stateCounter.countLightStatesWithScores(minScore, maxScore);
+        if (minScore != maxScore) {
+            count += stateCounter.countLightStatesWithScores(maxScore, minScore);
+        }
+        return Math.toIntExact(count);
     }
 
-    public Lut train(
-            Lut lut,
-            File checkpointFile,
-            ValueType outputValueType,
-            double tolerance
+    /**
+     * Repeatedly updates the states of each set of scores until the
+     * maximum change in their values is within {@code tolerance}. The
+     * sets of scores are updated from the end of the game backwards, as
+     * states can only lead to states with the same or higher scores.
+     * @return The maximum change in the last iteration of any set of scores.
+     */
+    private double iterateToConvergence(
+            Supplier<StateIterator> iteratorGenerator,
+            double tolerance,
+            CheckpointWriter checkpointWriter
     ) throws IOException {
 
-        long trainStart = System.nanoTime();
-        lut = lut.convertValueTypes(trainingValueType);
-
-        System.out.printf(
-                "Training in %s to a stopping precision of %.12f\n",
-                trainingValueType.getTextID(), tolerance
-        );
-        System.out.printf(
-                "Checkpoints will be saved to %s\n",
-                checkpointFile.getAbsolutePath()
-        );
-        System.out.printf(
-                "The final output will be saved in %s\n",
-                outputValueType.getTextID()
-        );
-        System.out.println();
-
         int iteration = 0;
         int pieceCount = settings.getStartingPieceCount();
         double overallMaxChange = 0.0;
@@ -311,7 +677,7 @@ public class LutTrainer {
                     int max = Math.max(game.light.score, game.dark.score);
                     return min == minScoreFinal && max == maxScoreFinal;
                 };
-                int stateCount = flags.countStates(stateFilter);
+                int stateCount = countTrainingStates(minScore, maxScore);
 
                 long overallStart = System.nanoTime();
 
@@ -320,7 +686,7 @@ public class LutTrainer {
                 Arrays.fill(lastMaxChanges, Double.POSITIVE_INFINITY);
                 do {
                     long start = System.nanoTime();
-                    maxChange = performTrainingIteration(lut, stateCount, stateFilter);
+                    maxChange = performTrainingIteration(iteratorGenerator, stateCount, stateFilter);
                     double durationMs = (System.nanoTime() - start) / 1e6;
                     System.out.printf(
                             "%d. scores = [%d, %d], max diff = %s (%s ms)\n",
@@ -357,7 +723,7 @@ public class LutTrainer {
 
                     // Save checkpoints periodically.
                     if (iteration % 10 == 0) {
-                        lut.write(trainingValueType, jsonNotation, checkpointFile);
+                        checkpointWriter.write();
                     }
                 } while ((tolerance > 0 && maxChange > tolerance) || (tolerance <= 0 && maxChange > 0));
 
@@ -373,6 +739,47 @@ public class LutTrainer {
                 }
             }
         }
+        return overallMaxChange;
+    }
+
+    public void train(
+            WinPercentLut lut,
+            File checkpointFile,
+            ValueType outputValueType
+    ) throws IOException {
+
+        train(lut, checkpointFile, outputValueType, 0.001d);
+    }
+
+    public WinPercentLut train(
+            WinPercentLut lut,
+            File checkpointFile,
+            ValueType outputValueType,
+            double tolerance
+    ) throws IOException {
+
+        long trainStart = System.nanoTime();
+        lut = lut.convertValueTypes(trainingValueType);
+
+        System.out.printf(
+                "Training in %s to a stopping precision of %.12f\n",
+                trainingValueType.getTextID(), tolerance
+        );
+        System.out.printf(
+                "Checkpoints will be saved to %s\n",
+                checkpointFile.getAbsolutePath()
+        );
+        System.out.printf(
+                "The final output will be saved in %s\n",
+                outputValueType.getTextID()
+        );
+        System.out.println();
+
+        WinPercentLut trainingLut = lut;
+        double overallMaxChange = iterateToConvergence(
+                createTrainingIterator(lut), tolerance,
+                () -> trainingLut.write(trainingValueType, jsonNotation, checkpointFile)
+        );
         lut.getMetadata().addMetadata("target-precision", tolerance);
         if (!Double.isInfinite(overallMaxChange)) {
             lut.getMetadata().addMetadata("training-precision", overallMaxChange);
@@ -396,6 +803,196 @@ public class LutTrainer {
         return lut;
     }
 
+    /**
+     * Calculates the exact win percentages when two agents that follow
+     * fixed policies play against each other, instead of playing optimally.
+     * <p>
+     * The values of each table are the chance that the player to move wins,
+     * when it is played by that table's agent. Therefore, {@code lut1} gives
+     * the chance that light wins from states where it is light's turn and
+     * light is played by agent 1, and {@code lut2} gives the same for agent 2.
+     * The agents must be deterministic. If the same table is given for
+     * both agents, then the agent is evaluated against itself.
+     * @param lut1 The table to train for agent 1.
+     * @param agent1Generator Creates agent 1 for each thread.
+     * @param checkpointFile1 The file to save the table of agent 1 to.
+     * @param lut2 The table to train for agent 2.
+     * @param agent2Generator Creates agent 2 for each thread.
+     * @param checkpointFile2 The file to save the table of agent 2 to.
+     * @param outputValueType The value type to save the final tables with.
+     * @param tolerance The maximum change in values at which to stop.
+     * @return The trained tables of agent 1 and agent 2.
+     */
+    public WinPercentLut[] evaluatePolicies(
+            WinPercentLut lut1,
+            Supplier<FastAgent> agent1Generator,
+            File checkpointFile1,
+            WinPercentLut lut2,
+            Supplier<FastAgent> agent2Generator,
+            File checkpointFile2,
+            ValueType outputValueType,
+            double tolerance
+    ) throws IOException {
+
+        boolean selfPlay = (lut1 == lut2);
+        if (selfPlay && !checkpointFile1.equals(checkpointFile2))
+            throw new IllegalArgumentException("The same table must be saved to the same file");
+        if (!selfPlay && checkpointFile1.equals(checkpointFile2))
+            throw new IllegalArgumentException("Different tables must be saved to different files");
+
+        long evaluateStart = System.nanoTime();
+        WinPercentLut trainingLut1 = lut1.convertValueTypes(trainingValueType);
+        WinPercentLut trainingLut2 = (selfPlay ? trainingLut1 : lut2.convertValueTypes(trainingValueType));
+
+        System.out.printf(
+                "Evaluating policies in %s to a stopping precision of %.12f\n",
+                trainingValueType.getTextID(), tolerance
+        );
+        System.out.println();
+
+        double overallMaxChange = iterateToConvergence(
+                createEvaluationIterator(trainingLut1, agent1Generator, trainingLut2, agent2Generator),
+                tolerance,
+                () -> {
+                    trainingLut1.write(trainingValueType, jsonNotation, checkpointFile1);
+                    if (!selfPlay) {
+                        trainingLut2.write(trainingValueType, jsonNotation, checkpointFile2);
+                    }
+                }
+        );
+        for (WinPercentLut lut : (selfPlay ? List.of(trainingLut1) : List.of(trainingLut1, trainingLut2))) {
+            lut.getMetadata().addMetadata("target-precision", tolerance);
+            if (!Double.isInfinite(overallMaxChange)) {
+                lut.getMetadata().addMetadata("training-precision", overallMaxChange);
+            }
+        }
+
+        double totalDurationMs = (System.nanoTime() - evaluateStart) / 1e6d;
+        System.out.println();
+        System.out.printf(
+                "Finished policy evaluation in %s ms!\n",
+                CLI.MS_DURATION.format(totalDurationMs)
+        );
+
+        trainingLut1.write(outputValueType, jsonNotation, checkpointFile1);
+        if (!selfPlay) {
+            trainingLut2.write(outputValueType, jsonNotation, checkpointFile2);
+        }
+        return new WinPercentLut[] {trainingLut1, trainingLut2};
+    }
+
+    /**
+     * Calculates the exact win percentages of an agent that follows
+     * a fixed policy when it plays against itself.
+     * @param lut The table to train.
+     * @param agentGenerator Creates the agent for each thread.
+     * @param checkpointFile The file to save the table to.
+     * @param outputValueType The value type to save the final table with.
+     * @param tolerance The maximum change in values at which to stop.
+     * @return The trained table.
+     */
+    public WinPercentLut evaluatePolicy(
+            WinPercentLut lut,
+            Supplier<FastAgent> agentGenerator,
+            File checkpointFile,
+            ValueType outputValueType,
+            double tolerance
+    ) throws IOException {
+
+        return evaluatePolicies(
+                lut, agentGenerator, checkpointFile,
+                lut, agentGenerator, checkpointFile,
+                outputValueType, tolerance
+        )[0];
+    }
+
+    /**
+     * Trains a table for each objective at the same time, so that the
+     * states and their successors are only generated and looked up once
+     * for all of the objectives. The moves are chosen to maximise the
+     * first objective. The tables must have been created together using
+     * {@link #populateNewLuts}, or read from files that were, so that
+     * they share the same keys.
+     * @param luts The table to train for each objective.
+     * @param objectives The objectives to train.
+     * @param checkpointFiles The file to save the table of each objective to.
+     * @param outputValueType The value type to save the final tables with.
+     * @param tolerance The maximum change in values at which to stop.
+     * @return The trained table of each objective.
+     */
+    public Lut[] trainObjectives(
+            Lut[] luts,
+            LutObjective[] objectives,
+            File[] checkpointFiles,
+            ValueType outputValueType,
+            double tolerance
+    ) throws IOException {
+
+        if (luts.length == 0)
+            throw new IllegalArgumentException("At least one objective is required");
+        if (luts.length != objectives.length || luts.length != checkpointFiles.length)
+            throw new IllegalArgumentException("There must be one table and one file for each objective");
+
+        for (int index = 0; index < luts.length; ++index) {
+            LutObjective objective = objectives[index];
+            if (!luts[index].getObjective().getName().equals(objective.getName())) {
+                throw new IllegalArgumentException(
+                        "The table for " + objective.getName() + " was created for "
+                                + luts[index].getObjective().getName()
+                );
+            }
+            Lut.checkValueType(objective, trainingValueType);
+            Lut.checkValueType(objective, outputValueType);
+        }
+        for (Lut lut : luts) {
+            if (lut.getMaps().length != luts[0].getMaps().length)
+                throw new IllegalArgumentException("The tables must share the same keys");
+
+            for (int upperKey = 0; upperKey < lut.getMaps().length; ++upperKey) {
+                if (lut.getMap(upperKey).getEntryCount() != luts[0].getMap(upperKey).getEntryCount())
+                    throw new IllegalArgumentException("The tables must share the same keys");
+            }
+        }
+
+        long trainStart = System.nanoTime();
+        Lut[] trainingLuts = new Lut[luts.length];
+        for (int index = 0; index < luts.length; ++index) {
+            trainingLuts[index] = luts[index].convertValueTypes(trainingValueType);
+        }
+
+        System.out.printf(
+                "Training %d objectives in %s to a stopping precision of %.12f\n",
+                objectives.length, trainingValueType.getTextID(), tolerance
+        );
+        System.out.println();
+
+        double overallMaxChange = iterateToConvergence(
+                createObjectivesIterator(trainingLuts, objectives), tolerance,
+                () -> {
+                    for (int index = 0; index < trainingLuts.length; ++index) {
+                        trainingLuts[index].write(trainingValueType, jsonNotation, checkpointFiles[index]);
+                    }
+                }
+        );
+
+        double totalDurationMs = (System.nanoTime() - trainStart) / 1e6d;
+        System.out.println();
+        System.out.printf(
+                "Finished value iteration in %s ms!\n",
+                CLI.MS_DURATION.format(totalDurationMs)
+        );
+
+        for (int index = 0; index < trainingLuts.length; ++index) {
+            LutMetadata metadata = trainingLuts[index].getMetadata();
+            metadata.addMetadata("target-precision", tolerance);
+            if (!Double.isInfinite(overallMaxChange)) {
+                metadata.addMetadata("training-precision", overallMaxChange);
+            }
+            trainingLuts[index].write(outputValueType, jsonNotation, checkpointFiles[index]);
+        }
+        return trainingLuts;
+    }
+
     private static final DecimalFormat MAX_DIFF_FORMAT = new DecimalFormat("0.########E0");
     private static final String MAX_DIFF_FORMATTED_ZERO = MAX_DIFF_FORMAT.format(0d);
     private static final DecimalFormat VERY_SMALL_MAX_DIFF_FORMAT = new DecimalFormat("0.###E0");
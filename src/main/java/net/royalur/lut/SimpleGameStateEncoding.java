@@ -1,9 +1,8 @@
 package net.royalur.lut;
 
 import net.royalur.model.GameSettings;
-import net.royalur.rules.simple.fast.FastSimpleBoard;
 import net.royalur.rules.simple.fast.FastSimpleFlags;
-import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -17,6 +16,12 @@ import java.util.function.Function;
  */
 public class SimpleGameStateEncoding implements GameStateEncoding {
 
+    /**
+     * The maximum number of starting pieces that can be encoded. Settings
+     * with more pieces should use {@link WideSimpleGameStateEncoding}.
+     */
+    public static final int MAX_STARTING_PIECE_COUNT = 7;
+
     protected final GameSettings settings;
     protected final FastSimpleFlags flags;
     protected final int warTileCompressionTileCount;
@@ -30,8 +35,11 @@ public class SimpleGameStateEncoding implements GameStateEncoding {
     protected final int[] darkSafeBoardIndices;
 
     public SimpleGameStateEncoding(GameSettings settings) {
-        if (settings.getStartingPieceCount() > 7)
-            throw new IllegalArgumentException("Starting piece counts above 7 are not supported");
+        if (settings.getStartingPieceCount() > MAX_STARTING_PIECE_COUNT) {
+            throw new IllegalArgumentException(
+                    "Starting piece counts above " + MAX_STARTING_PIECE_COUNT + " are not supported"
+            );
+        }
 
         this.settings = settings;
         this.flags = new FastSimpleFlags(settings);
@@ -60,7 +68,7 @@ public class SimpleGameStateEncoding implements GameStateEncoding {
         });
     }
 
-    private static int max(int[] values) {
+    static int max(int[] values) {
         int maxValue = 0;
         for (int value : values) {
             maxValue = Math.max(maxValue, value);
@@ -68,7 +76,7 @@ public class SimpleGameStateEncoding implements GameStateEncoding {
         return maxValue;
     }
 
-    private static int calculateBitsRequired(int maxValue) {
+    static int calculateBitsRequired(int maxValue) {
         int bits = 1;
         while (maxValue > (1 << bits)) {
             bits += 1;
@@ -81,7 +89,7 @@ public class SimpleGameStateEncoding implements GameStateEncoding {
      * For 8 war tiles, we just want to encode it in one segment (13 bits).
      * For 12 war tiles, we want to encode it in two 6-tile segments (10 bits each, 20 bits total).
      */
-    private static int estimateGoodWarTileCompressionTileCount(int warTileCount) {
+    static int estimateGoodWarTileCompressionTileCount(int warTileCount) {
         if (warTileCount <= 8)
             return warTileCount;
 
@@ -95,7 +103,7 @@ public class SimpleGameStateEncoding implements GameStateEncoding {
         return tileCount;
     }
 
-    private static int[] generateWarTileCompression(int startingPieceCount, int tileCount) {
+    static int[] generateWarTileCompression(int startingPieceCount, int tileCount) {
         int length = 1 << (tileCount * 2);
         int[] compression = new int[length];
         Arrays.fill(compression, -1);
@@ -143,7 +151,7 @@ public class SimpleGameStateEncoding implements GameStateEncoding {
         }
     }
 
-    private static int[] gatherBoardIndices(int[] tileFlags, Function<Integer, Boolean> tileFlagFilter) {
+    static int[] gatherBoardIndices(int[] tileFlags, Function<Integer, Boolean> tileFlagFilter) {
         List<Integer> boardIndicesList = new ArrayList<>();
         for (int boardIndex = 0; boardIndex < tileFlags.length; ++boardIndex) {
             if (!tileFlagFilter.apply(tileFlags[boardIndex]))
@@ -159,19 +167,18 @@ public class SimpleGameStateEncoding implements GameStateEncoding {
         return boardIndices;
     }
 
-    private int encodeWarTiles(FastSimpleBoard board) {
+    private int encodeWarTiles(FastSimpleEngine game) {
         int[] warBoardIndices = this.warBoardIndices;
         int[] warTileCompression = this.warTileCompression;
         int tileCount = this.warTileCompressionTileCount;
         int warTileSegmentBits = this.warTileSegmentBits;
-        int[] pieces = board.pieces;
 
         int tileIndex = 0;
         int result = 0;
         do {
             int state = 0;
             for (int index = tileCount - 1; index >= 0; --index) {
-                int piece = pieces[warBoardIndices[tileIndex]];
+                int piece = game.getPiece(warBoardIndices[tileIndex]);
                 int occupant = (piece == 0 ? 0 : (piece < 0 ? 1 : 2));
                 state = (state << 2) | occupant;
 
@@ -191,45 +198,63 @@ public class SimpleGameStateEncoding implements GameStateEncoding {
         return result;
     }
 
-    private int encodeSafeTiles(FastSimpleBoard board, int[] safeBoardIndices) {
-        int[] pieces = board.pieces;
-
+    private int encodeSafeTiles(FastSimpleEngine game, int[] safeBoardIndices) {
         int state = 0;
         for (int index = 0; index < safeBoardIndices.length; ++index) {
             int boardIndex = safeBoardIndices[index];
-            int piece = pieces[boardIndex];
+            int piece = game.getPiece(boardIndex);
             int occupant = (piece == 0 ? 0 : 1);
             state |= occupant << index;
         }
         return state;
     }
 
-    private long encodeBoard(FastSimpleBoard board) {
+    private long encodeBoard(FastSimpleEngine game) {
         int safeBits = this.safeTileBitsPerPlayer;
         int warBits = warTileSegmentCount * warTileSegmentBits;
 
-        int lightSafeZone = encodeSafeTiles(board, lightSafeBoardIndices);
-        int darkSafeZone = encodeSafeTiles(board, darkSafeBoardIndices);
-        int warZone = encodeWarTiles(board);
+        int lightSafeZone = encodeSafeTiles(game, lightSafeBoardIndices);
+        int darkSafeZone = encodeSafeTiles(game, darkSafeBoardIndices);
+        int warZone = encodeWarTiles(game);
         return darkSafeZone
                 | ((long) warZone << safeBits)
                 | ((long) lightSafeZone << (safeBits + warBits));
     }
 
     @Override
-    public long encodeGameState(FastSimpleGame game) {
+    public long encodeGameState(FastSimpleEngine game) {
         int boardBits = this.boardBits;
 
-        if (!game.isLightTurn) {
+        if (!game.isLightTurn()) {
             throw new IllegalArgumentException(
                     "Only game states where it is the light player's turn are supported by this encoding"
             );
         }
 
         long state = 0;
-        state |= encodeBoard(game.board);
-        state |= (long) game.dark.pieces << boardBits;
-        state |= (long) game.light.pieces << (boardBits + 3);
+        state |= encodeBoard(game);
+        state |= (long) game.getPlayer(false).pieces << boardBits;
+        state |= (long) game.getPlayer(true).pieces << (boardBits + 3);
         return state;
     }
+
+    /**
+     * Gets the number of pieces that the light player has
+     * left to play in a state encoded by this encoding.
+     * @param key The encoded state.
+     * @return The number of pieces the light player has left to play.
+     */
+    public int decodeLightPieces(long key) {
+        return (int) (key >>> (boardBits + 3)) & 0x7;
+    }
+
+    /**
+     * Gets the number of pieces that the dark player has
+     * left to play in a state encoded by this encoding.
+     * @param key The encoded state.
+     * @return The number of pieces the dark player has left to play.
+     */
+    public int decodeDarkPieces(long key) {
+        return (int) (key >>> boardBits) & 0x7;
+    }
 }
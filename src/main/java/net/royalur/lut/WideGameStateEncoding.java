@@ -0,0 +1,107 @@
+package net.royalur.lut;
+
+import net.royalur.model.GameSettings;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
+
+import javax.annotation.Nullable;
+
+/**
+ * Encodes the state of a game to a wide binary key, for rule sets
+ * whose states do not fit within the keys of {@link GameStateEncoding}.
+ * Keys are split into an upper key, that selects the map to look the
+ * state up in, and a lower key made up of one or more 64-bit words.
+ * The first word of a lower key holds its least significant bits.
+ */
+public interface WideGameStateEncoding {
+
+    /**
+     * Gets the number of distinct upper keys that may be produced by this
+     * encoding. Upper keys are in the range [0, upperKeyCount).
+     * @return The number of distinct upper keys.
+     */
+    int getUpperKeyCount();
+
+    /**
+     * Gets the number of 64-bit words used to store each lower key.
+     * @return The number of 64-bit words used to store each lower key.
+     */
+    int getLowerKeyLength();
+
+    /**
+     * Encode the given game state to a wide binary key.
+     * @param game The game to encode.
+     * @param lowerKey The array to write the lower key into. This
+     *                 must have a length of at least {@link #getLowerKeyLength()}.
+     * @return The upper key of the encoded game state.
+     */
+    int encodeGameState(FastSimpleEngine game, long[] lowerKey);
+
+    /**
+     * Encode the given game state to a wide binary key that is always
+     * encoded as the light player. States where it is the dark player's
+     * turn will be reversed before being encoded. If a temp game is not
+     * provided, and it is the dark player's turn, then a temp game will
+     * be constructed.
+     * @param game The game to encode.
+     * @param tempGame An optional temporary game that uses the same engine as
+     *                 game, to use to reverse the players in game.
+     * @param lowerKey The array to write the lower key into.
+     * @return The upper key of the encoded game state.
+     */
+    default int encodeSymmetricalGameState(
+            FastSimpleEngine game,
+            @Nullable FastSimpleEngine tempGame,
+            long[] lowerKey
+    ) {
+        FastSimpleEngine keyGame = game;
+        if (!game.isLightTurn()) {
+            keyGame = game.reversePlayers(tempGame);
+        }
+        return encodeGameState(keyGame, lowerKey);
+    }
+
+    /**
+     * Creates a new array that can hold the lower keys of this encoding.
+     * @return A new array that can hold the lower keys of this encoding.
+     */
+    default long[] createLowerKey() {
+        return new long[getLowerKeyLength()];
+    }
+
+    /**
+     * Compares two lower keys as unsigned integers.
+     * @param keyLength The number of words in each key.
+     * @return A negative number if key1 is less than key2, zero if they
+     *         are equal, or a positive number if key1 is greater than key2.
+     */
+    static int compareLowerKeys(long[] key1, int offset1, long[] key2, int offset2, int keyLength) {
+        for (int index = keyLength - 1; index >= 0; --index) {
+            int comparison = Long.compareUnsigned(key1[offset1 + index], key2[offset2 + index]);
+            if (comparison != 0)
+                return comparison;
+        }
+        return 0;
+    }
+
+    /**
+     * Formats a lower key as a hexadecimal string, for use in error messages.
+     */
+    static String formatLowerKey(long[] lowerKey) {
+        StringBuilder builder = new StringBuilder();
+        for (int index = lowerKey.length - 1; index >= 0; --index) {
+            String word = Long.toHexString(lowerKey[index]);
+            if (index < lowerKey.length - 1) {
+                builder.append("0".repeat(16 - word.length()));
+            }
+            builder.append(word);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Creates a wide encoding for a simple set of rules.
+     */
+    static WideGameStateEncoding createSimple(GameSettings settings) {
+        return new WideSimpleGameStateEncoding(settings);
+    }
+}
@@ -0,0 +1,314 @@
+package net.royalur.lut;
+
+import net.royalur.lut.buffer.FloatValueBuffer;
+import net.royalur.lut.buffer.UInt64ValueBuffer;
+import net.royalur.lut.buffer.ValueBuffer;
+import net.royalur.lut.buffer.ValueType;
+import net.royalur.lut.store.DataSink;
+import net.royalur.lut.store.DataSource;
+import net.royalur.lut.store.WideLutMap;
+import net.royalur.model.GameSettings;
+import net.royalur.model.PlayerType;
+import net.royalur.notation.JsonNotation;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.state.EndGameState;
+import net.royalur.rules.state.GameState;
+import net.royalur.rules.state.WaitingForRollGameState;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+/**
+ * A lookup table that uses wide keys, for rule sets with more pieces
+ * or larger boards than can be stored in a {@link Lut}. Each upper key
+ * selects a map, and each map holds multi-word lower keys.
+ */
+public class WideLut implements WinPercentLut {
+
+    private final WideGameStateEncoding encoding;
+    private final LutMetadata metadata;
+    private final WideLutMap[] maps;
+    private final FastSimpleGame stateConversionGame;
+    private final FastSimpleGame tempGame;
+    private final ThreadLocal<long[]> lowerKeys;
+
+    public WideLut(
+            WideGameStateEncoding encoding,
+            LutMetadata metadata,
+            WideLutMap[] maps
+    ) {
+        if (maps.length != encoding.getUpperKeyCount()) {
+            throw new IllegalArgumentException(
+                    "Expected " + encoding.getUpperKeyCount() + " maps, not " + maps.length
+            );
+        }
+        for (WideLutMap map : maps) {
+            if (map.getKeyLength() != encoding.getLowerKeyLength()) {
+                throw new IllegalArgumentException(
+                        "The key length of the maps does not match the encoding: "
+                                + map.getKeyLength() + " != " + encoding.getLowerKeyLength()
+                );
+            }
+        }
+
+        this.encoding = encoding;
+        this.metadata = metadata;
+        this.maps = maps;
+        this.stateConversionGame = new FastSimpleGame(metadata.getGameSettings());
+        this.tempGame = new FastSimpleGame(metadata.getGameSettings());
+        this.lowerKeys = ThreadLocal.withInitial(encoding::createLowerKey);
+    }
+
+    /**
+     * A different instance of WideLut must be used on each thread
+     * when using the methods that are not thread-safe.
+     */
+    public WideLut shallowCopy() {
+        return new WideLut(encoding, metadata, maps);
+    }
+
+    @Override
+    public int getEntryCount() {
+        int size = 0;
+        for (WideLutMap map : maps) {
+            size += map.getEntryCount();
+        }
+        return size;
+    }
+
+    public WideGameStateEncoding getGameStateEncoding() {
+        return encoding;
+    }
+
+    @Override
+    public LutMetadata getMetadata() {
+        return metadata;
+    }
+
+    public WideLutMap getMap(int upperKey) {
+        return maps[upperKey];
+    }
+
+    public WideLutMap[] getMaps() {
+        return maps;
+    }
+
+    /**
+     * Assumes that the game is using symmetrical paths.
+     * NOT thread-safe.
+     */
+    public double getLightWinPercent(FastSimpleGame game) {
+        return getLightWinPercent(game, tempGame);
+    }
+
+    /**
+     * Assumes that the game is using symmetrical paths.
+     * NOT thread-safe.
+     */
+    public double getLightWinPercent(GameState state) {
+        if (state instanceof EndGameState endState) {
+            if (endState.hasWinner())
+                return (endState.getWinner() == PlayerType.LIGHT ? 100.0 : 0.0);
+            return 50.0;
+        }
+        if (!(state instanceof WaitingForRollGameState)) {
+            throw new IllegalArgumentException(
+                    "Can only get the win percentage for end and waiting for roll game states"
+            );
+        }
+        stateConversionGame.copyFrom(state);
+        return getLightWinPercent(stateConversionGame, tempGame);
+    }
+
+    /**
+     * Assumes that the game is using symmetrical paths.
+     * This is thread-safe.
+     */
+    @Override
+    public double getLightWinPercent(FastSimpleEngine game, @Nullable FastSimpleEngine tempGame) {
+        long[] lowerKey = lowerKeys.get();
+        int upperKey = encoding.encodeSymmetricalGameState(game, tempGame, lowerKey);
+        double winPercent = maps[upperKey].getDouble(lowerKey);
+        return (game.isLightTurn() ? winPercent : 100.0 - winPercent);
+    }
+
+    @Override
+    public double updateLightWinPercent(FastSimpleEngine game, double winPercent) {
+        if (!game.isLightTurn()) {
+            throw new IllegalArgumentException(
+                    "Only game states where it is the light player's turn are supported by this method"
+            );
+        }
+        long[] lowerKey = lowerKeys.get();
+        int upperKey = encoding.encodeGameState(game, lowerKey);
+        return maps[upperKey].set(lowerKey, winPercent);
+    }
+
+    @Override
+    public WideLut convertValueTypes(ValueType newValueType) {
+        if (!newValueType.isFloat()) {
+            throw new IllegalArgumentException(
+                    "Only floating-point value types are supported for WideLut, not: " + newValueType
+            );
+        }
+
+        LutMetadata newMetadata = metadata.copyWithValueType(newValueType);
+        WideLutMap[] newMaps = new WideLutMap[maps.length];
+        for (int index = 0; index < maps.length; ++index) {
+            WideLutMap oldMap = maps[index];
+            newMaps[index] = new WideLutMap(
+                    oldMap.getEntryCount(),
+                    oldMap.getKeyLength(),
+                    oldMap.getKeyBuffer(),
+                    (FloatValueBuffer) oldMap.getValueBuffer().convertTo(newValueType)
+            );
+        }
+        return new WideLut(encoding, newMetadata, newMaps);
+    }
+
+    @Override
+    public void write(
+            ValueType outputValueType,
+            JsonNotation notation,
+            File file
+    ) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            write(outputValueType, notation, fos.getChannel());
+        }
+    }
+
+    public void write(
+            ValueType outputValueType,
+            JsonNotation notation,
+            FileChannel channel
+    ) throws IOException {
+        ByteBuffer outputBuffer = ByteBuffer.allocateDirect(1024 * 1024);
+        outputBuffer.order(ByteOrder.BIG_ENDIAN);
+        DataSink output = new DataSink.FileDataSink(channel, outputBuffer);
+        write(outputValueType, notation, output);
+    }
+
+    public void write(
+            ValueType outputValueType,
+            JsonNotation notation,
+            DataSink output
+    ) throws IOException {
+        LutMetadata metadata = this.metadata.copyWithValueType(outputValueType);
+
+        output.write(buffer -> {
+            buffer.put(Lut.MAGIC);
+            buffer.put(Lut.WIDE_VERSION_0);
+
+            String metadataStr = metadata.encode(notation);
+            byte[] metadataBytes = metadataStr.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(metadataBytes.length);
+            buffer.put(metadataBytes);
+        });
+
+        output.write(buffer -> {
+            buffer.putInt(maps.length);
+            buffer.putInt(encoding.getLowerKeyLength());
+            for (WideLutMap map : maps) {
+                buffer.putInt(map.getEntryCount());
+            }
+        });
+
+        for (WideLutMap map : maps) {
+            map.getKeyBuffer().writeContents(output);
+        }
+        for (WideLutMap map : maps) {
+            ValueBuffer buffer = map.getValueBuffer();
+            buffer.convertTo(outputValueType).writeContents(output);
+        }
+    }
+
+    public static WideLut read(File file) throws IOException {
+        return read(
+                new JsonNotation(),
+                WideGameStateEncoding::createSimple,
+                file
+        );
+    }
+
+    public static WideLut read(
+            JsonNotation jsonNotation,
+            Function<GameSettings, WideGameStateEncoding> encodingGenerator,
+            File file
+    ) throws IOException {
+
+        try (FileInputStream fis = new FileInputStream(file)) {
+            ByteBuffer workingBuffer = ByteBuffer.allocateDirect(1024 * 1024);
+            workingBuffer.order(ByteOrder.BIG_ENDIAN);
+            DataSource source = new DataSource.FileDataSource(fis.getChannel(), workingBuffer);
+            return read(jsonNotation, encodingGenerator, source);
+        }
+    }
+
+    public static WideLut read(
+            JsonNotation jsonNotation,
+            Function<GameSettings, WideGameStateEncoding> encodingGenerator,
+            DataSource source
+    ) throws IOException {
+
+        byte[] magic = source.readBytes(Lut.MAGIC.length);
+        for (int index = 0; index < magic.length; ++index) {
+            if (magic[index] != Lut.MAGIC[index])
+                throw new IOException("Magic does not match");
+        }
+        byte version = source.readByte();
+        if (version != Lut.WIDE_VERSION_0)
+            throw new IOException("Unsupported wide file version: " + Byte.toUnsignedInt(version));
+
+        int metadataByteCount = source.readInt();
+        byte[] metadataBytes = source.readBytes(metadataByteCount);
+        String metadataJson = new String(metadataBytes, StandardCharsets.UTF_8);
+        LutMetadata metadata = LutMetadata.decode(jsonNotation, metadataJson);
+        WideGameStateEncoding encoding = encodingGenerator.apply(metadata.getGameSettings());
+
+        int mapCount = source.readInt();
+        int keyLength = source.readInt();
+        if (keyLength != encoding.getLowerKeyLength()) {
+            throw new IOException(
+                    "The key length of the file does not match the encoding: "
+                            + keyLength + " != " + encoding.getLowerKeyLength()
+            );
+        }
+
+        int[] mapEntryCounts = new int[mapCount];
+        UInt64ValueBuffer[] mapKeyBuffers = new UInt64ValueBuffer[mapCount];
+        FloatValueBuffer[] mapValueBuffers = new FloatValueBuffer[mapCount];
+
+        for (int index = 0; index < mapCount; ++index) {
+            int entryCount = source.readInt();
+            mapEntryCounts[index] = entryCount;
+            mapKeyBuffers[index] = new UInt64ValueBuffer(Math.multiplyExact(entryCount, keyLength));
+            mapValueBuffers[index] = metadata.getValueType().createFloatBuffer(entryCount);
+        }
+        for (int index = 0; index < mapCount; ++index) {
+            mapKeyBuffers[index].readContents(source);
+        }
+        for (int index = 0; index < mapCount; ++index) {
+            mapValueBuffers[index].readContents(source);
+        }
+
+        WideLutMap[] maps = new WideLutMap[mapCount];
+        for (int index = 0; index < mapCount; ++index) {
+            maps[index] = new WideLutMap(
+                    mapEntryCounts[index],
+                    keyLength,
+                    mapKeyBuffers[index],
+                    mapValueBuffers[index]
+            );
+        }
+        return new WideLut(encoding, metadata, maps);
+    }
+}
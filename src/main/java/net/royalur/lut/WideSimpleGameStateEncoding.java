@@ -0,0 +1,160 @@
+package net.royalur.lut;
+
+import net.royalur.model.GameSettings;
+import net.royalur.rules.simple.fast.FastSimpleFlags;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
+
+import java.util.Arrays;
+
+/**
+ * Wide encoding for simple rule-sets. This uses the same board layout as
+ * {@link SimpleGameStateEncoding}, but places the piece counts of each
+ * player in the upper key, and spreads the board over as many 64-bit
+ * words as are required. This supports any number of starting pieces.
+ */
+public class WideSimpleGameStateEncoding implements WideGameStateEncoding {
+
+    protected final GameSettings settings;
+    protected final FastSimpleFlags flags;
+    protected final int startingPieceCount;
+    protected final int warTileCompressionTileCount;
+    protected final int warTileSegmentCount;
+    protected final int[] warTileCompression;
+    protected final int warTileSegmentBits;
+    protected final int safeTileBitsPerPlayer;
+    protected final int boardBits;
+    protected final int lowerKeyLength;
+    protected final int[] warBoardIndices;
+    protected final int[] lightSafeBoardIndices;
+    protected final int[] darkSafeBoardIndices;
+
+    public WideSimpleGameStateEncoding(GameSettings settings) {
+        this.settings = settings;
+        this.flags = new FastSimpleFlags(settings);
+        this.startingPieceCount = settings.getStartingPieceCount();
+        this.warTileCompressionTileCount = SimpleGameStateEncoding.estimateGoodWarTileCompressionTileCount(
+                flags.warTileCount
+        );
+        this.warTileSegmentCount = (
+                (flags.warTileCount + warTileCompressionTileCount - 1) / warTileCompressionTileCount
+        );
+        this.warTileCompression = SimpleGameStateEncoding.generateWarTileCompression(
+                startingPieceCount, warTileCompressionTileCount
+        );
+        this.warTileSegmentBits = SimpleGameStateEncoding.calculateBitsRequired(
+                SimpleGameStateEncoding.max(warTileCompression)
+        );
+        this.safeTileBitsPerPlayer = flags.safeTileCountPerPlayer;
+        this.boardBits = 2 * safeTileBitsPerPlayer + warTileSegmentCount * warTileSegmentBits;
+        this.lowerKeyLength = Math.max(1, (boardBits + 63) / 64);
+        this.warBoardIndices = SimpleGameStateEncoding.gatherBoardIndices(flags.tileFlags, flag -> {
+            return (flag & FastSimpleFlags.OCCUPANTS_MASK) == 3;
+        });
+        this.lightSafeBoardIndices = SimpleGameStateEncoding.gatherBoardIndices(flags.tileFlags, flag -> {
+            return (flag & FastSimpleFlags.OCCUPANTS_MASK) == 2
+                    && (flag & FastSimpleFlags.LIGHT_ONLY_FLAG) != 0;
+        });
+        this.darkSafeBoardIndices = SimpleGameStateEncoding.gatherBoardIndices(flags.tileFlags, flag -> {
+            return (flag & FastSimpleFlags.OCCUPANTS_MASK) == 2
+                    && (flag & FastSimpleFlags.LIGHT_ONLY_FLAG) == 0;
+        });
+    }
+
+    @Override
+    public int getUpperKeyCount() {
+        return (startingPieceCount + 1) * (startingPieceCount + 1);
+    }
+
+    @Override
+    public int getLowerKeyLength() {
+        return lowerKeyLength;
+    }
+
+    /**
+     * Gets the upper key used for states where light and dark
+     * have the given number of pieces left to play.
+     */
+    public int calcUpperKey(int lightPieces, int darkPieces) {
+        return lightPieces * (startingPieceCount + 1) + darkPieces;
+    }
+
+    /**
+     * Writes {@code bits} bits of {@code value} into {@code key},
+     * starting at the bit index {@code offset}.
+     */
+    private static void writeBits(long[] key, int offset, long value, int bits) {
+        int word = offset >>> 6;
+        int shift = offset & 63;
+        key[word] |= value << shift;
+        if (shift + bits > 64) {
+            key[word + 1] |= value >>> (64 - shift);
+        }
+    }
+
+    private int encodeWarTiles(FastSimpleEngine game, long[] lowerKey, int offset) {
+        int[] warBoardIndices = this.warBoardIndices;
+        int[] warTileCompression = this.warTileCompression;
+        int tileCount = this.warTileCompressionTileCount;
+        int warTileSegmentBits = this.warTileSegmentBits;
+
+        // Segments are written from most to least significant,
+        // to match the ordering of SimpleGameStateEncoding.
+        int segmentOffset = offset + (warTileSegmentCount - 1) * warTileSegmentBits;
+
+        int tileIndex = 0;
+        do {
+            int state = 0;
+            for (int index = tileCount - 1; index >= 0; --index) {
+                int piece = game.getPiece(warBoardIndices[tileIndex]);
+                int occupant = (piece == 0 ? 0 : (piece < 0 ? 1 : 2));
+                state = (state << 2) | occupant;
+
+                tileIndex += 1;
+                if (tileIndex >= warBoardIndices.length)
+                    break;
+            }
+
+            int compressed = warTileCompression[state];
+            if (compressed == -1)
+                throw new IllegalArgumentException("Illegal board state!");
+
+            writeBits(lowerKey, segmentOffset, compressed, warTileSegmentBits);
+            segmentOffset -= warTileSegmentBits;
+
+        } while (tileIndex < warBoardIndices.length);
+
+        return offset + warTileSegmentCount * warTileSegmentBits;
+    }
+
+    private int encodeSafeTiles(
+            FastSimpleEngine game,
+            int[] safeBoardIndices,
+            long[] lowerKey,
+            int offset
+    ) {
+        for (int index = 0; index < safeBoardIndices.length; ++index) {
+            if (game.getPiece(safeBoardIndices[index]) != 0) {
+                writeBits(lowerKey, offset + index, 1, 1);
+            }
+        }
+        return offset + safeBoardIndices.length;
+    }
+
+    @Override
+    public int encodeGameState(FastSimpleEngine game, long[] lowerKey) {
+        if (!game.isLightTurn()) {
+            throw new IllegalArgumentException(
+                    "Only game states where it is the light player's turn are supported by this encoding"
+            );
+        }
+
+        Arrays.fill(lowerKey, 0, lowerKeyLength, 0L);
+
+        int offset = 0;
+        offset = encodeSafeTiles(game, darkSafeBoardIndices, lowerKey, offset);
+        offset = encodeWarTiles(game, lowerKey, offset);
+        encodeSafeTiles(game, lightSafeBoardIndices, lowerKey, offset);
+
+        return calcUpperKey(game.getPlayer(true).pieces, game.getPlayer(false).pieces);
+    }
+}
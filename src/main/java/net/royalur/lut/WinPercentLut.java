@@ -0,0 +1,47 @@
+package net.royalur.lut;
+
+import net.royalur.lut.buffer.ValueType;
+import net.royalur.model.GameSettings;
+import net.royalur.notation.JsonNotation;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A lookup table that stores the chance that the light player
+ * wins from each game state. This is implemented by {@link Lut}
+ * for narrow keys, and {@link WideLut} for wide keys.
+ */
+public interface WinPercentLut {
+
+    LutMetadata getMetadata();
+
+    default GameSettings getGameSettings() {
+        return getMetadata().getGameSettings();
+    }
+
+    int getEntryCount();
+
+    /**
+     * Assumes that the game is using symmetrical paths.
+     * This is thread-safe.
+     */
+    double getLightWinPercent(FastSimpleEngine game, @Nullable FastSimpleEngine tempGame);
+
+    /**
+     * Updates the win percentage of a game state where it is the
+     * light player's turn, and returns the previous win percentage.
+     * This is thread-safe, as long as no two threads update the same state.
+     */
+    double updateLightWinPercent(FastSimpleEngine game, double winPercent);
+
+    WinPercentLut convertValueTypes(ValueType newValueType);
+
+    void write(
+            ValueType outputValueType,
+            JsonNotation notation,
+            File file
+    ) throws IOException;
+}
@@ -11,5 +11,6 @@ public class LutCommand extends CLIRoutingCommand {
         addSubCommand(new LutReadCommand(this));
         addSubCommand(new LutMoveStatsCommand(this));
         addSubCommand(new LutTrainCommand(this));
+        addSubCommand(new LutMlpCommand(this));
     }
 }
@@ -0,0 +1,222 @@
+package net.royalur.lut.cli;
+
+import net.royalur.agent.LutAgent;
+import net.royalur.agent.RandomAgent;
+import net.royalur.agent.utility.MlpTrainer;
+import net.royalur.agent.utility.MlpUtilityFn;
+import net.royalur.cli.*;
+import net.royalur.lut.Lut;
+import net.royalur.model.GameSettings;
+import net.royalur.model.dice.Dice;
+import net.royalur.model.dice.DiceType;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class LutMlpCommand extends CLICommand {
+
+    public static final String NAME = "mlp";
+    public static final String DESC = "Train a small neural network to approximate an existing lut, "
+            + "and compare its accuracy and speed to the lut";
+
+    private static final int EVALUATION_GAMES = 2000;
+
+    public LutMlpCommand(CLICommand parent) {
+        super(parent, NAME, DESC);
+        addRequiredArg(
+                "<file>", CLIArgumentType.FILE,
+                "LUT file"
+        );
+        addOptionalArg(
+                "--output", CLIArgumentType.FILE,
+                "Path to write the weights of the trained network to"
+        );
+        addOptionalArg(
+                "--hidden", CLIArgumentType.INTEGER,
+                "The number of hidden units in the network (default 32)"
+        );
+        addOptionalArg(
+                "--games", CLIArgumentType.INTEGER,
+                "The number of random games to sample training states from",
+                "(default 20000)"
+        );
+        addOptionalArg(
+                "--epochs", CLIArgumentType.INTEGER,
+                "The number of passes over the training states (default 5)"
+        );
+        addOptionalArg(
+                "--learning-rate", CLIArgumentType.NUMBER,
+                "The step size of gradient descent (default 0.01)"
+        );
+        addOptionalArg(
+                "--seed", CLIArgumentType.INTEGER,
+                "The seed used to sample games and initialise the network",
+                "(default 47)"
+        );
+    }
+
+    @Override
+    public @Nullable CLIHandler handle(CLI cli) {
+        if (!cli.hasNext())
+            return null;
+
+        File file = cli.nextExistingFile();
+        File outputFile = cli.readKeywordFile("--output", null);
+        int hiddenCount = cli.readKeywordInt("--hidden", 32);
+        int gameCount = cli.readKeywordInt("--games", 20000);
+        int epochs = cli.readKeywordInt("--epochs", 5);
+        double learningRate = cli.readKeywordDouble("--learning-rate", 0.01d);
+        int seed = cli.readKeywordInt("--seed", 47);
+        if (hiddenCount < 1)
+            throw new CLIArgumentException("--hidden must be at least 1");
+        if (gameCount < 1)
+            throw new CLIArgumentException("--games must be at least 1");
+        if (epochs < 1)
+            throw new CLIArgumentException("--epochs must be at least 1");
+
+        return () -> {
+            Lut lut = Lut.read(file);
+            GameSettings settings = lut.getGameSettings();
+            Random random = new Random(seed);
+            MlpTrainer trainer = new MlpTrainer(settings, hiddenCount, random);
+
+            System.out.println("Sampling states from " + gameCount + " random games...");
+            RandomAgent randomAgent = new RandomAgent(random);
+            MlpTrainer.Samples trainSamples = trainer.collectSamples(randomAgent, gameCount, lut);
+            MlpTrainer.Samples randomTestSamples = trainer.collectSamples(randomAgent, EVALUATION_GAMES, lut);
+            MlpTrainer.Samples lutTestSamples = trainer.collectSamples(new LutAgent(lut), EVALUATION_GAMES, lut);
+            System.out.println("Sampled " + trainSamples.size() + " training states");
+
+            long trainStart = System.nanoTime();
+            MlpUtilityFn network = trainer.train(trainSamples, epochs, (float) learningRate);
+            double trainDurationMs = (System.nanoTime() - trainStart) / 1e6;
+            System.out.println(
+                    "Training " + network.getParameterCount() + " parameters took "
+                    + CLI.MS_DURATION.format(trainDurationMs) + " ms"
+            );
+            System.out.println();
+
+            System.out.printf(
+                    "Mean absolute error in training states = %.3f%%%n",
+                    MlpTrainer.calculateMeanAbsoluteError(network, trainSamples)
+            );
+            System.out.printf(
+                    "Mean absolute error in random games = %.3f%%%n",
+                    MlpTrainer.calculateMeanAbsoluteError(network, randomTestSamples)
+            );
+            System.out.printf(
+                    "Mean absolute error in lut games = %.3f%%%n",
+                    MlpTrainer.calculateMeanAbsoluteError(network, lutTestSamples)
+            );
+            System.out.println();
+
+            compareDecisions(lut, network, random);
+
+            if (outputFile != null) {
+                network.write(outputFile);
+                System.out.println();
+                System.out.println("Wrote network to " + outputFile);
+            }
+        };
+    }
+
+    /**
+     * Selects the move that leads to the state with the highest utility.
+     */
+    private static int decideMove(MlpUtilityFn network, FastSimpleGame game, FastSimpleMoveList moveList) {
+        if (moveList.moveCount == 1)
+            return moveList.moves[0];
+
+        boolean isLightTurn = game.isLightTurn;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        int bestMove = moveList.moves[0];
+        for (int index = 0; index < moveList.moveCount; ++index) {
+            int pathIndex = moveList.moves[index];
+            int undoToken = game.applyMove(pathIndex);
+            float score = network.scoreGameStateForLight(game);
+            game.undoMove(undoToken);
+
+            if (!isLightTurn) {
+                score = -score;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = pathIndex;
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Compares the moves that are chosen using the network to the moves
+     * chosen using the lut, in states from games played using the lut.
+     */
+    private static void compareDecisions(Lut lut, MlpUtilityFn network, Random random) {
+        GameSettings settings = lut.getGameSettings();
+        Dice dice = ((DiceType) settings.getDice()).createDice(random);
+        LutAgent lutAgent = new LutAgent(lut);
+        FastSimpleGame game = new FastSimpleGame(settings);
+        FastSimpleMoveList moveList = new FastSimpleMoveList();
+
+        List<FastSimpleGame> states = new ArrayList<>();
+        List<FastSimpleMoveList> moveLists = new ArrayList<>();
+        for (int gameIndex = 0; gameIndex < EVALUATION_GAMES; ++gameIndex) {
+            game.reset();
+            while (!game.isFinished) {
+                game.applyRoll(dice.rollValue(), moveList);
+                if (!game.isWaitingForMove())
+                    continue;
+
+                if (moveList.moveCount > 1) {
+                    FastSimpleGame state = new FastSimpleGame(settings);
+                    state.copyFrom(game);
+                    FastSimpleMoveList stateMoves = new FastSimpleMoveList();
+                    for (int index = 0; index < moveList.moveCount; ++index) {
+                        stateMoves.add(moveList.moves[index]);
+                    }
+                    states.add(state);
+                    moveLists.add(stateMoves);
+                }
+                game.applyMove(lutAgent.decideMove(game, moveList));
+            }
+        }
+
+        int stateCount = states.size();
+        int[] lutMoves = new int[stateCount];
+        int[] networkMoves = new int[stateCount];
+
+        // Run each twice, so that the second run is measured after warming up.
+        long lutDurationNanos = 0;
+        long networkDurationNanos = 0;
+        for (int run = 0; run < 2; ++run) {
+            long lutStart = System.nanoTime();
+            for (int index = 0; index < stateCount; ++index) {
+                lutMoves[index] = lutAgent.decideMove(states.get(index), moveLists.get(index));
+            }
+            long networkStart = System.nanoTime();
+            for (int index = 0; index < stateCount; ++index) {
+                networkMoves[index] = decideMove(network, states.get(index), moveLists.get(index));
+            }
+            long end = System.nanoTime();
+            lutDurationNanos = networkStart - lutStart;
+            networkDurationNanos = end - networkStart;
+        }
+
+        int agreeCount = 0;
+        for (int index = 0; index < stateCount; ++index) {
+            if (lutMoves[index] == networkMoves[index]) {
+                agreeCount += 1;
+            }
+        }
+
+        System.out.println("Compared decisions in " + stateCount + " states with more than one move");
+        System.out.printf("Network chose the same move as the lut = %.2f%%%n", 100.0 * agreeCount / stateCount);
+        System.out.printf("Lut decisions per second = %,.0f%n", stateCount * 1e9 / lutDurationNanos);
+        System.out.printf("Network decisions per second = %,.0f%n", stateCount * 1e9 / networkDurationNanos);
+    }
+}
@@ -1,6 +1,5 @@
 package net.royalur.lut.cli;
 
-import net.royalur.agent.LutAgent;
 import net.royalur.cli.*;
 import net.royalur.lut.Lut;
 import net.royalur.lut.LutMetadata;
@@ -14,13 +13,17 @@ import net.royalur.stats.StatGatherer;
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 public class LutMoveStatsCommand extends CLICommand {
 
     public static final String NAME = "move_stats";
     public static final String DESC = "Calculate move statistics about an existing lut";
 
+    private static final int SMALLEST_DIFF_STATE_COUNT = 10;
+    private static final long PROGRESS_INTERVAL_MS = 5000;
+
     public LutMoveStatsCommand(CLICommand parent) {
         super(parent, NAME, DESC);
         addRequiredArg(
@@ -55,43 +58,183 @@ public class LutMoveStatsCommand extends CLICommand {
     }
 
     private static void processLutMoveStats(Lut lut) throws IOException {
-        LutAgent agent = new LutAgent(lut);
         GameSettings settings = lut.getGameSettings();
+        FastSimpleFlags flags = new FastSimpleFlags(settings);
 
-        int lightStateCount = lut.getEntryCount();
-        int possibleRollCount = settings.getDice().createDice().getPossibleRollCount();
+        float[] probabilities = settings.getDice().createDice().getRollProbabilities();
+        int possibleRollCount = 0;
+        for (float probability : probabilities) {
+            if (probability > 0.0f) {
+                possibleRollCount += 1;
+            }
+        }
+        long totalPairs = (long) lut.getEntryCount() * possibleRollCount;
 
-        FastSimpleFlags flags = new FastSimpleFlags(settings);
-        FastSimpleGame tempGame = new FastSimpleGame(settings);
-        FastSimpleGame tempGame2 = new FastSimpleGame(settings);
-        FastSimpleMoveList tempMoveList = new FastSimpleMoveList();
+        // Each worker thread gathers its own statistics, which are merged at the end.
+        List<MoveStatsAccumulator> accumulators = new ArrayList<>();
+        ThreadLocal<MoveStatsAccumulator> threadAccumulators = ThreadLocal.withInitial(() -> {
+            MoveStatsAccumulator accumulator = new MoveStatsAccumulator(settings);
+            synchronized (accumulators) {
+                accumulators.add(accumulator);
+            }
+            return accumulator;
+        });
+        LongAdder processed = new LongAdder();
 
         System.out.println("Gathering statistics...");
-        AtomicInteger equalCount = new AtomicInteger(0);
-        AtomicInteger states = new AtomicInteger(0);
-
-        StatGatherer differences = new StatGatherer();
-        Histogram differencesHistogram = new Histogram(-14, 2, 16);
-        double histogramMax = 100;
-        double histogramMin = Math.pow(10, -14);
-
-        FastSimpleGame[] smallestDiffStates = new FastSimpleGame[10];
-        double[] smallestDiffBestWP = new double[smallestDiffStates.length];
-        int[] smallestDiffBestMove = new int[smallestDiffStates.length];
-        int[] smallestDiffSecondBestMove = new int[smallestDiffStates.length];
-        for (int index = 0; index < smallestDiffStates.length; ++index) {
-            smallestDiffStates[index] = new FastSimpleGame(settings);
+        Thread monitor = startProgressMonitor(processed, totalPairs);
+        try {
+            flags.loopLightGameStatesAndRolls(true, (game, roll, neighbours) -> {
+                processed.increment();
+                threadAccumulators.get().add(lut, game, roll, neighbours);
+            });
+        } finally {
+            monitor.interrupt();
+        }
+
+        MoveStatsAccumulator stats = new MoveStatsAccumulator(settings);
+        for (MoveStatsAccumulator accumulator : accumulators) {
+            stats.merge(accumulator);
+        }
+        StatGatherer differences = stats.differences;
+
+        System.out.println("Done");
+        System.out.println();
+        System.out.printf("Found %d state/roll pairs where the best move is ambiguous%n", stats.equalCount);
+        System.out.println("* Difference between moves in a pair:");
+        System.out.printf(" - Min = %g%n", differences.min());
+        System.out.printf(" - Max = %g%n", differences.max());
+        System.out.printf(" - Mean = %g%n", differences.mean());
+        System.out.printf(" - Std. Dev. = %g%n", differences.stdDev());
+        System.out.println();
+        System.out.println("Histogram of differences: (log10 bins)");
+        System.out.println(stats.differencesHistogram.toLog10String());
+
+        // We don't really handle the zero case very well, so skip it.
+        if (differences.min() > 0) {
+            System.out.println();
+            System.out.printf(
+                    "Found %d state/roll pairs at the minimum difference of %g%n",
+                    stats.minDiffCount, differences.min()
+            );
+            System.out.printf("The %d smallest differences:%n", stats.smallestDiffs.size());
+
+            List<SmallDiffState> smallestDiffs = new ArrayList<>(stats.smallestDiffs);
+            smallestDiffs.sort(Comparator.comparingDouble(entry -> entry.diff));
+            FastSimpleGame tempGame = new FastSimpleGame(settings);
+            for (SmallDiffState entry : smallestDiffs) {
+                entry.printBestMoves(lut, tempGame);
+            }
         }
-        AtomicInteger smallestDiffStateCount = new AtomicInteger(0);
-
-        flags.loopLightGameStatesAndRolls((game, roll, neighbours) -> {
-            int processed = states.incrementAndGet();
-            if (processed % (1000000 * possibleRollCount) == 0) {
-                System.out.println(
-                        ".. " + (processed / (1000000 * possibleRollCount))
-                                + " / " + (lightStateCount / 1000000)
-                );
+    }
+
+    private static Thread startProgressMonitor(LongAdder processed, long total) {
+        Thread monitor = new Thread(() -> {
+            long start = System.nanoTime();
+            try {
+                while (true) {
+                    Thread.sleep(PROGRESS_INTERVAL_MS);
+                    long count = processed.sum();
+                    double durationS = (System.nanoTime() - start) / 1e9d;
+                    System.out.printf(
+                            ".. %d / %d million state/roll pairs (%.1f%%, %.1f million/s)%n",
+                            count / 1000000, total / 1000000,
+                            100.0 * count / Math.max(1, total),
+                            count / 1e6d / durationS
+                    );
+                }
+            } catch (InterruptedException e) {
+                // Finished processing.
             }
+        }, "move-stats-monitor");
+        monitor.setDaemon(true);
+        monitor.start();
+        return monitor;
+    }
+
+    /**
+     * A state and roll where the difference between the win
+     * percentage of the best and second-best moves is small.
+     */
+    private static class SmallDiffState {
+
+        final FastSimpleGame state;
+        double diff;
+        double bestWP;
+        double secondBestWP;
+
+        SmallDiffState(GameSettings settings) {
+            this.state = new FastSimpleGame(settings);
+        }
+
+        void printBestMoves(Lut lut, FastSimpleGame tempGame) {
+            FastSimpleMoveList moveList = new FastSimpleMoveList();
+            state.findAvailableMoves(moveList);
+
+            int bestMove = -2;
+            int secondBestMove = -2;
+            boolean seenBest = false;
+            for (int moveIndex = 0; moveIndex < moveList.moveCount; ++moveIndex) {
+                int pathIndex = moveList.moves[moveIndex];
+                int undoToken = state.applyMove(pathIndex);
+                double wp = lut.getLightWinPercent(state, tempGame);
+                state.undoMove(undoToken);
+
+                if (wp == bestWP) {
+                    // Handle the case where the diff is zero.
+                    if (!seenBest) {
+                        bestMove = pathIndex;
+                        seenBest = true;
+                    } else {
+                        secondBestMove = pathIndex;
+                    }
+                } else if (wp == secondBestWP) {
+                    secondBestMove = pathIndex;
+                }
+            }
+            System.out.printf(
+                    "* State = %s%nTop move = %s (%g%%)%n2nd move = %s (-%g%%)%n",
+                    state.toString(),
+                    FastSimpleMoveList.moveToString(state, bestMove),
+                    bestWP,
+                    FastSimpleMoveList.moveToString(state, secondBestMove),
+                    diff
+            );
+        }
+    }
+
+    /**
+     * Statistics gathered by one worker thread, that can be
+     * merged with the statistics from other workers.
+     */
+    private static class MoveStatsAccumulator {
+
+        private static final double HISTOGRAM_MAX = 100;
+        private static final double HISTOGRAM_MIN = Math.pow(10, -14);
+
+        final GameSettings settings;
+        final StatGatherer differences = new StatGatherer();
+        final Histogram differencesHistogram = new Histogram(-14, 2, 16);
+        long equalCount = 0;
+        long minDiffCount = 0;
+
+        /**
+         * A max-heap of the states with the smallest differences.
+         */
+        final PriorityQueue<SmallDiffState> smallestDiffs = new PriorityQueue<>(
+                SMALLEST_DIFF_STATE_COUNT,
+                Comparator.comparingDouble((SmallDiffState entry) -> entry.diff).reversed()
+        );
+
+        final FastSimpleGame tempGame;
+        final FastSimpleMoveList tempMoveList = new FastSimpleMoveList();
+
+        MoveStatsAccumulator(GameSettings settings) {
+            this.settings = settings;
+            this.tempGame = new FastSimpleGame(settings);
+        }
+
+        void add(Lut lut, FastSimpleGame game, int roll, Collection<FastSimpleGame> neighbours) {
             if (neighbours.size() <= 1)
                 return;
 
@@ -106,80 +249,63 @@ public class LutMoveStatsCommand extends CLICommand {
                     secondBestWP = wp;
                 }
             }
-            if (secondBestWP >= 0 && bestWP >= 0) {
-                double diff = bestWP - secondBestWP;
+            if (secondBestWP < 0 || bestWP < 0)
+                return;
 
-                // Keep track of the smallest difference states.
-                double currentMin = differences.min();
-                if (diff < currentMin) {
-                    smallestDiffStateCount.set(0);
-                }
-                if (diff <= currentMin) {
-                    int smallestDiffIndex = smallestDiffStateCount.getAndIncrement();
-                    if (smallestDiffIndex < smallestDiffStates.length) {
-                        FastSimpleGame state = smallestDiffStates[smallestDiffIndex];
-                        state.copyFrom(game);
-                        state.applyRoll(roll, tempMoveList);
-
-                        boolean seenBest = false;
-                        smallestDiffBestWP[smallestDiffIndex] = bestWP;
-                        smallestDiffBestMove[smallestDiffIndex] = -2;
-                        smallestDiffSecondBestMove[smallestDiffIndex] = -2;
-                        for (int moveIndex = 0; moveIndex < tempMoveList.moveCount; ++moveIndex) {
-                            int pathIndex = tempMoveList.moves[moveIndex];
-                            tempGame2.copyFrom(state);
-                            tempGame2.applyMove(pathIndex);
-                            double wp = lut.getLightWinPercent(tempGame2, tempGame);
-                            if (wp == bestWP) {
-                                // Handle the case where the diff is zero.
-                                if (!seenBest) {
-                                    smallestDiffBestMove[smallestDiffIndex] = pathIndex;
-                                    seenBest = true;
-                                } else {
-                                    smallestDiffSecondBestMove[smallestDiffIndex] = pathIndex;
-                                }
-                            } else if (wp == secondBestWP) {
-                                smallestDiffSecondBestMove[smallestDiffIndex] = pathIndex;
-                            }
-                        }
-                    }
+            double diff = bestWP - secondBestWP;
+            if (diff == 0) {
+                equalCount += 1;
+            }
+
+            // Keep track of the smallest difference states.
+            double currentMin = differences.min();
+            if (differences.count() == 0 || diff < currentMin) {
+                minDiffCount = 1;
+            } else if (diff == currentMin) {
+                minDiffCount += 1;
+            }
+            if (smallestDiffs.size() < SMALLEST_DIFF_STATE_COUNT || diff < smallestDiffs.peek().diff) {
+                SmallDiffState entry;
+                if (smallestDiffs.size() < SMALLEST_DIFF_STATE_COUNT) {
+                    entry = new SmallDiffState(settings);
+                } else {
+                    entry = smallestDiffs.poll();
                 }
+                entry.state.copyFrom(game);
+                entry.state.applyRoll(roll, tempMoveList);
+                entry.diff = diff;
+                entry.bestWP = bestWP;
+                entry.secondBestWP = secondBestWP;
+                smallestDiffs.add(entry);
+            }
 
-                // Keep track of difference statistics.
-                differences.add(diff);
-                double log10Diff = Math.log10(Math.max(histogramMin, Math.min(histogramMax, diff)));
-                differencesHistogram.add(log10Diff);
+            // Keep track of difference statistics.
+            differences.add(diff);
+            double log10Diff = Math.log10(Math.max(HISTOGRAM_MIN, Math.min(HISTOGRAM_MAX, diff)));
+            differencesHistogram.add(log10Diff);
+        }
+
+        void merge(MoveStatsAccumulator other) {
+            if (other.differences.count() > 0) {
+                double min = differences.min();
+                double otherMin = other.differences.min();
+                if (differences.count() == 0 || otherMin < min) {
+                    minDiffCount = other.minDiffCount;
+                } else if (otherMin == min) {
+                    minDiffCount += other.minDiffCount;
+                }
             }
-        });
-        System.out.println("Done");
-        System.out.println();
-        System.out.printf("Found %d state/roll pairs where the best move is ambiguous%n", equalCount.get());
-        System.out.println("* Difference between moves in a pair:");
-        System.out.printf(" - Min = %g%n", differences.min());
-        System.out.printf(" - Max = %g%n", differences.max());
-        System.out.printf(" - Mean = %g%n", differences.mean());
-        System.out.printf(" - Std. Dev. = %g%n", differences.stdDev());
-        System.out.println();
-        System.out.println("Histogram of differences: (log10 bins)");
-        System.out.println(differencesHistogram.toLog10String());
+            equalCount += other.equalCount;
+            differences.merge(other.differences);
+            differencesHistogram.merge(other.differencesHistogram);
 
-        // We don't really handle the zero case very well, so skip it.
-        if (differences.min() > 0) {
-            System.out.println();
-            System.out.printf(
-                    "Found %d state/roll pairs at the minimum difference of %g%n",
-                    smallestDiffStateCount.get(), differences.min()
-            );
-            for (int index = 0; index < smallestDiffStateCount.get(); ++index) {
-                FastSimpleGame state = smallestDiffStates[index];
-                System.out.printf(
-                        "* State = %s%nTop move = %s (%g%%)%n2nd move = %s (-%g%%)%n",
-                        state.toString(),
-                        FastSimpleMoveList.moveToString(state, smallestDiffBestMove[index]),
-                        smallestDiffBestWP[index],
-                        FastSimpleMoveList.moveToString(state, smallestDiffSecondBestMove[index]),
-                        differences.min()
-                );
+            for (SmallDiffState entry : other.smallestDiffs) {
+                if (smallestDiffs.size() < SMALLEST_DIFF_STATE_COUNT) {
+                    smallestDiffs.add(entry);
+                } else if (entry.diff < smallestDiffs.peek().diff) {
+                    smallestDiffs.poll();
+                    smallestDiffs.add(entry);
+                }
             }
         }
     }
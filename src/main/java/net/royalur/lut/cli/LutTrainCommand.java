@@ -1,13 +1,11 @@
 package net.royalur.lut.cli;
 
 import net.royalur.cli.*;
-import net.royalur.lut.GameStateEncoding;
-import net.royalur.lut.Lut;
-import net.royalur.lut.LutTrainer;
-import net.royalur.lut.SimpleGameStateEncoding;
+import net.royalur.lut.*;
 import net.royalur.lut.buffer.ValueType;
 import net.royalur.model.GameSettings;
 import net.royalur.notation.JsonNotation;
+import net.royalur.rules.simple.fast.FastSimpleEngineType;
 import net.royalur.util.FileUtils;
 
 import javax.annotation.Nullable;
@@ -30,6 +28,12 @@ public class LutTrainCommand extends CLICommand {
                 "--settings", CLIArgumentType.GAME_SETTINGS,
                 "Game settings (default finkel)"
         );
+        addOptionalArg(
+                "--pieces", CLIArgumentType.INTEGER,
+                "Override the starting piece count of the game settings.",
+                "Wide keys are used when this exceeds "
+                        + SimpleGameStateEncoding.MAX_STARTING_PIECE_COUNT
+        );
         addOptionalArg(
                 "--checkpoint", CLIArgumentType.FILE,
                 "Path to checkpoint file (default <output>.checkpoint.rgu)"
@@ -52,6 +56,10 @@ public class LutTrainCommand extends CLICommand {
                 "Value type to save the final output using",
                 "(default percent16)"
         );
+        addOptionalArg(
+                "--engine", CLIArgumentType.ENGINE_TYPE,
+                "The engine to apply moves with while training (default board)"
+        );
         addOptionalArg(
                 "--author", CLIArgumentType.TEXT,
                 "Include metadata about who trained the model"
@@ -60,10 +68,15 @@ public class LutTrainCommand extends CLICommand {
 
     @Override
     public @Nullable CLIHandler handle(CLI cli) {
-        GameSettings settings = cli.readKeywordMap(
+        GameSettings baseSettings = cli.readKeywordMap(
                 "--settings", CLIConstants.SETTINGS_BY_CLI_NAME, GameSettings.FINKEL
         );
-        String settingsCLIName = CLIConstants.getCLIName(settings);
+        int pieceCount = cli.readKeywordInt("--pieces", baseSettings.getStartingPieceCount());
+        if (pieceCount < 1)
+            throw new CLIArgumentException("--pieces must be at least 1");
+
+        GameSettings settings = baseSettings.withStartingPieceCount(pieceCount);
+        boolean useWideKeys = (pieceCount > SimpleGameStateEncoding.MAX_STARTING_PIECE_COUNT);
         File outputFile = cli.readKeywordFile(
                 "--output", null
         );
@@ -83,6 +96,9 @@ public class LutTrainCommand extends CLICommand {
                 "--output-value-type", CLIConstants.VALUE_TYPE_BY_CLI_NAME, ValueType.PERCENT16
         );
         double precision = cli.readKeywordDouble("--precision", 0.0001d);
+        FastSimpleEngineType engineType = cli.readKeywordMap(
+                "--engine", CLIConstants.ENGINE_TYPE_BY_CLI_NAME, FastSimpleEngineType.BOARD
+        );
         String author = cli.readKeywordOrNull("--author");
 
         File outputDir = outputFile.getParentFile();
@@ -97,18 +113,24 @@ public class LutTrainCommand extends CLICommand {
         }
 
         return () -> {
-            GameStateEncoding encoding = new SimpleGameStateEncoding(settings);
             JsonNotation jsonNotation = new JsonNotation();
-            LutTrainer trainer = new LutTrainer(settings, encoding, trainingValueType, jsonNotation);
+            LutTrainer trainer;
+            if (useWideKeys) {
+                WideGameStateEncoding encoding = new WideSimpleGameStateEncoding(settings);
+                trainer = new LutTrainer(settings, encoding, trainingValueType, jsonNotation, engineType);
+            } else {
+                GameStateEncoding encoding = new SimpleGameStateEncoding(settings);
+                trainer = new LutTrainer(settings, encoding, trainingValueType, jsonNotation, engineType);
+            }
 
             // Read a checkpoint to train from.
-            Lut lut;
+            WinPercentLut lut;
             if (readFromFile != null) {
-                lut = Lut.read(readFromFile);
+                lut = (useWideKeys ? WideLut.read(readFromFile) : Lut.read(readFromFile));
             } else {
                 System.out.println("Populating new map...");
                 long populateStart = System.nanoTime();
-                lut = trainer.populateNewLut();
+                lut = (useWideKeys ? trainer.populateNewWideLut() : trainer.populateNewLut());
                 double populateDurationMs = (System.nanoTime() - populateStart) / 1e6;
                 System.out.println(
                         "Populating new map took "
@@ -43,6 +43,27 @@ public class LutMap {
         return index;
     }
 
+    /**
+     * Finds the index of a key that is known to be at or after {@code fromIndex}.
+     * This is used to look up many sorted keys. The search gallops forwards from
+     * {@code fromIndex} before searching, so that keys that are close to the
+     * previous key are found quickly.
+     */
+    public int indexOfKey(int lowerKey, int fromIndex) {
+        int lower = fromIndex;
+        int step = 1;
+        while (lower + step < entryCount && Integer.compareUnsigned(keyBuffer.getInt(lower + step), lowerKey) < 0) {
+            lower += step;
+            step *= 2;
+        }
+        int upper = Math.min(entryCount, lower + step + 1);
+        int index = keyBuffer.indexOfBinarySearch(lowerKey, lower, upper);
+        if (index == -1)
+            throw new IllegalArgumentException("Could not find key: " + Integer.toHexString(lowerKey));
+
+        return index;
+    }
+
     public long getLong(int lowerKey) {
         return valueBuffer.getLong(indexOfKey(lowerKey));
     }
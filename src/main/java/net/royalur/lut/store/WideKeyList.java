@@ -0,0 +1,105 @@
+package net.royalur.lut.store;
+
+import net.royalur.lut.WideGameStateEncoding;
+import net.royalur.lut.buffer.UInt64ValueBuffer;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of wide keys, that can be sorted into
+ * a key buffer for use in a {@link WideLutMap}.
+ */
+public class WideKeyList {
+
+    private final int keyLength;
+    private long[] keys;
+    private int entryCount;
+
+    public WideKeyList(int keyLength, int initialCapacity) {
+        if (keyLength < 1)
+            throw new IllegalArgumentException("keyLength must be at least 1");
+
+        this.keyLength = keyLength;
+        this.keys = new long[keyLength * Math.max(1, initialCapacity)];
+        this.entryCount = 0;
+    }
+
+    public WideKeyList(int keyLength) {
+        this(keyLength, 1024);
+    }
+
+    public int getKeyLength() {
+        return keyLength;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public void add(long[] key) {
+        int offset = entryCount * keyLength;
+        if (offset + keyLength > keys.length) {
+            keys = Arrays.copyOf(keys, Math.multiplyExact(2, keys.length));
+        }
+        System.arraycopy(key, 0, keys, offset, keyLength);
+        entryCount += 1;
+    }
+
+    /**
+     * Sorts the keys in unsigned ascending order, using a bottom-up merge sort.
+     */
+    public void sort() {
+        int keyLength = this.keyLength;
+        long[] input = keys;
+        long[] output = new long[input.length];
+
+        for (int width = 1; width < entryCount; width *= 2) {
+            for (int start = 0; start < entryCount; start += 2 * width) {
+                int middle = Math.min(start + width, entryCount);
+                int end = Math.min(start + 2 * width, entryCount);
+
+                int left = start;
+                int right = middle;
+                int outputIndex = start;
+                while (left < middle && right < end) {
+                    int comparison = WideGameStateEncoding.compareLowerKeys(
+                            input, left * keyLength, input, right * keyLength, keyLength
+                    );
+                    int source;
+                    if (comparison <= 0) {
+                        source = left++;
+                    } else {
+                        source = right++;
+                    }
+                    System.arraycopy(input, source * keyLength, output, outputIndex * keyLength, keyLength);
+                    outputIndex += 1;
+                }
+                int remainingFrom = (left < middle ? left : right);
+                int remainingTo = (left < middle ? middle : end);
+                System.arraycopy(
+                        input, remainingFrom * keyLength,
+                        output, outputIndex * keyLength,
+                        (remainingTo - remainingFrom) * keyLength
+                );
+            }
+            long[] temp = input;
+            input = output;
+            output = temp;
+        }
+        keys = input;
+    }
+
+    /**
+     * Sorts the keys, and copies them into a new key buffer.
+     */
+    public UInt64ValueBuffer toSortedBuffer() {
+        sort();
+
+        int wordCount = entryCount * keyLength;
+        UInt64ValueBuffer buffer = new UInt64ValueBuffer(wordCount);
+        for (int index = 0; index < wordCount; ++index) {
+            buffer.set(index, keys[index]);
+        }
+        return buffer;
+    }
+}
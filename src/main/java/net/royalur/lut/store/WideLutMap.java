@@ -0,0 +1,115 @@
+package net.royalur.lut.store;
+
+import net.royalur.lut.WideGameStateEncoding;
+import net.royalur.lut.buffer.FloatValueBuffer;
+import net.royalur.lut.buffer.UInt64ValueBuffer;
+
+/**
+ * A big map of wide keys and values for a WideLut. Each key is made
+ * up of {@link #getKeyLength()} consecutive uint64 words in the key
+ * buffer, and keys are sorted in unsigned ascending order.
+ */
+public class WideLutMap {
+
+    private static final int BINARY_TO_LINEAR_SEARCH_THRESHOLD = 16;
+
+    private final int entryCount;
+    private final int keyLength;
+    private final UInt64ValueBuffer keyBuffer;
+    private final FloatValueBuffer valueBuffer;
+
+    public WideLutMap(
+            int entryCount,
+            int keyLength,
+            UInt64ValueBuffer keyBuffer,
+            FloatValueBuffer valueBuffer
+    ) {
+        if (keyLength < 1)
+            throw new IllegalArgumentException("keyLength must be at least 1");
+        if ((long) entryCount * keyLength > keyBuffer.getCapacity())
+            throw new IllegalArgumentException("keyBuffer is smaller than entryCount * keyLength");
+        if (entryCount > valueBuffer.getCapacity())
+            throw new IllegalArgumentException("valueBuffer is smaller than entryCount");
+
+        this.entryCount = entryCount;
+        this.keyLength = keyLength;
+        this.keyBuffer = keyBuffer;
+        this.valueBuffer = valueBuffer;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public int getKeyLength() {
+        return keyLength;
+    }
+
+    public UInt64ValueBuffer getKeyBuffer() {
+        return keyBuffer;
+    }
+
+    public FloatValueBuffer getValueBuffer() {
+        return valueBuffer;
+    }
+
+    private int compareKeyAt(int index, long[] key) {
+        UInt64ValueBuffer keyBuffer = this.keyBuffer;
+        int keyLength = this.keyLength;
+        int offset = index * keyLength;
+        for (int word = keyLength - 1; word >= 0; --word) {
+            int comparison = Long.compareUnsigned(keyBuffer.getLong(offset + word), key[word]);
+            if (comparison != 0)
+                return comparison;
+        }
+        return 0;
+    }
+
+    public int indexOfKeyOrMinusOne(long[] key) {
+        int lower = 0;
+        int upper = entryCount;
+        while (upper > lower + BINARY_TO_LINEAR_SEARCH_THRESHOLD) {
+            int middleIndex = lower + (upper - lower) / 2;
+            int comparison = compareKeyAt(middleIndex, key);
+            if (comparison == 0)
+                return middleIndex;
+
+            if (comparison > 0) {
+                upper = middleIndex;
+            } else {
+                lower = middleIndex + 1;
+            }
+        }
+        for (int index = lower; index < upper; ++index) {
+            if (compareKeyAt(index, key) == 0)
+                return index;
+        }
+        return -1;
+    }
+
+    public int indexOfKey(long[] key) {
+        int index = indexOfKeyOrMinusOne(key);
+        if (index == -1) {
+            throw new IllegalArgumentException(
+                    "Could not find key: " + WideGameStateEncoding.formatLowerKey(key)
+            );
+        }
+        return index;
+    }
+
+    public double getDouble(long[] key) {
+        return valueBuffer.getDouble(indexOfKey(key));
+    }
+
+    public float getFloat(long[] key) {
+        return valueBuffer.getFloat(indexOfKey(key));
+    }
+
+    public double set(long[] key, double value) {
+        return valueBuffer.set(indexOfKey(key), value);
+    }
+
+    public float set(long[] key, float value) {
+        return valueBuffer.set(indexOfKey(key), value);
+    }
+}
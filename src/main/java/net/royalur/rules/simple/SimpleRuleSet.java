@@ -8,6 +8,7 @@ import net.royalur.model.shape.BoardShape;
 import net.royalur.rules.PieceProvider;
 import net.royalur.rules.PlayerStateProvider;
 import net.royalur.rules.RuleSet;
+import net.royalur.rules.simple.fast.FastSimpleBitboardGame;
 import net.royalur.rules.simple.fast.FastSimpleGame;
 import net.royalur.rules.state.*;
 
@@ -68,6 +69,10 @@ public class SimpleRuleSet extends RuleSet {
         return new FastSimpleGame(this.getSettings());
     }
 
+    public FastSimpleBitboardGame createCompatibleBitboardGame() {
+        return new FastSimpleBitboardGame(this.getSettings());
+    }
+
     @Override
     public boolean areRosettesSafe() {
         return safeRosettes;
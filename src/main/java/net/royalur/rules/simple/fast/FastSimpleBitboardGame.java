@@ -0,0 +1,571 @@
+package net.royalur.rules.simple.fast;
+
+import net.royalur.Game;
+import net.royalur.model.*;
+import net.royalur.model.shape.BoardShape;
+import net.royalur.rules.state.GameState;
+import net.royalur.rules.state.WaitingForMoveGameState;
+
+import javax.annotation.Nullable;
+
+/**
+ * A simple game that represents the pieces of each player as a
+ * bitmask of the path indices that they occupy. This provides the
+ * same operations as {@link FastSimpleGame}, and produces moves in
+ * the same order, but generates moves using shifts and masks rather
+ * than by looping over the tiles of the board.
+ */
+public class FastSimpleBitboardGame implements FastSimpleEngine {
+
+    public final GameSettings settings;
+    public final FastSimpleFlags flags;
+    public final boolean areRosettesSafe;
+    public final boolean rosettesGrantExtraRoll;
+    public final boolean capturesGrantExtraRoll;
+    public final int startingPieceCount;
+    public final int pathLength;
+
+    /**
+     * Bits 1 to pathLength inclusive, which represent destinations on the
+     * board after a shifted source mask has been moved by a roll.
+     */
+    private final long boardDestinationMask;
+
+    /**
+     * For each tile index, a mask of the path indices of
+     * the light or dark player that are on that tile.
+     */
+    private final long[] lightTilePathMasks;
+    private final long[] darkTilePathMasks;
+
+    /**
+     * Whether each tile index is a rosette.
+     */
+    private final boolean[] rosetteTiles;
+
+    public final FastSimplePlayer light;
+    public final FastSimplePlayer dark;
+
+    /**
+     * Bit i is set if light has a piece at index i of their path.
+     */
+    public long lightOccupancy;
+
+    /**
+     * Bit i is set if dark has a piece at index i of their path.
+     */
+    public long darkOccupancy;
+
+    public boolean isLightTurn;
+    public int rollValue;
+    public boolean isFinished;
+
+    public FastSimpleBitboardGame(FastSimpleFlags flags) {
+        this.settings = flags.settings;
+        this.flags = flags;
+        this.areRosettesSafe = settings.areRosettesSafe();
+        this.rosettesGrantExtraRoll = settings.doRosettesGrantExtraRolls();
+        this.capturesGrantExtraRoll = settings.doCapturesGrantExtraRolls();
+        this.startingPieceCount = settings.getStartingPieceCount();
+        this.pathLength = flags.pathLength;
+        this.boardDestinationMask = ((1L << pathLength) - 1) << 1;
+        this.lightTilePathMasks = calculateTilePathMasks(flags.lightPathBoardIndices, flags.boardIndexCount);
+        this.darkTilePathMasks = calculateTilePathMasks(flags.darkPathBoardIndices, flags.boardIndexCount);
+
+        BoardShape shape = settings.getBoardShape();
+        this.rosetteTiles = new boolean[flags.boardIndexCount];
+        for (Tile tile : shape.getRosetteTiles()) {
+            rosetteTiles[tile.getXIndex() + shape.getWidth() * tile.getYIndex()] = true;
+        }
+
+        this.light = new FastSimplePlayer(flags.lightPathBoardIndices, true);
+        this.dark = new FastSimplePlayer(flags.darkPathBoardIndices, false);
+
+        this.isLightTurn = true;
+        this.rollValue = -1;
+        this.isFinished = false;
+    }
+
+    public FastSimpleBitboardGame(GameSettings settings) {
+        this(new FastSimpleFlags(settings));
+    }
+
+    private static long[] calculateTilePathMasks(int[] pathBoardIndices, int boardIndexCount) {
+        long[] masks = new long[boardIndexCount];
+        for (int pathIndex = 0; pathIndex < pathBoardIndices.length; ++pathIndex) {
+            masks[pathBoardIndices[pathIndex]] |= 1L << pathIndex;
+        }
+        return masks;
+    }
+
+    @Override
+    public GameSettings getSettings() {
+        return settings;
+    }
+
+    @Override
+    public FastSimpleEngineType getEngineType() {
+        return FastSimpleEngineType.BITBOARD;
+    }
+
+    @Override
+    public boolean isLightTurn() {
+        return isLightTurn;
+    }
+
+    @Override
+    public int getRollValue() {
+        return rollValue;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    @Override
+    public FastSimplePlayer getPlayer(boolean isLight) {
+        return isLight ? light : dark;
+    }
+
+    @Override
+    public FastSimplePlayer getTurnPlayer() {
+        return getPlayer(isLightTurn);
+    }
+
+    @Override
+    public int getTileCount() {
+        return lightTilePathMasks.length;
+    }
+
+    /**
+     * Finds the piece on a tile from the occupancy masks. If a path visits
+     * the tile more than once, only one of its path indices can be occupied.
+     */
+    @Override
+    public int getPiece(int tileIndex) {
+        long lightPiece = lightOccupancy & lightTilePathMasks[tileIndex];
+        if (lightPiece != 0)
+            return Long.numberOfTrailingZeros(lightPiece) + 1;
+
+        long darkPiece = darkOccupancy & darkTilePathMasks[tileIndex];
+        if (darkPiece != 0)
+            return -(Long.numberOfTrailingZeros(darkPiece) + 1);
+
+        return 0;
+    }
+
+    @Override
+    public boolean isTileRosette(int tileIndex) {
+        return rosetteTiles[tileIndex];
+    }
+
+    @Override
+    public int getMoveDestTile(int pathIndex) {
+        int[] path = getTurnPlayer().path;
+        int destPathIndex = pathIndex + rollValue;
+        return (destPathIndex < path.length ? path[destPathIndex] : -1);
+    }
+
+    @Override
+    public void copyFrom(FastSimpleEngine other) {
+        if (other instanceof FastSimpleBitboardGame otherGame) {
+            this.lightOccupancy = otherGame.lightOccupancy;
+            this.darkOccupancy = otherGame.darkOccupancy;
+        } else {
+            int[] lightPath = light.path;
+            int[] darkPath = dark.path;
+
+            long lightOccupancy = 0;
+            long darkOccupancy = 0;
+            for (int pathIndex = 0; pathIndex < pathLength; ++pathIndex) {
+                if (other.getPiece(lightPath[pathIndex]) == pathIndex + 1) {
+                    lightOccupancy |= 1L << pathIndex;
+                }
+                if (other.getPiece(darkPath[pathIndex]) == -(pathIndex + 1)) {
+                    darkOccupancy |= 1L << pathIndex;
+                }
+            }
+            this.lightOccupancy = lightOccupancy;
+            this.darkOccupancy = darkOccupancy;
+        }
+
+        light.copyFrom(other.getPlayer(true));
+        dark.copyFrom(other.getPlayer(false));
+        this.isLightTurn = other.isLightTurn();
+        this.rollValue = other.getRollValue();
+        this.isFinished = other.isFinished();
+    }
+
+    @Override
+    public void copyFrom(GameState state) {
+        Board board = state.getBoard();
+        long lightOccupancy = 0;
+        long darkOccupancy = 0;
+        for (Tile tile : board.getShape().getTiles()) {
+            Piece piece = board.get(tile);
+            if (piece == null)
+                continue;
+
+            if (piece.getOwner() == PlayerType.LIGHT) {
+                lightOccupancy |= 1L << piece.getPathIndex();
+            } else {
+                darkOccupancy |= 1L << piece.getPathIndex();
+            }
+        }
+        this.lightOccupancy = lightOccupancy;
+        this.darkOccupancy = darkOccupancy;
+
+        light.copyFrom(state.getLightPlayer());
+        dark.copyFrom(state.getDarkPlayer());
+        this.isLightTurn = (state.getSubject() == PlayerType.LIGHT);
+        this.rollValue = (state instanceof WaitingForMoveGameState wfm ? wfm.getRoll().value() : -1);
+        this.isFinished = state.isFinished();
+    }
+
+    public void copyFrom(Game game) {
+        copyFrom(game.getState());
+    }
+
+    /**
+     * Copies the state of this game into {@code output}, so that it can be
+     * used with code that expects a {@link FastSimpleGame}, such as the
+     * encodings used by lookup tables.
+     */
+    public FastSimpleGame copyTo(FastSimpleGame output) {
+        FastSimpleBoard board = output.board;
+        board.clear();
+
+        int[] lightPath = light.path;
+        long lightRemaining = lightOccupancy;
+        while (lightRemaining != 0) {
+            int pathIndex = Long.numberOfTrailingZeros(lightRemaining);
+            board.set(lightPath[pathIndex], pathIndex + 1);
+            lightRemaining &= lightRemaining - 1;
+        }
+
+        int[] darkPath = dark.path;
+        long darkRemaining = darkOccupancy;
+        while (darkRemaining != 0) {
+            int pathIndex = Long.numberOfTrailingZeros(darkRemaining);
+            board.set(darkPath[pathIndex], -(pathIndex + 1));
+            darkRemaining &= darkRemaining - 1;
+        }
+
+        output.light.copyFrom(light);
+        output.dark.copyFrom(dark);
+        output.isLightTurn = isLightTurn;
+        output.rollValue = rollValue;
+        output.isFinished = isFinished;
+        return output;
+    }
+
+    @Override
+    public void reset() {
+        this.lightOccupancy = 0;
+        this.darkOccupancy = 0;
+        light.pieces = startingPieceCount;
+        light.score = 0;
+        dark.pieces = startingPieceCount;
+        dark.score = 0;
+        this.isLightTurn = true;
+        this.rollValue = -1;
+        this.isFinished = false;
+    }
+
+    /**
+     * Checks whether a roll of the dice is expected.
+     * This may return true when the game has already
+     * finished. Therefore, if the game may have finished,
+     * you should check that first.
+     * @return Whether a roll of the dice is expected.
+     */
+    @Override
+    public boolean isWaitingForRoll() {
+        return rollValue < 0;
+    }
+
+    /**
+     * Checks whether moving a piece is expected.
+     * This may return true when the game has already
+     * finished. Therefore, if the game may have finished,
+     * you should check that first.
+     * @return Whether moving a piece is expected.
+     */
+    @Override
+    public boolean isWaitingForMove() {
+        return rollValue >= 0;
+    }
+
+    /**
+     * Populates {@code moveList} with all available moves in the current state of the game.
+     * Moves are added in the same order as {@link FastSimpleGame#findAvailableMoves}.
+     */
+    @Override
+    public void findAvailableMoves(FastSimpleMoveList moveList) {
+        moveList.clear();
+
+        int rollValue = this.rollValue;
+        if (rollValue < 0)
+            throw new IllegalStateException("No roll has been made");
+        if (rollValue == 0)
+            return;
+
+        boolean isLightTurn = this.isLightTurn;
+        FastSimplePlayer turnPlayer = getTurnPlayer();
+        long ownOccupancy = (isLightTurn ? lightOccupancy : darkOccupancy);
+        long otherOccupancy = (isLightTurn ? darkOccupancy : lightOccupancy);
+
+        // Check if a piece can be taken off the board.
+        int scorePathIndex = pathLength - rollValue;
+        if (scorePathIndex >= 0 && (ownOccupancy & (1L << scorePathIndex)) != 0) {
+            moveList.add(scorePathIndex);
+        }
+
+        // Pieces cannot move onto their own pieces, or onto
+        // the other player's pieces on rosettes if they are safe.
+        long blocked = flags.translatePathMask(ownOccupancy, isLightTurn, isLightTurn);
+        if (areRosettesSafe) {
+            long otherBlocked = flags.translatePathMask(otherOccupancy, !isLightTurn, isLightTurn);
+            long rosettes = (isLightTurn ? flags.lightRosettePathMask : flags.darkRosettePathMask);
+            blocked |= otherBlocked & rosettes;
+        }
+
+        // Bit j of the sources represents a piece at path index j - 1,
+        // so that bit 0 represents introducing a new piece.
+        long sources = ownOccupancy << 1;
+        if (turnPlayer.pieces > 0) {
+            sources |= 1;
+        }
+        long destinations = (sources << rollValue) & boardDestinationMask & ~(blocked << 1);
+        long movable = destinations >>> rollValue;
+        while (movable != 0) {
+            moveList.add(Long.numberOfTrailingZeros(movable) - 1);
+            movable &= movable - 1;
+        }
+    }
+
+    /**
+     * Applies a roll of the dice, and populates {@code moveList} with the
+     * moves that are available after the roll.
+     * @return A token that can be passed to {@link #undoRoll(int)}.
+     */
+    @Override
+    public int applyRoll(int rollValue, FastSimpleMoveList moveList) {
+        if (this.rollValue >= 0)
+            throw new IllegalStateException("A roll has already been made");
+
+        int undoToken = (isLightTurn ? FastSimpleGame.UNDO_LIGHT_TURN_FLAG : 0);
+
+        // Swap turn when rolling a zero.
+        if (rollValue == 0) {
+            isLightTurn = !isLightTurn;
+            moveList.clear();
+            return undoToken;
+        }
+
+        // Determine if the player has any available moves.
+        this.rollValue = rollValue;
+        findAvailableMoves(moveList);
+        if (moveList.moveCount == 0) {
+            isLightTurn = !isLightTurn;
+            this.rollValue = -1;
+        }
+        return undoToken;
+    }
+
+    /**
+     * Reverts a roll that was applied using {@link #applyRoll}.
+     * @param undoToken The token returned by applyRoll.
+     */
+    @Override
+    public void undoRoll(int undoToken) {
+        this.isLightTurn = (undoToken & FastSimpleGame.UNDO_LIGHT_TURN_FLAG) != 0;
+        this.rollValue = -1;
+    }
+
+    /**
+     * Moves the piece at {@code pathIndex} of the current player's path
+     * by the current roll, or introduces a piece if pathIndex is -1.
+     * @return A token in the same format as {@link FastSimpleGame#applyMove(int)},
+     *         that can also be passed to {@link #undoMove(int)}.
+     */
+    @Override
+    public int applyMove(int pathIndex) {
+        int rollValue = this.rollValue;
+        if (rollValue < 0)
+            throw new IllegalStateException("No roll has been made");
+
+        int resultStatus = (isLightTurn ? FastSimpleGame.UNDO_LIGHT_TURN_FLAG : 0)
+                | (rollValue << FastSimpleGame.UNDO_ROLL_SHIFT)
+                | ((pathIndex + 1) << FastSimpleGame.UNDO_PATH_INDEX_SHIFT);
+
+        // We are using the roll now, so clear it.
+        this.rollValue = -1;
+
+        boolean isLightTurn = this.isLightTurn;
+        FastSimplePlayer turnPlayer = getTurnPlayer();
+        long ownOccupancy = (isLightTurn ? lightOccupancy : darkOccupancy);
+        long otherOccupancy = (isLightTurn ? darkOccupancy : lightOccupancy);
+
+        if (pathIndex >= 0) {
+            // Moving a piece on the board.
+            ownOccupancy &= ~(1L << pathIndex);
+        } else {
+            // Introducing a piece to the board.
+            turnPlayer.pieces -= 1;
+            resultStatus |= FastSimpleGame.MOVE_STATUS_INTRODUCED;
+        }
+
+        int destPathIndex = pathIndex + rollValue;
+        boolean grantExtraRoll = false;
+
+        if (destPathIndex < pathLength) {
+            // Moving a piece on the board.
+            long destBit = 1L << destPathIndex;
+            long captured = otherOccupancy & flags.translatePathMask(destBit, isLightTurn, !isLightTurn);
+            if (captured != 0) {
+                otherOccupancy &= ~captured;
+                int capturedPathIndex = Long.numberOfTrailingZeros(captured);
+                resultStatus |= (capturedPathIndex + 1) << FastSimpleGame.UNDO_CAPTURED_SHIFT;
+                getPlayer(!isLightTurn).pieces += 1;
+                resultStatus |= FastSimpleGame.MOVE_STATUS_CAPTURED;
+                grantExtraRoll = capturesGrantExtraRoll;
+            }
+            ownOccupancy |= destBit;
+
+            long rosettes = (isLightTurn ? flags.lightRosettePathMask : flags.darkRosettePathMask);
+            grantExtraRoll |= rosettesGrantExtraRoll && (rosettes & destBit) != 0;
+
+        } else {
+            // Scoring a piece.
+            turnPlayer.score += 1;
+            resultStatus |= FastSimpleGame.MOVE_STATUS_SCORED;
+        }
+
+        if (isLightTurn) {
+            lightOccupancy = ownOccupancy;
+            darkOccupancy = otherOccupancy;
+        } else {
+            darkOccupancy = ownOccupancy;
+            lightOccupancy = otherOccupancy;
+        }
+        if (turnPlayer.score >= startingPieceCount) {
+            isFinished = true;
+            return resultStatus;
+        }
+
+        // Determine whose turn it should be.
+        if (!grantExtraRoll) {
+            this.isLightTurn = !isLightTurn;
+        } else {
+            resultStatus |= FastSimpleGame.MOVE_STATUS_GRANTED_EXTRA_ROLL;
+        }
+        return resultStatus;
+    }
+
+    /**
+     * Reverts a move that was applied using {@link #applyMove(int)}.
+     * Moves must be undone in the reverse order to which they were applied.
+     * @param undoToken The token returned by applyMove.
+     */
+    @Override
+    public void undoMove(int undoToken) {
+        boolean wasLightTurn = (undoToken & FastSimpleGame.UNDO_LIGHT_TURN_FLAG) != 0;
+        int rollValue = (undoToken >>> FastSimpleGame.UNDO_ROLL_SHIFT) & FastSimpleGame.UNDO_FIELD_MASK;
+        int pathIndex = ((undoToken >>> FastSimpleGame.UNDO_PATH_INDEX_SHIFT) & FastSimpleGame.UNDO_FIELD_MASK) - 1;
+        int capturedPiece = (undoToken >>> FastSimpleGame.UNDO_CAPTURED_SHIFT) & FastSimpleGame.UNDO_FIELD_MASK;
+
+        FastSimplePlayer turnPlayer = getPlayer(wasLightTurn);
+        long ownOccupancy = (wasLightTurn ? lightOccupancy : darkOccupancy);
+        long otherOccupancy = (wasLightTurn ? darkOccupancy : lightOccupancy);
+
+        int destPathIndex = pathIndex + rollValue;
+        if (destPathIndex < pathLength) {
+            ownOccupancy &= ~(1L << destPathIndex);
+            if (capturedPiece != 0) {
+                otherOccupancy |= 1L << (capturedPiece - 1);
+                getPlayer(!wasLightTurn).pieces -= 1;
+            }
+        } else {
+            turnPlayer.score -= 1;
+        }
+
+        if (pathIndex >= 0) {
+            ownOccupancy |= 1L << pathIndex;
+        } else {
+            turnPlayer.pieces += 1;
+        }
+
+        if (wasLightTurn) {
+            lightOccupancy = ownOccupancy;
+            darkOccupancy = otherOccupancy;
+        } else {
+            darkOccupancy = ownOccupancy;
+            lightOccupancy = otherOccupancy;
+        }
+        this.isLightTurn = wasLightTurn;
+        this.rollValue = rollValue;
+        this.isFinished = false;
+    }
+
+    /**
+     * Copies the state of this game with the players swapped. If output is
+     * provided, the copy is placed into it. Otherwise, a new game is created.
+     * As the paths of the players are symmetrical, this only requires
+     * swapping the occupancy masks of the players.
+     * @param output An optional FastSimpleBitboardGame to update with the reversed
+     *               state of this game, instead of creating a new game.
+     * @return A game with the reversed state of this game.
+     */
+    @Override
+    public FastSimpleBitboardGame reversePlayers(@Nullable FastSimpleEngine output) {
+        FastSimpleBitboardGame outputGame;
+        if (output == null) {
+            outputGame = new FastSimpleBitboardGame(flags);
+        } else if (output instanceof FastSimpleBitboardGame game) {
+            outputGame = game;
+        } else {
+            throw new IllegalArgumentException("output must use the same engine as this game");
+        }
+        long lightOccupancy = this.lightOccupancy;
+        long darkOccupancy = this.darkOccupancy;
+        int lightScore = light.score;
+        int lightPieces = light.pieces;
+        int darkScore = dark.score;
+        int darkPieces = dark.pieces;
+
+        outputGame.isLightTurn = !isLightTurn;
+        outputGame.isFinished = isFinished;
+        outputGame.rollValue = rollValue;
+        outputGame.lightOccupancy = darkOccupancy;
+        outputGame.darkOccupancy = lightOccupancy;
+        outputGame.dark.score = lightScore;
+        outputGame.dark.pieces = lightPieces;
+        outputGame.light.score = darkScore;
+        outputGame.light.pieces = darkPieces;
+        return outputGame;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\n");
+        if (!isFinished) {
+            builder.append("  ").append(isLightTurn ? "light's turn" : "dark's turn").append(",\n");
+        } else {
+            builder.append("  ").append(isLightTurn ? "light won" : "dark won").append(",\n");
+        }
+        if (rollValue >= 0) {
+            builder.append("  rolled ").append(rollValue).append(",\n");
+        } else {
+            builder.append("  waiting for roll,\n");
+        }
+        builder.append("  ").append("light: ").append(light).append(",\n");
+        builder.append("  ").append("dark: ").append(dark).append(",\n");
+        builder.append("  ").append("light: ").append(Long.toBinaryString(lightOccupancy)).append(",\n");
+        builder.append("  ").append("dark: ").append(Long.toBinaryString(darkOccupancy)).append("\n");
+        builder.append("}");
+        return builder.toString();
+    }
+}
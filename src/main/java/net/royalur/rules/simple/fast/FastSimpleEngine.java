@@ -0,0 +1,143 @@
+package net.royalur.rules.simple.fast;
+
+import net.royalur.model.GameSettings;
+import net.royalur.rules.state.GameState;
+
+import javax.annotation.Nullable;
+
+/**
+ * The operations that are shared by the fast implementations of simple
+ * games, {@link FastSimpleGame} and {@link FastSimpleBitboardGame}. Both
+ * engines generate the same moves in the same order, and return the same
+ * tokens from applying moves, so code that uses this interface, such as
+ * training lookup tables, agents, and self-play, gets the same results
+ * using either engine.
+ * <p>
+ * Tiles are referenced by their index ix + iy * width on the board, and
+ * pieces use the same representation as {@link FastSimpleBoard#get(int)}.
+ */
+public interface FastSimpleEngine {
+
+    GameSettings getSettings();
+
+    /**
+     * Gets the type of this engine, which can be used to create
+     * other games that use the same engine.
+     * @return The type of this engine.
+     */
+    FastSimpleEngineType getEngineType();
+
+    boolean isLightTurn();
+
+    /**
+     * Gets the value of the current roll of the dice.
+     * @return The value of the roll, or -1 if waiting for a roll.
+     */
+    int getRollValue();
+
+    boolean isFinished();
+
+    /**
+     * Checks whether a roll of the dice is expected.
+     * This may return true when the game has already
+     * finished. Therefore, if the game may have finished,
+     * you should check that first.
+     * @return Whether a roll of the dice is expected.
+     */
+    boolean isWaitingForRoll();
+
+    /**
+     * Checks whether moving a piece is expected.
+     * This may return true when the game has already
+     * finished. Therefore, if the game may have finished,
+     * you should check that first.
+     * @return Whether moving a piece is expected.
+     */
+    boolean isWaitingForMove();
+
+    FastSimplePlayer getPlayer(boolean isLight);
+
+    FastSimplePlayer getTurnPlayer();
+
+    /**
+     * Gets the number of indices that can be used to reference a tile.
+     * This is not the area of the board.
+     * @return The number of tile indices.
+     */
+    int getTileCount();
+
+    /**
+     * Gets the piece on a tile of the board.
+     * @param tileIndex The index of the tile.
+     * @return Zero if empty, otherwise the absolute value of the returned
+     *         value gives the path index + 1, and the sign gives the player
+     *         (positive is light, negative is dark).
+     */
+    int getPiece(int tileIndex);
+
+    boolean isTileRosette(int tileIndex);
+
+    /**
+     * Gets the index of the tile that the piece at {@code pathIndex}
+     * of the current player's path would move to using the current roll.
+     * @return The index of the destination tile, or -1 if the piece would be scored.
+     */
+    int getMoveDestTile(int pathIndex);
+
+    /**
+     * Resets this game to the start of a game, with all pieces off
+     * the board and light waiting to roll.
+     */
+    void reset();
+
+    /**
+     * Copies the state of {@code other} into this game.
+     * The other game may use a different engine.
+     */
+    void copyFrom(FastSimpleEngine other);
+
+    void copyFrom(GameState state);
+
+    /**
+     * Populates {@code moveList} with all available moves in the current state of the game.
+     */
+    void findAvailableMoves(FastSimpleMoveList moveList);
+
+    /**
+     * Applies a roll of the dice, and populates {@code moveList} with the
+     * moves that are available after the roll.
+     * @return A token that can be passed to {@link #undoRoll(int)}.
+     */
+    int applyRoll(int rollValue, FastSimpleMoveList moveList);
+
+    /**
+     * Reverts a roll that was applied using {@link #applyRoll}.
+     * @param undoToken The token returned by applyRoll.
+     */
+    void undoRoll(int undoToken);
+
+    /**
+     * Moves the piece at {@code pathIndex} of the current player's path
+     * by the current roll, or introduces a piece if pathIndex is -1.
+     * @return A token holding the MOVE_STATUS flags of {@link FastSimpleGame},
+     *         that can also be passed to {@link #undoMove(int)}.
+     */
+    int applyMove(int pathIndex);
+
+    /**
+     * Reverts a move that was applied using {@link #applyMove(int)}.
+     * Moves must be undone in the reverse order to which they were applied.
+     * @param undoToken The token returned by applyMove.
+     */
+    void undoMove(int undoToken);
+
+    /**
+     * Copies the state of this game with the players swapped. If output is
+     * provided, the copy is placed into it. Otherwise, a new game is created.
+     * @param output An optional game that uses the same engine as this game,
+     *               to update with the reversed state of this game, instead
+     *               of creating a new game.
+     * @return A game with the reversed state of this game.
+     */
+    FastSimpleEngine reversePlayers(@Nullable FastSimpleEngine output);
+}
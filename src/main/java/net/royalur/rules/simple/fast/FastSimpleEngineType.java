@@ -0,0 +1,60 @@
+package net.royalur.rules.simple.fast;
+
+import net.royalur.model.GameSettings;
+
+/**
+ * The implementations of {@link FastSimpleEngine} that can be
+ * selected to train lookup tables, decide moves, and play games.
+ */
+public enum FastSimpleEngineType {
+
+    /**
+     * Stores the piece on each tile of the board, using {@link FastSimpleGame}.
+     */
+    BOARD("board") {
+        @Override
+        public FastSimpleGame create(GameSettings settings) {
+            return new FastSimpleGame(settings);
+        }
+    },
+
+    /**
+     * Stores the path indices that each player occupies as bitmasks,
+     * using {@link FastSimpleBitboardGame}. This requires the paths
+     * of the players to be symmetrical.
+     */
+    BITBOARD("bitboard") {
+        @Override
+        public FastSimpleBitboardGame create(GameSettings settings) {
+            return new FastSimpleBitboardGame(settings);
+        }
+    };
+
+    /**
+     * An ID representing this engine.
+     */
+    private final String id;
+
+    /**
+     * Instantiates a type of engine.
+     * @param id A constant ID representing this engine.
+     */
+    FastSimpleEngineType(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the ID that refers to this engine.
+     * @return The ID that refers to this engine.
+     */
+    public String getID() {
+        return id;
+    }
+
+    /**
+     * Creates a new game that uses this engine.
+     * @param settings The settings of the game.
+     * @return A new game that uses this engine.
+     */
+    public abstract FastSimpleEngine create(GameSettings settings);
+}
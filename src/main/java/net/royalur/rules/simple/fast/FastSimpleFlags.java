@@ -9,10 +9,14 @@ import net.royalur.util.TriConsumer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Spliterator;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Flags about the tiles on the board that can be accessed efficiently.
@@ -26,6 +30,23 @@ public class FastSimpleFlags {
     public static final int DARK_PATH_INDEX_SHIFT = 8;
     public static final int DARK_PATH_INDEX_MASK = 0b11111;
 
+    /**
+     * Path masks store one bit for each path index, plus room for the start
+     * and end of the path when shifting masks to generate moves.
+     */
+    public static final int MAX_PATH_MASK_LENGTH = 62;
+
+    /**
+     * Entries of move tables hold the board index of the destination
+     * tile in their lowest bits, followed by flags about the move.
+     * See {@link FastSimpleMoveTables#calculateMoveTable}.
+     */
+    public static final int MOVE_DEST_TILE_MASK = 0xFFFF;
+    public static final int MOVE_VALID_FLAG = 0x10000;
+    public static final int MOVE_SCORES_FLAG = 0x20000;
+    public static final int MOVE_DEST_ROSETTE_FLAG = 0x40000;
+    public static final int MOVE_GRANTS_EXTRA_ROLL_FLAG = 0x80000;
+
     public final GameSettings settings;
     private final int startingPieceCount;
 
@@ -35,6 +56,58 @@ public class FastSimpleFlags {
     public final int warTileCount;
     public final int safeTileCountPerPlayer;
 
+    /**
+     * The number of tiles on each player's path.
+     */
+    public final int pathLength;
+
+    /**
+     * The board indices of each tile on the light and dark paths.
+     */
+    public final int[] lightPathBoardIndices;
+    public final int[] darkPathBoardIndices;
+
+    /**
+     * For each path index of a player, a mask of the path indices of the
+     * same player that are on the same tile. Most paths only visit each
+     * tile once, but some paths, such as Murray's, revisit tiles.
+     */
+    public final long[] lightToLightTileMasks;
+    public final long[] darkToDarkTileMasks;
+
+    /**
+     * For each path index of a player, a mask of the path indices of
+     * the other player that are on the same tile.
+     */
+    public final long[] lightToDarkTileMasks;
+    public final long[] darkToLightTileMasks;
+
+    /**
+     * Whether each path visits each tile at most once, and shared tiles are
+     * at the same path index for both players. If this is true, path masks
+     * do not need to be translated between players.
+     */
+    public final boolean pathMasksMatch;
+
+    /**
+     * Bit i is set if path index i of the light or dark path
+     * is on a tile that is shared with the other player.
+     */
+    public final long lightSharedPathMask;
+    public final long darkSharedPathMask;
+
+    /**
+     * Bit i is set if path index i of each player's path is a rosette.
+     */
+    public final long lightRosettePathMask;
+    public final long darkRosettePathMask;
+
+    /**
+     * The tables of the destination of moving a piece from each path index
+     * by each roll, which are shared with the games that use these rules.
+     */
+    public final FastSimpleMoveTables moveTables;
+
     public FastSimpleFlags(GameSettings settings) {
         if (!isSymmetrical(settings))
             throw new IllegalArgumentException("Light & dark paths are not symmetrical");
@@ -47,10 +120,40 @@ public class FastSimpleFlags {
         this.nextBoardIndices = calculateNextBoardIndices(settings, tileFlags);
         this.warTileCount = calculateWarTileCount(tileFlags);
         this.safeTileCountPerPlayer = calculateSafeTileCountPerPlayer(tileFlags);
+
+        PathPair paths = settings.getPaths();
+        BoardShape shape = settings.getBoardShape();
+        this.pathLength = paths.getLight().size();
+        if (pathLength > MAX_PATH_MASK_LENGTH) {
+            throw new IllegalArgumentException(
+                    "Paths longer than " + MAX_PATH_MASK_LENGTH + " tiles are not supported"
+            );
+        }
+        this.lightPathBoardIndices = calculatePathBoardIndices(shape, paths.getLight());
+        this.darkPathBoardIndices = calculatePathBoardIndices(shape, paths.getDark());
+        this.lightToLightTileMasks = calculatePathTileMasks(paths.getLight(), paths.getLight());
+        this.darkToDarkTileMasks = calculatePathTileMasks(paths.getDark(), paths.getDark());
+        this.lightToDarkTileMasks = calculatePathTileMasks(paths.getLight(), paths.getDark());
+        this.darkToLightTileMasks = calculatePathTileMasks(paths.getDark(), paths.getLight());
+        this.lightSharedPathMask = calculateNonEmptyMask(lightToDarkTileMasks);
+        this.darkSharedPathMask = calculateNonEmptyMask(darkToLightTileMasks);
+
+        boolean pathMasksMatch = true;
+        for (int index = 0; index < pathLength; ++index) {
+            long self = 1L << index;
+            pathMasksMatch &= (lightToLightTileMasks[index] == self);
+            pathMasksMatch &= (darkToDarkTileMasks[index] == self);
+            pathMasksMatch &= (lightToDarkTileMasks[index] == 0 || lightToDarkTileMasks[index] == self);
+        }
+        this.pathMasksMatch = pathMasksMatch;
+        this.lightRosettePathMask = calculateRosettePathMask(shape, paths.getLight());
+        this.darkRosettePathMask = calculateRosettePathMask(shape, paths.getDark());
+        this.moveTables = FastSimpleMoveTables.get(settings);
     }
 
     public int countStates() {
-        return countStates(game -> true);
+        long lightStateCount = new FastSimpleStateCounter(this).countLightStates();
+        return Math.toIntExact(2 * lightStateCount);
     }
 
     public int countStates(Function<FastSimpleGame, Boolean> gameFilter) {
@@ -72,9 +175,23 @@ public class FastSimpleFlags {
     public void loopLightGameStatesAndNeighbours(
             BiConsumer<FastSimpleGame, Collection<FastSimpleGame>> consumer
     ) {
-        FastSimpleGame rollGame = new FastSimpleGame(settings);
-        FastSimpleGame moveGame = new FastSimpleGame(settings);
-        FastSimpleGame tempGame = new FastSimpleGame(settings);
+        loopLightGameStatesAndNeighbours(false, consumer);
+    }
+
+    /**
+     * If parallel is true, the consumer will be called concurrently from
+     * many threads, each with its own scratch games.
+     */
+    public void loopLightGameStatesAndNeighbours(
+            boolean parallel,
+            BiConsumer<FastSimpleGame, Collection<FastSimpleGame>> consumer
+    ) {
+        loopLightGameStates(parallel, () -> createNeighboursVisitor(consumer));
+    }
+
+    private Consumer<FastSimpleGame> createNeighboursVisitor(
+            BiConsumer<FastSimpleGame, Collection<FastSimpleGame>> consumer
+    ) {
         FastSimpleMoveList moveList = new FastSimpleMoveList();
         float[] probabilities = settings.getDice().createDice().getRollProbabilities();
 
@@ -85,7 +202,7 @@ public class FastSimpleFlags {
             gameObjects.add(new FastSimpleGame(settings));
         }
 
-        loopLightGameStates(game -> {
+        return game -> {
             if (game.isFinished)
                 return;
 
@@ -96,33 +213,49 @@ public class FastSimpleFlags {
                 if (probabilities[roll] <= 0.0f)
                     continue;
 
-                rollGame.copyFrom(game);
-                rollGame.applyRoll(roll, moveList);
+                int rollUndoToken = game.applyRoll(roll, moveList);
 
-                if (rollGame.isWaitingForMove()) {
+                if (game.isWaitingForMove()) {
                     for (int moveIndex = 0; moveIndex < moveList.moveCount; ++moveIndex) {
-                        moveGame.copyFrom(rollGame);
-                        moveGame.applyMove(moveList.moves[moveIndex]);
+                        int moveUndoToken = game.applyMove(moveList.moves[moveIndex]);
 
                         FastSimpleGame gameObject = gameObjects.get(gameObjectIndex++);
-                        gameObject.copyFrom(moveGame);
+                        gameObject.copyFrom(game);
                         neighbourList.add(gameObject);
+
+                        game.undoMove(moveUndoToken);
                     }
                 } else {
                     FastSimpleGame gameObject = gameObjects.get(gameObjectIndex++);
-                    gameObject.copyFrom(rollGame);
+                    gameObject.copyFrom(game);
                     neighbourList.add(gameObject);
                 }
+                game.undoRoll(rollUndoToken);
             }
             consumer.accept(game, neighbourList);
-        });
+        };
     }
 
     public void loopLightGameStatesAndRolls(
             TriConsumer<FastSimpleGame, Integer, Collection<FastSimpleGame>> consumer
     ) {
-        FastSimpleGame rollGame = new FastSimpleGame(settings);
-        FastSimpleGame moveGame = new FastSimpleGame(settings);
+        loopLightGameStatesAndRolls(false, consumer);
+    }
+
+    /**
+     * If parallel is true, the consumer will be called concurrently from
+     * many threads, each with its own scratch games.
+     */
+    public void loopLightGameStatesAndRolls(
+            boolean parallel,
+            TriConsumer<FastSimpleGame, Integer, Collection<FastSimpleGame>> consumer
+    ) {
+        loopLightGameStates(parallel, () -> createRollsVisitor(consumer));
+    }
+
+    private Consumer<FastSimpleGame> createRollsVisitor(
+            TriConsumer<FastSimpleGame, Integer, Collection<FastSimpleGame>> consumer
+    ) {
         FastSimpleMoveList moveList = new FastSimpleMoveList();
         float[] probabilities = settings.getDice().createDice().getRollProbabilities();
 
@@ -134,7 +267,7 @@ public class FastSimpleFlags {
 
         List<FastSimpleGame> neighbours = new ArrayList<>(maxRequiredGameObjects);
 
-        loopLightGameStates(game -> {
+        return game -> {
             if (game.isFinished) {
                 return;
             }
@@ -148,27 +281,60 @@ public class FastSimpleFlags {
                 // Clear the neighbours list for this roll.
                 neighbours.clear();
 
-                rollGame.copyFrom(game);
-                rollGame.applyRoll(roll, moveList);
+                int rollUndoToken = game.applyRoll(roll, moveList);
 
-                if (rollGame.isWaitingForMove()) {
+                if (game.isWaitingForMove()) {
                     for (int moveIndex = 0; moveIndex < moveList.moveCount; ++moveIndex) {
-                        moveGame.copyFrom(rollGame);
-                        moveGame.applyMove(moveList.moves[moveIndex]);
+                        int moveUndoToken = game.applyMove(moveList.moves[moveIndex]);
 
                         FastSimpleGame neighbour = gameObjects.get(gameObjectIndex++);
-                        neighbour.copyFrom(moveGame);
+                        neighbour.copyFrom(game);
                         neighbours.add(neighbour);
+
+                        game.undoMove(moveUndoToken);
                     }
                 } else {
                     FastSimpleGame neighbour = gameObjects.get(gameObjectIndex++);
-                    neighbour.copyFrom(rollGame);
+                    neighbour.copyFrom(game);
                     neighbours.add(neighbour);
                 }
+                game.undoRoll(rollUndoToken);
 
                 consumer.accept(game, roll, neighbours);
             }
-        });
+        };
+    }
+
+    /**
+     * Creates a splittable enumeration of the game states where it is light's turn.
+     */
+    public Spliterator<FastSimpleGame> spliterateLightGameStates() {
+        return new FastSimpleStateSpliterator(this);
+    }
+
+    /**
+     * Streams the game states where it is light's turn. The same game
+     * object is reused for many states, so it should not be kept.
+     */
+    public Stream<FastSimpleGame> streamLightGameStates(boolean parallel) {
+        return StreamSupport.stream(spliterateLightGameStates(), parallel);
+    }
+
+    /**
+     * Loops through game states where it is light's turn, using a
+     * visitor created by the factory for each thread. If parallel is
+     * false, a single visitor is created and used on this thread.
+     */
+    private void loopLightGameStates(
+            boolean parallel,
+            Supplier<Consumer<FastSimpleGame>> visitorFactory
+    ) {
+        if (!parallel) {
+            loopLightGameStates(visitorFactory.get());
+            return;
+        }
+        ThreadLocal<Consumer<FastSimpleGame>> visitors = ThreadLocal.withInitial(visitorFactory);
+        streamLightGameStates(true).forEach(game -> visitors.get().accept(game));
     }
 
     /**
@@ -176,25 +342,53 @@ public class FastSimpleFlags {
      */
     public void loopLightGameStates(Consumer<FastSimpleGame> gameConsumer) {
         FastSimpleGame game = new FastSimpleGame(settings);
-        game.isLightTurn = true;  // Always true.
-
         int pieceCount = settings.getStartingPieceCount();
 
         for (int lightPieces = 0; lightPieces <= pieceCount; ++lightPieces) {
             for (int darkPieces = 0; darkPieces <= pieceCount; ++darkPieces) {
-                // Reset the game.
-                game.board.clear();
-                game.light.pieces = lightPieces;
-                game.light.score = pieceCount - lightPieces;
-                game.dark.pieces = darkPieces;
-                game.dark.score = pieceCount - darkPieces;
-
-                loopBoardStates(gameConsumer, game, 0);
+                loopLightGameStates(lightPieces, darkPieces, game, gameConsumer);
             }
         }
     }
 
-    private void loopBoardStates(
+    /**
+     * Only loops through game states where it is light's turn, and
+     * where each player has the given number of pieces left to play.
+     */
+    public void loopLightGameStates(
+            int lightPieces,
+            int darkPieces,
+            Consumer<FastSimpleGame> gameConsumer
+    ) {
+        FastSimpleGame game = new FastSimpleGame(settings);
+        loopLightGameStates(lightPieces, darkPieces, game, gameConsumer);
+    }
+
+    private void loopLightGameStates(
+            int lightPieces,
+            int darkPieces,
+            FastSimpleGame game,
+            Consumer<FastSimpleGame> gameConsumer
+    ) {
+        int pieceCount = startingPieceCount;
+
+        // Reset the game.
+        game.isLightTurn = true;  // Always true.
+        game.rollValue = -1;
+        game.board.clear();
+        game.light.pieces = lightPieces;
+        game.light.score = pieceCount - lightPieces;
+        game.dark.pieces = darkPieces;
+        game.dark.score = pieceCount - darkPieces;
+
+        loopBoardStates(gameConsumer, game, 0);
+    }
+
+    /**
+     * Loops through the states of the tiles from the given board index
+     * onwards, using the scores in the game as the pieces left to place.
+     */
+    void loopBoardStates(
             Consumer<FastSimpleGame> gameConsumer,
             FastSimpleGame game,
             int boardIndex
@@ -249,7 +443,13 @@ public class FastSimpleFlags {
         }
     }
 
-    private static boolean isSymmetrical(GameSettings settings) {
+    /**
+     * Determines whether the paths of the light and dark players in
+     * {@code settings} are mirror images of one another.
+     * @param settings The settings of the game.
+     * @return Whether the paths of the players are symmetrical.
+     */
+    public static boolean isSymmetrical(GameSettings settings) {
         BoardShape shape = settings.getBoardShape();
         int width = shape.getWidth();
 
@@ -342,6 +542,81 @@ public class FastSimpleFlags {
         return nextBoardIndices;
     }
 
+    private static int[] calculatePathBoardIndices(BoardShape shape, List<Tile> path) {
+        int width = shape.getWidth();
+        int[] indices = new int[path.size()];
+        for (int index = 0; index < indices.length; ++index) {
+            Tile tile = path.get(index);
+            indices[index] = tile.getXIndex() + width * tile.getYIndex();
+        }
+        return indices;
+    }
+
+    private static long[] calculatePathTileMasks(List<Tile> fromPath, List<Tile> toPath) {
+        long[] masks = new long[fromPath.size()];
+        for (int fromIndex = 0; fromIndex < masks.length; ++fromIndex) {
+            Tile tile = fromPath.get(fromIndex);
+            for (int toIndex = 0; toIndex < toPath.size(); ++toIndex) {
+                if (tile.equals(toPath.get(toIndex))) {
+                    masks[fromIndex] |= 1L << toIndex;
+                }
+            }
+        }
+        return masks;
+    }
+
+    private static long calculateNonEmptyMask(long[] masks) {
+        long mask = 0;
+        for (int index = 0; index < masks.length; ++index) {
+            if (masks[index] != 0) {
+                mask |= 1L << index;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Translates a path mask of one player to a mask of the path indices of
+     * a player that are on the same tiles. This can be used to find the path
+     * indices that are blocked by either player's pieces.
+     * @param pathMask The path mask to translate.
+     * @param fromLight Whether the path mask is of the light player's path.
+     * @param toLight Whether to translate to the light player's path.
+     * @return The path indices of the {@code toLight} player that are on the
+     *         same tiles as the path indices in {@code pathMask}.
+     */
+    public long translatePathMask(long pathMask, boolean fromLight, boolean toLight) {
+        if (pathMasksMatch) {
+            if (fromLight == toLight)
+                return pathMask;
+
+            return pathMask & (fromLight ? lightSharedPathMask : darkSharedPathMask);
+        }
+
+        long[] tileMasks;
+        if (fromLight) {
+            tileMasks = (toLight ? lightToLightTileMasks : lightToDarkTileMasks);
+        } else {
+            tileMasks = (toLight ? darkToLightTileMasks : darkToDarkTileMasks);
+        }
+        long translated = 0;
+        while (pathMask != 0) {
+            translated |= tileMasks[Long.numberOfTrailingZeros(pathMask)];
+            pathMask &= pathMask - 1;
+        }
+        return translated;
+    }
+
+    private static long calculateRosettePathMask(BoardShape shape, List<Tile> path) {
+        long mask = 0;
+        for (int index = 0; index < path.size(); ++index) {
+            if (shape.isRosette(path.get(index))) {
+                mask |= 1L << index;
+            }
+        }
+        return mask;
+    }
+
     private static int calculateWarTileCount(int[] tileFlags) {
         int warTileCount = 0;
         for (int tileFlag : tileFlags) {
@@ -13,13 +13,25 @@ import java.util.List;
  * This speed comes at the cost of error checking,
  * convenience, and tracking of game history.
  */
-public class FastSimpleGame {
+public class FastSimpleGame implements FastSimpleEngine {
 
     public static final int MOVE_STATUS_INTRODUCED = 0x01;
     public static final int MOVE_STATUS_SCORED = 0x02;
     public static final int MOVE_STATUS_CAPTURED = 0x04;
     public static final int MOVE_STATUS_GRANTED_EXTRA_ROLL = 0x08;
 
+    /**
+     * Undo tokens returned by {@link #applyMove(int)} hold the move status
+     * flags in their lowest bits, followed by the state that is required
+     * to undo the move: whose turn it was, the roll, the path index of the
+     * moved piece + 1, and the path index + 1 of any captured piece.
+     */
+    public static final int UNDO_LIGHT_TURN_FLAG = 0x10;
+    public static final int UNDO_ROLL_SHIFT = 8;
+    public static final int UNDO_PATH_INDEX_SHIFT = 16;
+    public static final int UNDO_CAPTURED_SHIFT = 24;
+    public static final int UNDO_FIELD_MASK = 0xFF;
+
     public final GameSettings settings;
     public final boolean areRosettesSafe;
     public final boolean rosettesGrantExtraRoll;
@@ -30,6 +42,15 @@ public class FastSimpleGame {
     public final FastSimplePlayer light;
     public final FastSimplePlayer dark;
 
+    /**
+     * Precomputed tables of moves for each player, which are
+     * shared with all other games that use the same rules.
+     * See {@link FastSimpleMoveTables#calculateMoveTable}.
+     */
+    private final int moveTableRollCount;
+    private final int[] lightMoveTable;
+    private final int[] darkMoveTable;
+
     public boolean isLightTurn;
     public int rollValue;
     public boolean isFinished;
@@ -48,28 +69,100 @@ public class FastSimpleGame {
         this.light = new FastSimplePlayer(lightPath, true);
         this.dark = new FastSimplePlayer(darkPath, false);
 
+        FastSimpleMoveTables moveTables = FastSimpleMoveTables.get(settings);
+        this.moveTableRollCount = moveTables.rollCount;
+        this.lightMoveTable = moveTables.light;
+        this.darkMoveTable = moveTables.dark;
+
         this.isLightTurn = true;
         this.rollValue = -1;
         this.isFinished = false;
     }
 
+    /**
+     * Gets {@code game} as a FastSimpleGame, for code that relies on the
+     * board of this engine. If {@code game} uses a different engine, then
+     * it is copied into {@code output}.
+     * @param game The game to convert.
+     * @param output The game to copy {@code game} into if it uses a different engine.
+     * @return {@code game}, or {@code output} holding a copy of {@code game}.
+     */
+    public static FastSimpleGame from(FastSimpleEngine game, FastSimpleGame output) {
+        if (game instanceof FastSimpleGame boardGame)
+            return boardGame;
+
+        output.copyFrom(game);
+        return output;
+    }
+
+    @Override
+    public GameSettings getSettings() {
+        return settings;
+    }
+
+    @Override
+    public FastSimpleEngineType getEngineType() {
+        return FastSimpleEngineType.BOARD;
+    }
+
+    @Override
+    public boolean isLightTurn() {
+        return isLightTurn;
+    }
+
+    @Override
+    public int getRollValue() {
+        return rollValue;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    @Override
     public FastSimplePlayer getPlayer(boolean isLight) {
         return isLight ? light : dark;
     }
 
+    @Override
     public FastSimplePlayer getTurnPlayer() {
         return getPlayer(isLightTurn);
     }
 
-    public void copyFrom(FastSimpleGame other) {
-        board.copyFrom(other.board);
-        light.copyFrom(other.light);
-        dark.copyFrom(other.dark);
-        this.isLightTurn = other.isLightTurn;
-        this.rollValue = other.rollValue;
-        this.isFinished = other.isFinished;
+    @Override
+    public int getTileCount() {
+        return board.length();
+    }
+
+    @Override
+    public int getPiece(int tileIndex) {
+        return board.pieces[tileIndex];
+    }
+
+    @Override
+    public boolean isTileRosette(int tileIndex) {
+        return board.isTileRosette(tileIndex);
+    }
+
+    @Override
+    public void copyFrom(FastSimpleEngine other) {
+        if (other instanceof FastSimpleGame otherGame) {
+            board.copyFrom(otherGame.board);
+        } else {
+            int[] boardPieces = board.pieces;
+            for (int tileIndex = 0; tileIndex < boardPieces.length; ++tileIndex) {
+                boardPieces[tileIndex] = other.getPiece(tileIndex);
+            }
+        }
+        light.copyFrom(other.getPlayer(true));
+        dark.copyFrom(other.getPlayer(false));
+        this.isLightTurn = other.isLightTurn();
+        this.rollValue = other.getRollValue();
+        this.isFinished = other.isFinished();
     }
 
+    @Override
     public void copyFrom(GameState state) {
         board.copyFrom(state.getBoard());
         light.copyFrom(state.getLightPlayer());
@@ -83,6 +176,22 @@ public class FastSimpleGame {
         copyFrom(game.getState());
     }
 
+    /**
+     * Resets this game to the start of a game, with all pieces off
+     * the board and light waiting to roll.
+     */
+    @Override
+    public void reset() {
+        board.clear();
+        light.pieces = startingPieceCount;
+        light.score = 0;
+        dark.pieces = startingPieceCount;
+        dark.score = 0;
+        this.isLightTurn = true;
+        this.rollValue = -1;
+        this.isFinished = false;
+    }
+
     /**
      * Checks whether a roll of the dice is expected.
      * This may return true when the game has already
@@ -90,6 +199,7 @@ public class FastSimpleGame {
      * you should check that first.
      * @return Whether a roll of the dice is expected.
      */
+    @Override
     public boolean isWaitingForRoll() {
         return rollValue < 0;
     }
@@ -101,6 +211,7 @@ public class FastSimpleGame {
      * you should check that first.
      * @return Whether moving a piece is expected.
      */
+    @Override
     public boolean isWaitingForMove() {
         return rollValue >= 0;
     }
@@ -108,6 +219,7 @@ public class FastSimpleGame {
     /**
      * Populates {@code moveList} with all available moves in the current state of the game.
      */
+    @Override
     public void findAvailableMoves(FastSimpleMoveList moveList) {
         moveList.clear();
 
@@ -120,20 +232,25 @@ public class FastSimpleGame {
         int[] path = turnPlayer.path;
         int[] boardPieces = board.pieces;
 
+        // Rolls that are out of the range of the move table cannot move any pieces.
+        int rollCount = this.moveTableRollCount;
+        if (rollValue == 0 || rollValue >= rollCount)
+            return;
+
         // Check if a piece can be taken off the board.
-        if (rollValue <= path.length) {
-            int scorePathIndex = path.length - rollValue;
-            int scoreTileIndex = path[scorePathIndex];
-            int scorePiece = boardPieces[scoreTileIndex];
+        int scorePathIndex = path.length - rollValue;
+        if (scorePathIndex >= 0) {
+            int scorePiece = boardPieces[path[scorePathIndex]];
             if (scorePiece == turnPlayerSign * (scorePathIndex + 1)) {
                 moveList.add(scorePathIndex);
             }
         }
 
         // Check for pieces on the board that can be moved to another tile on the board.
+        int[] moveTable = (isLightTurn ? lightMoveTable : darkMoveTable);
         boolean areRosettesSafe = this.areRosettesSafe;
         boolean turnPlayerHasPieces = (turnPlayer.pieces > 0);
-        for (int pathIndex = -1; pathIndex < path.length - rollValue; ++pathIndex) {
+        for (int pathIndex = -1; pathIndex < scorePathIndex; ++pathIndex) {
 
             if (pathIndex >= 0) {
                 // Move a piece on the board.
@@ -148,16 +265,15 @@ public class FastSimpleGame {
             }
 
             // Check if the destination is free.
-            int destPathIndex = pathIndex + rollValue;
-            int destTileIndex = path[destPathIndex];
-            int destPiece = boardPieces[destTileIndex];
+            int move = moveTable[(pathIndex + 1) * rollCount + rollValue];
+            int destPiece = boardPieces[move & FastSimpleFlags.MOVE_DEST_TILE_MASK];
             if (destPiece != 0) {
                 // Can't capture your own pieces.
                 if (destPiece * turnPlayerSign > 0)
                     continue;
 
                 // Can't capture pieces on rosettes if they are safe.
-                if (areRosettesSafe && board.isTileRosette(destTileIndex))
+                if (areRosettesSafe && (move & FastSimpleFlags.MOVE_DEST_ROSETTE_FLAG) != 0)
                     continue;
             }
 
@@ -166,15 +282,35 @@ public class FastSimpleGame {
         }
     }
 
-    public void applyRoll(int rollValue, FastSimpleMoveList moveList) {
+    /**
+     * Gets the index of the tile that the piece at {@code pathIndex}
+     * of the current player's path would move to using the current roll.
+     * @return The index of the destination tile, or -1 if the piece would be scored.
+     */
+    @Override
+    public int getMoveDestTile(int pathIndex) {
+        int[] path = getTurnPlayer().path;
+        int destPathIndex = pathIndex + rollValue;
+        return (destPathIndex < path.length ? path[destPathIndex] : -1);
+    }
+
+    /**
+     * Applies a roll of the dice, and populates {@code moveList} with the
+     * moves that are available after the roll.
+     * @return A token that can be passed to {@link #undoRoll(int)}.
+     */
+    @Override
+    public int applyRoll(int rollValue, FastSimpleMoveList moveList) {
         if (this.rollValue >= 0)
             throw new IllegalStateException("A roll has already been made");
 
+        int undoToken = (isLightTurn ? UNDO_LIGHT_TURN_FLAG : 0);
+
         // Swap turn when rolling a zero.
         if (rollValue == 0) {
             isLightTurn = !isLightTurn;
             moveList.clear();
-            return;
+            return undoToken;
         }
 
         // Determine if the player has any available moves.
@@ -184,21 +320,34 @@ public class FastSimpleGame {
             isLightTurn = !isLightTurn;
             this.rollValue = -1;
         }
+        return undoToken;
     }
 
-    public boolean shouldGrantRoll(int destTileIndex, int capturedPiece) {
-        if (rosettesGrantExtraRoll && destTileIndex >= 0 && board.isTileRosette(destTileIndex))
-            return true;
-
-        return capturesGrantExtraRoll && capturedPiece != 0;
+    /**
+     * Reverts a roll that was applied using {@link #applyRoll}.
+     * @param undoToken The token returned by applyRoll.
+     */
+    @Override
+    public void undoRoll(int undoToken) {
+        this.isLightTurn = (undoToken & UNDO_LIGHT_TURN_FLAG) != 0;
+        this.rollValue = -1;
     }
 
+    /**
+     * Moves the piece at {@code pathIndex} of the current player's path
+     * by the current roll, or introduces a piece if pathIndex is -1.
+     * @return A token holding the MOVE_STATUS flags of the move, that
+     *         can also be passed to {@link #undoMove(int)}.
+     */
+    @Override
     public int applyMove(int pathIndex) {
         int rollValue = this.rollValue;
         if (rollValue < 0)
             throw new IllegalStateException("No roll has been made");
 
-        int resultStatus = 0;
+        int resultStatus = (isLightTurn ? UNDO_LIGHT_TURN_FLAG : 0)
+                | (rollValue << UNDO_ROLL_SHIFT)
+                | ((pathIndex + 1) << UNDO_PATH_INDEX_SHIFT);
 
         // We are using the roll now, so clear it.
         this.rollValue = -1;
@@ -220,18 +369,25 @@ public class FastSimpleGame {
         }
 
         int destPathIndex = pathIndex + rollValue;
-        int destTileIndex = -1;
-        int capturedPiece = 0;
-
-        if (destPathIndex < path.length) {
+        int rollCount = this.moveTableRollCount;
+        int[] moveTable = (isLightTurn ? lightMoveTable : darkMoveTable);
+        int move = (rollValue < rollCount
+                ? moveTable[(pathIndex + 1) * rollCount + rollValue]
+                : FastSimpleFlags.MOVE_DEST_TILE_MASK);
+        boolean grantExtraRoll = false;
+
+        if ((move & FastSimpleFlags.MOVE_SCORES_FLAG) == 0 && destPathIndex < path.length) {
             // Moving a piece on the board.
-            destTileIndex = path[destPathIndex];
-            capturedPiece = boardPieces[destTileIndex];
+            int destTileIndex = move & FastSimpleFlags.MOVE_DEST_TILE_MASK;
+            int capturedPiece = boardPieces[destTileIndex];
             if (capturedPiece != 0) {
                 getPlayer(capturedPiece > 0).pieces += 1;
                 resultStatus |= MOVE_STATUS_CAPTURED;
+                resultStatus |= Math.abs(capturedPiece) << UNDO_CAPTURED_SHIFT;
+                grantExtraRoll = capturesGrantExtraRoll;
             }
             boardPieces[destTileIndex] = turnPlayerSign * (destPathIndex + 1);
+            grantExtraRoll |= (move & FastSimpleFlags.MOVE_GRANTS_EXTRA_ROLL_FLAG) != 0;
 
         } else {
             // Scoring a piece.
@@ -244,7 +400,7 @@ public class FastSimpleGame {
         }
 
         // Determine whose turn it should be.
-        if (!shouldGrantRoll(destTileIndex, capturedPiece)) {
+        if (!grantExtraRoll) {
             isLightTurn = !isLightTurn;
         } else {
             resultStatus |= MOVE_STATUS_GRANTED_EXTRA_ROLL;
@@ -252,27 +408,71 @@ public class FastSimpleGame {
         return resultStatus;
     }
 
+    /**
+     * Reverts a move that was applied using {@link #applyMove(int)}.
+     * Moves must be undone in the reverse order to which they were applied.
+     * @param undoToken The token returned by applyMove.
+     */
+    @Override
+    public void undoMove(int undoToken) {
+        boolean wasLightTurn = (undoToken & UNDO_LIGHT_TURN_FLAG) != 0;
+        int rollValue = (undoToken >>> UNDO_ROLL_SHIFT) & UNDO_FIELD_MASK;
+        int pathIndex = ((undoToken >>> UNDO_PATH_INDEX_SHIFT) & UNDO_FIELD_MASK) - 1;
+        int capturedPiece = (undoToken >>> UNDO_CAPTURED_SHIFT) & UNDO_FIELD_MASK;
+
+        FastSimplePlayer turnPlayer = getPlayer(wasLightTurn);
+        int turnPlayerSign = turnPlayer.sign;
+        int[] path = turnPlayer.path;
+        int[] boardPieces = this.board.pieces;
+
+        int destPathIndex = pathIndex + rollValue;
+        if (destPathIndex < path.length) {
+            if (capturedPiece != 0) {
+                getPlayer(!wasLightTurn).pieces -= 1;
+            }
+            boardPieces[path[destPathIndex]] = -turnPlayerSign * capturedPiece;
+        } else {
+            turnPlayer.score -= 1;
+        }
+
+        if (pathIndex >= 0) {
+            boardPieces[path[pathIndex]] = turnPlayerSign * (pathIndex + 1);
+        } else {
+            turnPlayer.pieces += 1;
+        }
+
+        this.isLightTurn = wasLightTurn;
+        this.rollValue = rollValue;
+        this.isFinished = false;
+    }
+
     /**
      * Copies the state of this game with the players swapped. If output is
      * provided, the copy is placed into it. Otherwise, a new game is created.
-     * @param output An optional game to update with the reversed state of this
-     *               game, instead of creating a new game.
+     * @param output An optional FastSimpleGame to update with the reversed state
+     *               of this game, instead of creating a new game.
      * @return A game with the reversed state of this game.
      */
-    public FastSimpleGame reversePlayers(@Nullable FastSimpleGame output) {
+    @Override
+    public FastSimpleGame reversePlayers(@Nullable FastSimpleEngine output) {
+        FastSimpleGame outputGame;
         if (output == null) {
-            output = new FastSimpleGame(settings);
+            outputGame = new FastSimpleGame(settings);
+        } else if (output instanceof FastSimpleGame game) {
+            outputGame = game;
+        } else {
+            throw new IllegalArgumentException("output must use the same engine as this game");
         }
-        output.isLightTurn = !isLightTurn;
-        output.isFinished = isFinished;
-        output.rollValue = rollValue;
-        output.dark.score = light.score;
-        output.dark.pieces = light.pieces;
-        output.light.score = dark.score;
-        output.light.pieces = dark.pieces;
+        outputGame.isLightTurn = !isLightTurn;
+        outputGame.isFinished = isFinished;
+        outputGame.rollValue = rollValue;
+        outputGame.dark.score = light.score;
+        outputGame.dark.pieces = light.pieces;
+        outputGame.light.score = dark.score;
+        outputGame.light.pieces = dark.pieces;
 
         FastSimpleBoard inputBoard = board;
-        FastSimpleBoard outputBoard = output.board;
+        FastSimpleBoard outputBoard = outputGame.board;
 
         int width = inputBoard.width;
         int height = inputBoard.height;
@@ -283,7 +483,7 @@ public class FastSimpleGame {
                 outputBoard.set(toIndex, -1 * inputBoard.get(fromIndex));
             }
         }
-        return output;
+        return outputGame;
     }
 
     public static boolean didMoveIntroducePiece(int moveStatus) {
@@ -0,0 +1,145 @@
+package net.royalur.rules.simple.fast;
+
+import net.royalur.model.GameSettings;
+import net.royalur.model.Tile;
+import net.royalur.model.path.PathPair;
+import net.royalur.model.shape.BoardShape;
+
+import java.util.List;
+
+/**
+ * Precomputed tables of the destination of moving a piece from each
+ * path index of each player by each roll. The tables only depend on
+ * the board shape, the paths, and whether rosettes grant extra rolls,
+ * so they are shared between all the games and flags that use the same
+ * rules. Use {@link #get(GameSettings)} to find the shared tables.
+ */
+public final class FastSimpleMoveTables {
+
+    /**
+     * The most sets of tables that are kept to be shared. Most programs
+     * only use one or two rule sets, so this is rarely exceeded.
+     */
+    private static final int MAX_SHARED_TABLES = 16;
+
+    /**
+     * The tables that are shared. This array is replaced, not
+     * modified, so that it can be searched without locking.
+     */
+    private static volatile FastSimpleMoveTables[] sharedTables = new FastSimpleMoveTables[0];
+
+    private final BoardShape boardShape;
+    private final PathPair paths;
+    private final boolean rosettesGrantExtraRolls;
+
+    /**
+     * The number of rolls stored for each path index in the move tables.
+     */
+    public final int rollCount;
+
+    /**
+     * Tables of the destination of moving a piece from each path index by
+     * each roll. See {@link #calculateMoveTable(GameSettings, List)}.
+     */
+    public final int[] light;
+    public final int[] dark;
+
+    private FastSimpleMoveTables(GameSettings settings) {
+        this.boardShape = settings.getBoardShape();
+        this.paths = settings.getPaths();
+        this.rosettesGrantExtraRolls = settings.doRosettesGrantExtraRolls();
+        this.rollCount = calculateRollCount(paths.getLight().size());
+        this.light = calculateMoveTable(settings, paths.getLight());
+        this.dark = calculateMoveTable(settings, paths.getDark());
+    }
+
+    /**
+     * Gets the move tables for {@code settings}, creating them
+     * the first time that they are requested.
+     * @param settings The settings of the game.
+     * @return The move tables for the settings.
+     */
+    public static FastSimpleMoveTables get(GameSettings settings) {
+        FastSimpleMoveTables[] tables = sharedTables;
+        for (FastSimpleMoveTables entry : tables) {
+            if (entry.matches(settings))
+                return entry;
+        }
+
+        synchronized (FastSimpleMoveTables.class) {
+            tables = sharedTables;
+            for (FastSimpleMoveTables entry : tables) {
+                if (entry.matches(settings))
+                    return entry;
+            }
+
+            // Drop the oldest tables if there are too many.
+            FastSimpleMoveTables created = new FastSimpleMoveTables(settings);
+            int keepCount = Math.min(tables.length, MAX_SHARED_TABLES - 1);
+            FastSimpleMoveTables[] newTables = new FastSimpleMoveTables[keepCount + 1];
+            System.arraycopy(tables, tables.length - keepCount, newTables, 0, keepCount);
+            newTables[keepCount] = created;
+            sharedTables = newTables;
+            return created;
+        }
+    }
+
+    private boolean matches(GameSettings settings) {
+        BoardShape otherShape = settings.getBoardShape();
+        PathPair otherPaths = settings.getPaths();
+        return rosettesGrantExtraRolls == settings.doRosettesGrantExtraRolls()
+                && (boardShape == otherShape || boardShape.equals(otherShape))
+                && (paths == otherPaths || paths.equals(otherPaths));
+    }
+
+    /**
+     * Gets the number of rolls that are stored for each path index in move
+     * tables. Rolls of this value or greater can never move a piece.
+     */
+    public static int calculateRollCount(int pathLength) {
+        return pathLength + 1;
+    }
+
+    /**
+     * Calculates a table of the moves that can be made along {@code path}.
+     * The table is indexed by {@code (pathIndex + 1) * rollCount + roll}, where
+     * a path index of -1 represents introducing a piece, and the roll count
+     * is given by {@link #calculateRollCount(int)}. Each entry holds the
+     * board index of the destination tile, and the MOVE_*_FLAG flags of
+     * {@link FastSimpleFlags}. Moves without
+     * {@link FastSimpleFlags#MOVE_VALID_FLAG} go past the end of the path.
+     */
+    public static int[] calculateMoveTable(GameSettings settings, List<Tile> path) {
+        BoardShape shape = settings.getBoardShape();
+        int width = shape.getWidth();
+        boolean rosettesGrantExtraRolls = settings.doRosettesGrantExtraRolls();
+
+        int pathLength = path.size();
+        int rollCount = calculateRollCount(pathLength);
+        int[] table = new int[(pathLength + 1) * rollCount];
+
+        for (int pathIndex = -1; pathIndex < pathLength; ++pathIndex) {
+            for (int roll = 1; roll < rollCount; ++roll) {
+                int destPathIndex = pathIndex + roll;
+                int entry;
+                if (destPathIndex < pathLength) {
+                    Tile dest = path.get(destPathIndex);
+                    entry = FastSimpleFlags.MOVE_VALID_FLAG | (dest.getXIndex() + width * dest.getYIndex());
+                    if (shape.isRosette(dest)) {
+                        entry |= FastSimpleFlags.MOVE_DEST_ROSETTE_FLAG;
+                        if (rosettesGrantExtraRolls) {
+                            entry |= FastSimpleFlags.MOVE_GRANTS_EXTRA_ROLL_FLAG;
+                        }
+                    }
+                } else if (destPathIndex == pathLength && pathIndex >= 0) {
+                    entry = FastSimpleFlags.MOVE_VALID_FLAG | FastSimpleFlags.MOVE_SCORES_FLAG
+                            | FastSimpleFlags.MOVE_DEST_TILE_MASK;
+                } else {
+                    entry = FastSimpleFlags.MOVE_DEST_TILE_MASK;
+                }
+                table[(pathIndex + 1) * rollCount + roll] = entry;
+            }
+        }
+        return table;
+    }
+}
@@ -0,0 +1,152 @@
+package net.royalur.rules.simple.fast;
+
+/**
+ * Counts the game states where it is light's turn without enumerating
+ * them. The states are grouped into classes by the number of pieces
+ * each player has left to play and by each player's score, and the
+ * number of boards in each class is calculated from the number of safe
+ * and war tiles on the board.
+ */
+public class FastSimpleStateCounter {
+
+    private final int startingPieceCount;
+    private final int safeTileCount;
+    private final int warTileCount;
+
+    /**
+     * The number of boards with the given number of light and dark
+     * pieces on the board, indexed by [light][dark].
+     */
+    private final long[][] boardCounts;
+
+    public FastSimpleStateCounter(FastSimpleFlags flags) {
+        this.startingPieceCount = flags.settings.getStartingPieceCount();
+        this.safeTileCount = flags.safeTileCountPerPlayer;
+        this.warTileCount = flags.warTileCount;
+        this.boardCounts = calculateBoardCounts(startingPieceCount, safeTileCount, warTileCount);
+    }
+
+    private static long[][] calculateBinomials(int maxN) {
+        long[][] binomials = new long[maxN + 1][maxN + 1];
+        for (int n = 0; n <= maxN; ++n) {
+            binomials[n][0] = 1;
+            for (int k = 1; k <= n; ++k) {
+                binomials[n][k] = Math.addExact(binomials[n - 1][k - 1], binomials[n - 1][k]);
+            }
+        }
+        return binomials;
+    }
+
+    private static long[][] calculateBoardCounts(int pieceCount, int safeTileCount, int warTileCount) {
+        long[][] binomials = calculateBinomials(Math.max(safeTileCount, warTileCount));
+        long[][] counts = new long[pieceCount + 1][pieceCount + 1];
+        for (int light = 0; light <= pieceCount; ++light) {
+            for (int dark = 0; dark <= pieceCount; ++dark) {
+                counts[light][dark] = calculateBoardCount(binomials, safeTileCount, warTileCount, light, dark);
+            }
+        }
+        return counts;
+    }
+
+    private static long calculateBoardCount(
+            long[][] binomials,
+            int safeTileCount,
+            int warTileCount,
+            int light,
+            int dark
+    ) {
+        // Choose how many pieces of each player are on their safe tiles,
+        // and then place the rest of the pieces on the war tiles.
+        long count = 0;
+        for (int lightSafe = 0; lightSafe <= Math.min(light, safeTileCount); ++lightSafe) {
+            int lightWar = light - lightSafe;
+            if (lightWar > warTileCount)
+                continue;
+
+            long lightWays = Math.multiplyExact(
+                    binomials[safeTileCount][lightSafe],
+                    binomials[warTileCount][lightWar]
+            );
+            for (int darkSafe = 0; darkSafe <= Math.min(dark, safeTileCount); ++darkSafe) {
+                int darkWar = dark - darkSafe;
+                if (darkWar > warTileCount - lightWar)
+                    continue;
+
+                long darkWays = Math.multiplyExact(
+                        binomials[safeTileCount][darkSafe],
+                        binomials[warTileCount - lightWar][darkWar]
+                );
+                count = Math.addExact(count, Math.multiplyExact(lightWays, darkWays));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the boards with the given number of pieces of each player on them.
+     */
+    public long countBoards(int lightOnBoard, int darkOnBoard) {
+        if (lightOnBoard < 0 || darkOnBoard < 0)
+            return 0;
+        if (lightOnBoard > startingPieceCount || darkOnBoard > startingPieceCount)
+            return 0;
+
+        return boardCounts[lightOnBoard][darkOnBoard];
+    }
+
+    /**
+     * Counts the game states where it is light's turn, the players have
+     * the given number of pieces left to play, and the players have the
+     * given scores. The states where light has won are included, and the
+     * states where dark has won are not, matching
+     * {@link FastSimpleFlags#loopLightGameStates(java.util.function.Consumer)}.
+     */
+    public long countLightStates(int lightPieces, int darkPieces, int lightScore, int darkScore) {
+        if (lightPieces < 0 || darkPieces < 0 || lightScore < 0 || darkScore < 0)
+            return 0;
+        if (darkScore >= startingPieceCount)
+            return 0;
+
+        int lightOnBoard = startingPieceCount - lightPieces - lightScore;
+        int darkOnBoard = startingPieceCount - darkPieces - darkScore;
+        return countBoards(lightOnBoard, darkOnBoard);
+    }
+
+    /**
+     * Counts all the game states where it is light's turn.
+     */
+    public long countLightStates() {
+        long count = 0;
+        for (int lightScore = 0; lightScore <= startingPieceCount; ++lightScore) {
+            for (int darkScore = 0; darkScore <= startingPieceCount; ++darkScore) {
+                count += countLightStatesWithScores(lightScore, darkScore);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the game states where it is light's turn and
+     * the players have the given scores.
+     */
+    public long countLightStatesWithScores(int lightScore, int darkScore) {
+        long count = 0;
+        for (int lightPieces = 0; lightPieces <= startingPieceCount - lightScore; ++lightPieces) {
+            for (int darkPieces = 0; darkPieces <= startingPieceCount - darkScore; ++darkPieces) {
+                count += countLightStates(lightPieces, darkPieces, lightScore, darkScore);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the game states where it is light's turn and light has won.
+     */
+    public long countLightWinStates() {
+        long count = 0;
+        for (int darkScore = 0; darkScore < startingPieceCount; ++darkScore) {
+            count += countLightStatesWithScores(startingPieceCount, darkScore);
+        }
+        return count;
+    }
+}
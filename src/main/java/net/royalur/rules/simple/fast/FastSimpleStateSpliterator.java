@@ -0,0 +1,352 @@
+package net.royalur.rules.simple.fast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A splittable enumeration of the game states where it is light's turn.
+ * The work is divided by the number of pieces each player has left to
+ * play, and then by fixing the pieces on a prefix of the board, so that
+ * each split explores a separate subtree of the states.
+ * <p>
+ * The same scratch game is passed to the action for every state of a
+ * split, so it should not be kept after the action returns. Actions may
+ * modify the scratch game, as long as they restore it before returning.
+ */
+public class FastSimpleStateSpliterator implements Spliterator<FastSimpleGame> {
+
+    /**
+     * Subtrees with this many tiles or fewer left to fill are not split further.
+     */
+    private static final int MIN_SPLIT_TILES = 4;
+
+    private final FastSimpleFlags flags;
+    private final int startingPieceCount;
+
+    /**
+     * The board indices that may hold pieces, in the order they are filled.
+     */
+    private final int[] boardIndexOrder;
+
+    /**
+     * The number of options for the occupant of each tile in {@link #boardIndexOrder}.
+     */
+    private final int[] occupantCounts;
+
+    /**
+     * An upper bound on the number of states in the subtree rooted at each depth.
+     */
+    private final long[] subtreeSizes;
+
+    private final List<Task> tasks;
+    private int taskIndex;
+
+    private final FastSimpleGame game;
+    private final int[] choices;
+    private final int[] lightScores;
+    private final int[] darkScores;
+    private int depth;
+    private boolean started;
+
+    private FastSimpleStateSpliterator(
+            FastSimpleFlags flags,
+            int[] boardIndexOrder,
+            int[] occupantCounts,
+            long[] subtreeSizes,
+            List<Task> tasks
+    ) {
+        this.flags = flags;
+        this.startingPieceCount = flags.settings.getStartingPieceCount();
+        this.boardIndexOrder = boardIndexOrder;
+        this.occupantCounts = occupantCounts;
+        this.subtreeSizes = subtreeSizes;
+        this.tasks = tasks;
+        this.taskIndex = 0;
+
+        this.game = new FastSimpleGame(flags.settings);
+        this.choices = new int[boardIndexOrder.length];
+        this.lightScores = new int[boardIndexOrder.length];
+        this.darkScores = new int[boardIndexOrder.length];
+        this.started = false;
+    }
+
+    public FastSimpleStateSpliterator(FastSimpleFlags flags) {
+        this.flags = flags;
+        this.startingPieceCount = flags.settings.getStartingPieceCount();
+        this.boardIndexOrder = calculateBoardIndexOrder(flags);
+        this.occupantCounts = calculateOccupantCounts(flags, boardIndexOrder);
+        this.subtreeSizes = calculateSubtreeSizes(occupantCounts);
+        this.tasks = createRootTasks(flags);
+        this.taskIndex = 0;
+
+        this.game = new FastSimpleGame(flags.settings);
+        this.choices = new int[boardIndexOrder.length];
+        this.lightScores = new int[boardIndexOrder.length];
+        this.darkScores = new int[boardIndexOrder.length];
+        this.started = false;
+    }
+
+    private static List<Task> createRootTasks(FastSimpleFlags flags) {
+        int pieceCount = flags.settings.getStartingPieceCount();
+        List<Task> tasks = new ArrayList<>();
+        for (int lightPieces = 0; lightPieces <= pieceCount; ++lightPieces) {
+            for (int darkPieces = 0; darkPieces <= pieceCount; ++darkPieces) {
+                tasks.add(new Task(
+                        lightPieces, darkPieces, new int[0],
+                        pieceCount - lightPieces, pieceCount - darkPieces
+                ));
+            }
+        }
+        return tasks;
+    }
+
+    private static int[] calculateBoardIndexOrder(FastSimpleFlags flags) {
+        int[] order = new int[flags.boardIndexCount];
+        int length = 0;
+        for (int index = 0; index < flags.boardIndexCount; index = flags.nextBoardIndices[index]) {
+            order[length++] = index;
+        }
+        return Arrays.copyOf(order, length);
+    }
+
+    private static int[] calculateOccupantCounts(FastSimpleFlags flags, int[] order) {
+        int[] counts = new int[order.length];
+        for (int depth = 0; depth < order.length; ++depth) {
+            counts[depth] = flags.tileFlags[order[depth]] & FastSimpleFlags.OCCUPANTS_MASK;
+        }
+        return counts;
+    }
+
+    private static long[] calculateSubtreeSizes(int[] counts) {
+        long[] sizes = new long[counts.length + 1];
+        sizes[counts.length] = 1;
+        for (int depth = counts.length - 1; depth >= 0; --depth) {
+            long size = sizes[depth + 1] * counts[depth];
+            sizes[depth] = (size / counts[depth] == sizes[depth + 1] ? size : Long.MAX_VALUE);
+        }
+        return sizes;
+    }
+
+    /**
+     * Returns the piece to place on the tile for the given occupant,
+     * where 0 is empty, 1 is the only player or dark, and 2 is light.
+     */
+    private static int getPiece(int tileFlag, int occupant) {
+        if (occupant == 0)
+            return 0;
+
+        boolean lightOnly = (tileFlag & FastSimpleFlags.LIGHT_ONLY_FLAG) != 0;
+        if (occupant == 2 || lightOnly) {
+            int lightIndex = (tileFlag >> FastSimpleFlags.LIGHT_PATH_INDEX_SHIFT)
+                    & FastSimpleFlags.LIGHT_PATH_INDEX_MASK;
+            return lightIndex + 1;
+        } else {
+            int darkIndex = (tileFlag >> FastSimpleFlags.DARK_PATH_INDEX_SHIFT)
+                    & FastSimpleFlags.DARK_PATH_INDEX_MASK;
+            return -(darkIndex + 1);
+        }
+    }
+
+    private void startTask(Task task) {
+        game.isLightTurn = true;
+        game.rollValue = -1;
+        game.isFinished = false;
+        game.board.clear();
+        game.light.pieces = task.lightPieces;
+        game.dark.pieces = task.darkPieces;
+        for (int index = 0; index < task.prefix.length; ++index) {
+            game.board.set(boardIndexOrder[index], task.prefix[index]);
+        }
+
+        depth = task.prefix.length;
+        choices[depth] = -1;
+        lightScores[depth] = task.lightScore;
+        darkScores[depth] = task.darkScore;
+        started = true;
+    }
+
+    /**
+     * Moves the scratch game to the next state of the current task.
+     * Returns false if there are no states left in the task.
+     */
+    private boolean advanceTask(Task task) {
+        int minDepth = task.prefix.length;
+        int maxDepth = boardIndexOrder.length - 1;
+
+        while (depth >= minDepth) {
+            int occupant = ++choices[depth];
+            if (occupant >= occupantCounts[depth]) {
+                depth -= 1;
+                continue;
+            }
+
+            int boardIndex = boardIndexOrder[depth];
+            int piece = getPiece(flags.tileFlags[boardIndex], occupant);
+            int lightScore = lightScores[depth] - (piece > 0 ? 1 : 0);
+            int darkScore = darkScores[depth] - (piece < 0 ? 1 : 0);
+            if (lightScore < 0 || darkScore < 0)
+                continue;
+
+            game.board.set(boardIndex, piece);
+            if (depth < maxDepth) {
+                depth += 1;
+                choices[depth] = -1;
+                lightScores[depth] = lightScore;
+                darkScores[depth] = darkScore;
+                continue;
+            }
+
+            if (darkScore >= startingPieceCount)
+                continue;
+
+            game.light.score = lightScore;
+            game.dark.score = darkScore;
+            game.isFinished = (lightScore >= startingPieceCount);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super FastSimpleGame> action) {
+        while (taskIndex < tasks.size()) {
+            Task task = tasks.get(taskIndex);
+            if (!started) {
+                startTask(task);
+            }
+            if (advanceTask(task)) {
+                action.accept(game);
+                return true;
+            }
+            taskIndex += 1;
+            started = false;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super FastSimpleGame> action) {
+        Consumer<FastSimpleGame> consumer = action::accept;
+
+        // Finish the task that was started by tryAdvance.
+        if (started && taskIndex < tasks.size()) {
+            Task task = tasks.get(taskIndex);
+            while (advanceTask(task)) {
+                consumer.accept(game);
+            }
+            taskIndex += 1;
+            started = false;
+        }
+
+        // The remaining tasks can use the faster recursive search.
+        while (taskIndex < tasks.size()) {
+            Task task = tasks.get(taskIndex);
+            startTask(task);
+            game.light.score = task.lightScore;
+            game.dark.score = task.darkScore;
+            flags.loopBoardStates(consumer, game, boardIndexOrder[task.prefix.length]);
+            taskIndex += 1;
+            started = false;
+        }
+    }
+
+    /**
+     * Replaces the next task with its children, by fixing the
+     * occupant of the next tile on the board.
+     */
+    private boolean expandNextTask() {
+        Task task = tasks.get(taskIndex);
+        int taskDepth = task.prefix.length;
+        if (boardIndexOrder.length - taskDepth <= MIN_SPLIT_TILES)
+            return false;
+
+        int tileFlag = flags.tileFlags[boardIndexOrder[taskDepth]];
+        List<Task> children = new ArrayList<>(occupantCounts[taskDepth]);
+        for (int occupant = 0; occupant < occupantCounts[taskDepth]; ++occupant) {
+            int piece = getPiece(tileFlag, occupant);
+            int lightScore = task.lightScore - (piece > 0 ? 1 : 0);
+            int darkScore = task.darkScore - (piece < 0 ? 1 : 0);
+            if (lightScore < 0 || darkScore < 0)
+                continue;
+
+            int[] prefix = Arrays.copyOf(task.prefix, taskDepth + 1);
+            prefix[taskDepth] = piece;
+            children.add(new Task(task.lightPieces, task.darkPieces, prefix, lightScore, darkScore));
+        }
+        tasks.remove(taskIndex);
+        tasks.addAll(taskIndex, children);
+        return true;
+    }
+
+    @Override
+    public Spliterator<FastSimpleGame> trySplit() {
+        // The states before the current position of a started task cannot be split off.
+        if (started)
+            return null;
+
+        while (tasks.size() - taskIndex == 1) {
+            if (!expandNextTask())
+                return null;
+        }
+        int remaining = tasks.size() - taskIndex;
+        if (remaining == 0)
+            return null;
+
+        int splitIndex = taskIndex + remaining / 2;
+        List<Task> prefixTasks = new ArrayList<>(tasks.subList(taskIndex, splitIndex));
+        tasks.subList(0, splitIndex).clear();
+        taskIndex = 0;
+        return new FastSimpleStateSpliterator(
+                flags, boardIndexOrder, occupantCounts, subtreeSizes, prefixTasks
+        );
+    }
+
+    @Override
+    public long estimateSize() {
+        long size = 0;
+        for (int index = taskIndex; index < tasks.size(); ++index) {
+            long taskSize = subtreeSizes[tasks.get(index).prefix.length];
+            if (taskSize >= Long.MAX_VALUE - size)
+                return Long.MAX_VALUE;
+
+            size += taskSize;
+        }
+        return size;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    /**
+     * A subtree of the game states to explore.
+     */
+    private static class Task {
+
+        final int lightPieces;
+        final int darkPieces;
+
+        /**
+         * The pieces placed on the first tiles of the board.
+         */
+        final int[] prefix;
+
+        /**
+         * The scores of each player before the remaining tiles are filled.
+         */
+        final int lightScore;
+        final int darkScore;
+
+        Task(int lightPieces, int darkPieces, int[] prefix, int lightScore, int darkScore) {
+            this.lightPieces = lightPieces;
+            this.darkPieces = darkPieces;
+            this.prefix = prefix;
+            this.lightScore = lightScore;
+            this.darkScore = darkScore;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package net.royalur.stats;
+
+import net.royalur.agent.FastAgent;
+import net.royalur.model.GameSettings;
+import net.royalur.model.PlayerType;
+import net.royalur.model.dice.Dice;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
+import net.royalur.rules.simple.fast.FastSimpleEngineType;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+
+import java.util.Arrays;
+
+/**
+ * Plays games between two {@link FastAgent}s on a {@link FastSimpleEngine},
+ * and gathers the same statistics as {@link GameStats#gather}. No history
+ * of the game is kept, and no objects are allocated during the game, so
+ * this is much faster than playing a {@link net.royalur.Game}. This is
+ * not thread-safe.
+ */
+public class FastSelfPlay {
+
+    private final Dice dice;
+    private final FastSimpleEngine game;
+    private final FastSimpleMoveList moveList;
+    private final int startingPieceCount;
+
+    private final int[] rolls;
+    private final int[] moves;
+    private final int[] turns;
+    private final int[] drama;
+
+    /**
+     * Whether an action has been made yet in the current game.
+     */
+    private boolean hasLastAction;
+
+    /**
+     * The state of the player that made the last action. A new turn
+     * is counted whenever this changes, matching {@link GameStats#gather}.
+     */
+    private boolean lastActionLight;
+    private int lastActionPieces;
+    private int lastActionScore;
+
+    private boolean isLightInLead;
+    private int losingLeadTurns;
+    private int turnsInLead;
+
+    /**
+     * Instantiates self-play of games with the given settings.
+     * @param settings The settings of the games to play.
+     * @param dice The dice to use to roll in the games.
+     * @param engineType The engine to play the games using.
+     */
+    public FastSelfPlay(GameSettings settings, Dice dice, FastSimpleEngineType engineType) {
+        this.dice = dice;
+        this.game = engineType.create(settings);
+        this.moveList = new FastSimpleMoveList();
+        this.startingPieceCount = settings.getStartingPieceCount();
+
+        int targetCount = GameStatsTarget.values().length;
+        this.rolls = new int[targetCount];
+        this.moves = new int[targetCount];
+        this.turns = new int[targetCount];
+        this.drama = new int[targetCount];
+    }
+
+    /**
+     * Instantiates self-play of games with the given settings.
+     * @param settings The settings of the games to play.
+     * @param dice The dice to use to roll in the games.
+     */
+    public FastSelfPlay(GameSettings settings, Dice dice) {
+        this(settings, dice, FastSimpleEngineType.BOARD);
+    }
+
+    private static int getTargetIndex(boolean isLight) {
+        return GameStatsTarget.get(isLight ? PlayerType.LIGHT : PlayerType.DARK).ordinal();
+    }
+
+    private static void increment(int[] counts, boolean isLight) {
+        counts[GameStatsTarget.OVERALL.ordinal()] += 1;
+        counts[getTargetIndex(isLight)] += 1;
+    }
+
+    /**
+     * Calculates the utility used to determine which player is in the lead,
+     * from the advancement of each player's pieces. Light pieces are stored
+     * on the board as their path index + 1, and dark pieces as the negative
+     * of their path index + 1, so the board pieces can be summed directly.
+     */
+    private int calculatePiecesAdvancedUtilityForLight() {
+        int utility = game.getPlayer(true).score - game.getPlayer(false).score;
+        int tileCount = game.getTileCount();
+        for (int tileIndex = 0; tileIndex < tileCount; ++tileIndex) {
+            utility += game.getPiece(tileIndex);
+        }
+        return utility;
+    }
+
+    private void reset() {
+        game.reset();
+        Arrays.fill(rolls, 0);
+        Arrays.fill(moves, 0);
+        Arrays.fill(turns, 0);
+        Arrays.fill(drama, 0);
+        hasLastAction = false;
+        isLightInLead = true;
+        losingLeadTurns = 0;
+        turnsInLead = 0;
+    }
+
+    /**
+     * Records an action that is about to be made in the game.
+     */
+    private void recordAction(boolean isRoll) {
+        boolean isLight = game.isLightTurn();
+        increment(isRoll ? rolls : moves, isLight);
+
+        int pieces = game.getTurnPlayer().pieces;
+        int score = game.getTurnPlayer().score;
+        if (!hasLastAction) {
+            increment(turns, isLight);
+            isLightInLead = (calculatePiecesAdvancedUtilityForLight() >= 0);
+            losingLeadTurns = 0;
+            turnsInLead += 1;
+
+        } else if (isLight != lastActionLight || pieces != lastActionPieces || score != lastActionScore) {
+            increment(turns, isLight);
+            recordTurnLead();
+        }
+
+        hasLastAction = true;
+        lastActionLight = isLight;
+        lastActionPieces = pieces;
+        lastActionScore = score;
+    }
+
+    private void recordTurnLead() {
+        int utility = calculatePiecesAdvancedUtilityForLight();
+        if (utility == 0)
+            return;
+
+        boolean isLightLead = (utility > 0);
+        turnsInLead += 1;
+        if (isLightLead != isLightInLead) {
+            losingLeadTurns += 1;
+            if (losingLeadTurns >= 2) {
+                increment(drama, isLightLead);
+                isLightInLead = isLightLead;
+                turnsInLead = losingLeadTurns;
+                losingLeadTurns = 0;
+            }
+        }
+    }
+
+    /**
+     * Plays a game between the two agents, and gathers its statistics.
+     * @param lightAgent The agent to play as the light player.
+     * @param darkAgent The agent to play as the dark player.
+     * @return The statistics of the game.
+     */
+    public GameStats play(FastAgent lightAgent, FastAgent darkAgent) {
+        reset();
+        while (!game.isFinished()) {
+            recordAction(true);
+            game.applyRoll(dice.rollValue(), moveList);
+            if (!game.isWaitingForMove())
+                continue;
+
+            recordAction(false);
+            FastAgent agent = (game.isLightTurn() ? lightAgent : darkAgent);
+            game.applyMove(agent.decideMove(game, moveList));
+        }
+
+        boolean lightWon = (game.getPlayer(true).score >= startingPieceCount);
+        return new GameStats(
+                lightWon, rolls.clone(), moves.clone(), turns.clone(), drama.clone(), turnsInLead
+        );
+    }
+}
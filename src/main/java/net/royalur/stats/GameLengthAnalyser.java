@@ -0,0 +1,601 @@
+package net.royalur.stats;
+
+import net.royalur.agent.FastAgent;
+import net.royalur.model.GameSettings;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Calculates the exact distribution of the length of games between
+ * two agents, and the probability that each agent wins, without
+ * simulating any games.
+ * <p>
+ * The probability of being in each game state is propagated through
+ * the state space one roll at a time, starting from the start of the
+ * game, until almost all the probability has reached the end of a game.
+ * The agents must be deterministic, and must not hold state between
+ * moves, as each of their decisions is only evaluated once.
+ * <p>
+ * The states that are reachable when the agents play each other are
+ * found first, along with the state reached after each roll. Then,
+ * the probabilities are propagated in parallel, like the values in
+ * {@link net.royalur.lut.LutTrainer}, by pulling the probability of
+ * each state from the states that lead to it.
+ */
+public class GameLengthAnalyser {
+
+    /**
+     * The default probability of unfinished games at which to stop the analysis.
+     */
+    public static final double DEFAULT_TOLERANCE = 1e-12;
+
+    /**
+     * The default maximum number of rolls to analyse.
+     */
+    public static final int DEFAULT_MAX_ROLLS = 10_000;
+
+    private static final int PIECES_BITS = 4;
+    private static final int PIECES_MASK = (1 << PIECES_BITS) - 1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * The number of states in each section of work when propagating.
+     */
+    private static final int SECTION_SIZE = 4096;
+
+    /**
+     * The outcomes of a roll that do not lead to another state.
+     */
+    private static final int LIGHT_WINS = -1;
+    private static final int DARK_WINS = -2;
+    private static final int NO_EDGE = -3;
+
+    /**
+     * The indices of the sums calculated for each section of states.
+     */
+    private static final int SUM_LIGHT_WINS = 0;
+    private static final int SUM_DARK_WINS = 1;
+    private static final int SUM_LIGHT_ROLLS = 2;
+    private static final int SUM_DARK_ROLLS = 3;
+    private static final int SUM_LIGHT_MOVES = 4;
+    private static final int SUM_DARK_MOVES = 5;
+    private static final int SUM_REMAINING = 6;
+    private static final int SUM_COUNT = 7;
+
+    private final GameSettings settings;
+    private final Supplier<FastAgent> lightAgentGenerator;
+    private final Supplier<FastAgent> darkAgentGenerator;
+    private final int threadCount;
+
+    private final int pathLength;
+    private final int startingPieceCount;
+    private final double[] rollProbabilities;
+
+    /**
+     * Instantiates an analyser of games between two agents.
+     * @param settings The settings of the games to analyse.
+     * @param lightAgentGenerator Creates the agent that plays as light on each thread.
+     * @param darkAgentGenerator Creates the agent that plays as dark on each thread.
+     * @param threadCount The number of threads to use.
+     */
+    public GameLengthAnalyser(
+            GameSettings settings,
+            Supplier<FastAgent> lightAgentGenerator,
+            Supplier<FastAgent> darkAgentGenerator,
+            int threadCount
+    ) {
+        if (threadCount <= 0)
+            throw new IllegalArgumentException("threadCount must be at least 1");
+
+        this.settings = settings;
+        this.lightAgentGenerator = lightAgentGenerator;
+        this.darkAgentGenerator = darkAgentGenerator;
+        this.threadCount = threadCount;
+
+        this.pathLength = new FastSimpleGame(settings).light.path.length;
+        this.startingPieceCount = settings.getStartingPieceCount();
+        if (2 * pathLength + 2 * PIECES_BITS + 1 >= Long.SIZE)
+            throw new IllegalArgumentException("The paths are too long to be analysed");
+        if (startingPieceCount > PIECES_MASK)
+            throw new IllegalArgumentException("Too many starting pieces to be analysed");
+
+        float[] probabilities = settings.getDice().createDice().getRollProbabilities();
+        this.rollProbabilities = new double[probabilities.length];
+        for (int roll = 0; roll < probabilities.length; ++roll) {
+            rollProbabilities[roll] = probabilities[roll];
+        }
+    }
+
+    /**
+     * Instantiates an analyser of games between two agents
+     * that uses all available processors.
+     * @param settings The settings of the games to analyse.
+     * @param lightAgentGenerator Creates the agent that plays as light on each thread.
+     * @param darkAgentGenerator Creates the agent that plays as dark on each thread.
+     */
+    public GameLengthAnalyser(
+            GameSettings settings,
+            Supplier<FastAgent> lightAgentGenerator,
+            Supplier<FastAgent> darkAgentGenerator
+    ) {
+        this(settings, lightAgentGenerator, darkAgentGenerator, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Packs a game state that is waiting for a roll into a single word.
+     * The lowest bits hold the occupancy of each player's path, followed
+     * by the pieces each player has left to play, and then the turn.
+     */
+    long pack(FastSimpleGame game) {
+        int[] boardPieces = game.board.pieces;
+        int[] lightPath = game.light.path;
+        int[] darkPath = game.dark.path;
+
+        long lightOccupancy = 0;
+        long darkOccupancy = 0;
+        for (int pathIndex = 0; pathIndex < pathLength; ++pathIndex) {
+            if (boardPieces[lightPath[pathIndex]] == pathIndex + 1) {
+                lightOccupancy |= 1L << pathIndex;
+            }
+            if (boardPieces[darkPath[pathIndex]] == -(pathIndex + 1)) {
+                darkOccupancy |= 1L << pathIndex;
+            }
+        }
+
+        int piecesShift = 2 * pathLength;
+        return lightOccupancy
+                | (darkOccupancy << pathLength)
+                | ((long) game.light.pieces << piecesShift)
+                | ((long) game.dark.pieces << (piecesShift + PIECES_BITS))
+                | ((game.isLightTurn ? 1L : 0L) << (piecesShift + 2 * PIECES_BITS));
+    }
+
+    /**
+     * Unpacks a game state that was packed using {@link #pack(FastSimpleGame)}.
+     */
+    void unpack(long key, FastSimpleGame output) {
+        long pathMask = (1L << pathLength) - 1;
+        long lightOccupancy = key & pathMask;
+        long darkOccupancy = (key >>> pathLength) & pathMask;
+        int piecesShift = 2 * pathLength;
+
+        output.board.clear();
+        int[] lightPath = output.light.path;
+        int[] darkPath = output.dark.path;
+        for (int pathIndex = 0; pathIndex < pathLength; ++pathIndex) {
+            if ((lightOccupancy & (1L << pathIndex)) != 0) {
+                output.board.set(lightPath[pathIndex], pathIndex + 1);
+            }
+            if ((darkOccupancy & (1L << pathIndex)) != 0) {
+                output.board.set(darkPath[pathIndex], -(pathIndex + 1));
+            }
+        }
+
+        output.light.pieces = (int) (key >>> piecesShift) & PIECES_MASK;
+        output.dark.pieces = (int) (key >>> (piecesShift + PIECES_BITS)) & PIECES_MASK;
+        output.light.score = startingPieceCount - output.light.pieces - Long.bitCount(lightOccupancy);
+        output.dark.score = startingPieceCount - output.dark.pieces - Long.bitCount(darkOccupancy);
+        output.isLightTurn = ((key >>> (piecesShift + 2 * PIECES_BITS)) & 1) != 0;
+        output.rollValue = -1;
+        output.isFinished = false;
+    }
+
+    private static int hash(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+
+    private static void runInParallel(int threadCount, String name, IntConsumer task) {
+        List<Thread> threads = new ArrayList<>();
+        AtomicReference<Exception> error = new AtomicReference<>();
+
+        for (int threadNo = 0; threadNo < threadCount; ++threadNo) {
+            int threadNoFinal = threadNo;
+            Thread thread = new Thread(() -> {
+                try {
+                    task.accept(threadNoFinal);
+                } catch (Exception e) {
+                    error.set(e);
+                }
+            }, name + "-" + threadNo);
+            threads.add(thread);
+            thread.start();
+        }
+
+        // Wait for all processing to complete.
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        if (error.get() != null)
+            throw new RuntimeException(error.get());
+    }
+
+    /**
+     * Analyses games until the probability of unfinished games is at most
+     * {@link #DEFAULT_TOLERANCE}, or {@link #DEFAULT_MAX_ROLLS} rolls have
+     * been made.
+     * @return The distribution of the length of the games.
+     */
+    public GameLengthDistribution analyse() {
+        return analyse(DEFAULT_MAX_ROLLS, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Analyses games until the probability of unfinished games is at
+     * most {@code tolerance}, or {@code maxRolls} rolls have been made.
+     * @param maxRolls The maximum number of rolls to analyse.
+     * @param tolerance The probability of unfinished games at which to stop.
+     * @return The distribution of the length of the games.
+     */
+    public GameLengthDistribution analyse(int maxRolls, double tolerance) {
+        if (maxRolls < 0)
+            throw new IllegalArgumentException("maxRolls must not be negative");
+
+        StateGraph graph = exploreStates();
+        return propagate(graph, maxRolls, tolerance);
+    }
+
+    /**
+     * Finds all the states that are reachable from the start of the game
+     * when the agents play against each other, and the transitions between
+     * them for each roll. The states are explored one level at a time. The
+     * agents decide the moves from each level in parallel, and then the new
+     * states are given indices in the order that they were found.
+     */
+    private StateGraph exploreStates() {
+        int rollCount = rollProbabilities.length;
+        Explorer[] explorers = new Explorer[threadCount];
+        for (int index = 0; index < threadCount; ++index) {
+            explorers[index] = new Explorer();
+        }
+
+        FastSimpleGame startGame = new FastSimpleGame(settings);
+        startGame.reset();
+
+        StateIndexMap indices = new StateIndexMap();
+        indices.add(pack(startGame));
+        int[] edges = new int[INITIAL_CAPACITY * rollCount];
+        boolean[] moved = new boolean[INITIAL_CAPACITY * rollCount];
+
+        int levelStart = 0;
+        int levelEnd = indices.size();
+        while (levelStart < levelEnd) {
+            int levelSize = levelEnd - levelStart;
+            long[] levelKeys = Arrays.copyOfRange(indices.keys, levelStart, levelEnd);
+            long[] outcomes = new long[levelSize * rollCount];
+            boolean[] levelMoved = new boolean[levelSize * rollCount];
+
+            int sectionSize = (levelSize + threadCount - 1) / threadCount;
+            runInParallel(threadCount, "analyse-explore", threadNo -> {
+                int fromIndex = Math.min(levelSize, threadNo * sectionSize);
+                int toIndex = Math.min(levelSize, fromIndex + sectionSize);
+                explorers[threadNo].explore(levelKeys, fromIndex, toIndex, outcomes, levelMoved);
+            });
+
+            int edgeOffset = levelStart * rollCount;
+            if (edges.length < edgeOffset + outcomes.length) {
+                int capacity = Math.max(2 * edges.length, edgeOffset + outcomes.length);
+                edges = Arrays.copyOf(edges, capacity);
+                moved = Arrays.copyOf(moved, capacity);
+            }
+            for (int index = 0; index < outcomes.length; ++index) {
+                long outcome = outcomes[index];
+                edges[edgeOffset + index] = (outcome >= 0 ? indices.add(outcome) : (int) outcome);
+            }
+            System.arraycopy(levelMoved, 0, moved, edgeOffset, levelMoved.length);
+
+            levelStart = levelEnd;
+            levelEnd = indices.size();
+        }
+
+        int stateCount = indices.size();
+        return new StateGraph(
+                Arrays.copyOf(indices.keys, stateCount),
+                Arrays.copyOf(edges, stateCount * rollCount),
+                Arrays.copyOf(moved, stateCount * rollCount),
+                rollCount
+        );
+    }
+
+    /**
+     * Propagates the probability of being in each state one roll at a time.
+     * The states are split into fixed sections that are assigned to threads,
+     * and the sums from each section are combined in order, so that the
+     * results do not depend on the number of threads.
+     */
+    private GameLengthDistribution propagate(StateGraph graph, int maxRolls, double tolerance) {
+        int stateCount = graph.keys.length;
+        int sectionCount = (stateCount + SECTION_SIZE - 1) / SECTION_SIZE;
+        int workerCount = Math.min(threadCount, sectionCount);
+        double[][] sectionSums = new double[sectionCount][SUM_COUNT];
+
+        double[] mass = new double[stateCount];
+        double[] nextMass = new double[stateCount];
+        mass[0] = 1.0;
+
+        double[] lightWins = new double[maxRolls + 1];
+        double[] darkWins = new double[maxRolls + 1];
+        double[] expectedRolls = new double[GameStatsTarget.values().length];
+        double[] expectedMoves = new double[GameStatsTarget.values().length];
+
+        double remaining = 1.0;
+        int rolls = 0;
+        while (rolls < maxRolls && remaining > tolerance) {
+            rolls += 1;
+            double[] currentMass = mass;
+            double[] updatedMass = nextMass;
+            runInParallel(workerCount, "analyse-propagate", threadNo -> {
+                for (int section = threadNo; section < sectionCount; section += workerCount) {
+                    int fromIndex = section * SECTION_SIZE;
+                    int toIndex = Math.min(stateCount, fromIndex + SECTION_SIZE);
+                    double[] sums = sectionSums[section];
+                    Arrays.fill(sums, 0);
+                    graph.sumOutcomes(currentMass, rollProbabilities, fromIndex, toIndex, sums);
+                    sums[SUM_REMAINING] = graph.pullMass(
+                            currentMass, updatedMass, rollProbabilities, fromIndex, toIndex
+                    );
+                }
+            });
+
+            remaining = 0;
+            for (double[] sums : sectionSums) {
+                lightWins[rolls] += sums[SUM_LIGHT_WINS];
+                darkWins[rolls] += sums[SUM_DARK_WINS];
+                addSums(expectedRolls, sums[SUM_LIGHT_ROLLS], sums[SUM_DARK_ROLLS]);
+                addSums(expectedMoves, sums[SUM_LIGHT_MOVES], sums[SUM_DARK_MOVES]);
+                remaining += sums[SUM_REMAINING];
+            }
+            mass = updatedMass;
+            nextMass = currentMass;
+        }
+
+        return new GameLengthDistribution(
+                Arrays.copyOf(lightWins, rolls + 1),
+                Arrays.copyOf(darkWins, rolls + 1),
+                remaining,
+                expectedRolls,
+                expectedMoves
+        );
+    }
+
+    private static void addSums(double[] counts, double light, double dark) {
+        counts[GameStatsTarget.OVERALL.ordinal()] += light + dark;
+        counts[GameStatsTarget.LIGHT.ordinal()] += light;
+        counts[GameStatsTarget.DARK.ordinal()] += dark;
+    }
+
+    /**
+     * The reachable game states, and the state reached after each roll.
+     */
+    private class StateGraph {
+
+        final long[] keys;
+
+        /**
+         * The index of the state reached from each state after each roll,
+         * or else {@link #LIGHT_WINS}, {@link #DARK_WINS}, or {@link #NO_EDGE}.
+         */
+        final int[] edges;
+
+        /**
+         * Whether a move was made after each roll from each state.
+         */
+        final boolean[] moved;
+
+        final int rollCount;
+
+        /**
+         * The states that lead to each state,
+         * and the rolls that lead to them.
+         */
+        final int[] predecessorOffsets;
+        final int[] predecessors;
+        final byte[] predecessorRolls;
+
+        StateGraph(long[] keys, int[] edges, boolean[] moved, int rollCount) {
+            this.keys = keys;
+            this.edges = edges;
+            this.moved = moved;
+            this.rollCount = rollCount;
+
+            int stateCount = keys.length;
+            this.predecessorOffsets = new int[stateCount + 1];
+            for (int edge : edges) {
+                if (edge >= 0) {
+                    predecessorOffsets[edge + 1] += 1;
+                }
+            }
+            for (int index = 0; index < stateCount; ++index) {
+                predecessorOffsets[index + 1] += predecessorOffsets[index];
+            }
+
+            int[] fill = Arrays.copyOf(predecessorOffsets, stateCount);
+            this.predecessors = new int[predecessorOffsets[stateCount]];
+            this.predecessorRolls = new byte[predecessorOffsets[stateCount]];
+            for (int edgeIndex = 0; edgeIndex < edges.length; ++edgeIndex) {
+                int target = edges[edgeIndex];
+                if (target < 0)
+                    continue;
+
+                int position = fill[target]++;
+                predecessors[position] = edgeIndex / rollCount;
+                predecessorRolls[position] = (byte) (edgeIndex % rollCount);
+            }
+        }
+
+        boolean isLightTurn(int index) {
+            return ((keys[index] >>> (2 * pathLength + 2 * PIECES_BITS)) & 1) != 0;
+        }
+
+        /**
+         * Sums the probability of the games that finish, and of the rolls
+         * and moves that are made, from the states in the given range.
+         */
+        void sumOutcomes(double[] mass, double[] probabilities, int fromIndex, int toIndex, double[] sums) {
+            for (int index = fromIndex; index < toIndex; ++index) {
+                double stateMass = mass[index];
+                if (stateMass == 0)
+                    continue;
+
+                boolean isLight = isLightTurn(index);
+                sums[isLight ? SUM_LIGHT_ROLLS : SUM_DARK_ROLLS] += stateMass;
+                for (int roll = 0; roll < rollCount; ++roll) {
+                    int edgeIndex = index * rollCount + roll;
+                    double rollMass = stateMass * probabilities[roll];
+                    if (moved[edgeIndex]) {
+                        sums[isLight ? SUM_LIGHT_MOVES : SUM_DARK_MOVES] += rollMass;
+                    }
+                    if (edges[edgeIndex] == LIGHT_WINS) {
+                        sums[SUM_LIGHT_WINS] += rollMass;
+                    } else if (edges[edgeIndex] == DARK_WINS) {
+                        sums[SUM_DARK_WINS] += rollMass;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Calculates the probability of being in each state in the given
+         * range after the next roll, and returns the sum of the probabilities.
+         */
+        double pullMass(double[] mass, double[] output, double[] probabilities, int fromIndex, int toIndex) {
+            double total = 0;
+            for (int index = fromIndex; index < toIndex; ++index) {
+                double stateMass = 0;
+                for (int position = predecessorOffsets[index]; position < predecessorOffsets[index + 1]; ++position) {
+                    stateMass += mass[predecessors[position]] * probabilities[predecessorRolls[position]];
+                }
+                output[index] = stateMass;
+                total += stateMass;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * An open-addressing map from packed game states to their index.
+     */
+    private static class StateIndexMap {
+
+        long[] keys;
+        private int[] table;
+        private int size;
+
+        StateIndexMap() {
+            this.keys = new long[INITIAL_CAPACITY];
+            this.table = new int[2 * INITIAL_CAPACITY];
+            Arrays.fill(table, -1);
+            this.size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Gets the index of the key, adding it if it is not already present.
+         */
+        int add(long key) {
+            if (2 * (size + 1) > table.length) {
+                grow();
+            }
+            int mask = table.length - 1;
+            int slot = hash(key) & mask;
+            while (table[slot] >= 0) {
+                int index = table[slot];
+                if (keys[index] == key)
+                    return index;
+
+                slot = (slot + 1) & mask;
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, 2 * keys.length);
+            }
+            keys[size] = key;
+            table[slot] = size;
+            return size++;
+        }
+
+        private void grow() {
+            table = new int[2 * table.length];
+            Arrays.fill(table, -1);
+            int mask = table.length - 1;
+            for (int index = 0; index < size; ++index) {
+                int slot = hash(keys[index]) & mask;
+                while (table[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = index;
+            }
+        }
+    }
+
+    /**
+     * Finds the outcome of each roll from a section of states
+     * on one thread, using its own agents.
+     */
+    private class Explorer {
+
+        private final FastAgent lightAgent;
+        private final FastAgent darkAgent;
+        private final FastSimpleGame game;
+        private final FastSimpleMoveList moveList;
+
+        Explorer() {
+            this.lightAgent = lightAgentGenerator.get();
+            this.darkAgent = darkAgentGenerator.get();
+            this.game = new FastSimpleGame(settings);
+            this.moveList = new FastSimpleMoveList();
+        }
+
+        void explore(long[] keys, int fromIndex, int toIndex, long[] outcomes, boolean[] moved) {
+            int rollCount = rollProbabilities.length;
+            for (int index = fromIndex; index < toIndex; ++index) {
+                unpack(keys[index], game);
+                for (int roll = 0; roll < rollCount; ++roll) {
+                    int outcomeIndex = index * rollCount + roll;
+                    if (rollProbabilities[roll] <= 0) {
+                        outcomes[outcomeIndex] = NO_EDGE;
+                        continue;
+                    }
+                    moved[outcomeIndex] = exploreRoll(roll, outcomes, outcomeIndex);
+                }
+            }
+        }
+
+        /**
+         * Finds the outcome of a roll, and returns whether a move was made.
+         */
+        private boolean exploreRoll(int roll, long[] outcomes, int outcomeIndex) {
+            boolean isLight = game.isLightTurn;
+            int rollUndoToken = game.applyRoll(roll, moveList);
+            if (!game.isWaitingForMove()) {
+                outcomes[outcomeIndex] = pack(game);
+                game.undoRoll(rollUndoToken);
+                return false;
+            }
+
+            FastAgent agent = (isLight ? lightAgent : darkAgent);
+            int moveUndoToken = game.applyMove(agent.decideMove(game, moveList));
+            if (!game.isFinished) {
+                outcomes[outcomeIndex] = pack(game);
+            } else {
+                outcomes[outcomeIndex] = (isLight ? LIGHT_WINS : DARK_WINS);
+            }
+            game.undoMove(moveUndoToken);
+            game.undoRoll(rollUndoToken);
+            return true;
+        }
+    }
+}
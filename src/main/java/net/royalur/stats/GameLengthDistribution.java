@@ -0,0 +1,189 @@
+package net.royalur.stats;
+
+/**
+ * The exact distribution of the length of games between two agents,
+ * measured in the number of rolls of the dice, and split by the
+ * winner of the game.
+ */
+public class GameLengthDistribution {
+
+    /**
+     * The probability that light wins after each number of rolls.
+     */
+    private final double[] lightWinProbabilities;
+
+    /**
+     * The probability that dark wins after each number of rolls.
+     */
+    private final double[] darkWinProbabilities;
+
+    /**
+     * The probability of the games that had not finished when
+     * the analysis stopped.
+     */
+    private final double unresolvedProbability;
+
+    /**
+     * The expected number of rolls made in a game,
+     * indexed by the ordinal of an element of {@link GameStatsTarget}.
+     */
+    private final double[] expectedRolls;
+
+    /**
+     * The expected number of moves made in a game,
+     * indexed by the ordinal of an element of {@link GameStatsTarget}.
+     */
+    private final double[] expectedMoves;
+
+    protected GameLengthDistribution(
+            double[] lightWinProbabilities,
+            double[] darkWinProbabilities,
+            double unresolvedProbability,
+            double[] expectedRolls,
+            double[] expectedMoves
+    ) {
+        if (lightWinProbabilities.length != darkWinProbabilities.length)
+            throw new IllegalArgumentException("The win probabilities must be the same length");
+
+        this.lightWinProbabilities = lightWinProbabilities;
+        this.darkWinProbabilities = darkWinProbabilities;
+        this.unresolvedProbability = unresolvedProbability;
+        this.expectedRolls = expectedRolls;
+        this.expectedMoves = expectedMoves;
+    }
+
+    /**
+     * Gets the number of rolls after which the analysis stopped.
+     * @return The number of rolls after which the analysis stopped.
+     */
+    public int getMaxRolls() {
+        return lightWinProbabilities.length - 1;
+    }
+
+    /**
+     * Gets the probability that a game finishes after exactly {@code rolls} rolls.
+     * @param rolls The number of rolls in the game.
+     * @return The probability that a game finishes after exactly {@code rolls} rolls.
+     */
+    public double getProbability(int rolls) {
+        if (rolls < 0 || rolls >= lightWinProbabilities.length)
+            return 0;
+
+        return lightWinProbabilities[rolls] + darkWinProbabilities[rolls];
+    }
+
+    /**
+     * Gets the probability that light wins after exactly {@code rolls} rolls.
+     * @param rolls The number of rolls in the game.
+     * @return The probability that light wins after exactly {@code rolls} rolls.
+     */
+    public double getLightWinProbability(int rolls) {
+        if (rolls < 0 || rolls >= lightWinProbabilities.length)
+            return 0;
+
+        return lightWinProbabilities[rolls];
+    }
+
+    /**
+     * Gets the probability that light wins the game.
+     * @return The probability that light wins the game.
+     */
+    public double getLightWinProbability() {
+        double probability = 0;
+        for (double value : lightWinProbabilities) {
+            probability += value;
+        }
+        return probability;
+    }
+
+    /**
+     * Gets the probability that dark wins the game.
+     * @return The probability that dark wins the game.
+     */
+    public double getDarkWinProbability() {
+        double probability = 0;
+        for (double value : darkWinProbabilities) {
+            probability += value;
+        }
+        return probability;
+    }
+
+    /**
+     * Gets the probability of the games that were still being played when
+     * the analysis stopped. The other statistics do not include these games.
+     * @return The probability of the games that had not finished.
+     */
+    public double getUnresolvedProbability() {
+        return unresolvedProbability;
+    }
+
+    /**
+     * Gets the expected number of rolls made in a game for the target {@code target}.
+     * @param target The player to get the rolls of, or overall.
+     * @return The expected number of rolls.
+     */
+    public double getExpectedRolls(GameStatsTarget target) {
+        return expectedRolls[target.ordinal()];
+    }
+
+    /**
+     * Gets the expected number of moves made in a game for the target {@code target}.
+     * @param target The player to get the moves of, or overall.
+     * @return The expected number of moves.
+     */
+    public double getExpectedMoves(GameStatsTarget target) {
+        return expectedMoves[target.ordinal()];
+    }
+
+    /**
+     * Summarises the distribution of the number of rolls in the finished games.
+     * The sum is not defined for a distribution, so it is NaN. Percentiles
+     * are the smallest number of rolls at or above the percentile.
+     * @return The summary statistics, indexed by the ordinal of an element
+     *         of {@link SummaryStat}.
+     */
+    public double[] summariseRolls() {
+        double total = 0;
+        double weightedSum = 0;
+        int min = -1;
+        int max = -1;
+        for (int rolls = 0; rolls < lightWinProbabilities.length; ++rolls) {
+            double probability = getProbability(rolls);
+            if (probability <= 0)
+                continue;
+
+            if (min < 0) {
+                min = rolls;
+            }
+            max = rolls;
+            total += probability;
+            weightedSum += probability * rolls;
+        }
+        if (total <= 0)
+            throw new IllegalStateException("No games finished");
+
+        double mean = weightedSum / total;
+        double variance = 0;
+        for (int rolls = min; rolls <= max; ++rolls) {
+            double diff = rolls - mean;
+            variance += getProbability(rolls) * diff * diff;
+        }
+        variance /= total;
+
+        double totalProbability = total;
+        return SummaryStat.create(
+                min, max, Double.NaN, mean, variance,
+                percentile -> calculatePercentile(percentile * totalProbability)
+        );
+    }
+
+    private double calculatePercentile(double targetProbability) {
+        double cumulative = 0;
+        for (int rolls = 0; rolls < lightWinProbabilities.length; ++rolls) {
+            cumulative += getProbability(rolls);
+            if (cumulative >= targetProbability && cumulative > 0)
+                return rolls;
+        }
+        return getMaxRolls();
+    }
+}
@@ -0,0 +1,89 @@
+package net.royalur.stats;
+
+/**
+ * The results of simulating many games between two agents. The agents
+ * swap sides between games, so the wins of each agent are tracked
+ * separately to the wins of each player.
+ */
+public class GameSimulationResults {
+
+    private final GameStatsAccumulator stats;
+    private long agent1Wins;
+
+    /**
+     * Instantiates empty results.
+     */
+    public GameSimulationResults() {
+        this.stats = new GameStatsAccumulator();
+        this.agent1Wins = 0;
+    }
+
+    /**
+     * Adds the statistics of a single game to these results.
+     * @param gameStats The statistics of the game.
+     * @param agent1Won Whether the first agent won the game.
+     */
+    public void add(GameStats gameStats, boolean agent1Won) {
+        stats.add(gameStats);
+        if (agent1Won) {
+            agent1Wins += 1;
+        }
+    }
+
+    /**
+     * Adds all the games from {@code other} to these results.
+     * @param other The results to merge into these results.
+     */
+    public void merge(GameSimulationResults other) {
+        stats.merge(other.stats);
+        agent1Wins += other.agent1Wins;
+    }
+
+    /**
+     * Gets the accumulated statistics of the games.
+     * @return The accumulated statistics of the games.
+     */
+    public GameStatsAccumulator getStats() {
+        return stats;
+    }
+
+    /**
+     * Gets the number of games that were simulated.
+     * @return The number of games that were simulated.
+     */
+    public long getGameCount() {
+        return stats.getGameCount();
+    }
+
+    /**
+     * Gets the number of games won by the first agent.
+     * @return The number of games won by the first agent.
+     */
+    public long getAgent1Wins() {
+        return agent1Wins;
+    }
+
+    /**
+     * Gets the number of games won by the second agent.
+     * @return The number of games won by the second agent.
+     */
+    public long getAgent2Wins() {
+        return getGameCount() - agent1Wins;
+    }
+
+    /**
+     * Gets the number of games won by the light player.
+     * @return The number of games won by the light player.
+     */
+    public long getLightWins() {
+        return stats.getLightWins();
+    }
+
+    /**
+     * Gets the number of games won by the dark player.
+     * @return The number of games won by the dark player.
+     */
+    public long getDarkWins() {
+        return getGameCount() - getLightWins();
+    }
+}
@@ -0,0 +1,318 @@
+package net.royalur.stats;
+
+import net.royalur.Game;
+import net.royalur.agent.Agent;
+import net.royalur.agent.FastAgent;
+import net.royalur.model.GameMetadata;
+import net.royalur.model.GameSettings;
+import net.royalur.model.dice.DiceFactory;
+import net.royalur.model.dice.DiceType;
+import net.royalur.rules.simple.SimpleRuleSet;
+import net.royalur.rules.simple.SimpleRuleSetProvider;
+import net.royalur.rules.simple.fast.FastSimpleEngineType;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Simulates many games between two agents across several threads.
+ * <p>
+ * The games are split into fixed-size blocks that the threads claim
+ * as they become free. Each thread creates its own agents and its own
+ * source of randomness, which is used for the dice and may be passed to
+ * the agents. The source of randomness is re-seeded before every game
+ * from the seed of the simulation and the index of the game, and the
+ * results of the blocks are merged in order. Therefore, the results
+ * of a simulation only depend on its seed, and not on the number of
+ * threads that are used.
+ * <p>
+ * If both agents implement {@link FastAgent}, the games are played using
+ * {@link FastSelfPlay} instead of through {@link Game}, which is much faster.
+ */
+public class GameSimulator {
+
+    /**
+     * The number of games in each block of work claimed by a thread.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 500;
+
+    private final GameSettings settings;
+    private final DiceType diceType;
+    private final BiFunction<SimpleRuleSet, Random, Agent> agent1Generator;
+    private final BiFunction<SimpleRuleSet, Random, Agent> agent2Generator;
+    private final long seed;
+    private final int blockSize;
+    private final FastSimpleEngineType engineType;
+
+    /**
+     * Instantiates a simulator of games between two agents.
+     * @param settings The settings of the games to simulate.
+     * @param agent1Generator Creates the first agent for a thread, given
+     *                        the rules and the thread's source of randomness.
+     * @param agent2Generator Creates the second agent for a thread, given
+     *                        the rules and the thread's source of randomness.
+     * @param seed The seed used to generate the randomness of every game.
+     * @param blockSize The number of games in each block of work.
+     * @param engineType The engine that {@link FastSelfPlay} plays games using.
+     */
+    public GameSimulator(
+            GameSettings settings,
+            BiFunction<SimpleRuleSet, Random, Agent> agent1Generator,
+            BiFunction<SimpleRuleSet, Random, Agent> agent2Generator,
+            long seed,
+            int blockSize,
+            FastSimpleEngineType engineType
+    ) {
+        DiceFactory dice = settings.getDice();
+        if (!(dice instanceof DiceType type))
+            throw new IllegalArgumentException("Only the standard dice types can be seeded, not " + dice.getID());
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("blockSize must be at least 1");
+
+        this.settings = settings;
+        this.diceType = type;
+        this.agent1Generator = agent1Generator;
+        this.agent2Generator = agent2Generator;
+        this.seed = seed;
+        this.blockSize = blockSize;
+        this.engineType = engineType;
+    }
+
+    /**
+     * Instantiates a simulator of games between two agents.
+     * @param settings The settings of the games to simulate.
+     * @param agent1Generator Creates the first agent for a thread, given
+     *                        the rules and the thread's source of randomness.
+     * @param agent2Generator Creates the second agent for a thread, given
+     *                        the rules and the thread's source of randomness.
+     * @param seed The seed used to generate the randomness of every game.
+     * @param blockSize The number of games in each block of work.
+     */
+    public GameSimulator(
+            GameSettings settings,
+            BiFunction<SimpleRuleSet, Random, Agent> agent1Generator,
+            BiFunction<SimpleRuleSet, Random, Agent> agent2Generator,
+            long seed,
+            int blockSize
+    ) {
+        this(settings, agent1Generator, agent2Generator, seed, blockSize, FastSimpleEngineType.BOARD);
+    }
+
+    /**
+     * Instantiates a simulator of games between two agents.
+     * @param settings The settings of the games to simulate.
+     * @param agent1Generator Creates the first agent for a thread, given
+     *                        the rules and the thread's source of randomness.
+     * @param agent2Generator Creates the second agent for a thread, given
+     *                        the rules and the thread's source of randomness.
+     * @param seed The seed used to generate the randomness of every game.
+     */
+    public GameSimulator(
+            GameSettings settings,
+            BiFunction<SimpleRuleSet, Random, Agent> agent1Generator,
+            BiFunction<SimpleRuleSet, Random, Agent> agent2Generator,
+            long seed
+    ) {
+        this(settings, agent1Generator, agent2Generator, seed, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a simulator of games between two agents that do not use
+     * the source of randomness of their thread. The games will only be
+     * reproducible if the agents are deterministic.
+     * @param settings The settings of the games to simulate.
+     * @param agent1Generator Creates the first agent for a thread.
+     * @param agent2Generator Creates the second agent for a thread.
+     * @param seed The seed used to generate the dice rolls of every game.
+     * @return A simulator of games between the two agents.
+     */
+    public static GameSimulator create(
+            GameSettings settings,
+            Function<SimpleRuleSet, Agent> agent1Generator,
+            Function<SimpleRuleSet, Agent> agent2Generator,
+            long seed
+    ) {
+        return new GameSimulator(
+                settings,
+                (rules, random) -> agent1Generator.apply(rules),
+                (rules, random) -> agent2Generator.apply(rules),
+                seed
+        );
+    }
+
+    /**
+     * Generates the seed of the game with the given index, using the
+     * SplitMix64 finaliser so that nearby indices give unrelated seeds.
+     */
+    static long getGameSeed(long seed, long gameIndex) {
+        long z = seed + (gameIndex + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Simulates games using all available processors.
+     * @param games The number of games to simulate.
+     * @return The results of the games.
+     */
+    public GameSimulationResults simulate(int games) {
+        return simulate(games, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Simulates games using {@code threadCount} threads. The agents
+     * swap sides every game, with the first agent playing as dark in
+     * even-numbered games.
+     * @param games The number of games to simulate.
+     * @param threadCount The number of threads to use.
+     * @return The results of the games.
+     */
+    public GameSimulationResults simulate(int games, int threadCount) {
+        if (games < 0)
+            throw new IllegalArgumentException("games must not be negative");
+
+        return simulate(0, games, threadCount);
+    }
+
+    /**
+     * Simulates the games with indices from {@code fromGame}, inclusive, to
+     * {@code toGame}, exclusive, using {@code threadCount} threads. This allows
+     * a simulation to be continued in batches, as the games played are the same
+     * as the games with the same indices in one larger simulation.
+     * @param fromGame The index of the first game to simulate.
+     * @param toGame The index after the last game to simulate.
+     * @param threadCount The number of threads to use.
+     * @return The results of the games.
+     */
+    public GameSimulationResults simulate(int fromGame, int toGame, int threadCount) {
+        if (fromGame < 0 || toGame < fromGame)
+            throw new IllegalArgumentException("Invalid range of games: " + fromGame + " to " + toGame);
+        if (threadCount <= 0)
+            throw new IllegalArgumentException("threadCount must be at least 1");
+
+        int games = toGame - fromGame;
+        int blockCount = (games + blockSize - 1) / blockSize;
+        OrderedMerger merger = new OrderedMerger(blockCount);
+        AtomicInteger nextBlock = new AtomicInteger(0);
+
+        List<Thread> threads = new ArrayList<>();
+        AtomicReference<Exception> error = new AtomicReference<>();
+
+        for (int threadNo = 0; threadNo < Math.min(threadCount, blockCount); ++threadNo) {
+            Thread thread = new Thread(() -> {
+                try {
+                    Worker worker = new Worker();
+                    int block;
+                    while ((block = nextBlock.getAndIncrement()) < blockCount && error.get() == null) {
+                        int blockFromGame = fromGame + block * blockSize;
+                        int blockToGame = Math.min(toGame, blockFromGame + blockSize);
+                        merger.complete(block, worker.simulate(blockFromGame, blockToGame));
+                    }
+                } catch (Exception e) {
+                    error.set(e);
+                }
+            }, "simulate-" + threadNo);
+            threads.add(thread);
+            thread.start();
+        }
+
+        // Wait for all the games to complete.
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        if (error.get() != null)
+            throw new RuntimeException(error.get());
+
+        return merger.getResults();
+    }
+
+    /**
+     * The agents and scratch state used by one thread.
+     */
+    private class Worker {
+
+        private final Random random;
+        private final SimpleRuleSet rules;
+        private final Agent agent1;
+        private final Agent agent2;
+        private final @Nullable FastSelfPlay fastSelfPlay;
+
+        Worker() {
+            this.random = new Random();
+            GameSettings workerSettings = settings.withDice(diceType.createFactory(() -> random));
+            this.rules = new SimpleRuleSetProvider().create(workerSettings, new GameMetadata());
+            this.agent1 = agent1Generator.apply(rules, random);
+            this.agent2 = agent2Generator.apply(rules, random);
+
+            boolean fast = (agent1 instanceof FastAgent && agent2 instanceof FastAgent);
+            this.fastSelfPlay = (fast ? new FastSelfPlay(settings, diceType.createDice(random), engineType) : null);
+        }
+
+        GameStats play(Agent light, Agent dark) {
+            if (fastSelfPlay != null)
+                return fastSelfPlay.play((FastAgent) light, (FastAgent) dark);
+
+            Game game = new Game(rules);
+            Agent.playAutonomously(game, light, dark);
+            return GameStats.gather(game);
+        }
+
+        GameSimulationResults simulate(int fromGame, int toGame) {
+            GameSimulationResults results = new GameSimulationResults();
+            for (int gameIndex = fromGame; gameIndex < toGame; ++gameIndex) {
+                random.setSeed(getGameSeed(seed, gameIndex));
+
+                boolean swap = (gameIndex % 2 == 0);
+                GameStats gameStats = play(swap ? agent2 : agent1, swap ? agent1 : agent2);
+                results.add(gameStats, gameStats.didLightWin() != swap);
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Merges the results of blocks in the order of the blocks, so that
+     * the approximate statistics do not depend on the order that the
+     * blocks were completed. Blocks that complete early are held until
+     * all the blocks before them have completed.
+     */
+    private static class OrderedMerger {
+
+        private final GameSimulationResults[] pending;
+        private final GameSimulationResults results;
+        private int nextBlock;
+
+        OrderedMerger(int blockCount) {
+            this.pending = new GameSimulationResults[blockCount];
+            this.results = new GameSimulationResults();
+            this.nextBlock = 0;
+        }
+
+        synchronized void complete(int block, GameSimulationResults blockResults) {
+            pending[block] = blockResults;
+            while (nextBlock < pending.length && pending[nextBlock] != null) {
+                results.merge(pending[nextBlock]);
+                pending[nextBlock] = null;
+                nextBlock += 1;
+            }
+        }
+
+        synchronized GameSimulationResults getResults() {
+            if (nextBlock < pending.length)
+                throw new IllegalStateException("Not all blocks have been completed");
+
+            return results;
+        }
+    }
+}
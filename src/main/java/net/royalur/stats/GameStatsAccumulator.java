@@ -0,0 +1,143 @@
+package net.royalur.stats;
+
+/**
+ * Accumulates the statistics from many games one game at a time,
+ * so that the statistics of every game do not need to be kept in
+ * memory at once. The integer statistics are stored in exact
+ * histograms, and the percentage of turns in the lead is stored
+ * in an approximate {@link KllSketch}. Accumulators that were
+ * filled on different threads may be merged.
+ */
+public class GameStatsAccumulator {
+
+    /**
+     * Sketches of the number of rolls performed in the accumulated games,
+     * indexed by the ordinal of an element of {@link GameStatsTarget}.
+     */
+    private final IntHistogramSketch[] rolls;
+
+    /**
+     * Sketches of the number of moves made in the accumulated games,
+     * indexed by the ordinal of an element of {@link GameStatsTarget}.
+     */
+    private final IntHistogramSketch[] moves;
+
+    /**
+     * Sketches of the number of turns in the accumulated games,
+     * indexed by the ordinal of an element of {@link GameStatsTarget}.
+     */
+    private final IntHistogramSketch[] turns;
+
+    /**
+     * Sketches of the count of drama in the accumulated games,
+     * indexed by the ordinal of an element of {@link GameStatsTarget}.
+     */
+    private final IntHistogramSketch[] drama;
+
+    /**
+     * A sketch of the number of turns that the winner held the lead before winning.
+     */
+    private final IntHistogramSketch turnsInLead;
+
+    /**
+     * A sketch of the percentage of turns that the winner held the lead before winning.
+     */
+    private final KllSketch percentInLead;
+
+    private long lightWins;
+
+    /**
+     * Instantiates an accumulator with no games.
+     */
+    public GameStatsAccumulator() {
+        this.rolls = createTargetSketches();
+        this.moves = createTargetSketches();
+        this.turns = createTargetSketches();
+        this.drama = createTargetSketches();
+        this.turnsInLead = new IntHistogramSketch();
+        this.percentInLead = new KllSketch();
+        this.lightWins = 0;
+    }
+
+    private static IntHistogramSketch[] createTargetSketches() {
+        IntHistogramSketch[] sketches = new IntHistogramSketch[GameStatsTarget.values().length];
+        for (int index = 0; index < sketches.length; ++index) {
+            sketches[index] = new IntHistogramSketch();
+        }
+        return sketches;
+    }
+
+    /**
+     * Adds the statistics of a single game to this accumulator.
+     * @param stats The statistics of the game to add.
+     */
+    public void add(GameStats stats) {
+        for (GameStatsTarget target : GameStatsTarget.values()) {
+            int index = target.ordinal();
+            rolls[index].add(stats.getRolls(target));
+            moves[index].add(stats.getMoves(target));
+            turns[index].add(stats.getTurns(target));
+            drama[index].add(stats.getDrama(target));
+        }
+        turnsInLead.add(stats.getTurnsInLead());
+        percentInLead.add(stats.getPercentInLead());
+        if (stats.didLightWin()) {
+            lightWins += 1;
+        }
+    }
+
+    /**
+     * Adds all the games that were added to {@code other} to this accumulator.
+     * @param other The accumulator to merge into this accumulator.
+     */
+    public void merge(GameStatsAccumulator other) {
+        for (int index = 0; index < rolls.length; ++index) {
+            rolls[index].merge(other.rolls[index]);
+            moves[index].merge(other.moves[index]);
+            turns[index].merge(other.turns[index]);
+            drama[index].merge(other.drama[index]);
+        }
+        turnsInLead.merge(other.turnsInLead);
+        percentInLead.merge(other.percentInLead);
+        lightWins += other.lightWins;
+    }
+
+    /**
+     * Gets the number of games that have been added to this accumulator.
+     * @return The number of games that have been added to this accumulator.
+     */
+    public long getGameCount() {
+        return turnsInLead.getCount();
+    }
+
+    /**
+     * Gets the number of games that were won by the light player.
+     * @return The number of games that were won by the light player.
+     */
+    public long getLightWins() {
+        return lightWins;
+    }
+
+    private static double[][] summariseTargets(IntHistogramSketch[] sketches) {
+        double[][] summaries = new double[sketches.length][];
+        for (int index = 0; index < sketches.length; ++index) {
+            summaries[index] = sketches[index].summarise();
+        }
+        return summaries;
+    }
+
+    /**
+     * Summarises the statistics of all the games that have been added.
+     * @return The summarised statistics of all the games that have been added.
+     */
+    public GameStatsSummary summarise() {
+        return new GameStatsSummary(
+                summariseTargets(rolls),
+                summariseTargets(moves),
+                summariseTargets(turns),
+                summariseTargets(drama),
+                turnsInLead.summarise(),
+                percentInLead.summarise()
+        );
+    }
+}
@@ -30,6 +30,19 @@ public class Histogram {
         bins[getBinIndex(value)] += 1;
     }
 
+    /**
+     * Adds the counts of other to this histogram.
+     * The histograms must have the same bins.
+     */
+    public void merge(Histogram other) {
+        if (min != other.min || max != other.max || bins.length != other.bins.length)
+            throw new IllegalArgumentException("The histograms do not have the same bins");
+
+        for (int index = 0; index < bins.length; ++index) {
+            bins[index] += other.bins[index];
+        }
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
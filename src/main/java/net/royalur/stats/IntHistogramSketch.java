@@ -0,0 +1,134 @@
+package net.royalur.stats;
+
+import java.util.Arrays;
+
+/**
+ * A sketch of non-negative integer measurements that stores the exact
+ * count of each value. The summary statistics of this sketch are exact,
+ * and it uses memory proportional to the largest measurement.
+ */
+public class IntHistogramSketch implements MeasurementSketch {
+
+    /**
+     * The number of times each value has been measured, indexed by value.
+     */
+    private long[] counts;
+
+    private long count;
+
+    public IntHistogramSketch() {
+        this.counts = new long[64];
+        this.count = 0;
+    }
+
+    /**
+     * Adds a non-negative integer measurement to this sketch.
+     * @param measurement The measurement to add.
+     */
+    public void add(int measurement) {
+        if (measurement < 0)
+            throw new IllegalArgumentException("measurement must be non-negative, not " + measurement);
+
+        if (measurement >= counts.length) {
+            int newLength = counts.length;
+            while (measurement >= newLength) {
+                newLength = Math.multiplyExact(2, newLength);
+            }
+            counts = Arrays.copyOf(counts, newLength);
+        }
+        counts[measurement] += 1;
+        count += 1;
+    }
+
+    @Override
+    public void add(double measurement) {
+        int value = (int) measurement;
+        if (value != measurement)
+            throw new IllegalArgumentException("measurement must be an integer, not " + measurement);
+
+        add(value);
+    }
+
+    @Override
+    public void merge(MeasurementSketch other) {
+        if (!(other instanceof IntHistogramSketch otherHistogram))
+            throw new IllegalArgumentException("Can only merge with another IntHistogramSketch");
+
+        long[] otherCounts = otherHistogram.counts;
+        if (otherCounts.length > counts.length) {
+            counts = Arrays.copyOf(counts, otherCounts.length);
+        }
+        for (int value = 0; value < otherCounts.length; ++value) {
+            counts[value] += otherCounts[value];
+        }
+        count += otherHistogram.count;
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the number of times that {@code value} has been measured.
+     * @param value The value to retrieve the count of.
+     * @return The number of times that {@code value} has been measured.
+     */
+    public long getCount(int value) {
+        return (value >= 0 && value < counts.length ? counts[value] : 0);
+    }
+
+    /**
+     * Finds the measurement at index {@code rank} if all
+     * the measurements were sorted in ascending order.
+     */
+    private int getOrderStatistic(long rank) {
+        long seen = 0;
+        for (int value = 0; value < counts.length; ++value) {
+            seen += counts[value];
+            if (seen > rank)
+                return value;
+        }
+        throw new IllegalArgumentException("rank is out of bounds: " + rank);
+    }
+
+    private double calculatePercentile(double percentile) {
+        double index = (count - 1) * percentile;
+        long belowIndex = (long) Math.floor(index);
+        long aboveIndex = (long) Math.ceil(index);
+
+        double below = getOrderStatistic(belowIndex);
+        double above = getOrderStatistic(aboveIndex);
+        return below + (above - below) * (index - belowIndex);
+    }
+
+    @Override
+    public double[] summarise() {
+        if (count == 0)
+            throw new IllegalArgumentException("No measurements provided");
+
+        int min = -1;
+        int max = 0;
+        double sum = 0;
+        for (int value = 0; value < counts.length; ++value) {
+            if (counts[value] == 0)
+                continue;
+
+            if (min < 0) {
+                min = value;
+            }
+            max = value;
+            sum += (double) value * counts[value];
+        }
+        double mean = sum / count;
+
+        double variance = 0;
+        for (int value = min; value <= max; ++value) {
+            double diff = value - mean;
+            variance += counts[value] * diff * diff;
+        }
+        variance /= count;
+
+        return SummaryStat.create(min, max, sum, mean, variance, this::calculatePercentile);
+    }
+}
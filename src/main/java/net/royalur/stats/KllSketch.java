@@ -0,0 +1,191 @@
+package net.royalur.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An approximate sketch of real-valued measurements, based upon the
+ * KLL quantile sketch by Karnin, Lang and Liberty. Measurements are
+ * stored in a hierarchy of compactors, where each measurement kept
+ * in level {@code h} represents {@code 2^h} original measurements.
+ * The min, max, sum, mean and variance are exact, and the percentiles
+ * are approximate, with an error that shrinks as {@code k} grows.
+ */
+public class KllSketch implements MeasurementSketch {
+
+    /**
+     * The default capacity of the highest level of the sketch.
+     */
+    public static final int DEFAULT_K = 200;
+
+    /**
+     * The smallest capacity of any level of the sketch.
+     */
+    private static final int MIN_LEVEL_CAPACITY = 8;
+
+    private final int k;
+    private final List<double[]> levels;
+    private final List<Integer> levelSizes;
+    private final StatGatherer stats;
+
+    /**
+     * Alternates the half of each compacted level that is kept,
+     * so that the sketch is deterministic but not biased.
+     */
+    private boolean keepOdd;
+
+    public KllSketch(int k) {
+        if (k < MIN_LEVEL_CAPACITY)
+            throw new IllegalArgumentException("k must be at least " + MIN_LEVEL_CAPACITY);
+
+        this.k = k;
+        this.levels = new ArrayList<>();
+        this.levelSizes = new ArrayList<>();
+        this.stats = new StatGatherer();
+        this.keepOdd = false;
+        addLevel();
+    }
+
+    public KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    private void addLevel() {
+        levels.add(new double[MIN_LEVEL_CAPACITY]);
+        levelSizes.add(0);
+    }
+
+    private int getLevelCapacity(int level) {
+        int depth = levels.size() - 1 - level;
+        return Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(2.0 / 3.0, depth)));
+    }
+
+    private void addToLevel(int level, double value) {
+        double[] items = levels.get(level);
+        int size = levelSizes.get(level);
+        if (size >= items.length) {
+            items = Arrays.copyOf(items, 2 * items.length);
+            levels.set(level, items);
+        }
+        items[size] = value;
+        levelSizes.set(level, size + 1);
+    }
+
+    /**
+     * Compacts levels that are over their capacity, by sorting them
+     * and promoting every second measurement to the next level.
+     */
+    private void compress() {
+        for (int level = 0; level < levels.size(); ++level) {
+            int size = levelSizes.get(level);
+            if (size <= getLevelCapacity(level))
+                continue;
+
+            if (level + 1 >= levels.size()) {
+                addLevel();
+            }
+            double[] items = levels.get(level);
+            Arrays.sort(items, 0, size);
+
+            // Keep one item behind if the level has an odd size.
+            int compactSize = size - (size % 2);
+            for (int index = (keepOdd ? 1 : 0); index < compactSize; index += 2) {
+                addToLevel(level + 1, items[index]);
+            }
+            keepOdd = !keepOdd;
+
+            if (compactSize < size) {
+                items[0] = items[size - 1];
+            }
+            levelSizes.set(level, size - compactSize);
+        }
+    }
+
+    @Override
+    public void add(double measurement) {
+        stats.add(measurement);
+        addToLevel(0, measurement);
+        if (levelSizes.get(0) > getLevelCapacity(0)) {
+            compress();
+        }
+    }
+
+    @Override
+    public void merge(MeasurementSketch other) {
+        if (!(other instanceof KllSketch otherSketch))
+            throw new IllegalArgumentException("Can only merge with another KllSketch");
+
+        while (levels.size() < otherSketch.levels.size()) {
+            addLevel();
+        }
+        for (int level = 0; level < otherSketch.levels.size(); ++level) {
+            double[] items = otherSketch.levels.get(level);
+            int size = otherSketch.levelSizes.get(level);
+            for (int index = 0; index < size; ++index) {
+                addToLevel(level, items[index]);
+            }
+        }
+        stats.merge(otherSketch.stats);
+        compress();
+    }
+
+    @Override
+    public long getCount() {
+        return stats.count();
+    }
+
+    @Override
+    public double[] summarise() {
+        if (getCount() == 0)
+            throw new IllegalArgumentException("No measurements provided");
+
+        // Gather all retained measurements with their weights, in sorted order.
+        int retainedCount = 0;
+        for (int size : levelSizes) {
+            retainedCount += size;
+        }
+        int retained = retainedCount;
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        int index = 0;
+        for (int level = 0; level < levels.size(); ++level) {
+            double[] items = levels.get(level);
+            for (int itemIndex = 0; itemIndex < levelSizes.get(level); ++itemIndex) {
+                values[index] = items[itemIndex];
+                weights[index] = 1L << level;
+                index += 1;
+            }
+        }
+        Integer[] order = new Integer[retained];
+        for (int orderIndex = 0; orderIndex < retained; ++orderIndex) {
+            order[orderIndex] = orderIndex;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        double[] sortedValues = new double[retained];
+        long[] cumulativeWeights = new long[retained];
+        long totalWeight = 0;
+        for (int orderIndex = 0; orderIndex < retained; ++orderIndex) {
+            sortedValues[orderIndex] = values[order[orderIndex]];
+            totalWeight += weights[order[orderIndex]];
+            cumulativeWeights[orderIndex] = totalWeight;
+        }
+        long finalTotalWeight = totalWeight;
+
+        return SummaryStat.create(
+                stats.min(), stats.max(),
+                stats.mean() * stats.count(), stats.mean(),
+                (stats.count() >= 2 ? stats.variance() : 0.0),
+                percentile -> {
+                    // Find the first measurement whose cumulative weight passes the percentile.
+                    double rank = percentile * finalTotalWeight;
+                    for (int orderIndex = 0; orderIndex < retained; ++orderIndex) {
+                        if (cumulativeWeights[orderIndex] > rank)
+                            return sortedValues[orderIndex];
+                    }
+                    return sortedValues[sortedValues.length - 1];
+                }
+        );
+    }
+}
@@ -0,0 +1,35 @@
+package net.royalur.stats;
+
+/**
+ * A summary of a stream of measurements that can be updated one
+ * measurement at a time, and merged with other sketches of the
+ * same type that were built separately.
+ */
+public interface MeasurementSketch {
+
+    /**
+     * Adds a measurement to this sketch.
+     * @param measurement The measurement to add.
+     */
+    void add(double measurement);
+
+    /**
+     * Adds all the measurements that were added to {@code other} to this sketch.
+     * @param other The sketch to merge into this sketch.
+     */
+    void merge(MeasurementSketch other);
+
+    /**
+     * Gets the number of measurements that have been added to this sketch.
+     * @return The number of measurements that have been added to this sketch.
+     */
+    long getCount();
+
+    /**
+     * Computes all summary statistics for the measurements in this sketch.
+     * The indices into the returned array represent the ordinal of the
+     * SummaryStat enum entries.
+     * @return The summary statistics for the measurements in this sketch.
+     */
+    double[] summarise();
+}
@@ -6,38 +6,180 @@ import java.math.RoundingMode;
 
 /**
  * Calculates running statistics (min, max, mean, variance, std‑dev) for large data streams.
+ * By default, Welford's algorithm is used on doubles, with compensated summation
+ * of the updates to the mean and the sum of squared differences. If high precision
+ * is requested, the mean and sum of squared differences are stored as BigDecimals,
+ * which is much slower.
  */
 public class StatGatherer {
 
     /** 20 significant digits should be plenty. */
     private static final MathContext MC = new MathContext(20, RoundingMode.HALF_EVEN);
 
+    private final boolean highPrecision;
+
     private long count;
     private double max = Double.NaN;
     private double min = Double.NaN;
-    private BigDecimal mean = null;
-    private BigDecimal m2 = null;
+
+    private double mean;
+    private double meanCompensation;
+    private double m2;
+    private double m2Compensation;
+
+    private BigDecimal preciseMean = null;
+    private BigDecimal preciseM2 = null;
+
+    public StatGatherer(boolean highPrecision) {
+        this.highPrecision = highPrecision;
+    }
+
+    public StatGatherer() {
+        this(false);
+    }
+
+    public boolean isHighPrecision() {
+        return highPrecision;
+    }
 
     public void add(double value) {
         count += 1;
         if (Double.isNaN(min) || value < min) {
             min = value;
         }
-        if (Double.isNaN(max) | value > max) {
+        if (Double.isNaN(max) || value > max) {
             max = value;
         }
 
+        if (highPrecision) {
+            addPrecise(value);
+            return;
+        }
+        if (count == 1) {
+            mean = value;
+            meanCompensation = 0;
+            m2 = 0;
+            m2Compensation = 0;
+            return;
+        }
+
+        double delta = value - getMean();
+        addToMean(delta / count);
+        double delta2 = value - getMean();
+        addToM2(delta * delta2);
+    }
+
+    private void addPrecise(double value) {
         BigDecimal x = BigDecimal.valueOf(value);
         if (count == 1) {
-            mean = x;
-            m2   = BigDecimal.ZERO;
+            preciseMean = x;
+            preciseM2 = BigDecimal.ZERO;
         } else {
             BigDecimal n = BigDecimal.valueOf(count);
-            BigDecimal delta = x.subtract(mean, MC);
-            mean = mean.add(delta.divide(n, MC), MC);
-            BigDecimal delta2 = x.subtract(mean, MC);
-            m2 = m2.add(delta.multiply(delta2, MC), MC);
+            BigDecimal delta = x.subtract(preciseMean, MC);
+            preciseMean = preciseMean.add(delta.divide(n, MC), MC);
+            BigDecimal delta2 = x.subtract(preciseMean, MC);
+            preciseM2 = preciseM2.add(delta.multiply(delta2, MC), MC);
+        }
+    }
+
+    private double getMean() {
+        return mean + meanCompensation;
+    }
+
+    private double getM2() {
+        return m2 + m2Compensation;
+    }
+
+    /**
+     * Adds to the mean using Neumaier's variant of Kahan summation.
+     */
+    private void addToMean(double value) {
+        double sum = mean + value;
+        if (Math.abs(mean) >= Math.abs(value)) {
+            meanCompensation += (mean - sum) + value;
+        } else {
+            meanCompensation += (value - sum) + mean;
         }
+        mean = sum;
+    }
+
+    /**
+     * Adds to the sum of squared differences using
+     * Neumaier's variant of Kahan summation.
+     */
+    private void addToM2(double value) {
+        double sum = m2 + value;
+        if (Math.abs(m2) >= Math.abs(value)) {
+            m2Compensation += (m2 - sum) + value;
+        } else {
+            m2Compensation += (value - sum) + m2;
+        }
+        m2 = sum;
+    }
+
+    /**
+     * Adds all the values that were added to other to this gatherer,
+     * using the parallel algorithm of Chan et al. to combine the variances.
+     */
+    public void merge(StatGatherer other) {
+        if (other.count == 0)
+            return;
+        if (count == 0) {
+            count = other.count;
+            min = other.min;
+            max = other.max;
+            if (highPrecision) {
+                preciseMean = other.getPreciseMean();
+                preciseM2 = other.getPreciseM2();
+            } else {
+                mean = other.mean();
+                meanCompensation = 0;
+                m2 = other.m2();
+                m2Compensation = 0;
+            }
+            return;
+        }
+
+        long totalCount = count + other.count;
+        if (highPrecision) {
+            BigDecimal n = BigDecimal.valueOf(totalCount);
+            BigDecimal otherMean = other.getPreciseMean();
+            BigDecimal delta = otherMean.subtract(preciseMean, MC);
+            BigDecimal otherCount = BigDecimal.valueOf(other.count);
+            BigDecimal weight = BigDecimal.valueOf(count).multiply(otherCount, MC);
+
+            preciseMean = preciseMean.add(delta.multiply(otherCount, MC).divide(n, MC), MC);
+            preciseM2 = preciseM2.add(other.getPreciseM2(), MC)
+                    .add(delta.multiply(delta, MC).multiply(weight, MC).divide(n, MC), MC);
+        } else {
+            double delta = other.mean() - getMean();
+            double otherFraction = (double) other.count / totalCount;
+            double weight = (double) count * otherFraction;
+
+            addToMean(delta * otherFraction);
+            addToM2(other.m2());
+            addToM2(delta * delta * weight);
+        }
+        count = totalCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    private BigDecimal getPreciseMean() {
+        return highPrecision ? preciseMean : BigDecimal.valueOf(getMean());
+    }
+
+    private BigDecimal getPreciseM2() {
+        return highPrecision ? preciseM2 : BigDecimal.valueOf(getM2());
+    }
+
+    private double m2() {
+        return highPrecision ? preciseM2.doubleValue() : getM2();
+    }
+
+    public long count() {
+        return count;
     }
 
     public double max() {
@@ -49,14 +191,20 @@ public class StatGatherer {
     }
 
     public double mean() {
-        return count >= 1 ? mean.doubleValue() : Double.NaN;
+        if (count < 1)
+            return Double.NaN;
+
+        return highPrecision ? preciseMean.doubleValue() : getMean();
     }
 
     public double variance() {
         if (count < 2)
             return Double.NaN;
 
-        return m2.divide(BigDecimal.valueOf(count), MC).doubleValue();
+        if (highPrecision)
+            return preciseM2.divide(BigDecimal.valueOf(count), MC).doubleValue();
+
+        return getM2() / count;
     }
 
     public double stdDev() {
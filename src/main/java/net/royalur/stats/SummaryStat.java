@@ -1,6 +1,7 @@
 package net.royalur.stats;
 
 import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
 
 /**
  * A statistic that can be used to summarise a set of measurements.
@@ -111,29 +112,48 @@ public enum SummaryStat {
             variance += diff * diff;
         }
         variance /= measurements.length;
-        double stdDev = Math.sqrt(variance);
 
         // Calculate the percentiles.
         Arrays.sort(measurements);
-        double percentile5 = calculatePercentile(measurements, 0.05);
-        double percentile25 = calculatePercentile(measurements, 0.25);
-        double median = calculatePercentile(measurements, 0.5);
-        double percentile75 = calculatePercentile(measurements, 0.75);
-        double percentile95 = calculatePercentile(measurements, 0.95);
+        return create(
+                min, max, sum, mean, variance,
+                percentile -> calculatePercentile(measurements, percentile)
+        );
+    }
 
-        // Add the statistics to an array of values.
+    /**
+     * Creates an array of all summary statistics from values that have
+     * already been calculated. The indices into the returned array represent
+     * the ordinal of the SummaryStat enum entries.
+     * @param min The minimum of the measurements.
+     * @param max The maximum of the measurements.
+     * @param sum The sum of the measurements.
+     * @param mean The mean of the measurements.
+     * @param variance The variance of the measurements.
+     * @param percentiles A function from a percentile in the range
+     *                    [0, 1] to the measurement at that percentile.
+     * @return The summary statistics.
+     */
+    public static double[] create(
+            double min,
+            double max,
+            double sum,
+            double mean,
+            double variance,
+            DoubleUnaryOperator percentiles
+    ) {
         double[] stats = new double[SummaryStat.values().length];
         stats[SummaryStat.MIN.ordinal()] = min;
         stats[SummaryStat.MAX.ordinal()] = max;
         stats[SummaryStat.SUM.ordinal()] = sum;
         stats[SummaryStat.MEAN.ordinal()] = mean;
         stats[SummaryStat.VARIANCE.ordinal()] = variance;
-        stats[SummaryStat.STD_DEV.ordinal()] = stdDev;
-        stats[SummaryStat.MEDIAN.ordinal()] = median;
-        stats[SummaryStat.PERCENTILE_5.ordinal()] = percentile5;
-        stats[SummaryStat.PERCENTILE_25.ordinal()] = percentile25;
-        stats[SummaryStat.PERCENTILE_75.ordinal()] = percentile75;
-        stats[SummaryStat.PERCENTILE_95.ordinal()] = percentile95;
+        stats[SummaryStat.STD_DEV.ordinal()] = Math.sqrt(variance);
+        stats[SummaryStat.MEDIAN.ordinal()] = percentiles.applyAsDouble(0.5);
+        stats[SummaryStat.PERCENTILE_5.ordinal()] = percentiles.applyAsDouble(0.05);
+        stats[SummaryStat.PERCENTILE_25.ordinal()] = percentiles.applyAsDouble(0.25);
+        stats[SummaryStat.PERCENTILE_75.ordinal()] = percentiles.applyAsDouble(0.75);
+        stats[SummaryStat.PERCENTILE_95.ordinal()] = percentiles.applyAsDouble(0.95);
         return stats;
     }
 }
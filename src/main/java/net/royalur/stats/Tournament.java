@@ -0,0 +1,533 @@
+package net.royalur.stats;
+
+import net.royalur.Game;
+import net.royalur.agent.Agent;
+import net.royalur.agent.BaseAgent;
+import net.royalur.agent.FastAgent;
+import net.royalur.model.GameSettings;
+import net.royalur.model.Move;
+import net.royalur.rules.simple.SimpleRuleSet;
+import net.royalur.rules.simple.fast.FastSimpleEngine;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Plays a round-robin tournament between named agents, where every pair
+ * of agents plays a match using a {@link GameSimulator}. The agents swap
+ * sides every game, and the games of a match are played in batches across
+ * several threads.
+ * <p>
+ * A match stops early once the Wilson score interval of the win rate of
+ * its first agent is narrow enough, after a minimum number of games. As
+ * the interval is checked after every batch, the chance that the true win
+ * rate falls outside the final interval is a little larger than its nominal
+ * confidence level. The minimum number of games and the size of the batches
+ * limit how often the interval is checked, which limits this effect.
+ * <p>
+ * The time taken by every decision of each agent is also recorded, so that
+ * the strength of agents can be compared against how quickly they play.
+ */
+public class Tournament {
+
+    /**
+     * The default maximum number of games played in each batch of a match.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 2000;
+
+    /**
+     * The number of games in each block of work claimed by a thread.
+     */
+    private static final int BLOCK_SIZE = 100;
+
+    /**
+     * The number of virtual wins given to each agent of every pair when
+     * calculating Elo ratings, so that agents who win or lose every game
+     * still receive finite ratings.
+     */
+    private static final double ELO_PRIOR_WINS = 0.5;
+
+    private static final int ELO_MAX_ITERATIONS = 10000;
+    private static final double ELO_TOLERANCE = 1e-9;
+
+    /**
+     * An agent that takes part in a tournament.
+     * @param name The name of the agent.
+     * @param generator Creates the agent for a thread, given the
+     *                  rules and the thread's source of randomness.
+     */
+    public record Entrant(String name, BiFunction<SimpleRuleSet, Random, Agent> generator) {}
+
+    private final List<Entrant> entrants;
+    private final long seed;
+    private final int batchSize;
+    private final int minGames;
+    private final int maxGames;
+    private final double z;
+    private final double margin;
+
+    /**
+     * Instantiates a tournament between agents.
+     * @param entrants The agents that take part in the tournament.
+     * @param seed The seed used to generate the randomness of every game.
+     * @param batchSize The number of games played between checks of whether
+     *                  a match can stop. This must be even, so that the agents
+     *                  play the same number of games on each side.
+     * @param minGames The minimum number of games played in each match.
+     * @param maxGames The maximum number of games played in each match.
+     * @param z The number of standard deviations covered by the confidence
+     *          interval of win rates, such as 1.96 for 95% confidence.
+     * @param margin The half-width of the confidence interval of the win
+     *               rate, between 0 and 1, at which a match stops early.
+     */
+    public Tournament(
+            List<Entrant> entrants,
+            long seed,
+            int batchSize,
+            int minGames,
+            int maxGames,
+            double z,
+            double margin
+    ) {
+        if (entrants.size() < 2)
+            throw new IllegalArgumentException("At least two entrants are required");
+        if (batchSize <= 0 || batchSize % 2 != 0)
+            throw new IllegalArgumentException("batchSize must be a positive even number");
+        if (minGames < 0)
+            throw new IllegalArgumentException("minGames must not be negative");
+        if (maxGames <= 0 || maxGames % 2 != 0)
+            throw new IllegalArgumentException("maxGames must be a positive even number");
+        if (z <= 0)
+            throw new IllegalArgumentException("z must be positive");
+        if (margin <= 0 || margin >= 1)
+            throw new IllegalArgumentException("margin must be between 0 and 1");
+
+        this.entrants = List.copyOf(entrants);
+        this.seed = seed;
+        this.batchSize = batchSize;
+        this.minGames = minGames;
+        this.maxGames = maxGames;
+        this.z = z;
+        this.margin = margin;
+    }
+
+    public List<Entrant> getEntrants() {
+        return entrants;
+    }
+
+    /**
+     * Plays every match of the tournament using all available processors.
+     * @param settings The settings of the games to play.
+     * @return The results of the tournament.
+     */
+    public Results play(GameSettings settings) {
+        return play(settings, Runtime.getRuntime().availableProcessors(), match -> {});
+    }
+
+    /**
+     * Plays every match of the tournament using {@code threadCount} threads.
+     * @param settings The settings of the games to play.
+     * @param threadCount The number of threads to use.
+     * @param matchListener Called with the results of each match as it completes.
+     * @return The results of the tournament.
+     */
+    public Results play(GameSettings settings, int threadCount, Consumer<MatchResults> matchListener) {
+        if (threadCount <= 0)
+            throw new IllegalArgumentException("threadCount must be at least 1");
+
+        int entrantCount = entrants.size();
+        KllSketch[] latencies = new KllSketch[entrantCount];
+        for (int index = 0; index < entrantCount; ++index) {
+            latencies[index] = new KllSketch();
+        }
+
+        List<MatchResults> matches = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int agent1 = 0; agent1 < entrantCount; ++agent1) {
+            for (int agent2 = agent1 + 1; agent2 < entrantCount; ++agent2) {
+                long matchSeed = GameSimulator.getGameSeed(seed, matches.size());
+                MatchResults match = playMatch(settings, agent1, agent2, matchSeed, threadCount, latencies);
+                matches.add(match);
+                matchListener.accept(match);
+            }
+        }
+        long durationNanos = System.nanoTime() - start;
+        return new Results(settings, entrants, matches, latencies, durationNanos);
+    }
+
+    /**
+     * Plays batches of games between two agents until the confidence
+     * interval of their win rate is narrow enough, or until the
+     * maximum number of games has been played.
+     */
+    private MatchResults playMatch(
+            GameSettings settings,
+            int agent1,
+            int agent2,
+            long matchSeed,
+            int threadCount,
+            KllSketch[] latencies
+    ) {
+        List<KllSketch> agent1Latencies = Collections.synchronizedList(new ArrayList<>());
+        List<KllSketch> agent2Latencies = Collections.synchronizedList(new ArrayList<>());
+        GameSimulator simulator = new GameSimulator(
+                settings,
+                createTimedGenerator(entrants.get(agent1), agent1Latencies),
+                createTimedGenerator(entrants.get(agent2), agent2Latencies),
+                matchSeed,
+                BLOCK_SIZE
+        );
+
+        GameSimulationResults results = new GameSimulationResults();
+        long start = System.nanoTime();
+        int games = 0;
+        double halfWidth = 1.0;
+        while (games < maxGames) {
+            int toGame = Math.min(maxGames, games + batchSize);
+            results.merge(simulator.simulate(games, toGame, threadCount));
+            games = toGame;
+
+            halfWidth = calculateHalfWidth(results.getAgent1Wins(), games, z);
+            if (games >= minGames && halfWidth <= margin)
+                break;
+        }
+        long durationNanos = System.nanoTime() - start;
+
+        // The simulator has joined its threads, so their sketches are safe to read.
+        for (KllSketch sketch : agent1Latencies) {
+            latencies[agent1].merge(sketch);
+        }
+        for (KllSketch sketch : agent2Latencies) {
+            latencies[agent2].merge(sketch);
+        }
+        return new MatchResults(agent1, agent2, results, halfWidth, halfWidth <= margin, durationNanos);
+    }
+
+    /**
+     * Wraps the agents created by {@code entrant} so that the time
+     * taken by each of their decisions is recorded in a new sketch,
+     * which is added to {@code sketches}.
+     */
+    private static BiFunction<SimpleRuleSet, Random, Agent> createTimedGenerator(
+            Entrant entrant,
+            List<KllSketch> sketches
+    ) {
+        return (rules, random) -> {
+            KllSketch sketch = new KllSketch();
+            sketches.add(sketch);
+            Agent agent = entrant.generator().apply(rules, random);
+            if (agent instanceof FastAgent)
+                return new TimedFastAgent(agent, sketch);
+
+            return new TimedAgent(agent, sketch);
+        };
+    }
+
+    /**
+     * Calculates the half-width of the Wilson score interval
+     * of a win rate.
+     * @param wins The number of games that were won.
+     * @param games The number of games that were played.
+     * @param z The number of standard deviations covered by the interval.
+     * @return The half-width of the interval, between 0 and 1.
+     */
+    public static double calculateHalfWidth(long wins, long games, double z) {
+        if (games <= 0)
+            return 1.0;
+
+        double winRate = (double) wins / games;
+        double z2 = z * z;
+        double spread = winRate * (1.0 - winRate) / games + z2 / (4.0 * games * games);
+        return z * Math.sqrt(spread) / (1.0 + z2 / games);
+    }
+
+    /**
+     * Calculates Elo ratings that best explain the results of games between
+     * agents, by fitting a Bradley-Terry model. The ratings are shifted so that
+     * their mean is zero. Every pair of agents that played each other is given
+     * half a virtual win each, so that the ratings are always finite.
+     * @param wins The number of games that each agent won against each other
+     *             agent, where {@code wins[i][j]} is the wins of agent
+     *             {@code i} against agent {@code j}.
+     * @return The Elo rating of each agent.
+     */
+    public static double[] calculateElo(long[][] wins) {
+        int agentCount = wins.length;
+        double[] strengths = new double[agentCount];
+        double[] nextStrengths = new double[agentCount];
+        for (int index = 0; index < agentCount; ++index) {
+            strengths[index] = 1.0;
+        }
+
+        // Minorisation-maximisation updates, as described by Hunter (2004).
+        for (int iteration = 0; iteration < ELO_MAX_ITERATIONS; ++iteration) {
+            double logSum = 0.0;
+            for (int agent = 0; agent < agentCount; ++agent) {
+                nextStrengths[agent] = calculateNextStrength(wins, strengths, agent);
+                logSum += Math.log(nextStrengths[agent]);
+            }
+
+            // Normalise so that the geometric mean of the strengths is 1.
+            double scale = Math.exp(-logSum / agentCount);
+            double maxChange = 0.0;
+            for (int agent = 0; agent < agentCount; ++agent) {
+                double strength = nextStrengths[agent] * scale;
+                maxChange = Math.max(maxChange, Math.abs(Math.log(strength / strengths[agent])));
+                strengths[agent] = strength;
+            }
+            if (maxChange < ELO_TOLERANCE)
+                break;
+        }
+
+        double[] elo = new double[agentCount];
+        for (int agent = 0; agent < agentCount; ++agent) {
+            elo[agent] = 400.0 * Math.log10(strengths[agent]);
+        }
+        return elo;
+    }
+
+    private static double calculateNextStrength(long[][] wins, double[] strengths, int agent) {
+        double totalWins = 0.0;
+        double denominator = 0.0;
+        for (int opponent = 0; opponent < wins.length; ++opponent) {
+            long games = wins[agent][opponent] + wins[opponent][agent];
+            if (opponent == agent || games == 0)
+                continue;
+
+            totalWins += wins[agent][opponent] + ELO_PRIOR_WINS;
+            denominator += (games + 2 * ELO_PRIOR_WINS) / (strengths[agent] + strengths[opponent]);
+        }
+        return (denominator > 0.0 ? totalWins / denominator : strengths[agent]);
+    }
+
+    /**
+     * The results of a match between two agents.
+     */
+    public static class MatchResults {
+
+        private final int agent1;
+        private final int agent2;
+        private final GameSimulationResults results;
+        private final double halfWidth;
+        private final boolean confident;
+        private final long durationNanos;
+
+        MatchResults(
+                int agent1,
+                int agent2,
+                GameSimulationResults results,
+                double halfWidth,
+                boolean confident,
+                long durationNanos
+        ) {
+            this.agent1 = agent1;
+            this.agent2 = agent2;
+            this.results = results;
+            this.halfWidth = halfWidth;
+            this.confident = confident;
+            this.durationNanos = durationNanos;
+        }
+
+        /**
+         * Gets the index of the first agent of this match in the entrants.
+         * @return The index of the first agent.
+         */
+        public int getAgent1() {
+            return agent1;
+        }
+
+        /**
+         * Gets the index of the second agent of this match in the entrants.
+         * @return The index of the second agent.
+         */
+        public int getAgent2() {
+            return agent2;
+        }
+
+        public GameSimulationResults getResults() {
+            return results;
+        }
+
+        /**
+         * Gets the fraction of games that were won by the first agent.
+         * @return The win rate of the first agent, between 0 and 1.
+         */
+        public double getWinRate() {
+            return (double) results.getAgent1Wins() / results.getGameCount();
+        }
+
+        /**
+         * Gets the half-width of the confidence interval of the win rate.
+         * @return The half-width of the confidence interval, between 0 and 1.
+         */
+        public double getHalfWidth() {
+            return halfWidth;
+        }
+
+        /**
+         * Determines whether the confidence interval of the win rate became
+         * narrow enough for the match to stop before its maximum games.
+         * @return Whether the win rate reached the desired confidence.
+         */
+        public boolean isConfident() {
+            return confident;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        /**
+         * Gets the number of games played per second in this match.
+         * @return The number of games played per second.
+         */
+        public double getGamesPerSecond() {
+            return results.getGameCount() * 1e9 / durationNanos;
+        }
+    }
+
+    /**
+     * The results of all the matches of a tournament.
+     */
+    public static class Results {
+
+        private final GameSettings settings;
+        private final List<Entrant> entrants;
+        private final List<MatchResults> matches;
+        private final KllSketch[] latencies;
+        private final long durationNanos;
+
+        Results(
+                GameSettings settings,
+                List<Entrant> entrants,
+                List<MatchResults> matches,
+                KllSketch[] latencies,
+                long durationNanos
+        ) {
+            this.settings = settings;
+            this.entrants = entrants;
+            this.matches = matches;
+            this.latencies = latencies;
+            this.durationNanos = durationNanos;
+        }
+
+        public GameSettings getSettings() {
+            return settings;
+        }
+
+        public List<MatchResults> getMatches() {
+            return matches;
+        }
+
+        /**
+         * Gets the time taken by the decisions of an agent, in microseconds.
+         * @param agent The index of the agent in the entrants.
+         * @return A sketch of the time taken by each decision of the agent.
+         */
+        public KllSketch getLatencies(int agent) {
+            return latencies[agent];
+        }
+
+        /**
+         * Gets the number of games that were played across all matches.
+         * @return The number of games that were played.
+         */
+        public long getGameCount() {
+            long games = 0;
+            for (MatchResults match : matches) {
+                games += match.getResults().getGameCount();
+            }
+            return games;
+        }
+
+        /**
+         * Gets the number of games played by one agent across all its matches.
+         * @param agent The index of the agent in the entrants.
+         * @return The number of games played by the agent.
+         */
+        public long getGameCount(int agent) {
+            long games = 0;
+            for (MatchResults match : matches) {
+                if (match.getAgent1() == agent || match.getAgent2() == agent) {
+                    games += match.getResults().getGameCount();
+                }
+            }
+            return games;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        /**
+         * Gets the number of games played per second across all matches.
+         * @return The number of games played per second.
+         */
+        public double getGamesPerSecond() {
+            return getGameCount() * 1e9 / durationNanos;
+        }
+
+        /**
+         * Calculates the Elo rating of each agent from the results of all matches.
+         * @return The Elo rating of each agent, indexed the same as the entrants.
+         */
+        public double[] calculateElo() {
+            long[][] wins = new long[entrants.size()][entrants.size()];
+            for (MatchResults match : matches) {
+                wins[match.getAgent1()][match.getAgent2()] += match.getResults().getAgent1Wins();
+                wins[match.getAgent2()][match.getAgent1()] += match.getResults().getAgent2Wins();
+            }
+            return Tournament.calculateElo(wins);
+        }
+    }
+
+    /**
+     * Records the time taken by each decision of an agent.
+     */
+    private static class TimedAgent extends BaseAgent {
+
+        protected final Agent agent;
+        protected final KllSketch latencies;
+
+        TimedAgent(Agent agent, KllSketch latencies) {
+            this.agent = agent;
+            this.latencies = latencies;
+        }
+
+        @Override
+        public Move decideMove(Game game, List<Move> availableMoves) {
+            long start = System.nanoTime();
+            Move move = agent.decideMove(game, availableMoves);
+            latencies.add((System.nanoTime() - start) / 1e3);
+            return move;
+        }
+    }
+
+    /**
+     * Records the time taken by each decision of an agent that can
+     * make decisions on fast games, so that it can still be used by
+     * {@link FastSelfPlay}.
+     */
+    private static class TimedFastAgent extends TimedAgent implements FastAgent {
+
+        private final FastAgent fastAgent;
+
+        TimedFastAgent(Agent agent, KllSketch latencies) {
+            super(agent, latencies);
+            this.fastAgent = (FastAgent) agent;
+        }
+
+        @Override
+        public int decideMove(FastSimpleEngine game, FastSimpleMoveList moveList) {
+            long start = System.nanoTime();
+            int move = fastAgent.decideMove(game, moveList);
+            latencies.add((System.nanoTime() - start) / 1e3);
+            return move;
+        }
+    }
+}
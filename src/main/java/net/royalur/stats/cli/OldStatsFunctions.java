@@ -16,7 +16,8 @@ import net.royalur.rules.simple.SimpleRuleSetProvider;
 import net.royalur.rules.simple.fast.FastSimpleFlags;
 import net.royalur.rules.simple.fast.FastSimpleGame;
 import net.royalur.rules.simple.fast.FastSimpleMoveList;
-import net.royalur.stats.GameStats;
+import net.royalur.stats.GameSimulationResults;
+import net.royalur.stats.GameSimulator;
 import net.royalur.stats.GameStatsSummary;
 import net.royalur.stats.GameStatsTarget;
 import net.royalur.stats.SummaryStat;
@@ -26,6 +27,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
@@ -37,36 +39,18 @@ import java.util.function.Function;
 public class OldStatsFunctions {
 
     /**
-     * Generates statistics for a single game generated by {@code gameGenerator},
-     * and played by two AI agents.
-     */
-    private GameStats testAgentActions(
-            GameSettings settings,
-            Function<SimpleRuleSet, Agent> lightAgentGenerator,
-            Function<SimpleRuleSet, Agent> darkAgentGenerator
-    ) {
-        Game game = Game.create(settings);
-        RuleSet rules = game.getRules();
-        if (!(rules instanceof SimpleRuleSet simpleRules))
-            throw new IllegalArgumentException("Game does not use simple rules");
-
-        Agent light = lightAgentGenerator.apply(simpleRules);
-        Agent dark = darkAgentGenerator.apply(simpleRules);
-        Agent.playAutonomously(game, light, dark);
-        return GameStats.gather(game);
-    }
-
-    /**
-     * Runs tests using AI agents with many game settings.
+     * Runs tests using AI agents with many game settings. The games
+     * are simulated in parallel, and are reproducible given the seed.
      */
     public void testAgentActions(
             List<GameSettings> settingsList,
             Function<SimpleRuleSet, Agent> agent1Generator,
             Function<SimpleRuleSet, Agent> agent2Generator,
             int tests,
-            GameStatsTarget[] reportTargets
+            GameStatsTarget[] reportTargets,
+            long seed
     ) {
-        System.out.println("Testing " + settingsList.size() + " sets of rules:");
+        System.out.println("Testing " + settingsList.size() + " sets of rules with seed " + seed + ":");
         System.out.println("* <measure>: <mean> ± <std dev> -");
         System.out.println("      Q1=<25th-percentile>, Q2=<50th>, Q3=<75th>");
         System.out.println("      middle-90%=[<5th percentile>, <95th percentile>]");
@@ -85,39 +69,13 @@ public class OldStatsFunctions {
 
             System.out.println("Processing " + desc);
 
-            GameStats[] stats = new GameStats[tests];
-            int agent1Wins = 0;
-            int agent2Wins = 0;
-            int lightWins = 0;
-            int darkWins = 0;
             long start = System.nanoTime();
-            for (int test = 0; test < tests; ++test) {
-                boolean swap = (test % 2 == 0);
-                GameStats gameStats = testAgentActions(
-                        settings,
-                        (swap ? agent2Generator : agent1Generator),
-                        (swap ? agent1Generator : agent2Generator)
-                );
-                stats[test] = gameStats;
-                if ((!swap && gameStats.didLightWin()) || (swap && !gameStats.didLightWin())) {
-                    agent1Wins += 1;
-                } else {
-                    agent2Wins += 1;
-                }
-                if (gameStats.didLightWin()) {
-                    lightWins += 1;
-                } else {
-                    darkWins += 1;
-                }
-
-                if (test % 10000 == 0) {
-                    System.out.println(".. " + test + " / " + tests);
-                }
-            }
+            GameSimulator simulator = GameSimulator.create(settings, agent1Generator, agent2Generator, seed);
+            GameSimulationResults results = simulator.simulate(tests);
             long nanosPerTest = (System.nanoTime() - start) / tests;
             double msPerTest = (double) nanosPerTest / 1_000_000.0;
             String timings = String.format(" (%.2f ms/game)", msPerTest);
-            GameStatsSummary summary = GameStats.summarise(stats);
+            GameStatsSummary summary = results.getStats().summarise();
 
             System.out.println("\n#" + (index + 1) + ". " + desc + timings + ":");
             for (GameStatsTarget target : reportTargets) {
@@ -179,10 +137,10 @@ public class OldStatsFunctions {
 
                 System.out.println(target.getName() + ":\n* " + String.join("\n* ", reports) + "\n\n");
             }
-            double agent1WinPercentage = 100.0 * ((double) agent1Wins / tests);
-            double agent2WinPercentage = 100.0 * ((double) agent2Wins / tests);
-            double lightWinPercentage = 100.0 * ((double) lightWins / tests);
-            double darkWinPercentage = 100.0 * ((double) darkWins / tests);
+            double agent1WinPercentage = 100.0 * ((double) results.getAgent1Wins() / tests);
+            double agent2WinPercentage = 100.0 * ((double) results.getAgent2Wins() / tests);
+            double lightWinPercentage = 100.0 * ((double) results.getLightWins() / tests);
+            double darkWinPercentage = 100.0 * ((double) results.getDarkWins() / tests);
             System.out.printf("Agent 1 won %.4f%% of games%n", agent1WinPercentage);
             System.out.printf("Agent 2 won %.4f%% of games%n", agent2WinPercentage);
             System.out.println();
@@ -217,7 +175,8 @@ public class OldStatsFunctions {
                 (rules) -> new GreedyAgent(), //new LutAgent(lut),
                 (rules) -> new BetterGreedyAgent(), //new LutAgent(lut),
                 1000000,
-                GameStatsTarget.values()
+                GameStatsTarget.values(),
+                new Random().nextLong()
         );
         double durationMS = (System.nanoTime() - start) / 1e6d;
 
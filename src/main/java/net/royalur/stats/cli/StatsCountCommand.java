@@ -6,9 +6,9 @@ import net.royalur.cli.CLIConstants;
 import net.royalur.cli.CLIHandler;
 import net.royalur.model.GameSettings;
 import net.royalur.rules.simple.fast.FastSimpleFlags;
+import net.royalur.rules.simple.fast.FastSimpleStateCounter;
 
 import javax.annotation.Nullable;
-import java.util.concurrent.atomic.AtomicLong;
 
 public class StatsCountCommand extends CLICommand {
 
@@ -28,22 +28,15 @@ public class StatsCountCommand extends CLICommand {
         for (GameSettings settings : CLIConstants.COMMONLY_PLAYED) {
             FastSimpleFlags flags = new FastSimpleFlags(settings);
 
-            AtomicLong totalCount = new AtomicLong(0);
-            AtomicLong nonWinCount = new AtomicLong(0);
-            AtomicLong onePlayerCount = new AtomicLong(0);
-
-            flags.loopLightGameStates((game) -> {
-                totalCount.addAndGet(2);
-                onePlayerCount.incrementAndGet();
-                if (!game.isFinished) {
-                    nonWinCount.addAndGet(2);
-                }
-            });
+            FastSimpleStateCounter counter = new FastSimpleStateCounter(flags);
+            long onePlayerCount = counter.countLightStates();
+            long totalCount = 2 * onePlayerCount;
+            long nonWinCount = 2 * (onePlayerCount - counter.countLightWinStates());
 
             System.out.println(settings.getName() + ":");
-            System.out.println("* Total states = " + totalCount.get());
-            System.out.println("* States excluding win states = " + nonWinCount.get());
-            System.out.println("* States per player = " + onePlayerCount.get());
+            System.out.println("* Total states = " + totalCount);
+            System.out.println("* States excluding win states = " + nonWinCount);
+            System.out.println("* States per player = " + onePlayerCount);
             System.out.println();
         }
     }
@@ -0,0 +1,331 @@
+package net.royalur.stats.cli;
+
+import net.royalur.agent.*;
+import net.royalur.agent.utility.PiecesAdvancedUtilityFn;
+import net.royalur.cli.*;
+import net.royalur.lut.Lut;
+import net.royalur.model.GameMetadata;
+import net.royalur.model.GameSettings;
+import net.royalur.model.dice.DiceType;
+import net.royalur.rules.simple.SimpleRuleSet;
+import net.royalur.rules.simple.SimpleRuleSetProvider;
+import net.royalur.stats.KllSketch;
+import net.royalur.stats.SummaryStat;
+import net.royalur.stats.Tournament;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.BiFunction;
+
+public class StatsTournamentCommand extends CLICommand {
+
+    public static final String NAME = "tournament";
+    public static final String DESC = "Play a round-robin tournament between agents, and report "
+            + "their Elo ratings and how quickly they make decisions";
+
+    private static final int DEFAULT_EXPECTIMAX_DEPTH = 2;
+    private static final float DEFAULT_LIKELIHOOD_THRESHOLD = 0.02f;
+    private static final int DEFAULT_MCTS_ROLLOUTS = 100;
+    private static final int DEFAULT_HYBRID_PIECES = 1;
+    private static final int HYBRID_DEPTH = 2;
+
+    public StatsTournamentCommand(CLICommand parent) {
+        super(parent, NAME, DESC);
+        addRequiredArg(
+                "--agents", CLIArgumentType.TEXT,
+                "Comma-separated agents to play against one another:",
+                "random, greedy, better-greedy, expectimax[:depth],",
+                "likelihood[:threshold], mcts[:rollouts], lut,",
+                "or hybrid[:pieces in hand]"
+        );
+        addOptionalArg(
+                "--settings", CLIArgumentType.GAME_SETTINGS,
+                "Comma-separated game settings to play a tournament",
+                "under each of (default finkel, or the settings of --lut)"
+        );
+        addOptionalArg(
+                "--lut", CLIArgumentType.FILE,
+                "LUT file used by the lut and hybrid agents"
+        );
+        addOptionalArg(
+                "--max-games", CLIArgumentType.INTEGER,
+                "The most games to play in each match (default 20000)"
+        );
+        addOptionalArg(
+                "--min-games", CLIArgumentType.INTEGER,
+                "The fewest games to play in each match (default 2000)"
+        );
+        addOptionalArg(
+                "--batch", CLIArgumentType.INTEGER,
+                "The number of games to play between checks of whether",
+                "a match can stop early (default "
+                        + Tournament.DEFAULT_BATCH_SIZE + ")"
+        );
+        addOptionalArg(
+                "--margin", CLIArgumentType.NUMBER,
+                "Stop a match once the confidence interval of its win",
+                "rate is within this many percent (default 1)"
+        );
+        addOptionalArg(
+                "--z", CLIArgumentType.NUMBER,
+                "The number of standard deviations covered by the",
+                "confidence intervals (default 1.96, for 95%)"
+        );
+        addOptionalArg(
+                "--threads", CLIArgumentType.INTEGER,
+                "The number of threads to use (default all processors)"
+        );
+        addOptionalArg(
+                "--seed", CLIArgumentType.INTEGER,
+                "The seed used to generate the games (default 47)"
+        );
+    }
+
+    @Override
+    public @Nullable CLIHandler handle(CLI cli) {
+        String agentsValue = cli.readNonEmptyKeywordOrNull("--agents");
+        if (agentsValue == null)
+            throw new CLIBadCommandException("Missing --agents");
+
+        List<String> agentSpecs = splitList(agentsValue);
+        if (agentSpecs.size() < 2)
+            throw new CLIArgumentException("--agents must contain at least two agents");
+        if (new HashSet<>(agentSpecs).size() != agentSpecs.size())
+            throw new CLIArgumentException("--agents must not contain duplicates");
+
+        String settingsValue = cli.readNonEmptyKeywordOrNull("--settings");
+        List<String> settingsNames = (settingsValue != null ? splitList(settingsValue) : null);
+        if (settingsNames != null) {
+            for (String settingsName : settingsNames) {
+                if (!CLIConstants.SETTINGS_BY_CLI_NAME.containsKey(settingsName))
+                    throw new CLIArgumentException("Unknown --settings value: " + settingsName);
+            }
+        }
+
+        File lutFile = cli.readKeywordExistingFile("--lut", null);
+        int maxGames = cli.readKeywordInt("--max-games", 20000);
+        int minGames = cli.readKeywordInt("--min-games", 2000);
+        int batchSize = cli.readKeywordInt("--batch", Tournament.DEFAULT_BATCH_SIZE);
+        double margin = cli.readKeywordDouble("--margin", 1.0d);
+        double z = cli.readKeywordDouble("--z", 1.96d);
+        int threadCount = cli.readKeywordInt("--threads", Runtime.getRuntime().availableProcessors());
+        int seed = cli.readKeywordInt("--seed", 47);
+        if (maxGames < 2 || maxGames % 2 != 0)
+            throw new CLIArgumentException("--max-games must be a positive even number");
+        if (minGames < 0)
+            throw new CLIArgumentException("--min-games must not be negative");
+        if (minGames > maxGames)
+            throw new CLIArgumentException("--min-games must not be greater than --max-games");
+        if (batchSize < 2 || batchSize % 2 != 0)
+            throw new CLIArgumentException("--batch must be a positive even number");
+        if (margin <= 0 || margin >= 100)
+            throw new CLIArgumentException("--margin must be between 0 and 100");
+        if (z <= 0)
+            throw new CLIArgumentException("--z must be positive");
+        if (threadCount < 1)
+            throw new CLIArgumentException("--threads must be at least 1");
+
+        return () -> {
+            // The hybrid agents only read the endgame of the lut, so the
+            // full lut is only read if it is used by a lut agent.
+            GameSettings lutSettings = (lutFile != null ? Lut.readMetadata(lutFile).getGameSettings() : null);
+            Lut lut = (lutFile != null && usesAgent(agentSpecs, "lut") ? Lut.read(lutFile) : null);
+            List<Tournament.Entrant> entrants = new ArrayList<>();
+            for (String spec : agentSpecs) {
+                entrants.add(new Tournament.Entrant(spec, createGenerator(spec, lutFile, lut)));
+            }
+
+            List<GameSettings> settingsList = new ArrayList<>();
+            if (settingsNames != null) {
+                for (String settingsName : settingsNames) {
+                    settingsList.add(CLIConstants.SETTINGS_BY_CLI_NAME.get(settingsName));
+                }
+            } else {
+                settingsList.add(lutSettings != null ? lutSettings : GameSettings.FINKEL);
+            }
+            if (lutSettings != null && (usesAgent(agentSpecs, "lut") || usesAgent(agentSpecs, "hybrid"))) {
+                for (GameSettings settings : settingsList) {
+                    if (!settings.equals(lutSettings))
+                        throw new CLIArgumentException("The lut was generated for different game settings");
+                }
+            }
+
+            Tournament tournament = new Tournament(entrants, seed, batchSize, minGames, maxGames, z, margin / 100.0);
+            for (GameSettings settings : settingsList) {
+                String settingsName = CLIConstants.getCLINameOrNull(settings);
+                System.out.println(
+                        "Playing a tournament under " + (settingsName != null ? settingsName : "custom") + " rules:"
+                );
+                Tournament.Results results = tournament.play(
+                        settings, threadCount, match -> printMatch(entrants, match)
+                );
+                System.out.println();
+                printResults(entrants, results);
+                System.out.println();
+            }
+        };
+    }
+
+    private static List<String> splitList(String value) {
+        List<String> entries = new ArrayList<>();
+        for (String entry : value.split(",")) {
+            String trimmed = entry.trim();
+            if (!trimmed.isEmpty()) {
+                entries.add(trimmed);
+            }
+        }
+        return entries;
+    }
+
+    private static boolean usesAgent(List<String> agentSpecs, String agentName) {
+        for (String spec : agentSpecs) {
+            if (spec.split(":", 2)[0].equals(agentName))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Creates a generator of agents from a name, optionally followed
+     * by a colon and a parameter for the agent.
+     */
+    private static BiFunction<SimpleRuleSet, Random, Agent> createGenerator(
+            String spec,
+            @Nullable File lutFile,
+            @Nullable Lut lut
+    ) throws IOException {
+        String[] parts = spec.split(":", 2);
+        String name = parts[0];
+        String param = (parts.length > 1 ? parts[1] : null);
+        if (name.equals("lut") && lut == null)
+            throw new CLIArgumentException("The lut agent requires --lut");
+        if (name.equals("hybrid") && lutFile == null)
+            throw new CLIArgumentException("The hybrid agent requires --lut");
+
+        try {
+            switch (name) {
+                case "random" -> {
+                    return (rules, random) -> new RandomAgent(random);
+                }
+                case "greedy" -> {
+                    return (rules, random) -> new GreedyAgent();
+                }
+                case "better-greedy" -> {
+                    return (rules, random) -> new BetterGreedyAgent();
+                }
+                case "expectimax" -> {
+                    int depth = (param != null ? Integer.parseInt(param) : DEFAULT_EXPECTIMAX_DEPTH);
+                    if (depth < 1)
+                        throw new CLIArgumentException("The depth of " + spec + " must be at least 1");
+
+                    return (rules, random) -> new ExpectimaxAgent(rules, new PiecesAdvancedUtilityFn(rules), depth);
+                }
+                case "likelihood" -> {
+                    float threshold = (param != null ? Float.parseFloat(param) : DEFAULT_LIKELIHOOD_THRESHOLD);
+                    if (threshold <= 0)
+                        throw new CLIArgumentException("The threshold of " + spec + " must be positive");
+
+                    return (rules, random) -> new LikelihoodAgent(
+                            rules, new PiecesAdvancedUtilityFn(rules), threshold
+                    );
+                }
+                case "mcts" -> {
+                    int rollouts = (param != null ? Integer.parseInt(param) : DEFAULT_MCTS_ROLLOUTS);
+                    if (rollouts < 1)
+                        throw new CLIArgumentException("The rollouts of " + spec + " must be at least 1");
+
+                    return (rules, random) -> new MctsAgent(withStandardDice(rules), rollouts, random);
+                }
+                case "lut" -> {
+                    // Each thread needs its own copy of the lut.
+                    return (rules, random) -> new LutAgent(lut.shallowCopy());
+                }
+                case "hybrid" -> {
+                    int pieces = (param != null ? Integer.parseInt(param) : DEFAULT_HYBRID_PIECES);
+                    if (pieces < 0)
+                        throw new CLIArgumentException("The pieces in hand of " + spec + " must not be negative");
+
+                    Lut endgameLut = HybridAgent.readEndgameLut(lutFile, pieces);
+                    return (rules, random) -> new HybridAgent(
+                            withStandardDice(rules), endgameLut.shallowCopy(), pieces,
+                            new PiecesAdvancedUtilityFn(rules), HYBRID_DEPTH
+                    );
+                }
+                default -> throw new CLIArgumentException("Unknown agent: " + name);
+            }
+        } catch (NumberFormatException e) {
+            throw new CLIArgumentException("Invalid parameter for agent " + spec);
+        }
+    }
+
+    /**
+     * The simulator seeds its dice through a custom dice factory, which
+     * agents that compare or sample the dice of their rules do not accept.
+     * This creates equivalent rules that use the standard dice instead.
+     */
+    private static SimpleRuleSet withStandardDice(SimpleRuleSet rules) {
+        GameSettings settings = rules.getSettings();
+        GameSettings standardSettings = settings.withDice(DiceType.getByID(settings.getDice().getID()));
+        return new SimpleRuleSetProvider().create(standardSettings, new GameMetadata());
+    }
+
+    private static void printMatch(List<Tournament.Entrant> entrants, Tournament.MatchResults match) {
+        System.out.printf(
+                "* %s vs. %s: %.2f%% +/- %.2f%% over %,d games%s, %,.0f games/s%n",
+                entrants.get(match.getAgent1()).name(),
+                entrants.get(match.getAgent2()).name(),
+                100.0 * match.getWinRate(),
+                100.0 * match.getHalfWidth(),
+                match.getResults().getGameCount(),
+                (match.isConfident() ? "" : " (max reached)"),
+                match.getGamesPerSecond()
+        );
+    }
+
+    private static void printResults(List<Tournament.Entrant> entrants, Tournament.Results results) {
+        double[] elo = results.calculateElo();
+        Integer[] order = new Integer[entrants.size()];
+        for (int index = 0; index < order.length; ++index) {
+            order[index] = index;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(elo[b], elo[a]));
+
+        int nameWidth = "Agent".length();
+        for (Tournament.Entrant entrant : entrants) {
+            nameWidth = Math.max(nameWidth, entrant.name().length());
+        }
+        String format = "%-" + nameWidth + "s  %7s  %9s  %12s  %10s  %10s  %10s%n";
+        System.out.printf(format, "Agent", "Elo", "Games", "Decisions", "Median us", "95th us", "Max us");
+        for (int index : order) {
+            KllSketch latencies = results.getLatencies(index);
+            String median = "-";
+            String percentile95 = "-";
+            String max = "-";
+            if (latencies.getCount() > 0) {
+                double[] summary = latencies.summarise();
+                median = String.format("%.2f", summary[SummaryStat.MEDIAN.ordinal()]);
+                percentile95 = String.format("%.2f", summary[SummaryStat.PERCENTILE_95.ordinal()]);
+                max = String.format("%.1f", summary[SummaryStat.MAX.ordinal()]);
+            }
+            System.out.printf(
+                    format,
+                    entrants.get(index).name(),
+                    String.format("%+.0f", elo[index]),
+                    String.format("%,d", results.getGameCount(index)),
+                    String.format("%,d", latencies.getCount()),
+                    median, percentile95, max
+            );
+        }
+
+        double durationMs = results.getDurationNanos() / 1e6;
+        System.out.println();
+        System.out.printf(
+                "Played %,d games in %s ms, %,.0f games/s%n",
+                results.getGameCount(),
+                CLI.MS_DURATION.format(durationMs),
+                results.getGamesPerSecond()
+        );
+    }
+}
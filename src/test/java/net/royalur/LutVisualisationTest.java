@@ -0,0 +1,130 @@
+package net.royalur;
+
+import net.royalur.lut.GameStateEncoding;
+import net.royalur.lut.Lut;
+import net.royalur.lut.LutTrainer;
+import net.royalur.lut.SimpleGameStateEncoding;
+import net.royalur.lut.buffer.ValueType;
+import net.royalur.lut.store.LutMap;
+import net.royalur.model.GameSettings;
+import net.royalur.notation.JsonNotation;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LutVisualisationTest {
+
+    private static final int UNREACHED_DEPTH = 255;
+
+    private static Lut createLut(GameSettings settings) {
+        GameStateEncoding encoding = new SimpleGameStateEncoding(settings);
+        LutTrainer trainer = new LutTrainer(settings, encoding, ValueType.FLOAT64, new JsonNotation());
+        return trainer.populateNewLut();
+    }
+
+    /**
+     * Visits the state reached after a roll or move, recording its
+     * depth and queueing it if it has not been seen before.
+     */
+    private static void visit(
+            FastSimpleGame game,
+            int depth,
+            GameStateEncoding encoding,
+            Map<Long, Integer> depths,
+            Queue<FastSimpleGame> queue
+    ) {
+        FastSimpleGame keyGame = (game.isLightTurn ? game : game.reversePlayers(null));
+        long key = encoding.encodeGameState(keyGame);
+        if (depths.containsKey(key))
+            return;
+
+        depths.put(key, depth);
+        if (!keyGame.isFinished) {
+            FastSimpleGame copy = new FastSimpleGame(game.settings);
+            copy.copyFrom(keyGame);
+            queue.add(copy);
+        }
+    }
+
+    /**
+     * Calculates the depth of each state using a plain sequential
+     * breadth-first search from the start of the game.
+     */
+    private static Map<Long, Integer> calculateSequentialDepths(Lut lut) {
+        GameSettings settings = lut.getGameSettings();
+        GameStateEncoding encoding = lut.getGameStateEncoding();
+        float[] probabilities = settings.getDice().createDice().getRollProbabilities();
+        FastSimpleMoveList moveList = new FastSimpleMoveList();
+
+        Map<Long, Integer> depths = new HashMap<>();
+        Queue<FastSimpleGame> queue = new ArrayDeque<>();
+        FastSimpleGame start = new FastSimpleGame(settings);
+        start.reset();
+        visit(start, 0, encoding, depths, queue);
+
+        while (!queue.isEmpty()) {
+            FastSimpleGame state = queue.remove();
+            int depth = depths.get(encoding.encodeGameState(state)) + 1;
+            for (int roll = 0; roll < probabilities.length; ++roll) {
+                if (probabilities[roll] <= 0.0f)
+                    continue;
+
+                FastSimpleGame game = new FastSimpleGame(settings);
+                game.copyFrom(state);
+                game.applyRoll(roll, moveList);
+                if (!game.isWaitingForMove()) {
+                    visit(game, depth, encoding, depths, queue);
+                    continue;
+                }
+
+                FastSimpleGame rolled = new FastSimpleGame(settings);
+                rolled.copyFrom(game);
+                for (int moveIndex = 0; moveIndex < moveList.moveCount; ++moveIndex) {
+                    game.copyFrom(rolled);
+                    game.applyMove(moveList.moves[moveIndex]);
+                    visit(game, depth, encoding, depths, queue);
+                }
+            }
+        }
+        return depths;
+    }
+
+    /**
+     * Tests that the parallel breadth-first search finds the same
+     * depths as a plain sequential breadth-first search.
+     */
+    @Test
+    public void testDepthsMatchSequentialSearch() {
+        Lut lut = createLut(GameSettings.FINKEL.withStartingPieceCount(2));
+        LutVisualisation visualisation = new LutVisualisation(lut);
+        visualisation.calculateDepths();
+
+        Map<Long, Integer> expected = calculateSequentialDepths(lut);
+        assertTrue(expected.size() > 1);
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            long key = entry.getKey();
+            int upperKey = (int) (key >>> 32);
+            int index = lut.getMap(upperKey).indexOfKey((int) key);
+            assertTrue(index >= 0);
+            assertEquals(entry.getValue(), visualisation.getDepth(upperKey, index));
+        }
+
+        int reachedCount = 0;
+        LutMap[] maps = lut.getMaps();
+        for (int upperKey = 0; upperKey < maps.length; ++upperKey) {
+            for (int index = 0; index < maps[upperKey].getEntryCount(); ++index) {
+                if (visualisation.getDepth(upperKey, index) != UNREACHED_DEPTH) {
+                    reachedCount += 1;
+                }
+            }
+        }
+        assertEquals(expected.size(), reachedCount);
+    }
+}
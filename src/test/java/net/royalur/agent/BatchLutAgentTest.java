@@ -0,0 +1,107 @@
+package net.royalur.agent;
+
+import net.royalur.lut.GameStateEncoding;
+import net.royalur.lut.Lut;
+import net.royalur.lut.LutTrainer;
+import net.royalur.lut.SimpleGameStateEncoding;
+import net.royalur.lut.buffer.ValueType;
+import net.royalur.model.GameSettings;
+import net.royalur.model.dice.Dice;
+import net.royalur.model.dice.DiceType;
+import net.royalur.notation.JsonNotation;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchLutAgentTest {
+
+    private static final GameSettings SETTINGS = GameSettings.FINKEL.withStartingPieceCount(2);
+
+    private static Lut trainLut() throws IOException {
+        GameStateEncoding encoding = new SimpleGameStateEncoding(SETTINGS);
+        LutTrainer trainer = new LutTrainer(SETTINGS, encoding, ValueType.FLOAT64, new JsonNotation());
+        File file = File.createTempFile("batch-lut", ".rgu");
+        file.deleteOnExit();
+        return (Lut) trainer.train(trainer.populateNewLut(), file, ValueType.FLOAT64, 1e-3);
+    }
+
+    /**
+     * Collects the states where a move is to be made from random games.
+     */
+    private static FastSimpleGame[] collectGames(int games) {
+        Random random = new Random(79);
+        Dice dice = ((DiceType) SETTINGS.getDice()).createDice(random);
+        RandomAgent randomAgent = new RandomAgent(random);
+        FastSimpleGame game = new FastSimpleGame(SETTINGS);
+        FastSimpleMoveList moveList = new FastSimpleMoveList();
+
+        List<FastSimpleGame> states = new ArrayList<>();
+        for (int gameIndex = 0; gameIndex < games; ++gameIndex) {
+            game.reset();
+            while (!game.isFinished) {
+                game.applyRoll(dice.rollValue(), moveList);
+                if (!game.isWaitingForMove())
+                    continue;
+
+                FastSimpleGame state = new FastSimpleGame(SETTINGS);
+                state.copyFrom(game);
+                states.add(state);
+                game.applyMove(randomAgent.decideMove(game, moveList));
+            }
+        }
+        return states.toArray(new FastSimpleGame[0]);
+    }
+
+    private static void testMatchesLutAgent(int sortedLookupThreshold) throws IOException {
+        Lut lut = trainLut();
+        FastSimpleGame[] games = collectGames(50);
+        String[] before = new String[games.length];
+        for (int index = 0; index < games.length; ++index) {
+            before[index] = games[index].toString();
+        }
+
+        BatchLutAgent batchAgent = new BatchLutAgent(lut, sortedLookupThreshold);
+        int[] moves = new int[games.length];
+        batchAgent.decideMoves(games, games.length, moves);
+
+        int[] expected = new int[games.length];
+        BatchAgent.fromFastAgent(new LutAgent(lut)).decideMoves(games, games.length, expected);
+        for (int index = 0; index < games.length; ++index) {
+            assertEquals(expected[index], moves[index], games[index].toString());
+            assertEquals(before[index], games[index].toString());
+        }
+
+        assertEquals(games.length, batchAgent.getRequestCount());
+        assertTrue(batchAgent.getUniqueRequestCount() < batchAgent.getRequestCount());
+        assertTrue(batchAgent.getLookupCount() > 0);
+    }
+
+    @Test
+    public void testMatchesLutAgent() throws IOException {
+        testMatchesLutAgent(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testSortedLookupsMatchLutAgent() throws IOException {
+        testMatchesLutAgent(0);
+    }
+
+    @Test
+    public void testRejectsGamesNotWaitingForMove() throws IOException {
+        BatchLutAgent batchAgent = new BatchLutAgent(trainLut());
+        FastSimpleGame game = new FastSimpleGame(SETTINGS);
+        game.reset();
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> batchAgent.decideMoves(new FastSimpleGame[] {game}, 1, new int[1])
+        );
+    }
+}
@@ -0,0 +1,81 @@
+package net.royalur.agent;
+
+import net.royalur.agent.utility.PiecesAdvancedUtilityFn;
+import net.royalur.model.GameMetadata;
+import net.royalur.model.GameSettings;
+import net.royalur.model.dice.Dice;
+import net.royalur.model.dice.DiceType;
+import net.royalur.rules.simple.SimpleRuleSet;
+import net.royalur.rules.simple.SimpleRuleSetProvider;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpectimaxAgentTest {
+
+    private static void testMatchesExhaustiveSearch(
+            GameSettings settings,
+            int depth,
+            int games,
+            boolean useTable
+    ) {
+        SimpleRuleSet rules = new SimpleRuleSetProvider().create(settings, new GameMetadata());
+        PiecesAdvancedUtilityFn utilityFn = new PiecesAdvancedUtilityFn(rules);
+        TranspositionTable table = (useTable ? new TranspositionTable(16) : null);
+        ExpectimaxAgent pruned = new ExpectimaxAgent(rules, utilityFn, depth, true, table);
+        ExpectimaxAgent exhaustive = new ExpectimaxAgent(rules, utilityFn, depth, false);
+
+        Random random = new Random(47);
+        Dice dice = ((DiceType) settings.getDice()).createDice(random);
+        RandomAgent randomAgent = new RandomAgent(random);
+        FastSimpleGame game = new FastSimpleGame(settings);
+        FastSimpleMoveList moveList = new FastSimpleMoveList();
+
+        int decisions = 0;
+        for (int gameIndex = 0; gameIndex < games; ++gameIndex) {
+            game.reset();
+            while (!game.isFinished) {
+                game.applyRoll(dice.rollValue(), moveList);
+                if (!game.isWaitingForMove())
+                    continue;
+
+                if (moveList.moveCount > 1) {
+                    int expected = exhaustive.decideMove(game, moveList);
+                    assertEquals(expected, pruned.decideMove(game, moveList), game.toString());
+                    decisions += 1;
+                }
+                game.applyMove(randomAgent.decideMove(game, moveList));
+            }
+        }
+
+        assertTrue(decisions > 0);
+        assertTrue(pruned.getStar1CutoffCount() > 0, "Star1 never pruned");
+        assertTrue(pruned.getStar2CutoffCount() > 0, "Star2 never pruned");
+        assertTrue(
+                2 * pruned.getNodeCount() < exhaustive.getNodeCount(),
+                pruned.getNodeCount() + " nodes with pruning, " + exhaustive.getNodeCount() + " without"
+        );
+        if (table != null) {
+            assertTrue(table.getHitCount() > 0, "The transposition table was never hit");
+        }
+    }
+
+    @Test
+    public void testMatchesExhaustiveSearchFinkel() {
+        testMatchesExhaustiveSearch(GameSettings.FINKEL, 3, 2, false);
+    }
+
+    @Test
+    public void testMatchesExhaustiveSearchWithTable() {
+        testMatchesExhaustiveSearch(GameSettings.FINKEL, 3, 2, true);
+    }
+
+    @Test
+    public void testMatchesExhaustiveSearchMasters() {
+        testMatchesExhaustiveSearch(GameSettings.MASTERS, 2, 5, false);
+    }
+}
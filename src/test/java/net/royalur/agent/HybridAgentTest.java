@@ -0,0 +1,137 @@
+package net.royalur.agent;
+
+import net.royalur.agent.utility.PiecesAdvancedUtilityFn;
+import net.royalur.lut.GameStateEncoding;
+import net.royalur.lut.Lut;
+import net.royalur.lut.LutTrainer;
+import net.royalur.lut.SimpleGameStateEncoding;
+import net.royalur.lut.buffer.ValueType;
+import net.royalur.model.GameMetadata;
+import net.royalur.model.GameSettings;
+import net.royalur.model.dice.Dice;
+import net.royalur.model.dice.DiceType;
+import net.royalur.notation.JsonNotation;
+import net.royalur.rules.simple.SimpleRuleSet;
+import net.royalur.rules.simple.SimpleRuleSetProvider;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HybridAgentTest {
+
+    private static final GameSettings SETTINGS = GameSettings.FINKEL.withStartingPieceCount(2);
+
+    private static File trainLut() throws IOException {
+        GameStateEncoding encoding = new SimpleGameStateEncoding(SETTINGS);
+        LutTrainer trainer = new LutTrainer(SETTINGS, encoding, ValueType.FLOAT64, new JsonNotation());
+        File file = File.createTempFile("hybrid-lut", ".rgu");
+        file.deleteOnExit();
+        trainer.train(trainer.populateNewLut(), file, ValueType.FLOAT64, 1e-3);
+        return file;
+    }
+
+    @Test
+    public void testReadsEndgameOfLut() throws IOException {
+        File file = trainLut();
+        Lut lut = Lut.read(file);
+        Lut endgameLut = HybridAgent.readEndgameLut(file, 1);
+        assertTrue(endgameLut.getEntryCount() > 0);
+        assertTrue(endgameLut.getEntryCount() < lut.getEntryCount());
+
+        Random random = new Random(47);
+        Dice dice = ((DiceType) SETTINGS.getDice()).createDice(random);
+        RandomAgent randomAgent = new RandomAgent(random);
+        FastSimpleGame game = new FastSimpleGame(SETTINGS);
+        FastSimpleMoveList moveList = new FastSimpleMoveList();
+        int endgameStates = 0;
+        for (int gameIndex = 0; gameIndex < 50; ++gameIndex) {
+            game.reset();
+            while (!game.isFinished) {
+                if (game.isWaitingForRoll()) {
+                    if (game.light.pieces <= 1 && game.dark.pieces <= 1) {
+                        assertEquals(lut.getLightWinPercent(game), endgameLut.getLightWinPercent(game));
+                        endgameStates += 1;
+                    }
+                    game.applyRoll(dice.rollValue(), moveList);
+                    continue;
+                }
+                game.applyMove(randomAgent.decideMove(game, moveList));
+            }
+        }
+        assertTrue(endgameStates > 0);
+    }
+
+    @Test
+    public void testMatchesLutAgentWithFullLut() throws IOException {
+        Lut lut = Lut.read(trainLut());
+        SimpleRuleSet rules = new SimpleRuleSetProvider().create(SETTINGS, new GameMetadata());
+        HybridAgent agent = new HybridAgent(
+                rules, lut, SETTINGS.getStartingPieceCount(), new PiecesAdvancedUtilityFn(rules), 2
+        );
+        LutAgent lutAgent = new LutAgent(lut);
+
+        Random random = new Random(79);
+        Dice dice = ((DiceType) SETTINGS.getDice()).createDice(random);
+        FastSimpleGame game = new FastSimpleGame(SETTINGS);
+        FastSimpleMoveList moveList = new FastSimpleMoveList();
+        for (int gameIndex = 0; gameIndex < 20; ++gameIndex) {
+            game.reset();
+            while (!game.isFinished) {
+                game.applyRoll(dice.rollValue(), moveList);
+                if (!game.isWaitingForMove())
+                    continue;
+
+                int move = agent.decideMove(game, moveList);
+                assertEquals(lutAgent.decideMove(game, moveList), move, game.toString());
+                game.applyMove(move);
+            }
+        }
+
+        assertTrue(agent.getTableDecisionCount() > 0);
+        assertEquals(0, agent.getSearchDecisionCount());
+        assertEquals(0, agent.getUtilityLeafCount());
+        assertEquals(1.0, agent.getTableLeafFraction());
+    }
+
+    @Test
+    public void testSearchesOutsideEndgame() throws IOException {
+        SimpleRuleSet rules = new SimpleRuleSetProvider().create(SETTINGS, new GameMetadata());
+        Lut endgameLut = HybridAgent.readEndgameLut(trainLut(), 0);
+        HybridAgent agent = new HybridAgent(rules, endgameLut, 0, new PiecesAdvancedUtilityFn(rules), 1);
+
+        Random random = new Random(83);
+        Dice dice = ((DiceType) SETTINGS.getDice()).createDice(random);
+        RandomAgent randomAgent = new RandomAgent(random);
+        FastSimpleGame game = new FastSimpleGame(SETTINGS);
+        FastSimpleMoveList moveList = new FastSimpleMoveList();
+        int wins = 0;
+        for (int gameIndex = 0; gameIndex < 40; ++gameIndex) {
+            boolean agentIsLight = (gameIndex % 2 == 0);
+            game.reset();
+            while (!game.isFinished) {
+                game.applyRoll(dice.rollValue(), moveList);
+                if (!game.isWaitingForMove())
+                    continue;
+
+                FastAgent mover = (game.isLightTurn == agentIsLight ? agent : randomAgent);
+                game.applyMove(mover.decideMove(game, moveList));
+            }
+            if (game.isLightTurn == agentIsLight) {
+                wins += 1;
+            }
+        }
+
+        assertTrue(wins >= 28, "Only won " + wins + " of 40 games");
+        assertTrue(agent.getTableDecisionCount() > 0);
+        assertTrue(agent.getSearchDecisionCount() > 0);
+        assertTrue(agent.getTableLeafCount() > 0);
+        assertTrue(agent.getUtilityLeafCount() > 0);
+        assertTrue(agent.getChanceNodeCount() > 0);
+    }
+}
@@ -0,0 +1,101 @@
+package net.royalur.agent;
+
+import net.royalur.agent.utility.PiecesAdvancedUtilityFn;
+import net.royalur.model.GameMetadata;
+import net.royalur.model.GameSettings;
+import net.royalur.model.TimeControl;
+import net.royalur.model.dice.Dice;
+import net.royalur.model.dice.DiceType;
+import net.royalur.rules.simple.SimpleRuleSet;
+import net.royalur.rules.simple.SimpleRuleSetProvider;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IterativeDeepeningAgentTest {
+
+    private static final GameSettings SETTINGS = GameSettings.FINKEL;
+
+    private static SimpleRuleSet createRules() {
+        return new SimpleRuleSetProvider().create(SETTINGS, new GameMetadata());
+    }
+
+    /**
+     * Plays a game between random moves, and calls {@code decision}
+     * for each state where there is more than one move available.
+     */
+    private static void forEachDecision(long seed, DecisionConsumer decision) {
+        Random random = new Random(seed);
+        Dice dice = ((DiceType) SETTINGS.getDice()).createDice(random);
+        RandomAgent randomAgent = new RandomAgent(random);
+        FastSimpleGame game = new FastSimpleGame(SETTINGS);
+        FastSimpleMoveList moveList = new FastSimpleMoveList();
+
+        game.reset();
+        while (!game.isFinished) {
+            game.applyRoll(dice.rollValue(), moveList);
+            if (!game.isWaitingForMove())
+                continue;
+
+            if (moveList.moveCount > 1) {
+                decision.accept(game, moveList);
+            }
+            game.applyMove(randomAgent.decideMove(game, moveList));
+        }
+    }
+
+    private interface DecisionConsumer {
+        void accept(FastSimpleGame game, FastSimpleMoveList moveList);
+    }
+
+    @Test
+    public void testMatchesFixedDepthSearch() {
+        SimpleRuleSet rules = createRules();
+        PiecesAdvancedUtilityFn utilityFn = new PiecesAdvancedUtilityFn(rules);
+        ExpectimaxAgent fixed = new ExpectimaxAgent(rules, utilityFn, 2);
+        IterativeDeepeningAgent deepening = new IterativeDeepeningAgent(rules, utilityFn, 2, 60_000);
+
+        forEachDecision(53, (game, moveList) -> {
+            int expected = fixed.decideMove(game, moveList);
+            assertEquals(expected, deepening.decideMove(game, moveList), game.toString());
+            assertEquals(2, deepening.getLastCompletedDepth());
+        });
+    }
+
+    @Test
+    public void testRespectsBudget() {
+        SimpleRuleSet rules = createRules();
+        PiecesAdvancedUtilityFn utilityFn = new PiecesAdvancedUtilityFn(rules);
+        IterativeDeepeningAgent agent = new IterativeDeepeningAgent(rules, utilityFn, 20, 10);
+
+        forEachDecision(59, (game, moveList) -> {
+            long start = System.nanoTime();
+            int move = agent.decideMove(game, moveList);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+
+            // Generous, as the machine running the tests may be busy.
+            assertTrue(elapsedMillis < 500, "Took " + elapsedMillis + " ms with a budget of 10 ms");
+            boolean found = false;
+            for (int index = 0; index < moveList.moveCount; ++index) {
+                found |= (moveList.moves[index] == move);
+            }
+            assertTrue(found, "Chose a move that is not available: " + move);
+        });
+    }
+
+    @Test
+    public void testBudgetFromTimeControl() {
+        SimpleRuleSet rules = createRules();
+        PiecesAdvancedUtilityFn utilityFn = new PiecesAdvancedUtilityFn(rules);
+        IterativeDeepeningAgent agent = new IterativeDeepeningAgent(rules, utilityFn, 3, 5_000);
+
+        assertEquals(5_000_000_000L, agent.getBudgetNanos(null));
+        assertEquals(5_000_000_000L, agent.getBudgetNanos(TimeControl.NONE));
+        assertEquals(1_600_000_000L, agent.getBudgetNanos(TimeControl.withPerMoveSeconds(2)));
+        assertEquals(5_000_000_000L, agent.getBudgetNanos(TimeControl.withPerMoveSeconds(60)));
+    }
+}
@@ -0,0 +1,106 @@
+package net.royalur.agent;
+
+import net.royalur.Game;
+import net.royalur.agent.utility.PiecesAdvancedUtilityFn;
+import net.royalur.model.GameMetadata;
+import net.royalur.model.GameSettings;
+import net.royalur.model.Move;
+import net.royalur.model.dice.DiceType;
+import net.royalur.rules.simple.SimpleRuleSet;
+import net.royalur.rules.simple.SimpleRuleSetProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LikelihoodAgentTest {
+
+    @Test
+    public void testPriorityPrefersMoreLikelyStates() {
+        int likelyBucket = LikelihoodAgent.calculateLikelihoodBucket(0.5f);
+        int unlikelyBucket = LikelihoodAgent.calculateLikelihoodBucket(0.001f);
+        assertTrue(likelyBucket < unlikelyBucket);
+        assertTrue(
+                LikelihoodAgent.calculateTablePriority(likelyBucket)
+                        > LikelihoodAgent.calculateTablePriority(unlikelyBucket)
+        );
+        assertEquals(0, LikelihoodAgent.calculateTablePriority(LikelihoodAgent.calculateLikelihoodBucket(0.0f)));
+        assertEquals(
+                LikelihoodAgent.MAX_LIKELIHOOD_BUCKET,
+                LikelihoodAgent.calculateLikelihoodBucket(Float.MIN_VALUE)
+        );
+    }
+
+    /**
+     * Tests that an entry with more search remaining below it survives
+     * being replaced by entries with less search remaining.
+     */
+    @Test
+    public void testDeeperEntrySurvivesReplacement() {
+        // A single bucket, so that every key collides.
+        TranspositionTable table = new TranspositionTable(0);
+        TranspositionTable.Entry entry = new TranspositionTable.Entry();
+
+        int deepBucket = LikelihoodAgent.calculateLikelihoodBucket(0.25f);
+        int shallowBucket = LikelihoodAgent.calculateLikelihoodBucket(0.001f);
+        long deep = TranspositionTable.createKey(1, true, deepBucket);
+        long shallow1 = TranspositionTable.createKey(2, true, shallowBucket);
+        long shallow2 = TranspositionTable.createKey(3, true, shallowBucket);
+
+        table.store(deep, 1.0, TranspositionTable.BOUND_EXACT, LikelihoodAgent.calculateTablePriority(deepBucket));
+        int shallowPriority = LikelihoodAgent.calculateTablePriority(shallowBucket);
+        table.store(shallow1, 2.0, TranspositionTable.BOUND_EXACT, shallowPriority);
+        table.store(shallow2, 3.0, TranspositionTable.BOUND_EXACT, shallowPriority);
+
+        assertTrue(table.probe(deep, entry));
+        assertEquals(1.0, entry.value);
+        assertFalse(table.probe(shallow1, entry));
+        assertTrue(table.probe(shallow2, entry));
+    }
+
+    /**
+     * Tests searching with the table enabled. States reached with likelihoods
+     * in the same bucket share their utility, so the table may change the
+     * utilities that are found. Therefore, this only checks that the table is
+     * used, and that it rarely changes the move that is chosen.
+     */
+    @Test
+    public void testTableRarelyChangesMoves() {
+        Random random = new Random(83);
+        GameSettings settings = GameSettings.FINKEL.withDice(DiceType.FOUR_BINARY.createFactory(() -> random));
+        SimpleRuleSet rules = new SimpleRuleSetProvider().create(settings, new GameMetadata());
+        PiecesAdvancedUtilityFn utilityFn = new PiecesAdvancedUtilityFn(rules);
+        TranspositionTable table = new TranspositionTable(16);
+        LikelihoodAgent withTable = new LikelihoodAgent(rules, utilityFn, 0.01f, table);
+        LikelihoodAgent withoutTable = new LikelihoodAgent(rules, utilityFn, 0.01f);
+
+        int decisions = 0;
+        int matches = 0;
+        for (int gameIndex = 0; gameIndex < 3; ++gameIndex) {
+            Game game = new Game(rules);
+            while (!game.isFinished()) {
+                if (game.isWaitingForRoll()) {
+                    game.rollDice();
+                    continue;
+                }
+
+                List<Move> moves = game.findAvailableMoves();
+                Move move = withTable.decideMove(game, moves);
+                assertTrue(moves.contains(move));
+                if (moves.size() > 1) {
+                    decisions += 1;
+                    if (move.equals(withoutTable.decideMove(game, moves))) {
+                        matches += 1;
+                    }
+                }
+                game.move(move);
+            }
+        }
+
+        assertTrue(decisions > 0);
+        assertTrue(table.getHitCount() > 0, "The transposition table was never hit");
+        assertTrue(matches >= 0.9 * decisions, matches + " of " + decisions + " moves matched");
+    }
+}
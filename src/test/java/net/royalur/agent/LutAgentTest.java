@@ -0,0 +1,86 @@
+package net.royalur.agent;
+
+import net.royalur.Game;
+import net.royalur.lut.GameStateEncoding;
+import net.royalur.lut.Lut;
+import net.royalur.lut.LutTrainer;
+import net.royalur.lut.SimpleGameStateEncoding;
+import net.royalur.lut.buffer.ValueType;
+import net.royalur.model.GameSettings;
+import net.royalur.model.Move;
+import net.royalur.model.PlayerType;
+import net.royalur.notation.JsonNotation;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LutAgentTest {
+
+    private static final GameSettings SETTINGS = GameSettings.FINKEL.withStartingPieceCount(2);
+
+    private static Lut trainLut() throws IOException {
+        GameStateEncoding encoding = new SimpleGameStateEncoding(SETTINGS);
+        LutTrainer trainer = new LutTrainer(SETTINGS, encoding, ValueType.FLOAT64, new JsonNotation());
+        File file = File.createTempFile("lut-agent", ".rgu");
+        file.deleteOnExit();
+        return (Lut) trainer.train(trainer.populateNewLut(), file, ValueType.FLOAT64, 1e-3);
+    }
+
+    /**
+     * Selects a move by copying the game for every move, as a reference.
+     */
+    private static Move decideMoveByCopying(Lut lut, Game game, List<Move> moves) {
+        FastSimpleGame fastGame = new FastSimpleGame(SETTINGS);
+        double bestScore = -1.0d;
+        Move bestMove = null;
+        for (Move move : moves) {
+            Game moveGame = game.copy();
+            moveGame.move(move);
+
+            double score = 100.0d;
+            if (!moveGame.isFinished()) {
+                fastGame.copyFrom(moveGame);
+                score = lut.getLightWinPercent(fastGame, new FastSimpleGame(SETTINGS));
+                if (game.getTurn() == PlayerType.DARK) {
+                    score = 100.0d - score;
+                }
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+            }
+        }
+        return bestMove;
+    }
+
+    @Test
+    public void testMatchesCopyingEachMove() throws IOException {
+        Lut lut = trainLut();
+        LutAgent agent = new LutAgent(lut);
+
+        int decisions = 0;
+        for (int gameIndex = 0; gameIndex < 20; ++gameIndex) {
+            Game game = Game.create(SETTINGS);
+            while (!game.isFinished()) {
+                if (game.isWaitingForRoll()) {
+                    game.rollDice();
+                    continue;
+                }
+
+                List<Move> moves = game.findAvailableMoves();
+                Move move = agent.decideMove(game, moves);
+                if (moves.size() > 1) {
+                    assertEquals(decideMoveByCopying(lut, game, moves), move);
+                    decisions += 1;
+                }
+                game.move(move);
+            }
+        }
+        assertTrue(decisions > 0);
+    }
+}
@@ -0,0 +1,93 @@
+package net.royalur.agent;
+
+import net.royalur.model.GameMetadata;
+import net.royalur.model.GameSettings;
+import net.royalur.model.dice.Dice;
+import net.royalur.model.dice.DiceType;
+import net.royalur.rules.simple.SimpleRuleSet;
+import net.royalur.rules.simple.SimpleRuleSetProvider;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MctsAgentTest {
+
+    private static final GameSettings SETTINGS = GameSettings.FINKEL;
+
+    private static SimpleRuleSet createRules() {
+        return new SimpleRuleSetProvider().create(SETTINGS, new GameMetadata());
+    }
+
+    @Test
+    public void testBeatsRandomAgent() {
+        SimpleRuleSet rules = createRules();
+        MctsAgent mcts = new MctsAgent(
+                rules, (rolloutRules, random) -> new RandomAgent(random),
+                200, MctsAgent.DEFAULT_EXPLORATION, 2, new Random(61)
+        );
+
+        Random random = new Random(67);
+        Dice dice = ((DiceType) SETTINGS.getDice()).createDice(random);
+        RandomAgent randomAgent = new RandomAgent(random);
+        FastSimpleGame game = new FastSimpleGame(SETTINGS);
+        FastSimpleMoveList moveList = new FastSimpleMoveList();
+
+        int games = 20;
+        int mctsWins = 0;
+        int decisions = 0;
+        for (int gameIndex = 0; gameIndex < games; ++gameIndex) {
+            boolean mctsIsLight = (gameIndex % 2 == 0);
+            game.reset();
+            while (!game.isFinished) {
+                game.applyRoll(dice.rollValue(), moveList);
+                if (!game.isWaitingForMove())
+                    continue;
+
+                if (game.isLightTurn == mctsIsLight) {
+                    decisions += (moveList.moveCount > 1 ? 1 : 0);
+                    game.applyMove(mcts.decideMove(game, moveList));
+                } else {
+                    game.applyMove(randomAgent.decideMove(game, moveList));
+                }
+            }
+            mctsWins += (game.isLightTurn == mctsIsLight ? 1 : 0);
+        }
+
+        assertTrue(mctsWins >= 15, "MCTS only won " + mctsWins + " of " + games + " games");
+        assertEquals(200L * decisions, mcts.getRolloutCount());
+        assertTrue(mcts.getRolloutsPerSecond() > 0);
+    }
+
+    @Test
+    public void testReproducible() {
+        SimpleRuleSet rules = createRules();
+        MctsAgent mcts1 = new MctsAgent(
+                rules, (rolloutRules, random) -> new GreedyAgent(),
+                300, MctsAgent.DEFAULT_EXPLORATION, 3, new Random(71)
+        );
+        MctsAgent mcts2 = new MctsAgent(
+                rules, (rolloutRules, random) -> new GreedyAgent(),
+                300, MctsAgent.DEFAULT_EXPLORATION, 3, new Random(71)
+        );
+
+        Random random = new Random(73);
+        Dice dice = ((DiceType) SETTINGS.getDice()).createDice(random);
+        FastSimpleGame game = new FastSimpleGame(SETTINGS);
+        FastSimpleMoveList moveList = new FastSimpleMoveList();
+
+        game.reset();
+        while (!game.isFinished) {
+            game.applyRoll(dice.rollValue(), moveList);
+            if (!game.isWaitingForMove())
+                continue;
+
+            int move = mcts1.decideMove(game, moveList);
+            assertEquals(move, mcts2.decideMove(game, moveList));
+            game.applyMove(move);
+        }
+    }
+}
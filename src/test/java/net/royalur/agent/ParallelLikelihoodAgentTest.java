@@ -0,0 +1,61 @@
+package net.royalur.agent;
+
+import net.royalur.Game;
+import net.royalur.agent.utility.PiecesAdvancedUtilityFn;
+import net.royalur.model.GameSettings;
+import net.royalur.model.Move;
+import net.royalur.rules.simple.SimpleRuleSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelLikelihoodAgentTest {
+
+    private static final float LIKELIHOOD_THRESHOLD = 0.02f;
+
+    private static void testMatchesSequentialAgent(boolean splitRolls) {
+        Game game = Game.create(GameSettings.FINKEL);
+        SimpleRuleSet rules = (SimpleRuleSet) game.getRules();
+        PiecesAdvancedUtilityFn utilityFn = new PiecesAdvancedUtilityFn(rules);
+        LikelihoodAgent sequential = new LikelihoodAgent(rules, utilityFn, LIKELIHOOD_THRESHOLD);
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            ParallelLikelihoodAgent parallel = new ParallelLikelihoodAgent(
+                    rules, utilityFn, LIKELIHOOD_THRESHOLD, splitRolls, pool, null
+            );
+
+            int decisions = 0;
+            while (!game.isFinished()) {
+                if (game.isWaitingForRoll()) {
+                    game.rollDice();
+                    continue;
+                }
+
+                List<Move> moves = game.findAvailableMoves();
+                Move move = sequential.decideMove(game, moves);
+                if (moves.size() > 1) {
+                    assertEquals(move, parallel.decideMove(game, moves));
+                    decisions += 1;
+                }
+                game.move(move);
+            }
+            assertTrue(decisions > 0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testMatchesSequentialAgent() {
+        testMatchesSequentialAgent(false);
+    }
+
+    @Test
+    public void testMatchesSequentialAgentWithSplitRolls() {
+        testMatchesSequentialAgent(true);
+    }
+}
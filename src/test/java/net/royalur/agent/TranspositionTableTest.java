@@ -0,0 +1,71 @@
+package net.royalur.agent;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TranspositionTableTest {
+
+    @Test
+    public void testStoreAndProbe() {
+        TranspositionTable table = new TranspositionTable(4);
+        TranspositionTable.Entry entry = new TranspositionTable.Entry();
+        long key = TranspositionTable.createKey(12345, true, 3);
+
+        assertFalse(table.probe(key, entry));
+        table.store(key, 0.125, TranspositionTable.BOUND_LOWER, 3);
+        assertTrue(table.probe(key, entry));
+        assertEquals(0.125, entry.value);
+        assertEquals(TranspositionTable.BOUND_LOWER, entry.bound);
+
+        // The turn and depth are part of the key.
+        assertFalse(table.probe(TranspositionTable.createKey(12345, false, 3), entry));
+        assertFalse(table.probe(TranspositionTable.createKey(12345, true, 2), entry));
+
+        assertEquals(4, table.getProbeCount());
+        assertEquals(1, table.getHitCount());
+        assertEquals(0.25, table.getHitRate());
+        assertEquals(1, table.getStoreCount());
+
+        table.clear();
+        table.resetCounters();
+        assertFalse(table.probe(key, entry));
+        assertEquals(0, table.getHitCount());
+    }
+
+    @Test
+    public void testDeeperEntriesArePreferred() {
+        // A single bucket, so that every key collides.
+        TranspositionTable table = new TranspositionTable(0);
+        TranspositionTable.Entry entry = new TranspositionTable.Entry();
+        long deep = TranspositionTable.createKey(1, true, 5);
+        long shallow1 = TranspositionTable.createKey(2, true, 1);
+        long shallow2 = TranspositionTable.createKey(3, true, 1);
+
+        table.store(deep, 1.0, TranspositionTable.BOUND_EXACT, 5);
+        table.store(shallow1, 2.0, TranspositionTable.BOUND_EXACT, 1);
+        table.store(shallow2, 3.0, TranspositionTable.BOUND_EXACT, 1);
+        assertTrue(table.probe(deep, entry));
+        assertEquals(1.0, entry.value);
+        assertFalse(table.probe(shallow1, entry));
+        assertTrue(table.probe(shallow2, entry));
+        assertEquals(3.0, entry.value);
+        assertEquals(1, table.getOverwriteCount());
+
+        // Entries from older searches are replaced.
+        table.newSearch();
+        table.store(shallow1, 2.0, TranspositionTable.BOUND_EXACT, 1);
+        assertFalse(table.probe(deep, entry));
+        assertTrue(table.probe(shallow1, entry));
+        assertTrue(table.probe(shallow2, entry));
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        TranspositionTable table = new TranspositionTable(2);
+        assertThrows(IllegalArgumentException.class, () -> TranspositionTable.createKey(1L << 48, true, 0));
+        assertThrows(IllegalArgumentException.class, () -> TranspositionTable.createKey(1, true, -1));
+        assertThrows(IllegalArgumentException.class, () -> table.store(0, 0.0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TranspositionTable(-1));
+    }
+}
@@ -0,0 +1,90 @@
+package net.royalur.agent.utility;
+
+import net.royalur.agent.RandomAgent;
+import net.royalur.lut.GameStateEncoding;
+import net.royalur.lut.Lut;
+import net.royalur.lut.LutTrainer;
+import net.royalur.lut.SimpleGameStateEncoding;
+import net.royalur.lut.buffer.ValueType;
+import net.royalur.model.GameSettings;
+import net.royalur.model.dice.Dice;
+import net.royalur.model.dice.DiceType;
+import net.royalur.notation.JsonNotation;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MlpUtilityFnTest {
+
+    private static final GameSettings SETTINGS = GameSettings.FINKEL.withStartingPieceCount(2);
+
+    private static Lut trainLut() throws IOException {
+        GameStateEncoding encoding = new SimpleGameStateEncoding(SETTINGS);
+        LutTrainer trainer = new LutTrainer(SETTINGS, encoding, ValueType.FLOAT64, new JsonNotation());
+        File file = File.createTempFile("mlp-lut", ".rgu");
+        file.deleteOnExit();
+        return (Lut) trainer.train(trainer.populateNewLut(), file, ValueType.FLOAT64, 1e-3);
+    }
+
+    @Test
+    public void testApproximatesLut() throws IOException {
+        Lut lut = trainLut();
+        Random random = new Random(47);
+        MlpTrainer trainer = new MlpTrainer(SETTINGS, 16, random);
+        RandomAgent agent = new RandomAgent(random);
+        MlpTrainer.Samples trainSamples = trainer.collectSamples(agent, 1000, lut);
+        MlpTrainer.Samples testSamples = trainer.collectSamples(agent, 200, lut);
+
+        MlpUtilityFn untrained = new MlpUtilityFn(SETTINGS, 16);
+        MlpUtilityFn fromLut = trainer.train(trainSamples, 5, 0.01f);
+        double baselineError = MlpTrainer.calculateMeanAbsoluteError(untrained, testSamples);
+        double lutError = MlpTrainer.calculateMeanAbsoluteError(fromLut, testSamples);
+        assertTrue(lutError < baselineError / 3, lutError + "% error, compared to " + baselineError + "%");
+
+        // Training on the outcomes of games should also approach the lut.
+        MlpUtilityFn fromOutcomes = trainer.train(trainer.collectSamples(agent, 1000, null), 5, 0.01f);
+        double outcomesError = MlpTrainer.calculateMeanAbsoluteError(fromOutcomes, testSamples);
+        assertTrue(outcomesError < baselineError, outcomesError + "% error, compared to " + baselineError + "%");
+    }
+
+    @Test
+    public void testScoresMirroredStatesEqually() throws IOException {
+        Random random = new Random(79);
+        MlpTrainer trainer = new MlpTrainer(SETTINGS, 12, random);
+        RandomAgent agent = new RandomAgent(random);
+        MlpUtilityFn network = trainer.train(trainer.collectSamples(agent, 100, null), 1, 0.01f);
+
+        File file = File.createTempFile("mlp-weights", ".rgu");
+        file.deleteOnExit();
+        network.write(file);
+        MlpUtilityFn read = MlpUtilityFn.read(SETTINGS, file);
+
+        Dice dice = ((DiceType) SETTINGS.getDice()).createDice(random);
+        FastSimpleGame game = new FastSimpleGame(SETTINGS);
+        FastSimpleGame reversed = new FastSimpleGame(SETTINGS);
+        FastSimpleMoveList moveList = new FastSimpleMoveList();
+        for (int gameIndex = 0; gameIndex < 20; ++gameIndex) {
+            game.reset();
+            while (!game.isFinished) {
+                if (game.isWaitingForRoll()) {
+                    float utility = network.scoreGameStateForLight(game);
+                    assertTrue(utility > -1.0f && utility < 1.0f);
+                    assertEquals(utility, read.scoreGameStateForLight(game));
+
+                    game.reversePlayers(reversed);
+                    assertEquals(-utility, network.scoreGameStateForLight(reversed), 1e-6f, game.toString());
+                    game.applyRoll(dice.rollValue(), moveList);
+                    continue;
+                }
+                game.applyMove(agent.decideMove(game, moveList));
+            }
+            assertEquals(game.isLightTurn ? 1.0f : -1.0f, network.scoreGameStateForLight(game));
+        }
+    }
+}
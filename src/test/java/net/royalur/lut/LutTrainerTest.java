@@ -0,0 +1,237 @@
+package net.royalur.lut;
+
+import net.royalur.agent.BetterGreedyAgent;
+import net.royalur.agent.GreedyAgent;
+import net.royalur.agent.LutAgent;
+import net.royalur.lut.buffer.FloatValueBuffer;
+import net.royalur.lut.buffer.ValueType;
+import net.royalur.model.GameSettings;
+import net.royalur.model.dice.Dice;
+import net.royalur.model.dice.DiceType;
+import net.royalur.notation.JsonNotation;
+import net.royalur.rules.simple.fast.FastSimpleEngineType;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+import net.royalur.stats.GameLengthAnalyser;
+import net.royalur.stats.GameLengthDistribution;
+import net.royalur.stats.GameStatsTarget;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LutTrainerTest {
+
+    private static final GameSettings SETTINGS = GameSettings.FINKEL.withStartingPieceCount(2);
+    private static final double TOLERANCE = 1e-7;
+
+    private static LutTrainer createTrainer(FastSimpleEngineType engineType) {
+        GameStateEncoding encoding = new SimpleGameStateEncoding(SETTINGS);
+        return new LutTrainer(SETTINGS, encoding, ValueType.FLOAT64, new JsonNotation(), engineType);
+    }
+
+    private static LutTrainer createTrainer() {
+        return createTrainer(FastSimpleEngineType.BOARD);
+    }
+
+    private static File createTempFile(String prefix) throws IOException {
+        File file = File.createTempFile(prefix, ".rgu");
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static double getStartLightWinPercent(WinPercentLut lut) {
+        FastSimpleGame game = new FastSimpleGame(SETTINGS);
+        game.reset();
+        return lut.getLightWinPercent(game, new FastSimpleGame(SETTINGS));
+    }
+
+    @Test
+    public void testEvaluatePoliciesMatchesExactAnalysis() throws IOException {
+        LutTrainer trainer = createTrainer();
+        WinPercentLut[] luts = trainer.evaluatePolicies(
+                trainer.populateNewLut(), GreedyAgent::new, createTempFile("greedy"),
+                trainer.populateNewLut(), BetterGreedyAgent::new, createTempFile("better-greedy"),
+                ValueType.FLOAT64, TOLERANCE
+        );
+
+        GameLengthDistribution greedyLight = new GameLengthAnalyser(
+                SETTINGS, GreedyAgent::new, BetterGreedyAgent::new, 1
+        ).analyse();
+        GameLengthDistribution betterGreedyLight = new GameLengthAnalyser(
+                SETTINGS, BetterGreedyAgent::new, GreedyAgent::new, 1
+        ).analyse();
+
+        assertEquals(100 * greedyLight.getLightWinProbability(), getStartLightWinPercent(luts[0]), 1e-4);
+        assertEquals(100 * betterGreedyLight.getLightWinProbability(), getStartLightWinPercent(luts[1]), 1e-4);
+    }
+
+    @Test
+    public void testEvaluatePolicyAgainstItself() throws IOException {
+        LutTrainer trainer = createTrainer();
+        WinPercentLut lut = trainer.evaluatePolicy(
+                trainer.populateNewLut(), GreedyAgent::new, createTempFile("greedy"),
+                ValueType.FLOAT64, TOLERANCE
+        );
+
+        GameLengthDistribution distribution = new GameLengthAnalyser(
+                SETTINGS, GreedyAgent::new, GreedyAgent::new, 1
+        ).analyse();
+        assertEquals(100 * distribution.getLightWinProbability(), getStartLightWinPercent(lut), 1e-4);
+    }
+
+    private static void assertValuesEqual(Lut expected, Lut actual) {
+        for (int upperKey = 0; upperKey < expected.getMaps().length; ++upperKey) {
+            FloatValueBuffer expectedValues = expected.getMap(upperKey).getValueBuffer();
+            FloatValueBuffer values = actual.getMap(upperKey).getValueBuffer();
+            for (int index = 0; index < expected.getMap(upperKey).getEntryCount(); ++index) {
+                assertEquals(expectedValues.getDouble(index), values.getDouble(index));
+            }
+        }
+    }
+
+    @Test
+    public void testBitboardEngineMatchesBoardEngine() throws IOException {
+        LutTrainer boardTrainer = createTrainer(FastSimpleEngineType.BOARD);
+        LutTrainer bitboardTrainer = createTrainer(FastSimpleEngineType.BITBOARD);
+
+        Lut expected = (Lut) boardTrainer.train(
+                boardTrainer.populateNewLut(), createTempFile("board"), ValueType.FLOAT64, TOLERANCE
+        );
+        Lut actual = (Lut) bitboardTrainer.train(
+                bitboardTrainer.populateNewLut(), createTempFile("bitboard"), ValueType.FLOAT64, TOLERANCE
+        );
+        assertValuesEqual(expected, actual);
+
+        Lut expectedGreedy = (Lut) boardTrainer.evaluatePolicy(
+                boardTrainer.populateNewLut(), GreedyAgent::new, createTempFile("board-greedy"),
+                ValueType.FLOAT64, TOLERANCE
+        );
+        Lut actualGreedy = (Lut) bitboardTrainer.evaluatePolicy(
+                bitboardTrainer.populateNewLut(), GreedyAgent::new, createTempFile("bitboard-greedy"),
+                ValueType.FLOAT64, TOLERANCE
+        );
+        assertValuesEqual(expectedGreedy, actualGreedy);
+    }
+
+    @Test
+    public void testTrainObjectivesMatchesTraining() throws IOException {
+        LutTrainer trainer = createTrainer();
+        Lut expected = (Lut) trainer.train(
+                trainer.populateNewLut(), createTempFile("optimal"), ValueType.FLOAT64, TOLERANCE
+        );
+
+        LutObjective[] objectives = {
+                LutObjective.WIN_PERCENT, LutObjective.REMAINING_TURNS, LutObjective.CAPTURE_PERCENT
+        };
+        File[] files = {createTempFile("win"), createTempFile("turns"), createTempFile("captures")};
+        Lut[] luts = trainer.trainObjectives(
+                trainer.populateNewLuts(objectives), objectives, files, ValueType.FLOAT64, TOLERANCE
+        );
+
+        for (int upperKey = 0; upperKey < expected.getMaps().length; ++upperKey) {
+            FloatValueBuffer expectedValues = expected.getMap(upperKey).getValueBuffer();
+            FloatValueBuffer values = luts[0].getMap(upperKey).getValueBuffer();
+            for (int index = 0; index < expected.getMap(upperKey).getEntryCount(); ++index) {
+                assertEquals(expectedValues.getDouble(index), values.getDouble(index), 1e-4);
+            }
+        }
+
+        LutMetadata metadata = Lut.read(files[1]).getMetadata();
+        assertSame(LutObjective.REMAINING_TURNS, metadata.getObjective());
+        assertSame(LutObjective.REMAINING_TURNS, Lut.read(files[1]).getObjective());
+    }
+
+    private static Lut[] trainObjectives(GameSettings settings, LutObjective[] objectives) throws IOException {
+        GameStateEncoding encoding = new SimpleGameStateEncoding(settings);
+        LutTrainer trainer = new LutTrainer(settings, encoding, ValueType.FLOAT64, new JsonNotation());
+        File[] files = new File[objectives.length];
+        for (int index = 0; index < objectives.length; ++index) {
+            files[index] = createTempFile(objectives[index].getName());
+        }
+        return trainer.trainObjectives(
+                trainer.populateNewLuts(objectives), objectives, files, ValueType.FLOAT64, TOLERANCE
+        );
+    }
+
+    /**
+     * Tests that the remaining turns match the expected length of games
+     * between agents that play using the trained win percentages. Rosettes
+     * do not grant extra rolls, so that every roll is a separate turn.
+     */
+    @Test
+    public void testRemainingTurnsMatchesExactAnalysis() throws IOException {
+        GameSettings settings = SETTINGS.withRosettesGrantExtraRolls(false);
+        LutObjective[] objectives = {LutObjective.WIN_PERCENT, LutObjective.REMAINING_TURNS};
+        Lut[] luts = trainObjectives(settings, objectives);
+
+        GameLengthDistribution distribution = new GameLengthAnalyser(
+                settings, () -> new LutAgent(luts[0].shallowCopy()),
+                () -> new LutAgent(luts[0].shallowCopy()), 1
+        ).analyse();
+        double expectedTurns = distribution.getExpectedRolls(GameStatsTarget.OVERALL);
+
+        FastSimpleGame game = new FastSimpleGame(settings);
+        game.reset();
+        assertEquals(expectedTurns, luts[1].getLightValue(game, null), 1e-4);
+
+        // The remaining turns are the same from the perspective of both players.
+        game.isLightTurn = false;
+        assertEquals(expectedTurns, luts[1].getLightValue(game, null), 1e-4);
+        assertThrows(IllegalStateException.class, () -> luts[1].getLightWinPercent(game, null));
+    }
+
+    /**
+     * Tests that the capture percentage matches the fraction of
+     * simulated games between agents that play using the trained
+     * win percentages where a piece is captured.
+     */
+    @Test
+    public void testCapturePercentMatchesSimulation() throws IOException {
+        LutObjective[] objectives = {LutObjective.WIN_PERCENT, LutObjective.CAPTURE_PERCENT};
+        Lut[] luts = trainObjectives(SETTINGS, objectives);
+        LutAgent agent = new LutAgent(luts[0]);
+
+        int gameCount = 20_000;
+        int captureCount = 0;
+        Dice dice = DiceType.FOUR_BINARY.createDice(new Random(47));
+        FastSimpleGame game = new FastSimpleGame(SETTINGS);
+        FastSimpleMoveList moveList = new FastSimpleMoveList();
+        for (int gameIndex = 0; gameIndex < gameCount; ++gameIndex) {
+            boolean captured = false;
+            game.reset();
+            while (!game.isFinished) {
+                game.applyRoll(dice.rollValue(), moveList);
+                if (game.isWaitingForMove()) {
+                    int moveStatus = game.applyMove(agent.decideMove(game, moveList));
+                    captured |= FastSimpleGame.didMoveCapturePiece(moveStatus);
+                }
+            }
+            if (captured) {
+                captureCount += 1;
+            }
+        }
+
+        double expectedPercent = 100.0 * captureCount / gameCount;
+        double standardError = Math.sqrt(expectedPercent * (100.0 - expectedPercent) / gameCount);
+        game.reset();
+        double capturePercent = luts[1].getLightValue(game, null);
+        assertEquals(expectedPercent, capturePercent, 4 * standardError);
+
+        game.isLightTurn = false;
+        assertEquals(capturePercent, luts[1].getLightValue(game, null), 1e-9);
+    }
+
+    @Test
+    public void testPercentValueTypeRejectedForRemainingTurns() throws IOException {
+        LutObjective[] objectives = {LutObjective.WIN_PERCENT, LutObjective.REMAINING_TURNS};
+        LutTrainer trainer = createTrainer();
+        File[] files = {createTempFile("win"), createTempFile("turns")};
+        assertThrows(IllegalArgumentException.class, () -> trainer.trainObjectives(
+                trainer.populateNewLuts(objectives), objectives, files, ValueType.PERCENT16, TOLERANCE
+        ));
+    }
+}
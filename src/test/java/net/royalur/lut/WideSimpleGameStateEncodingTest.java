@@ -0,0 +1,97 @@
+package net.royalur.lut;
+
+import net.royalur.lut.buffer.ValueType;
+import net.royalur.model.GameSettings;
+import net.royalur.notation.JsonNotation;
+import net.royalur.rules.simple.fast.FastSimpleFlags;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WideSimpleGameStateEncodingTest {
+
+    private static Set<String> collectKeys(GameSettings settings, WideGameStateEncoding encoding) {
+        FastSimpleFlags flags = new FastSimpleFlags(settings);
+        long[] lowerKey = encoding.createLowerKey();
+        Set<String> keys = new HashSet<>();
+        flags.loopLightGameStates(game -> {
+            int upperKey = encoding.encodeGameState(game, lowerKey);
+            assertTrue(upperKey >= 0 && upperKey < encoding.getUpperKeyCount());
+            assertTrue(keys.add(upperKey + ":" + Arrays.toString(lowerKey)), "Duplicate key");
+        });
+        return keys;
+    }
+
+    @Test
+    public void testKeysAreUnique() {
+        for (GameSettings settings : new GameSettings[] {
+                GameSettings.FINKEL_2P,
+                GameSettings.FINKEL.withStartingPieceCount(3),
+                GameSettings.MASTERS.withStartingPieceCount(2),
+        }) {
+            WideGameStateEncoding encoding = new WideSimpleGameStateEncoding(settings);
+            Set<String> keys = collectKeys(settings, encoding);
+            assertEquals(new FastSimpleFlags(settings).countStates() / 2, keys.size());
+        }
+    }
+
+    @Test
+    public void testEncodesMoreThanSevenPieces() {
+        GameSettings settings = GameSettings.FINKEL.withStartingPieceCount(
+                SimpleGameStateEncoding.MAX_STARTING_PIECE_COUNT + 3
+        );
+        assertThrows(IllegalArgumentException.class, () -> new SimpleGameStateEncoding(settings));
+
+        WideSimpleGameStateEncoding encoding = new WideSimpleGameStateEncoding(settings);
+        long[] lowerKey = encoding.createLowerKey();
+
+        FastSimpleGame game = new FastSimpleGame(settings);
+        game.isLightTurn = true;
+        game.light.pieces = settings.getStartingPieceCount();
+        game.dark.pieces = settings.getStartingPieceCount();
+        int startUpperKey = encoding.encodeGameState(game, lowerKey);
+        assertEquals(encoding.calcUpperKey(10, 10), startUpperKey);
+        assertTrue(Arrays.stream(lowerKey).allMatch(word -> word == 0));
+
+        game.board.set(game.light.path[4], 5);
+        game.light.pieces -= 1;
+        int upperKey = encoding.encodeGameState(game, lowerKey);
+        assertEquals(encoding.calcUpperKey(9, 10), upperKey);
+        assertFalse(Arrays.stream(lowerKey).allMatch(word -> word == 0));
+    }
+
+    @Test
+    public void testWideLutRoundTrip() throws IOException {
+        GameSettings settings = GameSettings.FINKEL_2P;
+        JsonNotation notation = new JsonNotation();
+        LutTrainer trainer = new LutTrainer(
+                settings, new WideSimpleGameStateEncoding(settings), ValueType.FLOAT32, notation
+        );
+        WideLut lut = trainer.populateNewWideLut();
+        assertEquals(new FastSimpleFlags(settings).countStates() / 2, lut.getEntryCount());
+
+        FastSimpleGame game = new FastSimpleGame(settings);
+        game.isLightTurn = true;
+        game.light.pieces = settings.getStartingPieceCount();
+        game.dark.pieces = settings.getStartingPieceCount();
+        assertEquals(50.0, lut.getLightWinPercent(game), 0.001);
+        lut.updateLightWinPercent(game, 62.5);
+        assertEquals(62.5, lut.getLightWinPercent(game), 0.001);
+
+        File file = File.createTempFile("wide-lut", ".rgu");
+        file.deleteOnExit();
+        lut.write(ValueType.FLOAT32, notation, file);
+        assertThrows(IOException.class, () -> Lut.read(file));
+
+        WideLut readLut = WideLut.read(file);
+        assertEquals(lut.getEntryCount(), readLut.getEntryCount());
+        assertEquals(62.5, readLut.getLightWinPercent(game), 0.001);
+    }
+}
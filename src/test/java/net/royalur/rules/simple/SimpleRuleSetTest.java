@@ -7,6 +7,8 @@ import net.royalur.model.dice.*;
 import net.royalur.model.path.PathPair;
 import net.royalur.model.path.PathType;
 import net.royalur.rules.RuleSet;
+import net.royalur.rules.simple.fast.FastSimpleBitboardGame;
+import net.royalur.rules.simple.fast.FastSimpleFlags;
 import net.royalur.rules.simple.fast.FastSimpleGame;
 import net.royalur.rules.simple.fast.FastSimpleMoveList;
 import net.royalur.rules.state.GameState;
@@ -17,6 +19,7 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.ArgumentsProvider;
 import org.junit.jupiter.params.provider.ArgumentsSource;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.stream.Stream;
@@ -40,37 +43,45 @@ public class SimpleRuleSetTest {
         }
     }
 
+    /**
+     * Creates the rule sets that the fast engines are tested against.
+     * This is used by plain tests as well as parameterized tests, as
+     * parameterized tests are not run by the surefire version in use.
+     */
+    public static List<NamedGameSettings> getStandardGameSettings() {
+        DiceFactory dice = TestUtils.createDeterministicDice(
+                DiceType.FOUR_BINARY
+        );
+        return List.of(
+                new NamedGameSettings(
+                        "Finkel",
+                        GameSettings.FINKEL.withDice(dice)
+                ),
+                new NamedGameSettings(
+                        "Masters",
+                        GameSettings.MASTERS.withDice(dice)
+                ),
+                new NamedGameSettings(
+                        "Skiriuk",
+                        GameSettings.FINKEL.withPaths(PathType.SKIRIUK)
+                                .withDice(dice)
+                ),
+                new NamedGameSettings(
+                        "Murray",
+                        GameSettings.FINKEL.withPaths(PathType.MURRAY)
+                                .withDice(dice)
+                ),
+                new NamedGameSettings(
+                        "Aseb",
+                        GameSettings.ASEB.withDice(dice)
+                )
+        );
+    }
+
     public static class StandardGameSettingsProvider implements ArgumentsProvider {
         @Override
         public Stream<? extends Arguments> provideArguments(ExtensionContext extensionContext) {
-
-            DiceFactory dice = TestUtils.createDeterministicDice(
-                    DiceType.FOUR_BINARY
-            );
-            return Stream.of(
-                    Arguments.of(new NamedGameSettings(
-                            "Finkel",
-                            GameSettings.FINKEL.withDice(dice)
-                    )),
-                    Arguments.of(new NamedGameSettings(
-                            "Masters",
-                            GameSettings.MASTERS.withDice(dice)
-                    )),
-                    Arguments.of(new NamedGameSettings(
-                            "Skiriuk",
-                            GameSettings.FINKEL.withPaths(PathType.SKIRIUK)
-                                    .withDice(dice)
-                    )),
-                    Arguments.of(new NamedGameSettings(
-                            "Murray",
-                            GameSettings.FINKEL.withPaths(PathType.MURRAY)
-                                    .withDice(dice)
-                    )),
-                    Arguments.of(new NamedGameSettings(
-                            "Aseb",
-                            GameSettings.ASEB.withDice(dice)
-                    ))
-            );
+            return getStandardGameSettings().stream().map(Arguments::of);
         }
     }
 
@@ -201,4 +212,161 @@ public class SimpleRuleSetTest {
             }
         }
     }
+
+    private static void assertFastGamesMatch(FastSimpleGame expected, FastSimpleGame actual) {
+        assertArrayEquals(expected.board.pieces, actual.board.pieces);
+        assertEquals(expected.light.pieces, actual.light.pieces);
+        assertEquals(expected.dark.pieces, actual.dark.pieces);
+        assertEquals(expected.light.score, actual.light.score);
+        assertEquals(expected.dark.score, actual.dark.score);
+        assertEquals(expected.isLightTurn, actual.isLightTurn);
+        assertEquals(expected.rollValue, actual.rollValue);
+        assertEquals(expected.isFinished, actual.isFinished);
+    }
+
+    /**
+     * Tests whether the bitboard game produces the same moves and
+     * states as the FastSimpleGame, for all symmetrical rule sets.
+     */
+    @Test
+    public void testBitboardGameMatchesFastGame() {
+        int testedCount = 0;
+        for (NamedGameSettings nrs : getStandardGameSettings()) {
+            for (GameSettings settings : new GameSettings[] {
+                    nrs.settings,
+                    nrs.settings.withSafeRosettes(!nrs.settings.areRosettesSafe()),
+                    nrs.settings.withCapturesGrantExtraRolls(true),
+            }) {
+                if (!isSymmetrical(settings))
+                    continue;
+
+                assertBitboardGameMatchesFastGame(settings);
+                testedCount += 1;
+            }
+        }
+        assertTrue(testedCount > 0);
+    }
+
+    private static void assertBitboardGameMatchesFastGame(GameSettings settings) {
+        SimpleRuleSet rules = RuleSet.createSimple(settings);
+        int tests = 100;
+        Random random = new Random(47);
+        FastSimpleGame fastGame = rules.createCompatibleFastGame();
+        FastSimpleBitboardGame bitboardGame = rules.createCompatibleBitboardGame();
+        FastSimpleGame convertedGame = rules.createCompatibleFastGame();
+        FastSimpleGame reversedGame = rules.createCompatibleFastGame();
+        FastSimpleBitboardGame reversedBitboardGame = rules.createCompatibleBitboardGame();
+        FastSimpleMoveList fastMoveList = new FastSimpleMoveList();
+        FastSimpleMoveList bitboardMoveList = new FastSimpleMoveList();
+        Dice dice = rules.getDiceFactory().createDice();
+
+        for (int test = 0; test < tests; ++test) {
+            Game game = Game.create(settings);
+            fastGame.copyFrom(game);
+            bitboardGame.copyFrom(game);
+
+            while (true) {
+                assertFastGamesMatch(fastGame, bitboardGame.copyTo(convertedGame));
+                fastGame.reversePlayers(reversedGame);
+                bitboardGame.reversePlayers(reversedBitboardGame);
+                assertFastGamesMatch(reversedGame, reversedBitboardGame.copyTo(convertedGame));
+                if (fastGame.isFinished)
+                    break;
+
+                if (fastGame.isWaitingForRoll()) {
+                    int roll = dice.roll().value();
+                    fastGame.applyRoll(roll, fastMoveList);
+                    bitboardGame.applyRoll(roll, bitboardMoveList);
+                    continue;
+                }
+
+                fastGame.findAvailableMoves(fastMoveList);
+                bitboardGame.findAvailableMoves(bitboardMoveList);
+                assertArrayEquals(
+                        Arrays.copyOf(fastMoveList.moves, fastMoveList.moveCount),
+                        Arrays.copyOf(bitboardMoveList.moves, bitboardMoveList.moveCount)
+                );
+
+                int move = fastMoveList.moves[random.nextInt(fastMoveList.moveCount)];
+                assertEquals(fastGame.applyMove(move), bitboardGame.applyMove(move));
+            }
+        }
+    }
+
+    /**
+     * Tests that undoing rolls and moves restores the exact state of
+     * the game, for both the FastSimpleGame and the bitboard game.
+     */
+    @Test
+    public void testUndoRestoresState() {
+        for (NamedGameSettings nrs : getStandardGameSettings()) {
+            assertUndoRestoresState(nrs.settings.withCapturesGrantExtraRolls(true));
+        }
+    }
+
+    private static void assertUndoRestoresState(GameSettings settings) {
+        SimpleRuleSet rules = RuleSet.createSimple(settings);
+        boolean symmetrical = isSymmetrical(settings);
+
+        int tests = 50;
+        Random random = new Random(53);
+        FastSimpleGame game = rules.createCompatibleFastGame();
+        FastSimpleGame before = rules.createCompatibleFastGame();
+        FastSimpleGame convertedGame = rules.createCompatibleFastGame();
+        FastSimpleBitboardGame bitboardGame = (symmetrical ? rules.createCompatibleBitboardGame() : null);
+        FastSimpleMoveList moveList = new FastSimpleMoveList();
+        FastSimpleMoveList bitboardMoveList = new FastSimpleMoveList();
+        Dice dice = rules.getDiceFactory().createDice();
+
+        for (int test = 0; test < tests; ++test) {
+            game.copyFrom(Game.create(settings));
+            if (bitboardGame != null) {
+                bitboardGame.copyFrom(game);
+            }
+
+            while (!game.isFinished) {
+                before.copyFrom(game);
+                if (game.isWaitingForRoll()) {
+                    // Check every roll can be undone, then apply a random roll.
+                    for (int roll = 0; roll <= dice.getMaxRollValue(); ++roll) {
+                        game.undoRoll(game.applyRoll(roll, moveList));
+                        assertFastGamesMatch(before, game);
+                    }
+                    int roll = dice.roll().value();
+                    game.applyRoll(roll, moveList);
+                    if (bitboardGame != null) {
+                        bitboardGame.applyRoll(roll, bitboardMoveList);
+                    }
+                    continue;
+                }
+
+                // Check every move can be undone, then apply a random move.
+                game.findAvailableMoves(moveList);
+                for (int moveIndex = 0; moveIndex < moveList.moveCount; ++moveIndex) {
+                    int move = moveList.moves[moveIndex];
+                    game.undoMove(game.applyMove(move));
+                    assertFastGamesMatch(before, game);
+
+                    if (bitboardGame != null) {
+                        bitboardGame.undoMove(bitboardGame.applyMove(move));
+                        assertFastGamesMatch(before, bitboardGame.copyTo(convertedGame));
+                    }
+                }
+                int move = moveList.moves[random.nextInt(moveList.moveCount)];
+                game.applyMove(move);
+                if (bitboardGame != null) {
+                    bitboardGame.applyMove(move);
+                }
+            }
+        }
+    }
+
+    private static boolean isSymmetrical(GameSettings settings) {
+        try {
+            new FastSimpleFlags(settings);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,124 @@
+package net.royalur.rules.simple.fast;
+
+import net.royalur.model.GameSettings;
+import net.royalur.model.dice.Dice;
+import net.royalur.model.dice.DiceType;
+import net.royalur.rules.simple.SimpleRuleSetTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FastSimpleMoveTablesTest {
+
+    /**
+     * Finds the available moves by walking along the path of the
+     * turn player, without using the move tables.
+     */
+    private static int[] findMovesByWalkingPath(FastSimpleGame game) {
+        FastSimplePlayer player = game.getTurnPlayer();
+        int[] path = player.path;
+        int roll = game.rollValue;
+        List<Integer> moves = new ArrayList<>();
+        for (int pathIndex = -1; pathIndex + roll <= path.length; ++pathIndex) {
+            if (pathIndex >= 0 && game.board.pieces[path[pathIndex]] != player.sign * (pathIndex + 1))
+                continue;
+            if (pathIndex < 0 && player.pieces <= 0)
+                continue;
+
+            int destPathIndex = pathIndex + roll;
+            if (destPathIndex == path.length) {
+                if (pathIndex >= 0) {
+                    moves.add(pathIndex);
+                }
+                continue;
+            }
+
+            int destTile = path[destPathIndex];
+            int destPiece = game.board.pieces[destTile];
+            if (destPiece * player.sign > 0)
+                continue;
+            if (destPiece != 0 && game.areRosettesSafe && game.board.isTileRosette(destTile))
+                continue;
+
+            moves.add(pathIndex);
+        }
+        int[] sorted = moves.stream().mapToInt(Integer::intValue).toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static void assertMovesMatchPathWalking(GameSettings settings) {
+        Random random = new Random(61);
+        Dice dice = ((DiceType) settings.getDice()).createDice(random);
+        FastSimpleGame game = new FastSimpleGame(settings);
+        FastSimpleMoveList moveList = new FastSimpleMoveList();
+        for (int gameIndex = 0; gameIndex < 200; ++gameIndex) {
+            game.reset();
+            while (!game.isFinished) {
+                if (game.isWaitingForRoll()) {
+                    game.applyRoll(dice.rollValue(), moveList);
+                    continue;
+                }
+
+                game.findAvailableMoves(moveList);
+                int[] moves = Arrays.copyOf(moveList.moves, moveList.moveCount);
+                Arrays.sort(moves);
+                assertArrayEquals(findMovesByWalkingPath(game), moves, game.toString());
+
+                // Check the destination and extra roll of the move against the path.
+                int pathIndex = moveList.moves[random.nextInt(moveList.moveCount)];
+                FastSimplePlayer player = game.getTurnPlayer();
+                int destPathIndex = pathIndex + game.rollValue;
+                int destTile = (destPathIndex < player.path.length ? player.path[destPathIndex] : -1);
+                boolean wasLightTurn = game.isLightTurn;
+                int status = game.applyMove(pathIndex);
+                if (game.isFinished)
+                    break;
+
+                boolean captured = (status & FastSimpleGame.MOVE_STATUS_CAPTURED) != 0;
+                boolean onRosette = (destTile >= 0 && game.board.isTileRosette(destTile));
+                boolean extraRoll = (game.rosettesGrantExtraRoll && onRosette)
+                        || (game.capturesGrantExtraRoll && captured);
+                assertEquals(extraRoll, game.isLightTurn == wasLightTurn);
+                if (destTile >= 0) {
+                    assertEquals(player.sign * (destPathIndex + 1), game.board.pieces[destTile]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that the moves found using the move tables are the same
+     * as the moves found by walking the paths of the players.
+     */
+    @Test
+    public void testMatchesPathWalking() {
+        for (SimpleRuleSetTest.NamedGameSettings nrs : SimpleRuleSetTest.getStandardGameSettings()) {
+            GameSettings base = nrs.settings.withDice(DiceType.FOUR_BINARY);
+            assertMovesMatchPathWalking(base);
+            assertMovesMatchPathWalking(base.withSafeRosettes(!base.areRosettesSafe()));
+            assertMovesMatchPathWalking(base.withCapturesGrantExtraRolls(true));
+            assertMovesMatchPathWalking(base.withRosettesGrantExtraRolls(!base.doRosettesGrantExtraRolls()));
+        }
+    }
+
+    @Test
+    public void testTablesAreShared() {
+        FastSimpleFlags flags = new FastSimpleFlags(GameSettings.FINKEL);
+        assertSame(FastSimpleMoveTables.get(GameSettings.FINKEL), flags.moveTables);
+        assertSame(
+                flags.moveTables,
+                FastSimpleMoveTables.get(GameSettings.FINKEL.withDice(DiceType.THREE_BINARY_0EQ4))
+        );
+        assertNotSame(flags.moveTables, FastSimpleMoveTables.get(GameSettings.MASTERS));
+        assertNotSame(
+                flags.moveTables,
+                FastSimpleMoveTables.get(GameSettings.FINKEL.withRosettesGrantExtraRolls(false))
+        );
+    }
+}
@@ -0,0 +1,84 @@
+package net.royalur.rules.simple.fast;
+
+import net.royalur.model.GameSettings;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FastSimpleStateCounterTest {
+
+    private static final GameSettings[] SETTINGS = {
+            GameSettings.FINKEL_2P,
+            GameSettings.FINKEL.withStartingPieceCount(4),
+            GameSettings.MASTERS.withStartingPieceCount(3),
+            GameSettings.BLITZ.withStartingPieceCount(3),
+    };
+
+    private static String classKey(int lightPieces, int darkPieces, int lightScore, int darkScore) {
+        return lightPieces + "," + darkPieces + "," + lightScore + "," + darkScore;
+    }
+
+    @Test
+    public void testClassCountsMatchEnumeration() {
+        for (GameSettings settings : SETTINGS) {
+            FastSimpleFlags flags = new FastSimpleFlags(settings);
+            FastSimpleStateCounter counter = new FastSimpleStateCounter(flags);
+
+            Map<String, Long> enumerated = new HashMap<>();
+            flags.loopLightGameStates(game -> enumerated.merge(
+                    classKey(game.light.pieces, game.dark.pieces, game.light.score, game.dark.score),
+                    1L, Long::sum
+            ));
+
+            int pieceCount = settings.getStartingPieceCount();
+            for (int lightPieces = 0; lightPieces <= pieceCount; ++lightPieces) {
+                for (int darkPieces = 0; darkPieces <= pieceCount; ++darkPieces) {
+                    assertPieceClassCountsMatch(settings, counter, enumerated, lightPieces, darkPieces);
+                }
+            }
+        }
+    }
+
+    private static void assertPieceClassCountsMatch(
+            GameSettings settings,
+            FastSimpleStateCounter counter,
+            Map<String, Long> enumerated,
+            int lightPieces,
+            int darkPieces
+    ) {
+        int pieceCount = settings.getStartingPieceCount();
+        for (int lightScore = 0; lightScore <= pieceCount; ++lightScore) {
+            for (int darkScore = 0; darkScore <= pieceCount; ++darkScore) {
+                String key = classKey(lightPieces, darkPieces, lightScore, darkScore);
+                assertEquals(
+                        enumerated.getOrDefault(key, 0L),
+                        counter.countLightStates(lightPieces, darkPieces, lightScore, darkScore),
+                        settings + ": " + key
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testTotalsMatchEnumeration() {
+        for (GameSettings settings : SETTINGS) {
+            FastSimpleFlags flags = new FastSimpleFlags(settings);
+            FastSimpleStateCounter counter = new FastSimpleStateCounter(flags);
+
+            long[] counts = new long[2];
+            flags.loopLightGameStates(game -> {
+                counts[0] += 1;
+                if (game.isFinished) {
+                    counts[1] += 1;
+                }
+            });
+            assertEquals(counts[0], counter.countLightStates());
+            assertEquals(counts[1], counter.countLightWinStates());
+            assertEquals(2 * counts[0], flags.countStates());
+            assertEquals(flags.countStates(game -> true), flags.countStates());
+        }
+    }
+}
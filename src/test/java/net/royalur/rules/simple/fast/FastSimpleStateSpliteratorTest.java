@@ -0,0 +1,107 @@
+package net.royalur.rules.simple.fast;
+
+import net.royalur.model.GameSettings;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FastSimpleStateSpliteratorTest {
+
+    private static final GameSettings[] SETTINGS = {
+            GameSettings.FINKEL_2P,
+            GameSettings.FINKEL.withStartingPieceCount(3),
+            GameSettings.MASTERS.withStartingPieceCount(2),
+    };
+
+    private static String describe(FastSimpleGame game) {
+        return Arrays.toString(game.board.pieces)
+                + " " + game.light.pieces + "/" + game.light.score
+                + " " + game.dark.pieces + "/" + game.dark.score
+                + " " + game.isFinished;
+    }
+
+    @Test
+    public void testSequentialStreamMatchesLoop() {
+        for (GameSettings settings : SETTINGS) {
+            FastSimpleFlags flags = new FastSimpleFlags(settings);
+            List<String> expected = new ArrayList<>();
+            flags.loopLightGameStates(game -> expected.add(describe(game)));
+
+            List<String> actual = flags.streamLightGameStates(false)
+                    .map(FastSimpleStateSpliteratorTest::describe)
+                    .collect(Collectors.toList());
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testTryAdvanceMatchesLoop() {
+        for (GameSettings settings : SETTINGS) {
+            FastSimpleFlags flags = new FastSimpleFlags(settings);
+            List<String> expected = new ArrayList<>();
+            flags.loopLightGameStates(game -> expected.add(describe(game)));
+
+            // Advance part of the way one state at a time, and then finish in bulk.
+            List<String> actual = new ArrayList<>();
+            Spliterator<FastSimpleGame> spliterator = flags.spliterateLightGameStates();
+            for (int index = 0; index < expected.size() / 3; ++index) {
+                assertTrue(spliterator.tryAdvance(game -> actual.add(describe(game))));
+            }
+            assertNull(spliterator.trySplit());
+            spliterator.forEachRemaining(game -> actual.add(describe(game)));
+            assertFalse(spliterator.tryAdvance(game -> fail()));
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testParallelStreamMatchesLoop() {
+        for (GameSettings settings : SETTINGS) {
+            FastSimpleFlags flags = new FastSimpleFlags(settings);
+            List<String> expected = new ArrayList<>();
+            flags.loopLightGameStates(game -> expected.add(describe(game)));
+
+            List<String> actual = flags.streamLightGameStates(true)
+                    .map(FastSimpleStateSpliteratorTest::describe)
+                    .collect(Collectors.toList());
+            assertEquals(expected, actual);
+            assertEquals(flags.countStates() / 2, actual.size());
+        }
+    }
+
+    @Test
+    public void testSplitsCoverAllStates() {
+        FastSimpleFlags flags = new FastSimpleFlags(GameSettings.FINKEL_2P);
+        List<Spliterator<FastSimpleGame>> splits = new ArrayList<>();
+        splits.add(flags.spliterateLightGameStates());
+
+        // Split repeatedly so that the board prefixes are also split.
+        for (int round = 0; round < 10; ++round) {
+            List<Spliterator<FastSimpleGame>> nextSplits = new ArrayList<>();
+            for (Spliterator<FastSimpleGame> split : splits) {
+                Spliterator<FastSimpleGame> prefix = split.trySplit();
+                if (prefix != null) {
+                    nextSplits.add(prefix);
+                }
+                nextSplits.add(split);
+            }
+            splits = nextSplits;
+        }
+        assertTrue(splits.size() > 100);
+
+        List<String> expected = new ArrayList<>();
+        flags.loopLightGameStates(game -> expected.add(describe(game)));
+
+        List<String> actual = new ArrayList<>();
+        for (Spliterator<FastSimpleGame> split : splits) {
+            split.forEachRemaining(game -> actual.add(describe(game)));
+        }
+        assertEquals(expected, actual);
+    }
+}
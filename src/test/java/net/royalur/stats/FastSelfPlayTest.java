@@ -0,0 +1,91 @@
+package net.royalur.stats;
+
+import net.royalur.Game;
+import net.royalur.agent.Agent;
+import net.royalur.agent.BetterGreedyAgent;
+import net.royalur.agent.GreedyAgent;
+import net.royalur.agent.RandomAgent;
+import net.royalur.model.GameMetadata;
+import net.royalur.model.GameSettings;
+import net.royalur.model.dice.DiceType;
+import net.royalur.rules.simple.SimpleRuleSet;
+import net.royalur.rules.simple.SimpleRuleSetProvider;
+import net.royalur.rules.simple.fast.FastSimpleEngineType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FastSelfPlayTest {
+
+    private static void assertStatsEqual(GameStats expected, GameStats actual) {
+        assertEquals(expected.didLightWin(), actual.didLightWin());
+        for (GameStatsTarget target : GameStatsTarget.values()) {
+            assertEquals(expected.getRolls(target), actual.getRolls(target), "rolls");
+            assertEquals(expected.getMoves(target), actual.getMoves(target), "moves");
+            assertEquals(expected.getTurns(target), actual.getTurns(target), "turns");
+            assertEquals(expected.getDrama(target), actual.getDrama(target), "drama");
+        }
+        assertEquals(expected.getTurnsInLead(), actual.getTurnsInLead(), "turnsInLead");
+    }
+
+    private static void testMatchesGameStats(GameSettings settings) {
+        DiceType diceType = (DiceType) settings.getDice();
+        Random random = new Random();
+        GameSettings seededSettings = settings.withDice(diceType.createFactory(() -> random));
+        SimpleRuleSet rules = new SimpleRuleSetProvider().create(seededSettings, new GameMetadata());
+
+        GreedyAgent greedy = new GreedyAgent();
+        BetterGreedyAgent betterGreedy = new BetterGreedyAgent();
+        FastSelfPlay selfPlay = new FastSelfPlay(settings, diceType.createDice(random));
+
+        for (int seed = 0; seed < 200; ++seed) {
+            boolean swap = (seed % 2 == 0);
+            Agent light = (swap ? greedy : betterGreedy);
+            Agent dark = (swap ? betterGreedy : greedy);
+
+            random.setSeed(seed);
+            Game game = new Game(rules);
+            Agent.playAutonomously(game, light, dark);
+            GameStats expected = GameStats.gather(game);
+
+            random.setSeed(seed);
+            GameStats actual = selfPlay.play(swap ? greedy : betterGreedy, swap ? betterGreedy : greedy);
+            assertStatsEqual(expected, actual);
+        }
+    }
+
+    @Test
+    public void testMatchesGameStats() {
+        for (GameSettings settings : List.of(GameSettings.FINKEL, GameSettings.MASTERS, GameSettings.ASEB)) {
+            testMatchesGameStats(settings);
+        }
+    }
+
+    @Test
+    public void testBitboardEngineMatchesBoardEngine() {
+        for (GameSettings settings : List.of(GameSettings.FINKEL, GameSettings.MASTERS, GameSettings.ASEB)) {
+            DiceType diceType = (DiceType) settings.getDice();
+            Random random = new Random();
+            FastSelfPlay boardSelfPlay = new FastSelfPlay(
+                    settings, diceType.createDice(random), FastSimpleEngineType.BOARD
+            );
+            FastSelfPlay bitboardSelfPlay = new FastSelfPlay(
+                    settings, diceType.createDice(random), FastSimpleEngineType.BITBOARD
+            );
+
+            GreedyAgent greedy = new GreedyAgent();
+            RandomAgent randomAgent = new RandomAgent(random);
+            for (int seed = 0; seed < 200; ++seed) {
+                random.setSeed(seed);
+                GameStats expected = boardSelfPlay.play(greedy, randomAgent);
+
+                random.setSeed(seed);
+                GameStats actual = bitboardSelfPlay.play(greedy, randomAgent);
+                assertStatsEqual(expected, actual);
+            }
+        }
+    }
+}
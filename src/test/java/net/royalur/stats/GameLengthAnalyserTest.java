@@ -0,0 +1,95 @@
+package net.royalur.stats;
+
+import net.royalur.agent.BetterGreedyAgent;
+import net.royalur.agent.GreedyAgent;
+import net.royalur.model.GameSettings;
+import net.royalur.model.dice.DiceType;
+import net.royalur.rules.simple.fast.FastSimpleGame;
+import net.royalur.rules.simple.fast.FastSimpleMoveList;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameLengthAnalyserTest {
+
+    private static final GameSettings SETTINGS = GameSettings.FINKEL.withStartingPieceCount(2);
+
+    private static GameLengthAnalyser createAnalyser(int threadCount) {
+        return new GameLengthAnalyser(SETTINGS, GreedyAgent::new, BetterGreedyAgent::new, threadCount);
+    }
+
+    @Test
+    public void testPackRoundTrip() {
+        GameLengthAnalyser analyser = createAnalyser(1);
+        FastSimpleGame game = new FastSimpleGame(SETTINGS);
+        FastSimpleGame unpacked = new FastSimpleGame(SETTINGS);
+        game.reset();
+        game.applyRoll(2, new FastSimpleMoveList());
+        game.applyMove(-1);
+
+        analyser.unpack(analyser.pack(game), unpacked);
+        assertEquals(game.toString(), unpacked.toString());
+    }
+
+    @Test
+    public void testProbabilitiesSumToOne() {
+        GameLengthDistribution distribution = createAnalyser(1).analyse();
+        double total = distribution.getLightWinProbability()
+                + distribution.getDarkWinProbability()
+                + distribution.getUnresolvedProbability();
+        assertEquals(1.0, total, 1e-9);
+        assertTrue(distribution.getUnresolvedProbability() <= GameLengthAnalyser.DEFAULT_TOLERANCE);
+        assertEquals(
+                distribution.getExpectedRolls(GameStatsTarget.OVERALL),
+                distribution.getExpectedRolls(GameStatsTarget.LIGHT)
+                        + distribution.getExpectedRolls(GameStatsTarget.DARK),
+                1e-9
+        );
+    }
+
+    @Test
+    public void testIndependentOfThreadCount() {
+        GameLengthDistribution expected = createAnalyser(1).analyse();
+        GameLengthDistribution actual = createAnalyser(3).analyse();
+        assertEquals(expected.getMaxRolls(), actual.getMaxRolls());
+        assertEquals(expected.getLightWinProbability(), actual.getLightWinProbability(), 1e-12);
+        for (int rolls = 0; rolls <= expected.getMaxRolls(); ++rolls) {
+            assertEquals(expected.getProbability(rolls), actual.getProbability(rolls), 1e-12);
+        }
+    }
+
+    @Test
+    public void testMatchesSimulation() {
+        GameLengthDistribution distribution = createAnalyser(2).analyse();
+        double[] rolls = distribution.summariseRolls();
+
+        int games = 20000;
+        DiceType diceType = (DiceType) SETTINGS.getDice();
+        FastSelfPlay selfPlay = new FastSelfPlay(SETTINGS, diceType.createDice(new Random(42)));
+        GreedyAgent light = new GreedyAgent();
+        BetterGreedyAgent dark = new BetterGreedyAgent();
+        StatGatherer rollStats = new StatGatherer();
+        int lightWins = 0;
+        for (int game = 0; game < games; ++game) {
+            GameStats stats = selfPlay.play(light, dark);
+            rollStats.add(stats.getRolls(GameStatsTarget.OVERALL));
+            lightWins += (stats.didLightWin() ? 1 : 0);
+        }
+
+        // Allow for five standard errors of the simulated estimates.
+        double lightWinProbability = distribution.getLightWinProbability();
+        double winStandardError = Math.sqrt(lightWinProbability * (1 - lightWinProbability) / games);
+        assertEquals(lightWinProbability, (double) lightWins / games, 5 * winStandardError);
+
+        double rollsStandardError = rollStats.stdDev() / Math.sqrt(games);
+        assertEquals(rolls[SummaryStat.MEAN.ordinal()], rollStats.mean(), 5 * rollsStandardError);
+        assertEquals(rollStats.stdDev(), rolls[SummaryStat.STD_DEV.ordinal()], 0.05 * rollStats.stdDev());
+        assertEquals(
+                distribution.getExpectedRolls(GameStatsTarget.OVERALL),
+                rolls[SummaryStat.MEAN.ordinal()],
+                1e-6
+        );
+    }
+}
@@ -0,0 +1,84 @@
+package net.royalur.stats;
+
+import net.royalur.agent.GreedyAgent;
+import net.royalur.agent.RandomAgent;
+import net.royalur.model.GameSettings;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameSimulatorTest {
+
+    private static void assertResultsEqual(GameSimulationResults expected, GameSimulationResults actual) {
+        assertEquals(expected.getGameCount(), actual.getGameCount());
+        assertEquals(expected.getAgent1Wins(), actual.getAgent1Wins());
+        assertEquals(expected.getLightWins(), actual.getLightWins());
+
+        GameStatsSummary expectedSummary = expected.getStats().summarise();
+        GameStatsSummary actualSummary = actual.getStats().summarise();
+        for (SummaryStat stat : SummaryStat.values()) {
+            for (GameStatsTarget target : GameStatsTarget.values()) {
+                assertEquals(
+                        expectedSummary.getTurnsStatistic(target, stat),
+                        actualSummary.getTurnsStatistic(target, stat)
+                );
+                assertEquals(
+                        expectedSummary.getDramaStatistic(target, stat),
+                        actualSummary.getDramaStatistic(target, stat)
+                );
+            }
+            assertEquals(
+                    expectedSummary.getPercentInLeadStatistic(stat),
+                    actualSummary.getPercentInLeadStatistic(stat)
+            );
+        }
+    }
+
+    @Test
+    public void testReproducibleAcrossThreadCounts() {
+        GameSimulator simulator = new GameSimulator(
+                GameSettings.FINKEL,
+                (rules, random) -> new RandomAgent(random),
+                (rules, random) -> new GreedyAgent(),
+                1234,
+                7
+        );
+        GameSimulationResults single = simulator.simulate(100, 1);
+        assertEquals(100, single.getGameCount());
+        assertEquals(single.getAgent1Wins() + single.getAgent2Wins(), single.getGameCount());
+        assertEquals(single.getLightWins() + single.getDarkWins(), single.getGameCount());
+
+        assertResultsEqual(single, simulator.simulate(100, 3));
+        assertResultsEqual(single, simulator.simulate(100, 8));
+    }
+
+    @Test
+    public void testBatchesMatchSingleSimulation() {
+        GameSimulator simulator = new GameSimulator(
+                GameSettings.FINKEL,
+                (rules, random) -> new RandomAgent(random),
+                (rules, random) -> new GreedyAgent(),
+                99,
+                7
+        );
+        GameSimulationResults batched = simulator.simulate(0, 40, 2);
+        batched.merge(simulator.simulate(40, 100, 3));
+        assertResultsEqual(simulator.simulate(100, 1), batched);
+    }
+
+    @Test
+    public void testSeedsDiffer() {
+        GameSimulator simulator1 = GameSimulator.create(
+                GameSettings.FINKEL, rules -> new GreedyAgent(), rules -> new GreedyAgent(), 1
+        );
+        GameSimulator simulator2 = GameSimulator.create(
+                GameSettings.FINKEL, rules -> new GreedyAgent(), rules -> new GreedyAgent(), 2
+        );
+        GameStatsSummary summary1 = simulator1.simulate(50, 2).getStats().summarise();
+        GameStatsSummary summary2 = simulator2.simulate(50, 2).getStats().summarise();
+        assertNotEquals(
+                summary1.getRollsStatistic(GameStatsTarget.OVERALL, SummaryStat.MEAN),
+                summary2.getRollsStatistic(GameStatsTarget.OVERALL, SummaryStat.MEAN)
+        );
+    }
+}
@@ -0,0 +1,152 @@
+package net.royalur.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameStatsAccumulatorTest {
+
+    private static GameStats createRandomStats(Random random) {
+        int targetCount = GameStatsTarget.values().length;
+        int[] rolls = new int[targetCount];
+        int[] moves = new int[targetCount];
+        int[] turns = new int[targetCount];
+        int[] drama = new int[targetCount];
+        for (int index = 1; index < targetCount; ++index) {
+            rolls[index] = 20 + random.nextInt(60);
+            moves[index] = 10 + random.nextInt(rolls[index] - 10);
+            turns[index] = rolls[index];
+            drama[index] = random.nextInt(6);
+        }
+        for (int[] counts : new int[][] {rolls, moves, turns, drama}) {
+            counts[0] = counts[1] + counts[2];
+        }
+        int turnsInLead = random.nextInt(turns[0] + 1);
+        return new GameStats(random.nextBoolean(), rolls, moves, turns, drama, turnsInLead);
+    }
+
+    private static void assertSummaryEquals(double[] expected, double[] actual, double percentileTolerance) {
+        for (SummaryStat stat : SummaryStat.values()) {
+            int index = stat.ordinal();
+            double tolerance = switch (stat) {
+                case MEDIAN, PERCENTILE_5, PERCENTILE_25, PERCENTILE_75, PERCENTILE_95 -> percentileTolerance;
+                default -> 1e-9 * Math.max(1, Math.abs(expected[index]));
+            };
+            assertEquals(expected[index], actual[index], tolerance, stat.name());
+        }
+    }
+
+    @Test
+    public void testMatchesSummarise() {
+        Random random = new Random(31);
+        GameStats[] stats = new GameStats[5000];
+        GameStatsAccumulator[] parts = new GameStatsAccumulator[3];
+        for (int index = 0; index < parts.length; ++index) {
+            parts[index] = new GameStatsAccumulator();
+        }
+        for (int index = 0; index < stats.length; ++index) {
+            stats[index] = createRandomStats(random);
+            parts[index % parts.length].add(stats[index]);
+        }
+
+        GameStatsAccumulator accumulator = new GameStatsAccumulator();
+        for (GameStatsAccumulator part : parts) {
+            accumulator.merge(part);
+        }
+        assertEquals(stats.length, accumulator.getGameCount());
+        assertEquals(Arrays.stream(stats).filter(GameStats::didLightWin).count(), accumulator.getLightWins());
+
+        GameStatsSummary expected = GameStats.summarise(stats);
+        GameStatsSummary actual = accumulator.summarise();
+        for (GameStatsTarget target : GameStatsTarget.values()) {
+            for (SummaryStat stat : SummaryStat.values()) {
+                assertEquals(
+                        expected.getRollsStatistic(target, stat),
+                        actual.getRollsStatistic(target, stat),
+                        1e-9 * Math.max(1, Math.abs(expected.getRollsStatistic(target, stat)))
+                );
+                assertEquals(
+                        expected.getMovesStatistic(target, stat),
+                        actual.getMovesStatistic(target, stat),
+                        1e-9 * Math.max(1, Math.abs(expected.getMovesStatistic(target, stat)))
+                );
+                assertEquals(
+                        expected.getTurnsStatistic(target, stat),
+                        actual.getTurnsStatistic(target, stat),
+                        1e-9 * Math.max(1, Math.abs(expected.getTurnsStatistic(target, stat)))
+                );
+                assertEquals(
+                        expected.getDramaStatistic(target, stat),
+                        actual.getDramaStatistic(target, stat),
+                        1e-9 * Math.max(1, Math.abs(expected.getDramaStatistic(target, stat)))
+                );
+            }
+        }
+
+        double[] expectedPercent = new double[SummaryStat.values().length];
+        double[] actualPercent = new double[SummaryStat.values().length];
+        for (SummaryStat stat : SummaryStat.values()) {
+            assertEquals(
+                    expected.getTurnsInLeadStatistic(stat),
+                    actual.getTurnsInLeadStatistic(stat),
+                    1e-9 * Math.max(1, Math.abs(expected.getTurnsInLeadStatistic(stat)))
+            );
+            expectedPercent[stat.ordinal()] = expected.getPercentInLeadStatistic(stat);
+            actualPercent[stat.ordinal()] = actual.getPercentInLeadStatistic(stat);
+        }
+        assertSummaryEquals(expectedPercent, actualPercent, 3.0);
+    }
+
+    @Test
+    public void testKllSketchPercentiles() {
+        Random random = new Random(5);
+        int count = 200000;
+        double[] measurements = new double[count];
+        KllSketch[] parts = {new KllSketch(), new KllSketch()};
+        for (int index = 0; index < count; ++index) {
+            measurements[index] = random.nextGaussian() * 10;
+            parts[index % 2].add(measurements[index]);
+        }
+        parts[0].merge(parts[1]);
+        assertEquals(count, parts[0].getCount());
+
+        double[] exact = SummaryStat.compute(measurements);
+        double[] approx = parts[0].summarise();
+        assertEquals(exact[SummaryStat.MIN.ordinal()], approx[SummaryStat.MIN.ordinal()]);
+        assertEquals(exact[SummaryStat.MAX.ordinal()], approx[SummaryStat.MAX.ordinal()]);
+        assertEquals(exact[SummaryStat.MEAN.ordinal()], approx[SummaryStat.MEAN.ordinal()], 1e-9);
+
+        // The percentiles should be within about 1.5% of rank of the exact percentiles.
+        Arrays.sort(measurements);
+        SummaryStat[] percentiles = {
+                SummaryStat.PERCENTILE_5, SummaryStat.PERCENTILE_25, SummaryStat.MEDIAN,
+                SummaryStat.PERCENTILE_75, SummaryStat.PERCENTILE_95
+        };
+        for (SummaryStat stat : percentiles) {
+            double exactRank = Arrays.binarySearch(measurements, exact[stat.ordinal()]);
+            int approxIndex = Arrays.binarySearch(measurements, approx[stat.ordinal()]);
+            double approxRank = (approxIndex >= 0 ? approxIndex : -approxIndex - 1);
+            if (exactRank < 0) {
+                exactRank = -exactRank - 1;
+            }
+            assertEquals(exactRank / count, approxRank / count, 0.015, stat.name());
+        }
+    }
+
+    @Test
+    public void testIntHistogramSketch() {
+        IntHistogramSketch sketch = new IntHistogramSketch();
+        double[] measurements = {1, 2, 2, 3, 100, 7, 7, 7};
+        for (double measurement : measurements) {
+            sketch.add(measurement);
+        }
+        assertEquals(3, sketch.getCount(7));
+        assertEquals(0, sketch.getCount(1000));
+        assertThrows(IllegalArgumentException.class, () -> sketch.add(-1));
+        assertThrows(IllegalArgumentException.class, () -> sketch.add(1.5));
+        assertSummaryEquals(SummaryStat.compute(measurements), sketch.summarise(), 1e-12);
+    }
+}
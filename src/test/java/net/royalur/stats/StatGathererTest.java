@@ -0,0 +1,100 @@
+package net.royalur.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatGathererTest {
+
+    private static void assertStatsEqual(StatGatherer expected, StatGatherer actual, double relativeTolerance) {
+        assertEquals(expected.count(), actual.count());
+        assertEquals(expected.min(), actual.min());
+        assertEquals(expected.max(), actual.max());
+        assertEquals(expected.mean(), actual.mean(), Math.abs(expected.mean()) * relativeTolerance);
+        assertEquals(expected.variance(), actual.variance(), expected.variance() * relativeTolerance);
+    }
+
+    @Test
+    public void testEmpty() {
+        StatGatherer stats = new StatGatherer();
+        assertEquals(0, stats.count());
+        assertTrue(Double.isNaN(stats.mean()));
+        assertTrue(Double.isNaN(stats.variance()));
+
+        stats.add(3.0);
+        assertEquals(3.0, stats.mean());
+        assertTrue(Double.isNaN(stats.variance()));
+    }
+
+    @Test
+    public void testSimpleValues() {
+        for (boolean highPrecision : new boolean[] {false, true}) {
+            StatGatherer stats = new StatGatherer(highPrecision);
+            for (double value : new double[] {2, 4, 4, 4, 5, 5, 7, 9}) {
+                stats.add(value);
+            }
+            assertEquals(8, stats.count());
+            assertEquals(2, stats.min());
+            assertEquals(9, stats.max());
+            assertEquals(5.0, stats.mean(), 1e-12);
+            assertEquals(4.0, stats.variance(), 1e-12);
+            assertEquals(2.0, stats.stdDev(), 1e-12);
+        }
+    }
+
+    @Test
+    public void testMatchesHighPrecisionWithLargeOffset() {
+        Random random = new Random(42);
+        StatGatherer fast = new StatGatherer();
+        StatGatherer precise = new StatGatherer(true);
+        for (int index = 0; index < 100000; ++index) {
+            double value = 1e9 + random.nextGaussian();
+            fast.add(value);
+            precise.add(value);
+        }
+        assertStatsEqual(precise, fast, 1e-9);
+        assertEquals(1.0, fast.variance(), 0.02);
+    }
+
+    @Test
+    public void testMergeMatchesSequential() {
+        for (boolean highPrecision : new boolean[] {false, true}) {
+            Random random = new Random(7);
+            StatGatherer all = new StatGatherer(highPrecision);
+            StatGatherer[] parts = new StatGatherer[5];
+            for (int part = 0; part < parts.length; ++part) {
+                parts[part] = new StatGatherer(highPrecision);
+            }
+            for (int index = 0; index < 10000; ++index) {
+                double value = random.nextDouble() * 100 - 20;
+                all.add(value);
+                parts[random.nextInt(parts.length)].add(value);
+            }
+
+            StatGatherer merged = new StatGatherer(highPrecision);
+            merged.merge(new StatGatherer());
+            for (StatGatherer part : parts) {
+                merged.merge(part);
+            }
+            assertStatsEqual(all, merged, 1e-12);
+        }
+    }
+
+    @Test
+    public void testMergeAcrossModes() {
+        StatGatherer fast = new StatGatherer();
+        StatGatherer precise = new StatGatherer(true);
+        for (int value = 0; value < 10; ++value) {
+            fast.add(value);
+            precise.add(value + 10);
+        }
+        StatGatherer merged = new StatGatherer(true);
+        merged.merge(fast);
+        merged.merge(precise);
+        assertEquals(20, merged.count());
+        assertEquals(9.5, merged.mean(), 1e-12);
+        assertEquals(33.25, merged.variance(), 1e-12);
+    }
+}
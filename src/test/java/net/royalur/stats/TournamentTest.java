@@ -0,0 +1,74 @@
+package net.royalur.stats;
+
+import net.royalur.agent.GreedyAgent;
+import net.royalur.agent.RandomAgent;
+import net.royalur.model.GameSettings;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TournamentTest {
+
+    private static Tournament createTournament() {
+        return new Tournament(
+                List.of(
+                        new Tournament.Entrant("random", (rules, random) -> new RandomAgent(random)),
+                        new Tournament.Entrant("greedy", (rules, random) -> new GreedyAgent())
+                ),
+                47, 100, 100, 2000, 1.96, 0.05
+        );
+    }
+
+    @Test
+    public void testHalfWidth() {
+        assertEquals(0.09617, Tournament.calculateHalfWidth(50, 100, 1.96), 1e-5);
+        assertTrue(Tournament.calculateHalfWidth(500, 1000, 1.96) < Tournament.calculateHalfWidth(50, 100, 1.96));
+        assertTrue(Tournament.calculateHalfWidth(0, 100, 1.96) > 0.0);
+        assertEquals(1.0, Tournament.calculateHalfWidth(0, 0, 1.96));
+    }
+
+    @Test
+    public void testElo() {
+        double[] pair = Tournament.calculateElo(new long[][] {{0, 300}, {100, 0}});
+        assertEquals(0.0, pair[0] + pair[1], 1e-6);
+        assertEquals(400.0 * Math.log10(300.5 / 100.5), pair[0] - pair[1], 1e-6);
+
+        // Agents that win every game still receive finite ratings.
+        double[] ordered = Tournament.calculateElo(new long[][] {
+                {0, 60, 100},
+                {40, 0, 70},
+                {0, 30, 0}
+        });
+        assertTrue(ordered[0] > ordered[1]);
+        assertTrue(ordered[1] > ordered[2]);
+        assertTrue(Double.isFinite(ordered[2]));
+    }
+
+    @Test
+    public void testStopsOnceConfident() {
+        Tournament tournament = createTournament();
+        Tournament.Results results = tournament.play(GameSettings.FINKEL, 2, match -> {});
+        assertEquals(1, results.getMatches().size());
+
+        Tournament.MatchResults match = results.getMatches().get(0);
+        long games = match.getResults().getGameCount();
+        assertTrue(match.isConfident());
+        assertTrue(games >= 100 && games < 2000, games + " games");
+        assertEquals(0, games % 100);
+        assertTrue(match.getHalfWidth() <= 0.05);
+        assertTrue(match.getWinRate() < 0.5);
+
+        double[] elo = results.calculateElo();
+        assertTrue(elo[1] > elo[0]);
+        assertTrue(results.getLatencies(0).getCount() > 0);
+        assertTrue(results.getLatencies(1).getCount() > 0);
+        assertEquals(games, results.getGameCount(1));
+
+        // The games only depend on the seed, and not the number of threads.
+        Tournament.MatchResults repeated = tournament.play(GameSettings.FINKEL, 3, ignored -> {}).getMatches().get(0);
+        assertEquals(games, repeated.getResults().getGameCount());
+        assertEquals(match.getResults().getAgent1Wins(), repeated.getResults().getAgent1Wins());
+    }
+}